@@ -20,41 +20,43 @@
 package org.sonar.ce.container;
 
 import java.io.File;
-import org.apache.commons.io.FileUtils;
-import org.sonar.server.platform.ServerFileSystem;
-import org.sonar.api.utils.ZipUtils;
+import java.util.Collection;
+import java.util.Map;
 import org.sonar.core.platform.ExplodedPlugin;
 import org.sonar.core.platform.PluginInfo;
 import org.sonar.core.platform.PluginJarExploder;
+import org.sonar.core.util.stream.Collectors;
+import org.sonar.server.platform.ServerFileSystem;
+import org.sonar.server.plugins.ExplodedPluginCache;
 
 /**
- * Explodes the plugin JARs of extensions/plugins/ into a temporary directory
- * dedicated to compute engine.
+ * Loads the plugin JARs of extensions/plugins/ from the cache of exploded plugins
+ * shared with web server. Plugins are exploded only if web server did not already do it.
  */
 public class CePluginJarExploder extends PluginJarExploder {
 
-  private static final String TEMP_RELATIVE_PATH = "ce-exploded-plugins";
-  private final ServerFileSystem fs;
+  private final ExplodedPluginCache cache;
 
   public CePluginJarExploder(ServerFileSystem fs) {
-    this.fs = fs;
+    this.cache = new ExplodedPluginCache(fs, newLibFilter());
   }
 
   @Override
   public ExplodedPlugin explode(PluginInfo pluginInfo) {
-    File tempDir = new File(fs.getTempDir(), TEMP_RELATIVE_PATH);
-    File toDir = new File(tempDir, pluginInfo.getKey());
+    File jarSource = pluginInfo.getNonNullJarFile();
     try {
-      org.sonar.core.util.FileUtils.cleanDirectory(toDir);
-
-      File jarSource = pluginInfo.getNonNullJarFile();
-      File jarTarget = new File(toDir, jarSource.getName());
-      FileUtils.copyFile(jarSource, jarTarget);
-      ZipUtils.unzip(jarSource, toDir, newLibFilter());
-      return explodeFromUnzippedDir(pluginInfo.getKey(), jarTarget, toDir);
+      File explodedDir = cache.get(pluginInfo.getKey(), jarSource);
+      return explodeFromUnzippedDir(pluginInfo.getKey(), new File(explodedDir, jarSource.getName()), explodedDir);
     } catch (Exception e) {
       throw new IllegalStateException(String.format(
-        "Fail to unzip plugin [%s] %s to %s", pluginInfo.getKey(), pluginInfo.getNonNullJarFile().getAbsolutePath(), toDir.getAbsolutePath()), e);
+        "Fail to unzip plugin [%s] %s", pluginInfo.getKey(), jarSource.getAbsolutePath()), e);
     }
   }
+
+  @Override
+  public Map<String, ExplodedPlugin> explodeAll(Collection<PluginInfo> infos) {
+    return infos.parallelStream()
+      .map(this::explode)
+      .collect(Collectors.uniqueIndex(ExplodedPlugin::getKey, infos.size()));
+  }
 }
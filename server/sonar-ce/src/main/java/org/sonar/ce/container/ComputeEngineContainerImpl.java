@@ -68,6 +68,7 @@ import org.sonar.process.logging.LogbackHelper;
 import org.sonar.server.component.ComponentCleanerService;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.component.ComponentService;
+import org.sonar.server.component.es.ComponentIndexer;
 import org.sonar.server.component.es.ProjectMeasuresIndexer;
 import org.sonar.server.computation.queue.PurgeCeActivities;
 import org.sonar.server.computation.task.projectanalysis.ProjectAnalysisTaskModule;
@@ -136,6 +137,7 @@ import org.sonar.server.setting.DatabaseSettingsEnabler;
 import org.sonar.server.setting.ThreadLocalSettings;
 import org.sonar.server.startup.LogServerId;
 import org.sonar.server.test.index.TestIndexer;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.user.DefaultUserFinder;
 import org.sonar.server.user.DeprecatedUserFinder;
 import org.sonar.server.user.index.UserIndex;
@@ -328,6 +330,7 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
       UserIndex.class,
 
       // permissions
+      AuthorizationCache.class, // used in PermissionTemplateService and PermissionUpdater
       PermissionTemplateService.class,
       PermissionUpdater.class,
       UserPermissionChanger.class,
@@ -340,6 +343,7 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
       NewAlerts.newMetadata(),
       ComponentCleanerService.class,
       ProjectMeasuresIndexer.class,
+      ComponentIndexer.class,
 
       // views
       ViewIndexer.class,
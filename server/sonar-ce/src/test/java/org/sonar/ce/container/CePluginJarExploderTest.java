@@ -21,6 +21,8 @@ package org.sonar.ce.container;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -28,6 +30,8 @@ import org.sonar.server.platform.ServerFileSystem;
 import org.sonar.core.platform.ExplodedPlugin;
 import org.sonar.core.platform.PluginInfo;
 
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.contentEquals;
 import static org.apache.commons.io.FileUtils.sizeOfDirectory;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -37,21 +41,34 @@ public class CePluginJarExploderTest {
   public TemporaryFolder temp = new TemporaryFolder();
 
   DumbFileSystem fs = new DumbFileSystem(temp);
-  CePluginJarExploder underTest = new CePluginJarExploder(fs);
+  CePluginJarExploder underTest;
+
+  @Before
+  public void setUp() {
+    underTest = new CePluginJarExploder(fs);
+  }
 
   @Test
-  public void explode_jar_to_temp_directory() throws Exception {
+  public void explode_jar_to_cache_of_exploded_plugins() throws Exception {
     PluginInfo info = PluginInfo.create(plugin1Jar());
 
     ExplodedPlugin exploded = underTest.explode(info);
 
-    // all the files loaded by classloaders (JAR + META-INF/libs/*.jar) are copied to a dedicated temp directory
+    // all the files loaded by classloaders (JAR + META-INF/libs/*.jar) are copied to the cache shared with web server
     File copiedJar = exploded.getMain();
 
     assertThat(exploded.getKey()).isEqualTo("test");
     assertThat(copiedJar).isFile().exists();
-    assertThat(copiedJar.getParentFile()).isDirectory().hasName("test");
-    assertThat(copiedJar.getParentFile().getParentFile()).isDirectory().hasName("ce-exploded-plugins");
+    assertThat(contentEquals(copiedJar, plugin1Jar())).isTrue();
+    assertThat(copiedJar.getParentFile().getParentFile()).isDirectory().isEqualTo(new File(fs.getDataDir(), "exploded-plugins"));
+  }
+
+  @Test
+  public void explode_all_plugins() throws Exception {
+    Map<String, ExplodedPlugin> exploded = underTest.explodeAll(asList(PluginInfo.create(plugin1Jar()), PluginInfo.create(plugin2Jar())));
+
+    assertThat(exploded).containsOnlyKeys("test", "test2");
+    assertThat(exploded.get("test2").getMain()).isFile().hasName("sonar-test2-plugin-0.1-SNAPSHOT.jar");
   }
 
   @Test
@@ -92,6 +109,7 @@ public class CePluginJarExploderTest {
   private class DumbFileSystem implements ServerFileSystem {
     private final TemporaryFolder temp;
     private File tempDir;
+    private File dataDir;
 
     public DumbFileSystem(TemporaryFolder temp) {
       this.temp = temp;
@@ -99,7 +117,14 @@ public class CePluginJarExploderTest {
 
     @Override
     public File getDataDir() {
-      throw new UnsupportedOperationException();
+      if (dataDir == null) {
+        try {
+          this.dataDir = temp.newFolder();
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      return dataDir;
     }
 
     @Override
@@ -61,6 +61,18 @@ public interface CEQueueStatus {
    */
   long addError(long processingTime);
 
+  /**
+   * Adds the time a batch report waited in the queue before its processing started to the queue latency counters.
+   *
+   * @param queueLatency time between the submission of the report and the start of its processing, in ms
+   *
+   * @see #getQueueLatency()
+   * @see #getMaxQueueLatency()
+   *
+   * @throws IllegalArgumentException if queueLatency is < 0
+   */
+  void addQueueLatency(long queueLatency);
+
   /**
    * Count of batch reports waiting for processing since startup, including reports received before instance startup.
    */
@@ -85,4 +97,14 @@ public interface CEQueueStatus {
    * Time spent processing batch reports since startup, in milliseconds.
    */
   long getProcessingTime();
+
+  /**
+   * Time spent in queue by the batch reports which processing started since instance startup, in milliseconds.
+   */
+  long getQueueLatency();
+
+  /**
+   * Longest time spent in queue by a batch report which processing started since instance startup, in milliseconds.
+   */
+  long getMaxQueueLatency();
 }
@@ -31,6 +31,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.authentication.event.AuthenticationEvent;
 import org.sonar.server.authentication.event.AuthenticationException;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.user.ServerUserSession;
 import org.sonar.server.user.ThreadLocalUserSession;
 
@@ -75,6 +76,7 @@ public class UserSessionInitializer {
     .build();
 
   private final DbClient dbClient;
+  private final AuthorizationCache authorizationCache;
   private final Settings settings;
   private final JwtHttpHandler jwtHttpHandler;
   private final BasicAuthenticator basicAuthenticator;
@@ -82,9 +84,10 @@ public class UserSessionInitializer {
   private final ThreadLocalUserSession threadLocalSession;
   private final AuthenticationEvent authenticationEvent;
 
-  public UserSessionInitializer(DbClient dbClient, Settings settings, JwtHttpHandler jwtHttpHandler, BasicAuthenticator basicAuthenticator,
-    SsoAuthenticator ssoAuthenticator, ThreadLocalUserSession threadLocalSession, AuthenticationEvent authenticationEvent) {
+  public UserSessionInitializer(DbClient dbClient, AuthorizationCache authorizationCache, Settings settings, JwtHttpHandler jwtHttpHandler,
+    BasicAuthenticator basicAuthenticator, SsoAuthenticator ssoAuthenticator, ThreadLocalUserSession threadLocalSession, AuthenticationEvent authenticationEvent) {
     this.dbClient = dbClient;
+    this.authorizationCache = authorizationCache;
     this.settings = settings;
     this.jwtHttpHandler = jwtHttpHandler;
     this.basicAuthenticator = basicAuthenticator;
@@ -126,7 +129,7 @@ public class UserSessionInitializer {
   private void setUserSession(HttpServletRequest request, HttpServletResponse response) {
     Optional<UserDto> user = authenticate(request, response);
     if (user.isPresent()) {
-      ServerUserSession session = createForUser(dbClient, user.get());
+      ServerUserSession session = createForUser(dbClient, authorizationCache, user.get());
       threadLocalSession.set(session);
       request.setAttribute(ACCESS_LOG_LOGIN, session.getLogin());
     } else {
@@ -136,7 +139,7 @@ public class UserSessionInitializer {
           .setMessage("User must be authenticated")
           .build();
       }
-      threadLocalSession.set(createForAnonymous(dbClient));
+      threadLocalSession.set(createForAnonymous(dbClient, authorizationCache));
       request.setAttribute(ACCESS_LOG_LOGIN, "-");
     }
   }
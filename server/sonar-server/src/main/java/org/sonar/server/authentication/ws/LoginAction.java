@@ -38,6 +38,7 @@ import org.sonar.server.authentication.JwtHttpHandler;
 import org.sonar.server.authentication.event.AuthenticationEvent;
 import org.sonar.server.authentication.event.AuthenticationException;
 import org.sonar.server.exceptions.UnauthorizedException;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.user.ServerUserSession;
 import org.sonar.server.user.ThreadLocalUserSession;
 import org.sonar.server.ws.ServletFilterHandler;
@@ -56,14 +57,16 @@ public class LoginAction extends ServletFilter implements AuthenticationWsAction
   public static final String LOGIN_URL = "/" + AUTHENTICATION_CONTROLLER + "/" + LOGIN_ACTION;
 
   private final DbClient dbClient;
+  private final AuthorizationCache authorizationCache;
   private final CredentialsAuthenticator credentialsAuthenticator;
   private final JwtHttpHandler jwtHttpHandler;
   private final ThreadLocalUserSession threadLocalUserSession;
   private final AuthenticationEvent authenticationEvent;
 
-  public LoginAction(DbClient dbClient, CredentialsAuthenticator credentialsAuthenticator, JwtHttpHandler jwtHttpHandler,
+  public LoginAction(DbClient dbClient, AuthorizationCache authorizationCache, CredentialsAuthenticator credentialsAuthenticator, JwtHttpHandler jwtHttpHandler,
     ThreadLocalUserSession threadLocalUserSession, AuthenticationEvent authenticationEvent) {
     this.dbClient = dbClient;
+    this.authorizationCache = authorizationCache;
     this.credentialsAuthenticator = credentialsAuthenticator;
     this.jwtHttpHandler = jwtHttpHandler;
     this.threadLocalUserSession = threadLocalUserSession;
@@ -105,7 +108,7 @@ public class LoginAction extends ServletFilter implements AuthenticationWsAction
     try {
       UserDto userDto = authenticate(request, login, password);
       jwtHttpHandler.generateToken(userDto, request, response);
-      threadLocalUserSession.set(ServerUserSession.createForUser(dbClient, userDto));
+      threadLocalUserSession.set(ServerUserSession.createForUser(dbClient, authorizationCache, userDto));
       // TODO add chain.doFilter when Rack filter will not be executed after this filter (or use a Servlet)
     } catch (AuthenticationException e) {
       authenticationEvent.loginFailure(request, e);
@@ -42,6 +42,7 @@ import org.sonar.core.util.Uuids;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.server.component.es.ComponentIndexer;
 import org.sonar.server.component.es.ProjectMeasuresIndexer;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.NotFoundException;
@@ -62,14 +63,17 @@ public class ComponentService {
   private final System2 system2;
   private final ComponentFinder componentFinder;
   private final ProjectMeasuresIndexer projectMeasuresIndexer;
+  private final ComponentIndexer componentIndexer;
 
-  public ComponentService(DbClient dbClient, I18n i18n, UserSession userSession, System2 system2, ComponentFinder componentFinder, ProjectMeasuresIndexer projectMeasuresIndexer) {
+  public ComponentService(DbClient dbClient, I18n i18n, UserSession userSession, System2 system2, ComponentFinder componentFinder, ProjectMeasuresIndexer projectMeasuresIndexer,
+    ComponentIndexer componentIndexer) {
     this.dbClient = dbClient;
     this.i18n = i18n;
     this.userSession = userSession;
     this.system2 = system2;
     this.componentFinder = componentFinder;
     this.projectMeasuresIndexer = projectMeasuresIndexer;
+    this.componentIndexer = componentIndexer;
   }
 
   public ComponentDto getByKey(String key) {
@@ -118,12 +122,14 @@ public class ComponentService {
     dbClient.componentKeyUpdaterDao().updateKey(component.uuid(), newKey);
     dbSession.commit();
     projectMeasuresIndexer.index(component.uuid());
+    componentIndexer.indexProject(component.projectUuid());
   }
 
   public void bulkUpdateKey(DbSession dbSession, String projectUuid, String stringToReplace, String replacementString) {
     dbClient.componentKeyUpdaterDao().bulkUpdateKey(dbSession, projectUuid, stringToReplace, replacementString);
     dbSession.commit();
     projectMeasuresIndexer.index(projectUuid);
+    componentIndexer.indexProject(projectUuid);
   }
 
   // Used by SQ and Governance
@@ -133,6 +139,7 @@ public class ComponentService {
     ComponentDto rootComponent = createRootComponent(session, newComponent);
     removeDuplicatedProjects(session, rootComponent.getKey());
     projectMeasuresIndexer.index(rootComponent.uuid());
+    componentIndexer.indexProject(rootComponent.uuid());
 
     return rootComponent;
   }
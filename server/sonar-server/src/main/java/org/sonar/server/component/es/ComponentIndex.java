@@ -0,0 +1,83 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.es;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.MatchQueryBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.sonar.server.es.BaseIndex;
+import org.sonar.server.es.EsClient;
+import org.sonar.server.es.SearchIdResult;
+import org.sonar.server.es.SearchOptions;
+
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.matchQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termsQuery;
+import static org.sonar.server.component.es.ComponentIndexDefinition.FIELD_KEY;
+import static org.sonar.server.component.es.ComponentIndexDefinition.FIELD_LANGUAGE;
+import static org.sonar.server.component.es.ComponentIndexDefinition.FIELD_NAME;
+import static org.sonar.server.component.es.ComponentIndexDefinition.FIELD_QUALIFIER;
+import static org.sonar.server.component.es.ComponentIndexDefinition.INDEX_COMPONENTS;
+import static org.sonar.server.component.es.ComponentIndexDefinition.MIN_SEARCH_GRAM;
+import static org.sonar.server.component.es.ComponentIndexDefinition.SUBSTRING_ANALYZER;
+import static org.sonar.server.component.es.ComponentIndexDefinition.SUBSTRING_SEARCH_ANALYZER;
+import static org.sonar.server.component.es.ComponentIndexDefinition.SUBSTRING_SUFFIX;
+import static org.sonar.server.component.es.ComponentIndexDefinition.TYPE_COMPONENT;
+
+public class ComponentIndex extends BaseIndex {
+
+  public ComponentIndex(EsClient client) {
+    super(client);
+  }
+
+  /**
+   * Uuids of the components whose key is exactly the query or whose name contains the query,
+   * sorted by name.
+   */
+  public SearchIdResult<String> search(ComponentIndexQuery query, SearchOptions searchOptions) {
+    SearchRequestBuilder requestBuilder = getClient()
+      .prepareSearch(INDEX_COMPONENTS)
+      .setTypes(TYPE_COMPONENT)
+      .setFetchSource(false)
+      .setFrom(searchOptions.getOffset())
+      .setSize(searchOptions.getLimit())
+      .addSort(FIELD_NAME + "." + SORT_SUFFIX, SortOrder.ASC)
+      .addSort(FIELD_KEY, SortOrder.ASC);
+
+    // the query is split in n-grams, all of which must match. That also supports queries
+    // longer than the maximum size of n-grams.
+    String analyzer = query.getQuery().length() < MIN_SEARCH_GRAM ? SUBSTRING_ANALYZER : SUBSTRING_SEARCH_ANALYZER;
+    BoolQueryBuilder esQuery = boolQuery()
+      .should(termQuery(FIELD_KEY, query.getQuery()))
+      .should(matchQuery(FIELD_NAME + "." + SUBSTRING_SUFFIX, query.getQuery()).analyzer(analyzer).operator(MatchQueryBuilder.Operator.AND))
+      .minimumNumberShouldMatch(1);
+    if (!query.getQualifiers().isEmpty()) {
+      esQuery.filter(termsQuery(FIELD_QUALIFIER, query.getQualifiers()));
+    }
+    if (query.getLanguage() != null) {
+      esQuery.filter(termQuery(FIELD_LANGUAGE, query.getLanguage()));
+    }
+    requestBuilder.setQuery(esQuery);
+
+    return new SearchIdResult<>(requestBuilder.get(), id -> id);
+  }
+}
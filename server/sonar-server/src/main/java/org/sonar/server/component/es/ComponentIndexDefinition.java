@@ -0,0 +1,104 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.es;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import org.sonar.api.config.Settings;
+import org.sonar.server.es.IndexDefinition;
+import org.sonar.server.es.NewIndex;
+
+/**
+ * Index of components (projects, modules, directories, files, views...), used to search
+ * components by substring of their name. It is an alternative to the db table RESOURCE_INDEX,
+ * which stores one row per suffix of each name. See {@link ComponentIndexer#ENABLED_PROPERTY}.
+ */
+public class ComponentIndexDefinition implements IndexDefinition {
+
+  public static final String INDEX_COMPONENTS = "components";
+
+  public static final String TYPE_COMPONENT = "component";
+  public static final String FIELD_PROJECT_UUID = "projectUuid";
+  public static final String FIELD_KEY = "key";
+  public static final String FIELD_NAME = "name";
+  public static final String FIELD_QUALIFIER = "qualifier";
+  public static final String FIELD_LANGUAGE = "language";
+  public static final String FIELD_UPDATED_AT = "updatedAt";
+
+  /**
+   * Sub-field of {@link #FIELD_NAME} indexing all the substrings of the name
+   */
+  public static final String SUBSTRING_SUFFIX = "substring";
+
+  static final String SUBSTRING_ANALYZER = "substring_analyzer";
+  static final String SUBSTRING_SEARCH_ANALYZER = "substring_search_analyzer";
+  static final int MIN_GRAM = 1;
+  static final int MIN_SEARCH_GRAM = 2;
+  static final int MAX_GRAM = 15;
+
+  private final Settings settings;
+
+  public ComponentIndexDefinition(Settings settings) {
+    this.settings = settings;
+  }
+
+  @Override
+  public void define(IndexDefinitionContext context) {
+    NewIndex index = context.create(INDEX_COMPONENTS);
+    index.refreshHandledByIndexer();
+    index.configureShards(settings, 5);
+
+    // the n-grams of the whole lower-cased name, so that "ctionary" matches "Dictionary.java".
+    // The default "index_grams" analyzer only supports search by prefix of words.
+    // A tokenizer is used instead of a token filter, so that the grams of a query have distinct
+    // positions and can all be required.
+    // Grams of a single character support names and queries of one character. As they match
+    // most of the documents, queries of several characters are split in longer grams only.
+    index.getSettings()
+      .put("index.analysis.tokenizer.substring_tokenizer.type", "nGram")
+      .put("index.analysis.tokenizer.substring_tokenizer.min_gram", MIN_GRAM)
+      .put("index.analysis.tokenizer.substring_tokenizer.max_gram", MAX_GRAM)
+      .put("index.analysis.analyzer." + SUBSTRING_ANALYZER + ".type", "custom")
+      .put("index.analysis.analyzer." + SUBSTRING_ANALYZER + ".tokenizer", "substring_tokenizer")
+      .putArray("index.analysis.analyzer." + SUBSTRING_ANALYZER + ".filter", "lowercase")
+      .put("index.analysis.tokenizer.substring_search_tokenizer.type", "nGram")
+      .put("index.analysis.tokenizer.substring_search_tokenizer.min_gram", MIN_SEARCH_GRAM)
+      .put("index.analysis.tokenizer.substring_search_tokenizer.max_gram", MAX_GRAM)
+      .put("index.analysis.analyzer." + SUBSTRING_SEARCH_ANALYZER + ".type", "custom")
+      .put("index.analysis.analyzer." + SUBSTRING_SEARCH_ANALYZER + ".tokenizer", "substring_search_tokenizer")
+      .putArray("index.analysis.analyzer." + SUBSTRING_SEARCH_ANALYZER + ".filter", "lowercase");
+
+    // type "component"
+    NewIndex.NewIndexType mapping = index.createType(TYPE_COMPONENT);
+    mapping.setAttribute("_routing", ImmutableMap.of("required", "true"));
+    mapping.stringFieldBuilder(FIELD_PROJECT_UUID).disableNorms().build();
+    mapping.stringFieldBuilder(FIELD_KEY).disableNorms().build();
+    mapping.stringFieldBuilder(FIELD_NAME)
+      .enableSorting()
+      .addSubField(SUBSTRING_SUFFIX, ImmutableSortedMap.of(
+        "type", "string",
+        "index", "analyzed",
+        "analyzer", SUBSTRING_ANALYZER))
+      .build();
+    mapping.stringFieldBuilder(FIELD_QUALIFIER).disableNorms().build();
+    mapping.stringFieldBuilder(FIELD_LANGUAGE).disableNorms().build();
+    mapping.createDateTimeField(FIELD_UPDATED_AT);
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.es;
+
+import java.util.Collection;
+import java.util.Collections;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static java.util.Objects.requireNonNull;
+
+public class ComponentIndexQuery {
+  private final String query;
+  private Collection<String> qualifiers = Collections.emptyList();
+  private String language;
+
+  /**
+   * @param query exact key, or substring of the name (case-insensitive) of components to be returned
+   */
+  public ComponentIndexQuery(String query) {
+    this.query = requireNonNull(query);
+  }
+
+  public String getQuery() {
+    return query;
+  }
+
+  public ComponentIndexQuery setQualifiers(Collection<String> qualifiers) {
+    this.qualifiers = requireNonNull(qualifiers);
+    return this;
+  }
+
+  /**
+   * Qualifiers of the components to be returned. All qualifiers are accepted if empty.
+   */
+  public Collection<String> getQualifiers() {
+    return qualifiers;
+  }
+
+  public ComponentIndexQuery setLanguage(@Nullable String language) {
+    this.language = language;
+    return this;
+  }
+
+  @CheckForNull
+  public String getLanguage() {
+    return language;
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.es;
+
+import java.util.Date;
+import java.util.Iterator;
+import javax.annotation.Nullable;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.server.es.BaseIndexer;
+import org.sonar.server.es.BulkIndexer;
+import org.sonar.server.es.EsClient;
+
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.sonar.server.component.es.ComponentIndexDefinition.FIELD_PROJECT_UUID;
+import static org.sonar.server.component.es.ComponentIndexDefinition.FIELD_UPDATED_AT;
+import static org.sonar.server.component.es.ComponentIndexDefinition.INDEX_COMPONENTS;
+import static org.sonar.server.component.es.ComponentIndexDefinition.TYPE_COMPONENT;
+
+public class ComponentIndexer extends BaseIndexer {
+
+  /**
+   * Whether components are indexed, then searched by name in Elasticsearch. The db table RESOURCE_INDEX is
+   * still fed and used by the other searches of components, so the index is disabled by default in order
+   * not to add its cost to each analysis.
+   */
+  public static final String ENABLED_PROPERTY = "sonar.componentIndex.enabled";
+
+  private final System2 system2;
+  private final DbClient dbClient;
+  private final boolean enabled;
+
+  public ComponentIndexer(System2 system2, DbClient dbClient, EsClient esClient, Settings settings) {
+    super(system2, esClient, 300, INDEX_COMPONENTS, TYPE_COMPONENT, FIELD_UPDATED_AT);
+    this.system2 = system2;
+    this.dbClient = dbClient;
+    this.enabled = settings.getBoolean(ENABLED_PROPERTY);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Index all the components of db if the index is empty (only used on startup). Afterwards
+   * the index is maintained by the Compute Engine. When the index is disabled, its documents are
+   * removed, so that all the components are indexed again once it is enabled.
+   */
+  @Override
+  protected long doIndex(long lastUpdatedAt) {
+    long count = esClient.prepareCount(INDEX_COMPONENTS).setTypes(TYPE_COMPONENT).get().getCount();
+    if (!enabled) {
+      if (count > 0) {
+        BulkIndexer.delete(esClient, INDEX_COMPONENTS, esClient.prepareSearch(INDEX_COMPONENTS)
+          .setTypes(TYPE_COMPONENT)
+          .setQuery(matchAllQuery()));
+      }
+    } else if (count == 0) {
+      BulkIndexer bulk = createBulkIndexer(true);
+      bulk.start();
+      scrollDb(bulk, null, system2.now());
+      bulk.stop();
+    }
+    return 0L;
+  }
+
+  /**
+   * (Re)index all the enabled components of a project or of a view, as stored in db.
+   */
+  public void indexProject(String projectUuid) {
+    if (!enabled) {
+      return;
+    }
+    long now = system2.now();
+    BulkIndexer bulk = createBulkIndexer(false);
+    bulk.start();
+    scrollDb(bulk, projectUuid, now);
+    bulk.stop();
+    deleteOlderThan(projectUuid, now);
+  }
+
+  /**
+   * Replace the documents of a project by the given ones. Documents of components that are not
+   * part of {@code docs} are removed from index.
+   */
+  public void index(String projectUuid, Iterator<ComponentDoc> docs) {
+    if (!enabled) {
+      return;
+    }
+    long now = system2.now();
+    Date updatedAt = new Date(now);
+    BulkIndexer bulk = createBulkIndexer(false);
+    bulk.start();
+    while (docs.hasNext()) {
+      bulk.add(newIndexRequest(docs.next().setUpdatedAt(updatedAt)));
+    }
+    bulk.stop();
+    deleteOlderThan(projectUuid, now);
+  }
+
+  public void deleteProject(String projectUuid) {
+    if (!enabled) {
+      return;
+    }
+    BulkIndexer.delete(esClient, INDEX_COMPONENTS, esClient.prepareSearch(INDEX_COMPONENTS)
+      .setTypes(TYPE_COMPONENT)
+      .setRouting(projectUuid)
+      .setQuery(boolQuery().filter(termQuery(FIELD_PROJECT_UUID, projectUuid))));
+  }
+
+  public static ComponentDoc toDoc(ComponentDto dto) {
+    return new ComponentDoc()
+      .setId(dto.uuid())
+      .setProjectUuid(dto.projectUuid())
+      .setKey(dto.key())
+      .setName(dto.name())
+      .setQualifier(dto.qualifier())
+      .setLanguage(dto.language());
+  }
+
+  private void scrollDb(BulkIndexer bulk, @Nullable String projectUuid, long now) {
+    Date updatedAt = new Date(now);
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.componentDao().scrollForIndexing(dbSession, projectUuid,
+        context -> bulk.add(newIndexRequest(toDoc((ComponentDto) context.getResultObject()).setUpdatedAt(updatedAt))));
+    }
+  }
+
+  /**
+   * Documents are deleted only once the new ones are refreshed, otherwise the search could
+   * return the previous version of a re-indexed document and delete it.
+   */
+  private void deleteOlderThan(String projectUuid, long date) {
+    SearchRequestBuilder search = esClient.prepareSearch(INDEX_COMPONENTS)
+      .setTypes(TYPE_COMPONENT)
+      .setRouting(projectUuid)
+      .setQuery(boolQuery()
+        .filter(termQuery(FIELD_PROJECT_UUID, projectUuid))
+        .filter(rangeQuery(FIELD_UPDATED_AT).lt(new Date(date))));
+    BulkIndexer.delete(esClient, INDEX_COMPONENTS, search);
+  }
+
+  private BulkIndexer createBulkIndexer(boolean large) {
+    BulkIndexer bulk = new BulkIndexer(esClient, INDEX_COMPONENTS);
+    bulk.setLarge(large);
+    return bulk;
+  }
+
+  private static IndexRequest newIndexRequest(ComponentDoc doc) {
+    return new IndexRequest(INDEX_COMPONENTS, TYPE_COMPONENT, doc.getId())
+      .routing(doc.getRouting())
+      .source(doc.getFields());
+  }
+}
@@ -28,6 +28,9 @@ public class ProjectsEsModule extends Module {
     add(
       ProjectMeasuresIndexDefinition.class,
       ProjectMeasuresIndex.class,
-      ProjectMeasuresIndexer.class);
+      ProjectMeasuresIndexer.class,
+      ComponentIndexDefinition.class,
+      ComponentIndex.class,
+      ComponentIndexer.class);
   }
 }
@@ -21,7 +21,10 @@ package org.sonar.server.component.ws;
 
 import com.google.common.base.Function;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import javax.annotation.Nonnull;
+import org.sonar.api.config.Settings;
 import org.sonar.api.i18n.I18n;
 import org.sonar.api.resources.Languages;
 import org.sonar.api.resources.ResourceTypes;
@@ -30,11 +33,17 @@ import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.server.ws.WebService.Param;
 import org.sonar.api.utils.Paging;
+import org.sonar.core.util.stream.Collectors;
 import org.sonar.core.permission.GlobalPermissions;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentQuery;
+import org.sonar.server.component.es.ComponentIndex;
+import org.sonar.server.component.es.ComponentIndexQuery;
+import org.sonar.server.component.es.ComponentIndexer;
+import org.sonar.server.es.SearchIdResult;
+import org.sonar.server.es.SearchOptions;
 import org.sonar.server.user.UserSession;
 import org.sonar.server.util.LanguageParamUtils;
 import org.sonarqube.ws.WsComponents;
@@ -52,17 +61,22 @@ import static org.sonarqube.ws.client.component.ComponentsWsParameters.PARAM_QUA
 
 public class SearchAction implements ComponentsWsAction {
   private final DbClient dbClient;
+  private final ComponentIndex componentIndex;
   private final ResourceTypes resourceTypes;
   private final I18n i18n;
   private final UserSession userSession;
   private final Languages languages;
+  private final boolean componentIndexEnabled;
 
-  public SearchAction(DbClient dbClient, ResourceTypes resourceTypes, I18n i18n, UserSession userSession, Languages languages) {
+  public SearchAction(DbClient dbClient, ComponentIndex componentIndex, ResourceTypes resourceTypes, I18n i18n, UserSession userSession, Languages languages,
+    Settings settings) {
     this.dbClient = dbClient;
+    this.componentIndex = componentIndex;
     this.resourceTypes = resourceTypes;
     this.i18n = i18n;
     this.userSession = userSession;
     this.languages = languages;
+    this.componentIndexEnabled = settings.getBoolean(ComponentIndexer.ENABLED_PROPERTY);
   }
 
   @Override
@@ -98,6 +112,9 @@ public class SearchAction implements ComponentsWsAction {
 
     DbSession dbSession = dbClient.openSession(false);
     try {
+      if (request.getQuery() != null && componentIndexEnabled) {
+        return searchInIndex(dbSession, request);
+      }
       ComponentQuery query = buildQuery(request);
       Paging paging = buildPaging(dbSession, request, query);
       List<ComponentDto> components = searchComponents(dbSession, query, paging);
@@ -107,6 +124,29 @@ public class SearchAction implements ComponentsWsAction {
     }
   }
 
+  /**
+   * Search by name or key is done in Elasticsearch, components are then loaded from db.
+   */
+  private SearchWsResponse searchInIndex(DbSession dbSession, SearchWsRequest request) {
+    ComponentIndexQuery query = new ComponentIndexQuery(request.getQuery())
+      .setQualifiers(request.getQualifiers())
+      .setLanguage(request.getLanguage());
+    SearchIdResult<String> result = componentIndex.search(query, new SearchOptions().setPage(request.getPage(), request.getPageSize()));
+
+    Map<String, ComponentDto> componentsByUuid = dbClient.componentDao().selectByUuids(dbSession, result.getIds()).stream()
+      .filter(ComponentDto::isEnabled)
+      .collect(Collectors.uniqueIndex(ComponentDto::uuid));
+    List<ComponentDto> components = result.getIds().stream()
+      .map(componentsByUuid::get)
+      .filter(Objects::nonNull)
+      .collect(Collectors.toList());
+
+    Paging paging = Paging.forPageIndex(request.getPage())
+      .withPageSize(request.getPageSize())
+      .andTotal((int) result.getTotal());
+    return buildResponse(components, paging);
+  }
+
   private static SearchWsRequest toSearchWsRequest(Request request) {
     return new SearchWsRequest()
       .setQualifiers(request.mandatoryParamAsStrings(PARAM_QUALIFIERS))
@@ -31,4 +31,15 @@ public interface CeConfiguration {
    * when previous one had nothing to do.
    */
   long getQueuePollingDelay();
+
+  /**
+   * The maximum number of pending tasks loaded from the queue in a single database round-trip. Tasks which are not
+   * processed immediately are kept for the workers of the current Compute Engine, but stay pending in database until
+   * a worker starts them, so that they can still be canceled and are not held when peek is paused.
+   * <p>
+   * As a trade-off, only the selection of tasks is batched: each task is still changed to in progress by its own
+   * statement, and a task loaded in advance is skipped if it has been canceled or peeked by another Compute Engine.
+   * </p>
+   */
+  int getQueueClaimBatchSize();
 }
@@ -30,11 +30,18 @@ import static java.lang.String.format;
 
 /**
  * Immutable implementation of {@link CeConfiguration} which takes value returned by
- * {@link CeConfiguration#getWorkerCount()} from property {@link CeConfigurationImpl#CE_WORKERS_COUNT_PROPERTY} and
- * always returns {@link #DEFAULT_QUEUE_POLLING_DELAY} when {@link CeConfiguration#getQueuePollingDelay()} is called.
+ * {@link CeConfiguration#getWorkerCount()} from property {@link CeConfigurationImpl#CE_WORKERS_COUNT_PROPERTY},
+ * value returned by {@link CeConfiguration#getQueueClaimBatchSize()} from property
+ * {@link CeConfigurationImpl#CE_QUEUE_CLAIM_BATCH_SIZE_PROPERTY} and always returns {@link #DEFAULT_QUEUE_POLLING_DELAY}
+ * when {@link CeConfiguration#getQueuePollingDelay()} is called.
  */
 public class CeConfigurationImpl implements CeConfiguration, Startable {
   public static final String CE_WORKERS_COUNT_PROPERTY = "sonar.ce.workerCount";
+  /**
+   * Pending tasks loaded in advance stay pending until a worker starts them. See
+   * {@link CeConfiguration#getQueueClaimBatchSize()} for the trade-off.
+   */
+  public static final String CE_QUEUE_CLAIM_BATCH_SIZE_PROPERTY = "sonar.ce.queue.claimBatchSize";
 
   private static final Logger LOG = Loggers.get(CeConfigurationImpl.class);
 
@@ -43,35 +50,44 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
   // 2 seconds
   @VisibleForTesting
   protected static final long DEFAULT_QUEUE_POLLING_DELAY = 2 * 1000L;
+  @VisibleForTesting
+  protected static final int DEFAULT_QUEUE_CLAIM_BATCH_SIZE = 1;
 
   private final int workerCount;
+  private final int queueClaimBatchSize;
 
   public CeConfigurationImpl(Settings settings) {
     String workerCountAsStr = settings.getString(CE_WORKERS_COUNT_PROPERTY);
     if (workerCountAsStr == null || workerCountAsStr.isEmpty()) {
       this.workerCount = DEFAULT_WORKER_COUNT;
     } else {
-      this.workerCount = parseStringValue(workerCountAsStr);
+      this.workerCount = parseStringValue(workerCountAsStr, CE_WORKERS_COUNT_PROPERTY);
+    }
+    String claimBatchSizeAsStr = settings.getString(CE_QUEUE_CLAIM_BATCH_SIZE_PROPERTY);
+    if (claimBatchSizeAsStr == null || claimBatchSizeAsStr.isEmpty()) {
+      this.queueClaimBatchSize = DEFAULT_QUEUE_CLAIM_BATCH_SIZE;
+    } else {
+      this.queueClaimBatchSize = parseStringValue(claimBatchSizeAsStr, CE_QUEUE_CLAIM_BATCH_SIZE_PROPERTY);
     }
   }
 
-  private static int parseStringValue(String workerCountAsStr) {
+  private static int parseStringValue(String valueAsStr, String property) {
     try {
-      int value = Integer.parseInt(workerCountAsStr);
+      int value = Integer.parseInt(valueAsStr);
       if (value < 1) {
-        throw parsingError(workerCountAsStr);
+        throw parsingError(valueAsStr, property);
       }
       return value;
     } catch (NumberFormatException e) {
-      throw parsingError(workerCountAsStr);
+      throw parsingError(valueAsStr, property);
     }
   }
 
-  private static MessageException parsingError(String workerCountAsStr) {
+  private static MessageException parsingError(String valueAsStr, String property) {
     return MessageException.of(format(
       "value '%s' of property %s is invalid. It must an integer strictly greater than 0.",
-      workerCountAsStr,
-      CE_WORKERS_COUNT_PROPERTY)
+      valueAsStr,
+      property)
       );
   }
 
@@ -80,6 +96,9 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
     if (this.workerCount > 1) {
       LOG.info("Compute Engine will use {} concurrent workers to process tasks", this.workerCount);
     }
+    if (this.queueClaimBatchSize > 1) {
+      LOG.info("Compute Engine will load up to {} pending tasks at once from the queue", this.queueClaimBatchSize);
+    }
   }
 
   @Override
@@ -96,4 +115,9 @@ public class CeConfigurationImpl implements CeConfiguration, Startable {
   public long getQueuePollingDelay() {
     return DEFAULT_QUEUE_POLLING_DELAY;
   }
+
+  @Override
+  public int getQueueClaimBatchSize() {
+    return queueClaimBatchSize;
+  }
 }
@@ -34,6 +34,8 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   private final AtomicLong error = new AtomicLong(0);
   private final AtomicLong success = new AtomicLong(0);
   private final AtomicLong processingTime = new AtomicLong(0);
+  private final AtomicLong queueLatency = new AtomicLong(0);
+  private final AtomicLong maxQueueLatency = new AtomicLong(0);
 
   public CEQueueStatusImpl(DbClient dbClient) {
     this.dbClient = dbClient;
@@ -63,6 +65,16 @@ public class CEQueueStatusImpl implements CEQueueStatus {
     processingTime.addAndGet(ms);
   }
 
+  @Override
+  public void addQueueLatency(long queueLatencyInMs) {
+    checkArgument(queueLatencyInMs >= 0, "Queue latency can not be < 0");
+    queueLatency.addAndGet(queueLatencyInMs);
+    long max = maxQueueLatency.get();
+    while (queueLatencyInMs > max && !maxQueueLatency.compareAndSet(max, queueLatencyInMs)) {
+      max = maxQueueLatency.get();
+    }
+  }
+
   @Override
   public long getPendingCount() {
     try (DbSession dbSession = dbClient.openSession(false)) {
@@ -89,4 +101,14 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   public long getProcessingTime() {
     return processingTime.get();
   }
+
+  @Override
+  public long getQueueLatency() {
+    return queueLatency.get();
+  }
+
+  @Override
+  public long getMaxQueueLatency() {
+    return maxQueueLatency.get();
+  }
 }
@@ -48,8 +48,23 @@ public interface CeTasksMBean {
    */
   long getProcessingTime();
 
+  /**
+   * Time spent in queue by the batch reports which processing started since startup, in milliseconds.
+   */
+  long getQueueLatency();
+
+  /**
+   * Longest time spent in queue by a batch report which processing started since startup, in milliseconds.
+   */
+  long getMaxQueueLatency();
+
   /**
    * Configured number of Workers.
    */
   int getWorkerCount();
+
+  /**
+   * Configured maximum number of tasks peeked from the queue in a single database round-trip.
+   */
+  int getQueueClaimBatchSize();
 }
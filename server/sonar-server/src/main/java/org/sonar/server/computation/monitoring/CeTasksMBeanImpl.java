@@ -73,11 +73,26 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     return queueStatus.getProcessingTime();
   }
 
+  @Override
+  public long getQueueLatency() {
+    return queueStatus.getQueueLatency();
+  }
+
+  @Override
+  public long getMaxQueueLatency() {
+    return queueStatus.getMaxQueueLatency();
+  }
+
   @Override
   public int getWorkerCount() {
     return ceConfiguration.getWorkerCount();
   }
 
+  @Override
+  public int getQueueClaimBatchSize() {
+    return ceConfiguration.getQueueClaimBatchSize();
+  }
+
   @Override
   public ProtobufSystemInfo.Section toProtobuf() {
     ProtobufSystemInfo.Section.Builder builder = ProtobufSystemInfo.Section.newBuilder();
@@ -87,7 +102,10 @@ public class CeTasksMBeanImpl implements CeTasksMBean, Startable, SystemInfoSect
     builder.addAttributesBuilder().setKey("Processed With Error").setLongValue(getErrorCount()).build();
     builder.addAttributesBuilder().setKey("Processed With Success").setLongValue(getSuccessCount()).build();
     builder.addAttributesBuilder().setKey("Processing Time (ms)").setLongValue(getProcessingTime()).build();
+    builder.addAttributesBuilder().setKey("Queue Latency (ms)").setLongValue(getQueueLatency()).build();
+    builder.addAttributesBuilder().setKey("Max Queue Latency (ms)").setLongValue(getMaxQueueLatency()).build();
     builder.addAttributesBuilder().setKey("Worker Count").setLongValue(getWorkerCount()).build();
+    builder.addAttributesBuilder().setKey("Queue Claim Batch Size").setLongValue(getQueueClaimBatchSize()).build();
     return builder.build();
   }
 }
@@ -44,6 +44,10 @@ public interface InternalCeQueue extends CeQueue {
    *
    * <p>Only a single task can be peeked by project.</p>
    *
+   * <p>Several pending tasks may be loaded at once from the database, depending on
+   * {@link org.sonar.server.computation.configuration.CeConfiguration#getQueueClaimBatchSize()}. The tasks which are not
+   * returned are kept pending and are peeked by the next calls, unless they have been canceled in the meantime.</p>
+   *
    * <p>An unchecked exception may be thrown on technical errors (db connection, ...).</p>
    */
   Optional<CeTask> peek();
@@ -74,4 +78,10 @@ public interface InternalCeQueue extends CeQueue {
   void resumePeek();
 
   boolean isPeekPaused();
+
+  /**
+   * Registers a listener which is called when tasks can be peeked without delay: tasks have been submitted
+   * from the current JVM or have been peeked in advance by a batch (see {@link #peek()}).
+   */
+  void addTaskAvailableListener(Runnable listener);
 }
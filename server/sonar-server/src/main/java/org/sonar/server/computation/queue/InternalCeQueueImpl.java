@@ -24,6 +24,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -34,11 +39,13 @@ import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.ce.queue.CeQueueImpl;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.ce.queue.CeTaskResult;
+import org.sonar.ce.queue.CeTaskSubmit;
 import org.sonar.core.util.UuidFactory;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.db.ce.CeQueueDto;
+import org.sonar.server.computation.configuration.CeConfiguration;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -49,15 +56,36 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
   private final System2 system2;
   private final DbClient dbClient;
   private final CEQueueStatus queueStatus;
+  private final int claimBatchSize;
 
   // state
   private AtomicBoolean peekPaused = new AtomicBoolean(false);
+  // pending tasks which are loaded in advance, waiting for a worker to peek them
+  private final Queue<CeQueueDto> candidates = new ConcurrentLinkedQueue<>();
+  private final List<Runnable> taskAvailableListeners = new CopyOnWriteArrayList<>();
 
-  public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus) {
+  public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus, CeConfiguration ceConfiguration) {
     super(dbClient, uuidFactory);
     this.system2 = system2;
     this.dbClient = dbClient;
     this.queueStatus = queueStatus;
+    this.claimBatchSize = ceConfiguration.getQueueClaimBatchSize();
+  }
+
+  @Override
+  public CeTask submit(CeTaskSubmit submission) {
+    CeTask task = super.submit(submission);
+    notifyTaskAvailable();
+    return task;
+  }
+
+  @Override
+  public List<CeTask> massSubmit(Collection<CeTaskSubmit> submissions) {
+    List<CeTask> tasks = super.massSubmit(submissions);
+    if (!tasks.isEmpty()) {
+      notifyTaskAvailable();
+    }
+    return tasks;
   }
 
   @Override
@@ -67,11 +95,15 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
     }
     DbSession dbSession = dbClient.openSession(false);
     try {
-      Optional<CeQueueDto> dto = dbClient.ceQueueDao().peek(dbSession);
+      CeQueueDto dto = peekCandidate(dbSession);
+      if (dto == null) {
+        dto = peekFromDb(dbSession);
+      }
       CeTask task = null;
-      if (dto.isPresent()) {
-        task = loadTask(dbSession, dto.get());
+      if (dto != null) {
+        task = loadTask(dbSession, dto);
         queueStatus.addInProgress();
+        queueStatus.addQueueLatency(Math.max(0L, system2.now() - dto.getCreatedAt()));
       }
       return Optional.fromNullable(task);
 
@@ -80,9 +112,50 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
     }
   }
 
+  /**
+   * Peeks the first task loaded in advance which is still pending in the database. Tasks which have been canceled
+   * or peeked by another Compute Engine in the meantime are dropped.
+   */
+  @CheckForNull
+  private CeQueueDto peekCandidate(DbSession dbSession) {
+    CeQueueDto candidate = candidates.poll();
+    while (candidate != null) {
+      Optional<CeQueueDto> dto = dbClient.ceQueueDao().tryToPeek(dbSession, candidate.getUuid());
+      if (dto.isPresent()) {
+        return dto.get();
+      }
+      candidate = candidates.poll();
+    }
+    return null;
+  }
+
+  @CheckForNull
+  private CeQueueDto peekFromDb(DbSession dbSession) {
+    if (claimBatchSize == 1) {
+      return dbClient.ceQueueDao().peek(dbSession).orNull();
+    }
+    List<CeQueueDto> dtos = dbClient.ceQueueDao().selectEligibleForPeek(dbSession, claimBatchSize);
+    if (dtos.isEmpty()) {
+      return null;
+    }
+    candidates.addAll(dtos);
+    if (dtos.size() > 1) {
+      notifyTaskAvailable();
+    }
+    return peekCandidate(dbSession);
+  }
+
+  private void notifyTaskAvailable() {
+    for (Runnable listener : taskAvailableListeners) {
+      listener.run();
+    }
+  }
+
   @Override
   public int clear() {
-    return cancelAll(true);
+    int canceled = cancelAll(true);
+    candidates.clear();
+    return canceled;
   }
 
   @Override
@@ -172,6 +245,11 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
     return peekPaused.get();
   }
 
+  @Override
+  public void addTaskAvailableListener(Runnable listener) {
+    taskAvailableListeners.add(listener);
+  }
+
   /**
    * A {@link PrintWriter} subclass which enforces that line returns are {@code \n} whichever the platform.
    */
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.task.projectanalysis.batch;
 
+import com.google.common.base.Optional;
 import java.io.File;
 import org.sonar.ce.queue.CeTask;
 
@@ -30,4 +31,10 @@ public interface BatchReportDirectoryHolder {
    */
   File getDirectory();
 
+  /**
+   * The zip file of the Batch report for the current {@link CeTask}, when the report is read without being extracted.
+   * There is no directory in this case.
+   */
+  Optional<File> getZipFile();
+
 }
@@ -23,9 +23,9 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
@@ -55,7 +55,7 @@ public class IntegrateCrossProjectDuplications {
   private final Settings settings;
   private final DuplicationRepository duplicationRepository;
 
-  private Map<String, NumberOfUnitsNotLessThan> numberOfUnitsByLanguage = new HashMap<>();
+  private final Map<String, NumberOfUnitsNotLessThan> numberOfUnitsByLanguage = new ConcurrentHashMap<>();
 
   public IntegrateCrossProjectDuplications(Settings settings, DuplicationRepository duplicationRepository) {
     this.settings = settings;
@@ -63,13 +63,20 @@ public class IntegrateCrossProjectDuplications {
   }
 
   public void computeCpd(Component component, Collection<Block> originBlocks, Collection<Block> duplicationBlocks) {
+    addDuplications(component, detectCpd(component, originBlocks, duplicationBlocks));
+  }
+
+  /**
+   * Detects the clone groups of a file without adding them to the duplication repository, see
+   * {@link #addDuplications(Component, Iterable)}. Can be called concurrently for different files.
+   */
+  public List<CloneGroup> detectCpd(Component component, Collection<Block> originBlocks, Collection<Block> duplicationBlocks) {
     CloneIndex duplicationIndex = new PackedMemoryCloneIndex();
     populateIndex(duplicationIndex, originBlocks);
     populateIndex(duplicationIndex, duplicationBlocks);
 
     List<CloneGroup> duplications = SuffixTreeCloneDetectionAlgorithm.detect(duplicationIndex, originBlocks);
-    Iterable<CloneGroup> filtered = from(duplications).filter(getNumberOfUnitsNotLessThan(component.getFileAttributes().getLanguageKey()));
-    addDuplications(component, filtered);
+    return from(duplications).filter(getNumberOfUnitsNotLessThan(component.getFileAttributes().getLanguageKey())).toList();
   }
 
   private static void populateIndex(CloneIndex duplicationIndex, Collection<Block> duplicationBlocks) {
@@ -78,7 +85,11 @@ public class IntegrateCrossProjectDuplications {
     }
   }
 
-  private void addDuplications(Component file, Iterable<CloneGroup> duplications) {
+  /**
+   * Adds the clone groups returned by {@link #detectCpd(Component, Collection, Collection)} to the duplication repository.
+   * Not thread-safe.
+   */
+  public void addDuplications(Component file, Iterable<CloneGroup> duplications) {
     int cloneGroupCount = 0;
     for (CloneGroup duplication : duplications) {
       cloneGroupCount++;
@@ -110,12 +121,7 @@ public class IntegrateCrossProjectDuplications {
   }
 
   private NumberOfUnitsNotLessThan getNumberOfUnitsNotLessThan(String language) {
-    NumberOfUnitsNotLessThan numberOfUnitsNotLessThan = numberOfUnitsByLanguage.get(language);
-    if (numberOfUnitsNotLessThan == null) {
-      numberOfUnitsNotLessThan = new NumberOfUnitsNotLessThan(getMinimumTokens(language));
-      numberOfUnitsByLanguage.put(language, numberOfUnitsNotLessThan);
-    }
-    return numberOfUnitsNotLessThan;
+    return numberOfUnitsByLanguage.computeIfAbsent(language, l -> new NumberOfUnitsNotLessThan(getMinimumTokens(l)));
   }
 
   private int getMinimumTokens(String languageKey) {
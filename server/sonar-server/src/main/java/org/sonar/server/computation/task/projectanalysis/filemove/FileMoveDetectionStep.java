@@ -20,20 +20,30 @@
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
 import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -68,21 +78,34 @@ public class FileMoveDetectionStep implements ComputationStep {
   private static final List<String> FILE_QUALIFIERS = asList(Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE);
   private static final Splitter LINES_HASHES_SPLITTER = on('\n');
 
+  /**
+   * Number of threads computing the similarity of removed and added files.
+   */
+  static final String THREADS_PROPERTY = "sonar.ce.fileMoveDetection.threads";
+
+  /**
+   * Under this number of pairs of removed and added files, the similarity of every pair is computed. Above, only pairs of
+   * files sharing enough lines according to {@link MinHashIndex} are scored.
+   */
+  static final long MIN_PAIRS_FOR_CANDIDATES_PRUNING = 10_000L;
+
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final TreeRootHolder rootHolder;
   private final DbClient dbClient;
   private final SourceLinesRepository sourceLinesRepository;
   private final FileSimilarity fileSimilarity;
   private final MutableMovedFilesRepository movedFilesRepository;
+  private final int threads;
 
   public FileMoveDetectionStep(AnalysisMetadataHolder analysisMetadataHolder, TreeRootHolder rootHolder, DbClient dbClient,
-    SourceLinesRepository sourceLinesRepository, FileSimilarity fileSimilarity, MutableMovedFilesRepository movedFilesRepository) {
+    SourceLinesRepository sourceLinesRepository, FileSimilarity fileSimilarity, MutableMovedFilesRepository movedFilesRepository, Settings settings) {
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.rootHolder = rootHolder;
     this.dbClient = dbClient;
     this.sourceLinesRepository = sourceLinesRepository;
     this.fileSimilarity = fileSimilarity;
     this.movedFilesRepository = movedFilesRepository;
+    this.threads = Math.max(1, settings.getInt(THREADS_PROPERTY));
   }
 
   @Override
@@ -120,11 +143,17 @@ public class FileMoveDetectionStep implements ComputationStep {
       return;
     }
 
+    // line hashes of report and db files are compared through int ids
+    LineHashesInterner lineHashesInterner = new LineHashesInterner();
+
     // retrieve file data from report
-    Map<String, File> reportFileSourcesByKey = getReportFileSourcesByKey(reportFilesByKey, addedFileKeys);
+    Map<String, File> reportFileSourcesByKey = getReportFileSourcesByKey(reportFilesByKey, addedFileKeys, lineHashesInterner);
+
+    // retrieve file data from db
+    Map<String, File> dbFileSourcesByKey = getDbFileSourcesByKey(dbFilesByKey, removedFileKeys, lineHashesInterner);
 
     // compute score matrix
-    ScoreMatrix scoreMatrix = computeScoreMatrix(dbFilesByKey, removedFileKeys, reportFileSourcesByKey);
+    ScoreMatrix scoreMatrix = computeScoreMatrix(removedFileKeys, dbFileSourcesByKey, reportFileSourcesByKey);
     printIfDebug(scoreMatrix);
 
     // not a single match with score higher than MIN_REQUIRED_SCORE => abort
@@ -178,7 +207,8 @@ public class FileMoveDetectionStep implements ComputationStep {
     return builder.build();
   }
 
-  private Map<String, File> getReportFileSourcesByKey(Map<String, Component> reportFilesByKey, Set<String> addedFileKeys) {
+  private Map<String, File> getReportFileSourcesByKey(Map<String, Component> reportFilesByKey, Set<String> addedFileKeys,
+    LineHashesInterner lineHashesInterner) {
     ImmutableMap.Builder<String, File> builder = ImmutableMap.builder();
     for (String fileKey : addedFileKeys) {
       // FIXME computation of sourceHash and lineHashes might be done multiple times for some files: here, in ComputeFileSourceData, in
@@ -193,50 +223,158 @@ public class FileMoveDetectionStep implements ComputationStep {
           sourceHashComputer.addLine(line, lineIterator.hasNext());
         }
       }
-      builder.put(fileKey, new File(component.getReportAttributes().getPath(), sourceHashComputer.getHash(), linesHashesComputer.getLineHashes()));
+      builder.put(fileKey, File.withLineHashIds(component.getReportAttributes().getPath(), sourceHashComputer.getHash(),
+        lineHashesInterner.intern(linesHashesComputer.getLineHashes())));
     }
     return builder.build();
   }
 
-  private ScoreMatrix computeScoreMatrix(Map<String, DbComponent> dtosByKey, Set<String> dbFileKeys, Map<String, File> reportFileSourcesByKey) {
-    int[][] scoreMatrix = new int[dbFileKeys.size()][reportFileSourcesByKey.size()];
-    int maxScore = 0;
+  /**
+   * Line hashes of the removed files are loaded in bulk. Files without path or without source can't be matched and are ignored.
+   */
+  private Map<String, File> getDbFileSourcesByKey(Map<String, DbComponent> dbFilesByKey, Set<String> removedFileKeys,
+    LineHashesInterner lineHashesInterner) {
+    Map<String, DbComponent> removedFilesByUuid = new HashMap<>(removedFileKeys.size());
+    for (String removedFileKey : removedFileKeys) {
+      DbComponent dbComponent = dbFilesByKey.get(removedFileKey);
+      if (dbComponent.getPath() != null) {
+        removedFilesByUuid.put(dbComponent.getUuid(), dbComponent);
+      }
+    }
 
+    Map<String, File> res = new HashMap<>(removedFilesByUuid.size());
+    if (removedFilesByUuid.isEmpty()) {
+      return res;
+    }
     try (DbSession dbSession = dbClient.openSession(false)) {
-      int dbFileIndex = 0;
-      for (String removedFileKey : dbFileKeys) {
-        File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
-        if (fileInDb == null) {
-          continue;
-        }
+      dbClient.fileSourceDao().scrollLineHashesByFileUuids(dbSession, removedFilesByUuid.keySet(), resultContext -> {
+        FileSourceDto dto = (FileSourceDto) resultContext.getResultObject();
+        DbComponent dbComponent = removedFilesByUuid.get(dto.getFileUuid());
+        String lineHashes = dto.getLineHashes() == null ? "" : dto.getLineHashes();
+        int[] lineHashIds = lineHashesInterner.intern(LINES_HASHES_SPLITTER.splitToList(lineHashes));
+        res.put(dbComponent.getKey(), File.withLineHashIds(dbComponent.getPath(), null, lineHashIds));
+      });
+    }
+    return res;
+  }
 
-        int reportFileIndex = 0;
-        for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-          File unmatchedFile = reportFileSourceAndKey.getValue();
-          int score = fileSimilarity.score(fileInDb, unmatchedFile);
-          scoreMatrix[dbFileIndex][reportFileIndex] = score;
-          if (score > maxScore) {
-            maxScore = score;
-          }
-          reportFileIndex++;
-        }
-        dbFileIndex++;
+  private ScoreMatrix computeScoreMatrix(Set<String> dbFileKeys, Map<String, File> dbFileSourcesByKey, Map<String, File> reportFileSourcesByKey) {
+    File[] reportFiles = reportFileSourcesByKey.values().toArray(new File[reportFileSourcesByKey.size()]);
+    long totalPairs = (long) dbFileKeys.size() * reportFiles.length;
+    MinHashIndex minHashIndex = null;
+    if (totalPairs >= MIN_PAIRS_FOR_CANDIDATES_PRUNING) {
+      minHashIndex = new MinHashIndex();
+      for (int i = 0; i < reportFiles.length; i++) {
+        minHashIndex.add(i, reportFiles[i].getLineHashIds());
       }
     }
 
+    int[][] scoreMatrix = new int[dbFileKeys.size()][reportFiles.length];
+    List<RowScorer> rowScorers = new ArrayList<>(dbFileSourcesByKey.size());
+    int dbFileIndex = 0;
+    for (String removedFileKey : dbFileKeys) {
+      File fileInDb = dbFileSourcesByKey.get(removedFileKey);
+      if (fileInDb != null) {
+        rowScorers.add(new RowScorer(fileInDb, reportFiles, minHashIndex, scoreMatrix[dbFileIndex]));
+      }
+      dbFileIndex++;
+    }
+
+    int maxScore = scoreRows(rowScorers);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("{} pairs of files scored out of {}", rowScorers.stream().mapToLong(RowScorer::getScoredPairs).sum(), totalPairs);
+    }
     return new ScoreMatrix(dbFileKeys, reportFileSourcesByKey, scoreMatrix, maxScore);
   }
 
-  @CheckForNull
-  private File getFile(DbSession dbSession, DbComponent dbComponent) {
-    if (dbComponent.getPath() == null) {
-      return null;
+  /**
+   * @return the max score of all rows
+   */
+  private int scoreRows(List<RowScorer> rowScorers) {
+    int maxScore = 0;
+    if (threads == 1 || rowScorers.size() <= 1) {
+      for (RowScorer rowScorer : rowScorers) {
+        maxScore = Math.max(maxScore, rowScorer.call());
+      }
+      return maxScore;
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("FileMoveDetection-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      for (Future<Integer> rowMaxScore : executorService.invokeAll(rowScorers)) {
+        maxScore = Math.max(maxScore, rowMaxScore.get());
+      }
+      return maxScore;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while detecting file moves", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new IllegalStateException("Fail to detect file moves", e.getCause());
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Scores a removed file against the added files. Each instance writes only its own row of the score matrix.
+   */
+  private final class RowScorer implements Callable<Integer> {
+    private final File fileInDb;
+    private final File[] reportFiles;
+    @CheckForNull
+    private final MinHashIndex minHashIndex;
+    private final int[] scores;
+    private long scoredPairs = 0;
+
+    private RowScorer(File fileInDb, File[] reportFiles, @Nullable MinHashIndex minHashIndex, int[] scores) {
+      this.fileInDb = fileInDb;
+      this.reportFiles = reportFiles;
+      this.minHashIndex = minHashIndex;
+      this.scores = scores;
     }
-    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, dbComponent.getUuid());
-    if (fileSourceDto == null) {
-      return null;
+
+    @Override
+    public Integer call() {
+      BitSet candidates;
+      if (minHashIndex == null) {
+        candidates = new BitSet(reportFiles.length);
+        candidates.set(0, reportFiles.length);
+      } else {
+        candidates = minHashIndex.candidates(fileInDb.getLineHashIds());
+      }
+
+      int maxScore = 0;
+      for (int reportFileIndex = candidates.nextSetBit(0); reportFileIndex >= 0; reportFileIndex = candidates.nextSetBit(reportFileIndex + 1)) {
+        File reportFile = reportFiles[reportFileIndex];
+        if (maxPossibleScore(fileInDb.getLineCount(), reportFile.getLineCount()) < MIN_REQUIRED_SCORE) {
+          continue;
+        }
+        int score = fileSimilarity.score(fileInDb, reportFile);
+        scores[reportFileIndex] = score;
+        maxScore = Math.max(maxScore, score);
+        scoredPairs++;
+      }
+      return maxScore;
+    }
+
+    private long getScoredPairs() {
+      return scoredPairs;
+    }
+  }
+
+  /**
+   * Similarity is based on the edit distance of lines, which is at least the difference of the numbers of lines.
+   */
+  private static int maxPossibleScore(int lines1, int lines2) {
+    int max = Math.max(lines1, lines2);
+    if (max == 0) {
+      return 0;
     }
-    return new File(dbComponent.getPath(), fileSourceDto.getSrcHash(), LINES_HASHES_SPLITTER.splitToList(fileSourceDto.getLineHashes()));
+    return (int) (100 * (1.0 - ((double) Math.abs(lines1 - lines2)) / max));
   }
 
   private static void printIfDebug(ScoreMatrix scoreMatrix) {
@@ -31,11 +31,25 @@ public interface FileSimilarity {
     private final String path;
     private final String srcHash;
     private final List<String> lineHashes;
+    private final int[] lineHashIds;
 
     public File(String path, @Nullable String srcHash, @Nullable List<String> lineHashes) {
+      this(path, srcHash, lineHashes, null);
+    }
+
+    private File(String path, @Nullable String srcHash, @Nullable List<String> lineHashes, @Nullable int[] lineHashIds) {
       this.path = requireNonNull(path, "path can not be null");
       this.srcHash = srcHash;
       this.lineHashes = lineHashes;
+      this.lineHashIds = lineHashIds;
+    }
+
+    /**
+     * @param lineHashIds line hashes interned as int ids. Equal ids must mean equal line hashes within all the
+     *                    files compared together.
+     */
+    public static File withLineHashIds(String path, @Nullable String srcHash, int[] lineHashIds) {
+      return new File(path, srcHash, null, requireNonNull(lineHashIds, "line hash ids can not be null"));
     }
 
     public String getPath() {
@@ -51,6 +65,18 @@ public interface FileSimilarity {
     public List<String> getLineHashes() {
       return lineHashes;
     }
+
+    @CheckForNull
+    public int[] getLineHashIds() {
+      return lineHashIds;
+    }
+
+    public int getLineCount() {
+      if (lineHashIds != null) {
+        return lineHashIds.length;
+      }
+      return lineHashes == null ? 0 : lineHashes.size();
+    }
   }
 
   int score(File file1, File file2);
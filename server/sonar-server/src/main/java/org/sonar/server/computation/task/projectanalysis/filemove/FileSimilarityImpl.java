@@ -35,9 +35,13 @@ public class FileSimilarityImpl implements FileSimilarity {
 
     // TODO check filenames
 
+    int[] lineHashIds1 = file1.getLineHashIds();
+    int[] lineHashIds2 = file2.getLineHashIds();
     List<String> lineHashes1 = file1.getLineHashes();
     List<String> lineHashes2 = file2.getLineHashes();
-    if (lineHashes1 != null && lineHashes2 != null) {
+    if (lineHashIds1 != null && lineHashIds2 != null) {
+      score += sourceSimilarity.score(lineHashIds1, lineHashIds2);
+    } else if (lineHashes1 != null && lineHashes2 != null) {
       score += sourceSimilarity.score(lineHashes1, lineHashes2);
     }
     return score;
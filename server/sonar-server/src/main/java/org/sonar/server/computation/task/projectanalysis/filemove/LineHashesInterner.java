@@ -0,0 +1,44 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces line hashes by int ids, so that lines of files can be compared without comparing strings.
+ * Two line hashes have the same id if and only if they are equal. Not thread-safe.
+ */
+final class LineHashesInterner {
+  private final Map<String, Integer> idsByLineHash = new HashMap<>();
+
+  int[] intern(List<String> lineHashes) {
+    int[] ids = new int[lineHashes.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = idsByLineHash.computeIfAbsent(lineHashes.get(i), k -> idsByLineHash.size());
+    }
+    return ids;
+  }
+
+  int size() {
+    return idsByLineHash.size();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Locality-sensitive index of files, used to avoid computing the similarity of every pair of removed and added files.
+ * <p>
+ * The MinHash signature of a file is computed on the set of its line hash ids, so that the probability for two
+ * signatures to share a value is the Jaccard similarity of the lines of the two files. Signatures are split into
+ * {@link #BANDS} bands of {@link #ROWS} values and a file is a candidate for another one as soon as both have the same
+ * values in at least one band. Files with 57% of lines in common are candidates with a probability higher than 98%,
+ * which is far below the similarity of files which can reach {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE}.
+ * </p>
+ */
+final class MinHashIndex {
+  static final int BANDS = 20;
+  static final int ROWS = 3;
+  private static final int SIGNATURE_SIZE = BANDS * ROWS;
+
+  private final List<Map<Long, BitSet>> bucketsByBand = new ArrayList<>(BANDS);
+
+  MinHashIndex() {
+    for (int band = 0; band < BANDS; band++) {
+      bucketsByBand.add(new HashMap<>());
+    }
+  }
+
+  void add(int fileIndex, int[] lineHashIds) {
+    int[] signature = signature(lineHashIds);
+    for (int band = 0; band < BANDS; band++) {
+      bucketsByBand.get(band).computeIfAbsent(bandKey(signature, band), k -> new BitSet()).set(fileIndex);
+    }
+  }
+
+  /**
+   * Indexes of the added files which share at least one band with the specified lines.
+   */
+  BitSet candidates(int[] lineHashIds) {
+    int[] signature = signature(lineHashIds);
+    BitSet candidates = new BitSet();
+    for (int band = 0; band < BANDS; band++) {
+      BitSet bucket = bucketsByBand.get(band).get(bandKey(signature, band));
+      if (bucket != null) {
+        candidates.or(bucket);
+      }
+    }
+    return candidates;
+  }
+
+  static int[] signature(int[] lineHashIds) {
+    int[] signature = new int[SIGNATURE_SIZE];
+    for (int i = 0; i < SIGNATURE_SIZE; i++) {
+      int seed = i * 0x9E3779B9;
+      int min = Integer.MAX_VALUE;
+      for (int lineHashId : lineHashIds) {
+        min = Math.min(min, hash(lineHashId, seed));
+      }
+      signature[i] = min;
+    }
+    return signature;
+  }
+
+  private static long bandKey(int[] signature, int band) {
+    long key = 0L;
+    for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+      key = key * 0x9E3779B97F4A7C15L + signature[row];
+    }
+    return key;
+  }
+
+  /**
+   * Finalization step of MurmurHash3, which spreads the bits of consecutive ids.
+   */
+  private static int hash(int value, int seed) {
+    int h = value ^ seed;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.core.issue.DefaultIssue;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Base data of issue tracking (open issues and line hashes) preloaded for all the components of the project
+ * by {@link BaseIssuesLoader}. Data are kept LZ4-compressed in memory up to a limit, then spilled to a temporary
+ * file. Data of a component can be taken only once, as each component is tracked only once.
+ */
+public class BaseInputStore implements Startable {
+
+  static final String MAX_MEMORY_PROPERTY = "sonar.ce.issueTracking.bulkLoad.maxMemoryInMb";
+  private static final int DEFAULT_MAX_MEMORY_IN_MB = 64;
+
+  private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+  private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+  private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
+
+  private final TempFolder tempFolder;
+  private final long maxMemoryInBytes;
+  private final DefaultIssueCodec codec = new DefaultIssueCodec();
+  private final Map<String, Entry> issuesByComponentUuid = new HashMap<>();
+  private final Map<String, Entry> lineHashesByComponentUuid = new HashMap<>();
+  private final Set<String> takenComponentUuids = new HashSet<>();
+  private boolean loaded = false;
+  private long memoryInBytes = 0L;
+  private File spillFile;
+  private RandomAccessFile spill;
+
+  // this constructor is used by picocontainer
+  public BaseInputStore(TempFolder tempFolder, Settings settings) {
+    this(tempFolder, getMaxMemoryInMb(settings) * 1024L * 1024L);
+  }
+
+  @VisibleForTesting
+  BaseInputStore(TempFolder tempFolder, long maxMemoryInBytes) {
+    this.tempFolder = tempFolder;
+    this.maxMemoryInBytes = maxMemoryInBytes;
+  }
+
+  private static int getMaxMemoryInMb(Settings settings) {
+    return settings.hasKey(MAX_MEMORY_PROPERTY) ? Math.max(0, settings.getInt(MAX_MEMORY_PROPERTY)) : DEFAULT_MAX_MEMORY_IN_MB;
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    IOUtils.closeQuietly(spill);
+    FileUtils.deleteQuietly(spillFile);
+  }
+
+  public void putIssues(String componentUuid, List<DefaultIssue> issues) {
+    checkState(!loaded, "Store is already loaded");
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeInt(issues.size());
+      for (DefaultIssue issue : issues) {
+        codec.write(issue, output);
+      }
+      output.flush();
+      issuesByComponentUuid.put(componentUuid, store(bytes.toByteArray()));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to store base issues of component " + componentUuid, e);
+    }
+  }
+
+  public void putLineHashes(String componentUuid, String lineHashes) {
+    checkState(!loaded, "Store is already loaded");
+    try {
+      lineHashesByComponentUuid.put(componentUuid, store(lineHashes.getBytes(StandardCharsets.UTF_8)));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to store line hashes of component " + componentUuid, e);
+    }
+  }
+
+  /**
+   * Marks the end of the loading. From now on, components unknown by the store are considered as having no open issues.
+   */
+  public void setLoaded() {
+    this.loaded = true;
+  }
+
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  public Set<String> getComponentUuids() {
+    return Collections.unmodifiableSet(new HashSet<>(issuesByComponentUuid.keySet()));
+  }
+
+  /**
+   * @return the open issues of the component, or {@code null} if they are not available anymore in the store
+   * and must be loaded from database.
+   */
+  @CheckForNull
+  public synchronized List<DefaultIssue> takeIssues(String componentUuid) {
+    if (!loaded || !takenComponentUuids.add(componentUuid)) {
+      return null;
+    }
+    Entry entry = issuesByComponentUuid.remove(componentUuid);
+    if (entry == null) {
+      return new ArrayList<>();
+    }
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(read(entry)));
+      int size = input.readInt();
+      List<DefaultIssue> issues = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        issues.add(codec.read(input));
+      }
+      return issues;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read base issues of component " + componentUuid, e);
+    }
+  }
+
+  /**
+   * @return the line hashes of the component, or {@code null} if they are not available in the store
+   * and must be loaded from database.
+   */
+  @CheckForNull
+  public synchronized List<String> takeLineHashes(String componentUuid) {
+    Entry entry = lineHashesByComponentUuid.remove(componentUuid);
+    if (entry == null) {
+      return null;
+    }
+    try {
+      String lineHashes = new String(read(entry), StandardCharsets.UTF_8);
+      return lineHashes.isEmpty() ? Collections.emptyList() : END_OF_LINE_SPLITTER.splitToList(lineHashes);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read line hashes of component " + componentUuid, e);
+    }
+  }
+
+  @VisibleForTesting
+  boolean hasSpilled() {
+    return spill != null;
+  }
+
+  private Entry store(byte[] raw) throws IOException {
+    byte[] compressed = new byte[COMPRESSOR.maxCompressedLength(raw.length)];
+    int compressedLength = COMPRESSOR.compress(raw, 0, raw.length, compressed, 0, compressed.length);
+    if (memoryInBytes + compressedLength <= maxMemoryInBytes) {
+      memoryInBytes += compressedLength;
+      byte[] data = new byte[compressedLength];
+      System.arraycopy(compressed, 0, data, 0, compressedLength);
+      return new Entry(raw.length, compressedLength, data, -1L);
+    }
+    RandomAccessFile file = spill();
+    long offset = file.length();
+    file.seek(offset);
+    file.write(compressed, 0, compressedLength);
+    return new Entry(raw.length, compressedLength, null, offset);
+  }
+
+  private byte[] read(Entry entry) throws IOException {
+    byte[] compressed = entry.data;
+    if (compressed == null) {
+      compressed = new byte[entry.compressedLength];
+      spill.seek(entry.offset);
+      spill.readFully(compressed);
+    } else {
+      memoryInBytes -= entry.compressedLength;
+    }
+    byte[] raw = new byte[entry.rawLength];
+    DECOMPRESSOR.decompress(compressed, 0, raw, 0, entry.rawLength);
+    return raw;
+  }
+
+  private RandomAccessFile spill() throws IOException {
+    if (spill == null) {
+      spillFile = tempFolder.newFile("base-issues", ".dat");
+      spill = new RandomAccessFile(spillFile, "rw");
+    }
+    return spill;
+  }
+
+  private static class Entry {
+    private final int rawLength;
+    private final int compressedLength;
+    @CheckForNull
+    private final byte[] data;
+    private final long offset;
+
+    private Entry(int rawLength, int compressedLength, @Nullable byte[] data, long offset) {
+      this.rawLength = rawLength;
+      this.compressedLength = compressedLength;
+      this.data = data;
+      this.offset = offset;
+    }
+  }
+}
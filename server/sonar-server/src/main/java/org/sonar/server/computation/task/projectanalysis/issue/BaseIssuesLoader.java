@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Set;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.api.config.Settings;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.RuleStatus;
 import org.sonar.core.issue.DefaultIssue;
@@ -32,46 +33,50 @@ import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueMapper;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolder;
 
 /**
  * Loads all the project open issues from database, including manual issues.
- *
+ * <p>
+ * Unless disabled with {@link #BULK_LOAD_PROPERTY}, the issues of all the components are streamed by a single
+ * query when loading the uuids of components with open issues, along with the line hashes of these components.
+ * They are then read from {@link BaseInputStore} instead of being selected component per component.
  */
 public class BaseIssuesLoader {
 
+  static final String BULK_LOAD_PROPERTY = "sonar.ce.issueTracking.bulkLoad";
+
   private final TreeRootHolder treeRootHolder;
   private final DbClient dbClient;
   private final RuleRepository ruleRepository;
   private final ActiveRulesHolder activeRulesHolder;
+  private final BaseInputStore baseInputStore;
+  private final boolean bulkLoad;
 
-  public BaseIssuesLoader(TreeRootHolder treeRootHolder,
-    DbClient dbClient, RuleRepository ruleRepository, ActiveRulesHolder activeRulesHolder) {
+  public BaseIssuesLoader(TreeRootHolder treeRootHolder, DbClient dbClient, RuleRepository ruleRepository, ActiveRulesHolder activeRulesHolder,
+    BaseInputStore baseInputStore, Settings settings) {
     this.activeRulesHolder = activeRulesHolder;
     this.treeRootHolder = treeRootHolder;
     this.dbClient = dbClient;
     this.ruleRepository = ruleRepository;
+    this.baseInputStore = baseInputStore;
+    this.bulkLoad = !settings.hasKey(BULK_LOAD_PROPERTY) || settings.getBoolean(BULK_LOAD_PROPERTY);
   }
 
   public List<DefaultIssue> loadForComponentUuid(String componentUuid) {
+    List<DefaultIssue> preloaded = baseInputStore.takeIssues(componentUuid);
+    if (preloaded != null) {
+      return preloaded;
+    }
     DbSession session = dbClient.openSession(false);
     final List<DefaultIssue> result = new ArrayList<>();
     try {
       session.getMapper(IssueMapper.class).selectNonClosedByComponentUuid(componentUuid, new ResultHandler() {
         @Override
         public void handleResult(ResultContext resultContext) {
-          DefaultIssue issue = ((IssueDto) resultContext.getResultObject()).toDefaultIssue();
-
-          // TODO this field should be set outside this class
-          if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
-            issue.setOnDisabledRule(true);
-            // TODO to be improved, why setOnDisabledRule(true) is not enough ?
-            issue.setBeingClosed(true);
-          }
-          // FIXME
-          issue.setSelectedAt(System.currentTimeMillis());
-          result.add(issue);
+          result.add(toDefaultIssue((IssueDto) resultContext.getResultObject()));
         }
       });
       return result;
@@ -80,6 +85,20 @@ public class BaseIssuesLoader {
     }
   }
 
+  private DefaultIssue toDefaultIssue(IssueDto dto) {
+    DefaultIssue issue = dto.toDefaultIssue();
+
+    // TODO this field should be set outside this class
+    if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
+      issue.setOnDisabledRule(true);
+      // TODO to be improved, why setOnDisabledRule(true) is not enough ?
+      issue.setBeingClosed(true);
+    }
+    // FIXME
+    issue.setSelectedAt(System.currentTimeMillis());
+    return issue;
+  }
+
   private boolean isActive(RuleKey ruleKey) {
     return activeRulesHolder.get(ruleKey).isPresent();
   }
@@ -88,6 +107,10 @@ public class BaseIssuesLoader {
    * Uuids of all the components that have open issues on this project.
    */
   public Set<String> loadUuidsOfComponentsWithOpenIssues() {
+    if (bulkLoad) {
+      preload();
+      return baseInputStore.getComponentUuids();
+    }
     DbSession session = dbClient.openSession(false);
     try {
       return dbClient.issueDao().selectComponentUuidsOfOpenIssuesForProjectUuid(session, treeRootHolder.getRoot().getUuid());
@@ -95,4 +118,45 @@ public class BaseIssuesLoader {
       MyBatis.closeQuietly(session);
     }
   }
+
+  private void preload() {
+    try (DbSession session = dbClient.openSession(false)) {
+      ComponentIssuesGrouper grouper = new ComponentIssuesGrouper();
+      dbClient.issueDao().scrollNonClosedByProjectUuid(session, treeRootHolder.getRoot().getUuid(), grouper);
+      grouper.flush();
+
+      dbClient.fileSourceDao().scrollLineHashesByFileUuids(session, baseInputStore.getComponentUuids(), resultContext -> {
+        FileSourceDto dto = (FileSourceDto) resultContext.getResultObject();
+        String lineHashes = dto.getLineHashes();
+        baseInputStore.putLineHashes(dto.getFileUuid(), lineHashes == null ? "" : lineHashes);
+      });
+    }
+    baseInputStore.setLoaded();
+  }
+
+  /**
+   * Issues are sorted by component uuid, so the issues of a component are stored as soon as
+   * the issues of the next component are read.
+   */
+  private class ComponentIssuesGrouper implements ResultHandler {
+    private String componentUuid;
+    private final List<DefaultIssue> issues = new ArrayList<>();
+
+    @Override
+    public void handleResult(ResultContext resultContext) {
+      IssueDto dto = (IssueDto) resultContext.getResultObject();
+      if (!dto.getComponentUuid().equals(componentUuid)) {
+        flush();
+        componentUuid = dto.getComponentUuid();
+      }
+      issues.add(toDefaultIssue(dto));
+    }
+
+    void flush() {
+      if (componentUuid != null) {
+        baseInputStore.putIssues(componentUuid, issues);
+        issues.clear();
+      }
+    }
+  }
 }
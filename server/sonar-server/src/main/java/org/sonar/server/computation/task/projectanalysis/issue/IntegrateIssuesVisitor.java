@@ -20,21 +20,52 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Settings;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Tracking;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 import org.sonar.server.util.cache.DiskCache;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
-public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
+public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter implements Startable {
 
+  /**
+   * Number of threads tracking the issues of components. When greater than 1, the next components are tracked
+   * in advance while the issues of the current component are processed. Issues are still processed, visited by
+   * {@link IssueVisitors} and added to {@link IssueCache} by the thread of the step, in the order of components.
+   */
+  static final String THREADS_PROPERTY = "sonar.ce.issueTracking.threads";
+
+  /**
+   * Bounds the number of components tracked in advance, and so the memory used by their trackings.
+   */
+  private static final int TRACKINGS_AHEAD_PER_THREAD = 2;
+
+  /**
+   * Maximum delay to wait for the trackings in progress when concurrent tracking is stopped
+   */
+  private static final long STOP_TIMEOUT_IN_SECONDS = 30L;
+
+  private final TreeRootHolder treeRootHolder;
   private final TrackerExecution tracker;
   private final IssueCache issueCache;
   private final IssueLifecycle issueLifecycle;
@@ -43,11 +74,17 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
   private final ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues;
   private final MovedFilesRepository movedFilesRepository;
 
+  private final int threads;
+
   private final List<DefaultIssue> componentIssues = new ArrayList<>();
+  @CheckForNull
+  private ConcurrentTracking concurrentTracking;
 
-  public IntegrateIssuesVisitor(TrackerExecution tracker, IssueCache issueCache, IssueLifecycle issueLifecycle, IssueVisitors issueVisitors,
-    ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues, MutableComponentIssuesRepository componentIssuesRepository, MovedFilesRepository movedFilesRepository) {
+  public IntegrateIssuesVisitor(TreeRootHolder treeRootHolder, TrackerExecution tracker, IssueCache issueCache, IssueLifecycle issueLifecycle,
+    IssueVisitors issueVisitors, ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues, MutableComponentIssuesRepository componentIssuesRepository,
+    MovedFilesRepository movedFilesRepository, Settings settings) {
     super(CrawlerDepthLimit.FILE, POST_ORDER);
+    this.treeRootHolder = treeRootHolder;
     this.tracker = tracker;
     this.issueCache = issueCache;
     this.issueLifecycle = issueLifecycle;
@@ -55,6 +92,21 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     this.componentsWithUnprocessedIssues = componentsWithUnprocessedIssues;
     this.componentIssuesRepository = componentIssuesRepository;
     this.movedFilesRepository = movedFilesRepository;
+    this.threads = Math.max(1, settings.getInt(THREADS_PROPERTY));
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  /**
+   * Stops the threads tracking components in advance if the components have not all been visited, for example
+   * because another visitor failed. Called when the container of the task is cleaned up.
+   */
+  @Override
+  public void stop() {
+    stopConcurrentTracking();
   }
 
   @Override
@@ -73,19 +125,48 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
   private void processIssues(Component component) {
     DiskCache<DefaultIssue>.DiskAppender cacheAppender = issueCache.newAppender();
     try {
-      Tracking<DefaultIssue, DefaultIssue> tracking = tracker.track(component);
+      Tracking<DefaultIssue, DefaultIssue> tracking = track(component);
       issueVisitors.beforeComponent(component);
       fillNewOpenIssues(component, tracking, cacheAppender);
       fillExistingOpenIssues(component, tracking, cacheAppender);
       closeUnmatchedBaseIssues(component, tracking, cacheAppender);
       issueVisitors.afterComponent(component);
     } catch (Exception e) {
+      stopConcurrentTracking();
       throw new IllegalStateException(String.format("Fail to process issues of component '%s'", component.getKey()), e);
     } finally {
       cacheAppender.close();
     }
   }
 
+  private Tracking<DefaultIssue, DefaultIssue> track(Component component) {
+    if (threads == 1) {
+      return tracker.track(component);
+    }
+    if (concurrentTracking == null) {
+      concurrentTracking = new ConcurrentTracking();
+    }
+    Tracking<DefaultIssue, DefaultIssue> tracking = concurrentTracking.take(component);
+    if (concurrentTracking.isDone()) {
+      stopConcurrentTracking();
+    }
+    return tracking;
+  }
+
+  private void stopConcurrentTracking() {
+    if (concurrentTracking == null) {
+      return;
+    }
+    ExecutorService executorService = concurrentTracking.executorService;
+    concurrentTracking = null;
+    executorService.shutdownNow();
+    try {
+      executorService.awaitTermination(STOP_TIMEOUT_IN_SECONDS, SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   private void fillNewOpenIssues(Component component, Tracking<DefaultIssue, DefaultIssue> tracking, DiskCache<DefaultIssue>.DiskAppender cacheAppender) {
     for (DefaultIssue issue : tracking.getUnmatchedRaws()) {
       issueLifecycle.initNewOpenIssue(issue);
@@ -118,4 +199,54 @@ public class IntegrateIssuesVisitor extends TypeAwareVisitorAdapter {
     componentIssues.add(issue);
   }
 
+  /**
+   * Tracks components on a pool of threads, in the order in which they are visited.
+   */
+  private class ConcurrentTracking {
+    private final List<Component> components = new ArrayList<>();
+    private final Map<Component, Future<Tracking<DefaultIssue, DefaultIssue>>> trackings = new HashMap<>();
+    private final ExecutorService executorService;
+    private int submitted = 0;
+    private int taken = 0;
+
+    private ConcurrentTracking() {
+      new DepthTraversalTypeAwareCrawler(new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, POST_ORDER) {
+        @Override
+        public void visitAny(Component component) {
+          components.add(component);
+        }
+      }).visit(treeRootHolder.getRoot());
+      this.executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+        .setNameFormat("IssueTracking-%d")
+        .setDaemon(true)
+        .build());
+    }
+
+    private Tracking<DefaultIssue, DefaultIssue> take(Component component) {
+      taken++;
+      int maxSubmitted = Math.min(components.size(), taken + threads * TRACKINGS_AHEAD_PER_THREAD);
+      for (; submitted < maxSubmitted; submitted++) {
+        Component next = components.get(submitted);
+        trackings.put(next, executorService.submit(() -> tracker.track(next)));
+      }
+      Future<Tracking<DefaultIssue, DefaultIssue>> tracking = trackings.remove(component);
+      if (tracking == null) {
+        // component is not visited in the expected order
+        return tracker.track(component);
+      }
+      try {
+        return tracking.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while tracking issues", e);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause());
+        throw new IllegalStateException("Fail to track issues", e.getCause());
+      }
+    }
+
+    private boolean isDone() {
+      return taken >= components.size();
+    }
+  }
 }
@@ -22,6 +22,11 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 
+/**
+ * Visitors are always called by the thread of the step, component after component, even when issues are tracked
+ * concurrently by {@link IntegrateIssuesVisitor}. That's why aggregating visitors like {@link IssueCounter} or
+ * {@link EffortAggregator} do not need to be thread-safe.
+ */
 public class IssueVisitors {
 
   private final IssueVisitor[] visitors;
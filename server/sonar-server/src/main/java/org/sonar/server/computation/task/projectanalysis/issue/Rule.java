@@ -45,4 +45,10 @@ public interface Rule {
 
   @CheckForNull
   DebtRemediationFunction getRemediationFunction();
+
+  /**
+   * Language of the rule, {@code null} for common rules which are not bound to a language.
+   */
+  @CheckForNull
+  String getLanguage();
 }
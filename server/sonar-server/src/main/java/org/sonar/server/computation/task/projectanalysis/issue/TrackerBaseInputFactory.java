@@ -41,11 +41,13 @@ public class TrackerBaseInputFactory {
   private static final LineHashSequence EMPTY_LINE_HASH_SEQUENCE = new LineHashSequence(Collections.<String>emptyList());
 
   private final BaseIssuesLoader baseIssuesLoader;
+  private final BaseInputStore baseInputStore;
   private final DbClient dbClient;
   private final MovedFilesRepository movedFilesRepository;
 
-  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
+  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, BaseInputStore baseInputStore, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
     this.baseIssuesLoader = baseIssuesLoader;
+    this.baseInputStore = baseInputStore;
     this.dbClient = dbClient;
     this.movedFilesRepository = movedFilesRepository;
   }
@@ -69,14 +71,22 @@ public class TrackerBaseInputFactory {
       if (component.getType() != Component.Type.FILE) {
         return EMPTY_LINE_HASH_SEQUENCE;
       }
-      
+
+      List<String> hashes = baseInputStore.takeLineHashes(effectiveUuid);
+      if (hashes == null) {
+        hashes = selectLineHashes();
+      }
+      if (hashes == null || hashes.isEmpty()) {
+        return EMPTY_LINE_HASH_SEQUENCE;
+      }
+      return new LineHashSequence(hashes);
+    }
+
+    @CheckForNull
+    private List<String> selectLineHashes() {
       DbSession session = dbClient.openSession(false);
       try {
-        List<String> hashes = dbClient.fileSourceDao().selectLineHashes(session, effectiveUuid);
-        if (hashes == null || hashes.isEmpty()) {
-          return EMPTY_LINE_HASH_SEQUENCE;
-        }
-        return new LineHashSequence(hashes);
+        return dbClient.fileSourceDao().selectLineHashes(session, effectiveUuid);
       } finally {
         MyBatis.closeQuietly(session);
       }
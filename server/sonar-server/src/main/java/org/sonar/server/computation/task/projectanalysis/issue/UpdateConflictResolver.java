@@ -20,6 +20,8 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.util.HashSet;
+import java.util.Set;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.issue.DefaultIssue;
@@ -34,6 +36,8 @@ public class UpdateConflictResolver {
 
   private static final Logger LOG = Loggers.get(UpdateConflictResolver.class);
 
+  private final Set<String> resolvedIssueKeys = new HashSet<>();
+
   public void resolve(DefaultIssue issue, IssueMapper mapper) {
     LOG.debug("Resolve conflict on issue {}", issue.key());
 
@@ -41,9 +45,18 @@ public class UpdateConflictResolver {
     if (dbIssue != null) {
       mergeFields(dbIssue, issue);
       mapper.update(IssueDto.toDtoForUpdate(issue, System.currentTimeMillis()));
+      resolvedIssueKeys.add(issue.key());
     }
   }
 
+  /**
+   * Keys of the issues which have been merged with concurrent changes. The persisted state of these
+   * issues differs from the one of {@link IssueCache}.
+   */
+  public Set<String> getResolvedIssueKeys() {
+    return resolvedIssueKeys;
+  }
+
   @VisibleForTesting
   void mergeFields(IssueDto dbIssue, DefaultIssue issue) {
     resolveAssignee(dbIssue, issue);
@@ -0,0 +1,231 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures of components of the analysis report and
+ * which is designed to limit memory consumption on large projects.
+ * <p>
+ * Measures are stored per metric, in a column indexed by the report ref of the component. Measures which carry nothing
+ * but a numerical value (the vast majority of them) are stored as a {@code double} in an array, and are instantiated
+ * again when read. Other measures (string, data, level, no value, variations, quality gate status...) are kept as is
+ * in a side table of the column, while measures of developers are delegated to a {@link MapBasedRawMeasureRepository}.
+ * </p>
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ */
+public final class ArrayBasedRawMeasureRepository implements MeasureRepository {
+  private final Map<String, MetricColumn> columnsByMetricKey = new LinkedHashMap<>();
+  private final MapBasedRawMeasureRepository<Integer> developerMeasures = new MapBasedRawMeasureRepository<>(toReportRef());
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    return Optional.fromNullable(find(component, metric));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (exists(component, metric, measure)) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (!exists(component, metric, measure)) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      format(
+        "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+        measure.getValueType(), metric.getType().getValueType()));
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+
+    Measure measure = find(component, metric);
+    Set<Measure> ofDevelopers = developerMeasures.getRawMeasures(component, metric);
+    if (measure == null) {
+      return ofDevelopers;
+    }
+    return ImmutableSet.<Measure>builder().add(measure).addAll(ofDevelopers).build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int ref = toRef(component);
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (MetricColumn column : columnsByMetricKey.values()) {
+      Measure measure = column.get(ref);
+      if (measure != null) {
+        builder.put(column.metricKey, measure);
+      }
+    }
+    builder.putAll(developerMeasures.getRawMeasures(component));
+    return builder.build();
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    if (measure.getDeveloper() != null) {
+      developerMeasures.add(component, metric, measure, overridePolicy);
+      return;
+    }
+    int ref = toRef(component);
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    if (column == null) {
+      column = new MetricColumn(metric.getKey());
+      columnsByMetricKey.put(metric.getKey(), column);
+    }
+    if (overridePolicy == OverridePolicy.OVERRIDE || !column.contains(ref)) {
+      column.put(ref, measure);
+    }
+  }
+
+  @CheckForNull
+  private Measure find(Component component, Metric metric) {
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    if (column == null) {
+      return null;
+    }
+    return column.get(toRef(component));
+  }
+
+  private boolean exists(Component component, Metric metric, Measure measure) {
+    if (measure.getDeveloper() != null) {
+      return developerMeasures.getRawMeasures(component, metric).contains(measure);
+    }
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    return column != null && column.contains(toRef(component));
+  }
+
+  private static int toRef(Component component) {
+    int ref = component.getReportAttributes().getRef();
+    checkArgument(ref >= 0, "Ref of component %s must be positive", component.getKey());
+    return ref;
+  }
+
+  /**
+   * Measures of a single metric, indexed by component ref.
+   */
+  private static final class MetricColumn {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final String metricKey;
+    private final BitSet numericRefs = new BitSet();
+    private final Map<Integer, Measure> otherMeasures = new HashMap<>();
+    private double[] numericValues = new double[INITIAL_CAPACITY];
+    private Measure.ValueType numericValueType;
+
+    private MetricColumn(String metricKey) {
+      this.metricKey = metricKey;
+    }
+
+    private boolean contains(int ref) {
+      return numericRefs.get(ref) || (!otherMeasures.isEmpty() && otherMeasures.containsKey(ref));
+    }
+
+    @CheckForNull
+    private Measure get(int ref) {
+      if (numericRefs.get(ref)) {
+        return Measure.createNumeric(numericValueType, numericValues[ref]);
+      }
+      return otherMeasures.isEmpty() ? null : otherMeasures.get(ref);
+    }
+
+    private void put(int ref, Measure measure) {
+      if (measure.isNumericOnly() && (numericValueType == null || numericValueType == measure.getValueType())) {
+        numericValueType = measure.getValueType();
+        ensureCapacity(ref);
+        numericValues[ref] = measure.getNumericValue();
+        numericRefs.set(ref);
+        if (!otherMeasures.isEmpty()) {
+          otherMeasures.remove(ref);
+        }
+      } else {
+        otherMeasures.put(ref, measure);
+        numericRefs.clear(ref);
+      }
+    }
+
+    private void ensureCapacity(int ref) {
+      if (ref >= numericValues.length) {
+        numericValues = Arrays.copyOf(numericValues, Math.max(ref + 1, numericValues.length * 2));
+      }
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import javax.annotation.CheckForNull;
+import org.sonar.db.measure.MeasureDto;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Measures of the previous analysis, indexed by component ref and metric id. Keys are packed into a
+ * {@code long} and stored in an open-addressing table, so that no object is allocated per key. Measures
+ * having only a numeric value, which are the vast majority, are stored in a {@code double} array.
+ */
+class BaseMeasures {
+
+  private static final long EMPTY_KEY = 0L;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private double[] numericValues = new double[INITIAL_CAPACITY];
+  // null when measure has only a numeric value
+  private MeasureDto[] otherValues = new MeasureDto[INITIAL_CAPACITY];
+  private int size = 0;
+
+  void put(int componentRef, MeasureDto measure) {
+    checkArgument(componentRef > 0, "Component ref must be strictly positive");
+    if (2 * (size + 1) > keys.length) {
+      resize();
+    }
+    long key = toKey(componentRef, measure.getMetricId());
+    int index = indexOf(keys, key);
+    if (keys[index] == EMPTY_KEY) {
+      keys[index] = key;
+      size++;
+    }
+    if (isNumericOnly(measure)) {
+      numericValues[index] = measure.getValue();
+      otherValues[index] = null;
+    } else {
+      otherValues[index] = measure;
+    }
+  }
+
+  @CheckForNull
+  MeasureDto get(int componentRef, int metricId) {
+    int index = indexOf(keys, toKey(componentRef, metricId));
+    if (keys[index] == EMPTY_KEY) {
+      return null;
+    }
+    MeasureDto measure = otherValues[index];
+    if (measure == null) {
+      return new MeasureDto().setMetricId(metricId).setValue(numericValues[index]);
+    }
+    return measure;
+  }
+
+  int size() {
+    return size;
+  }
+
+  private static boolean isNumericOnly(MeasureDto measure) {
+    if (measure.getValue() == null || measure.getData() != null || measure.getAlertStatus() != null || measure.getAlertText() != null) {
+      return false;
+    }
+    for (int i = 1; i < 6; i++) {
+      if (measure.getVariation(i) != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void resize() {
+    long[] oldKeys = keys;
+    double[] oldNumericValues = numericValues;
+    MeasureDto[] oldOtherValues = otherValues;
+    keys = new long[oldKeys.length * 2];
+    numericValues = new double[oldKeys.length * 2];
+    otherValues = new MeasureDto[oldKeys.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY_KEY) {
+        int index = indexOf(keys, oldKeys[i]);
+        keys[index] = oldKeys[i];
+        numericValues[index] = oldNumericValues[i];
+        otherValues[index] = oldOtherValues[i];
+      }
+    }
+  }
+
+  /**
+   * Index of the key in the table, or of the empty slot where it should be added. Tables are never full.
+   */
+  private static int indexOf(long[] table, long key) {
+    int mask = table.length - 1;
+    int index = hash(key) & mask;
+    while (table[index] != EMPTY_KEY && table[index] != key) {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static long toKey(int componentRef, int metricId) {
+    return ((long) componentRef << 32) | (metricId & 0xFFFFFFFFL);
+  }
+}
@@ -103,6 +103,15 @@ public final class Measure {
     return new UpdateMeasureBuilder(measure);
   }
 
+  /**
+   * Restores a measure stored by {@link ArrayBasedRawMeasureRepository}: the value is already scaled and the measure
+   * has no developer, data, description, quality gate status nor variations.
+   */
+  static Measure createNumeric(ValueType valueType, double value) {
+    checkArgument(isNumeric(valueType), "Value type %s is not numeric", valueType);
+    return new Measure(valueType, null, value, null, null, null, null, null);
+  }
+
   public static final class NewMeasureBuilder {
     private Developer developer;
     private String description;
@@ -236,6 +245,26 @@ public final class Measure {
     }
   }
 
+  /**
+   * Whether this measure carries nothing but a numerical value, ie. can be restored with {@link #createNumeric(ValueType, double)}.
+   */
+  boolean isNumericOnly() {
+    return isNumeric(valueType) && developer == null && data == null && description == null
+      && qualityGateStatus == null && variations == null;
+  }
+
+  /**
+   * The raw value of a numerical measure, whatever its {@link ValueType}.
+   */
+  double getNumericValue() {
+    checkState(isNumeric(valueType), "value can not be converted to double because current value type is a %s", valueType);
+    return value;
+  }
+
+  private static boolean isNumeric(ValueType valueType) {
+    return valueType == ValueType.BOOLEAN || valueType == ValueType.INT || valueType == ValueType.LONG || valueType == ValueType.DOUBLE;
+  }
+
   @CheckForNull
   public Developer getDeveloper() {
     return developer;
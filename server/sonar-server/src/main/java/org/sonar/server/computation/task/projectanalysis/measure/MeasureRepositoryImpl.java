@@ -21,8 +21,15 @@ package org.sonar.server.computation.task.projectanalysis.measure;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.SetMultimap;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -31,39 +38,72 @@ import org.sonar.db.measure.MeasureQuery;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
 import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricValidator;
 
 import static java.util.Objects.requireNonNull;
-import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
+/**
+ * Thread-safe, as common rules read raw measures from the threads tracking issues, see
+ * {@link org.sonar.server.computation.task.projectanalysis.issue.IntegrateIssuesVisitor}.
+ */
 public class MeasureRepositoryImpl implements MeasureRepository {
-  private final MapBasedRawMeasureRepository<Integer> delegate = new MapBasedRawMeasureRepository<>(toReportRef());
+
+  private static final Logger LOGGER = Loggers.get(MeasureRepositoryImpl.class);
+
+  /**
+   * Base measures are loaded at once for all the components of the project, unless the project has more components
+   * than this limit. In this case, they are selected one by one.
+   */
+  static final String PRELOAD_MAX_COMPONENTS_PROPERTY = "sonar.ce.measures.preloadMaxComponents";
+  private static final int DEFAULT_PRELOAD_MAX_COMPONENTS = 50_000;
+
+  private final ArrayBasedRawMeasureRepository delegate = new ArrayBasedRawMeasureRepository();
   private final DbClient dbClient;
   private final BatchReportReader reportReader;
   private final BatchMeasureToMeasure batchMeasureToMeasure;
   private final MetricRepository metricRepository;
   private final ReportMetricValidator reportMetricValidator;
+  private final TreeRootHolder treeRootHolder;
+  private final int preloadMaxComponents;
 
   private MeasureDtoToMeasure underTest = new MeasureDtoToMeasure();
   private final Set<Integer> loadedComponents = new HashSet<>();
+  // null as long as base measures have not been loaded, empty when project is too big to be preloaded
+  @CheckForNull
+  private Map<String, Integer> preloadedComponentRefsByUuid;
+  private final BaseMeasures baseMeasures = new BaseMeasures();
 
-  public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator) {
+  public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator,
+    TreeRootHolder treeRootHolder, Settings settings) {
     this.dbClient = dbClient;
     this.reportReader = reportReader;
     this.reportMetricValidator = reportMetricValidator;
     this.batchMeasureToMeasure = new BatchMeasureToMeasure();
     this.metricRepository = metricRepository;
+    this.treeRootHolder = treeRootHolder;
+    this.preloadMaxComponents = settings.hasKey(PRELOAD_MAX_COMPONENTS_PROPERTY) ? settings.getInt(PRELOAD_MAX_COMPONENTS_PROPERTY) : DEFAULT_PRELOAD_MAX_COMPONENTS;
   }
 
   @Override
-  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+  public synchronized Optional<Measure> getBaseMeasure(Component component, Metric metric) {
     // fail fast
     requireNonNull(component);
     requireNonNull(metric);
 
+    Integer preloadedRef = getPreloadedComponentRefsByUuid().get(component.getUuid());
+    if (preloadedRef != null) {
+      MeasureDto measureDto = baseMeasures.get(preloadedRef, metric.getId());
+      return measureDto == null ? Optional.absent() : underTest.toMeasure(measureDto, metric);
+    }
+
     try (DbSession dbSession = dbClient.openSession(false)) {
       MeasureQuery query = MeasureQuery.builder().setComponentUuid(component.getUuid()).setMetricKey(metric.getKey()).build();
       java.util.Optional<MeasureDto> measureDto = dbClient.measureDao().selectSingle(dbSession, query);
@@ -74,8 +114,41 @@ public class MeasureRepositoryImpl implements MeasureRepository {
     }
   }
 
+  private Map<String, Integer> getPreloadedComponentRefsByUuid() {
+    if (preloadedComponentRefsByUuid == null) {
+      preloadedComponentRefsByUuid = preloadBaseMeasures();
+    }
+    return preloadedComponentRefsByUuid;
+  }
+
+  private Map<String, Integer> preloadBaseMeasures() {
+    Map<String, Integer> refsByUuid = new HashMap<>();
+    new DepthTraversalTypeAwareCrawler(
+      new TypeAwareVisitorAdapter(CrawlerDepthLimit.LEAVES, PRE_ORDER) {
+        @Override
+        public void visitAny(Component component) {
+          refsByUuid.put(component.getUuid(), component.getReportAttributes().getRef());
+        }
+      }).visit(treeRootHolder.getRoot());
+    if (refsByUuid.size() > preloadMaxComponents) {
+      LOGGER.debug("Base measures are not preloaded, as project has more than {} components", preloadMaxComponents);
+      return Collections.emptyMap();
+    }
+
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.measureDao().scrollLastMeasuresOfProject(dbSession, treeRootHolder.getRoot().getUuid(), context -> {
+        MeasureDto dto = (MeasureDto) context.getResultObject();
+        Integer ref = refsByUuid.get(dto.getComponentUuid());
+        if (ref != null) {
+          baseMeasures.put(ref, dto);
+        }
+      });
+    }
+    return refsByUuid;
+  }
+
   @Override
-  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+  public synchronized Optional<Measure> getRawMeasure(Component component, Metric metric) {
     Optional<Measure> local = delegate.getRawMeasure(component, metric);
     if (local.isPresent()) {
       return local;
@@ -87,23 +160,23 @@ public class MeasureRepositoryImpl implements MeasureRepository {
   }
 
   @Override
-  public void add(Component component, Metric metric, Measure measure) {
+  public synchronized void add(Component component, Metric metric, Measure measure) {
     delegate.add(component, metric, measure);
   }
 
   @Override
-  public void update(Component component, Metric metric, Measure measure) {
+  public synchronized void update(Component component, Metric metric, Measure measure) {
     delegate.update(component, metric, measure);
   }
 
   @Override
-  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+  public synchronized Set<Measure> getRawMeasures(Component component, Metric metric) {
     loadBatchMeasuresForComponent(component);
     return delegate.getRawMeasures(component, metric);
   }
 
   @Override
-  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+  public synchronized SetMultimap<String, Measure> getRawMeasures(Component component) {
     loadBatchMeasuresForComponent(component);
     return delegate.getRawMeasures(component);
   }
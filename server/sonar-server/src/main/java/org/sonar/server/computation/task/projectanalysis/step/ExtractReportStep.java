@@ -24,6 +24,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
+import org.apache.commons.io.FileUtils;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.ZipUtils;
@@ -37,27 +39,43 @@ import org.sonar.server.computation.task.step.ComputationStep;
 /**
  * Extracts the content zip file of the {@link CeTask} to a temp directory and adds a {@link File}
  * representing that temp directory to the {@link MutableBatchReportDirectoryHolder}.
+ * <p>
+ * When {@link #READ_FROM_ZIP_PROPERTY} is enabled, the zip file is copied as-is to a temp file which is
+ * registered in the {@link MutableBatchReportDirectoryHolder}. Report entries are then read on demand from
+ * the zip, without extracting all of them beforehand.
  */
 public class ExtractReportStep implements ComputationStep {
 
+  public static final String READ_FROM_ZIP_PROPERTY = "sonar.ce.report.readFromZip";
+
   private final DbClient dbClient;
   private final CeTask task;
   private final TempFolder tempFolder;
   private final MutableBatchReportDirectoryHolder reportDirectoryHolder;
+  private final Settings settings;
 
   public ExtractReportStep(DbClient dbClient, CeTask task, TempFolder tempFolder,
-    MutableBatchReportDirectoryHolder reportDirectoryHolder) {
+    MutableBatchReportDirectoryHolder reportDirectoryHolder, Settings settings) {
     this.dbClient = dbClient;
     this.task = task;
     this.tempFolder = tempFolder;
     this.reportDirectoryHolder = reportDirectoryHolder;
+    this.settings = settings;
   }
 
   @Override
   public void execute() {
     try (DbSession dbSession = dbClient.openSession(false)) {
       Optional<CeTaskInputDao.DataStream> opt = dbClient.ceTaskInputDao().selectData(dbSession, task.getUuid());
-      if (opt.isPresent()) {
+      if (opt.isPresent() && settings.getBoolean(READ_FROM_ZIP_PROPERTY)) {
+        File zipFile = tempFolder.newFile("report", ".zip");
+        try (CeTaskInputDao.DataStream reportStream = opt.get()) {
+          FileUtils.copyInputStreamToFile(reportStream.getInputStream(), zipFile);
+        } catch (IOException e) {
+          throw new IllegalStateException("Fail to copy report " + task.getUuid() + " from database", e);
+        }
+        reportDirectoryHolder.setZipFile(zipFile);
+      } else if (opt.isPresent()) {
         File unzippedDir = tempFolder.newDir();
         try (CeTaskInputDao.DataStream reportStream = opt.get();
              InputStream zipStream = new BufferedInputStream(reportStream.getInputStream())) {
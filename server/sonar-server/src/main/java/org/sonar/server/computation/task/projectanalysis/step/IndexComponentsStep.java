@@ -19,30 +19,114 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FilenameUtils;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.db.component.ResourceIndexDao;
+import org.sonar.server.component.es.ComponentDoc;
+import org.sonar.server.component.es.ComponentIndexer;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.step.ComputationStep;
 
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
+
 /**
- * Components are currently indexed in db table RESOURCE_INDEX, not in Elasticsearch
+ * Components are indexed in the db table RESOURCE_INDEX, so that they can be searched by name. When
+ * {@link ComponentIndexer#ENABLED_PROPERTY} is enabled, they are also indexed in Elasticsearch from the
+ * component tree.
  */
 public class IndexComponentsStep implements ComputationStep {
 
   private final ResourceIndexDao resourceIndexDao;
+  private final ComponentIndexer componentIndexer;
   private final TreeRootHolder treeRootHolder;
 
-  public IndexComponentsStep(ResourceIndexDao resourceIndexDao, TreeRootHolder treeRootHolder) {
+  public IndexComponentsStep(ResourceIndexDao resourceIndexDao, ComponentIndexer componentIndexer, TreeRootHolder treeRootHolder) {
     this.resourceIndexDao = resourceIndexDao;
+    this.componentIndexer = componentIndexer;
     this.treeRootHolder = treeRootHolder;
   }
 
   @Override
   public void execute() {
-    resourceIndexDao.indexProject(treeRootHolder.getRoot().getUuid());
+    String rootUuid = treeRootHolder.getRoot().getUuid();
+    resourceIndexDao.indexProject(rootUuid);
+    if (!componentIndexer.isEnabled()) {
+      return;
+    }
+
+    ComponentDocVisitor visitor = new ComponentDocVisitor(rootUuid);
+    new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+    componentIndexer.index(rootUuid, visitor.docs.iterator());
   }
 
   @Override
   public String getDescription() {
     return "Index components";
   }
+
+  /**
+   * Names and qualifiers are the ones persisted by {@link PersistComponentsStep}. Project copies
+   * of views are not indexed.
+   */
+  private static class ComponentDocVisitor extends TypeAwareVisitorAdapter {
+    private final String rootUuid;
+    private final List<ComponentDoc> docs = new ArrayList<>();
+
+    private ComponentDocVisitor(String rootUuid) {
+      super(CrawlerDepthLimit.reportMaxDepth(Component.Type.FILE).withViewsMaxDepth(Component.Type.SUBVIEW), PRE_ORDER);
+      this.rootUuid = rootUuid;
+    }
+
+    @Override
+    public void visitProject(Component project) {
+      add(project, project.getName(), Qualifiers.PROJECT);
+    }
+
+    @Override
+    public void visitModule(Component module) {
+      add(module, module.getName(), Qualifiers.MODULE);
+    }
+
+    @Override
+    public void visitDirectory(Component directory) {
+      add(directory, directory.getReportAttributes().getPath(), Qualifiers.DIRECTORY);
+    }
+
+    @Override
+    public void visitFile(Component file) {
+      String qualifier = file.getFileAttributes().isUnitTest() ? Qualifiers.UNIT_TEST_FILE : Qualifiers.FILE;
+      docs.add(newDoc(file, FilenameUtils.getName(file.getReportAttributes().getPath()), qualifier)
+        .setLanguage(file.getFileAttributes().getLanguageKey()));
+    }
+
+    @Override
+    public void visitView(Component view) {
+      add(view, view.getName(), Qualifiers.VIEW);
+    }
+
+    @Override
+    public void visitSubView(Component subView) {
+      add(subView, subView.getName(), Qualifiers.SUBVIEW);
+    }
+
+    private void add(Component component, String name, String qualifier) {
+      docs.add(newDoc(component, name, qualifier));
+    }
+
+    private ComponentDoc newDoc(Component component, String name, String qualifier) {
+      return new ComponentDoc()
+        .setId(component.getUuid())
+        .setProjectUuid(rootUuid)
+        .setKey(component.getKey())
+        .setName(name)
+        .setQualifier(qualifier)
+        .setLanguage(null);
+    }
+  }
 }
@@ -19,27 +19,241 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Scopes;
+import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.issue.ComponentsWithUnprocessedIssues;
+import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
+import org.sonar.server.computation.task.projectanalysis.issue.RuleRepository;
+import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
 import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.issue.index.IssueDoc;
 import org.sonar.server.issue.index.IssueIndexer;
 
+import static org.sonar.db.component.ComponentDto.UUID_PATH_SEPARATOR;
+
+/**
+ * Indexes the issues inserted or updated by {@link PersistIssuesStep}.
+ * <p>
+ * Documents are built from the {@link IssueCache}, the component tree and the {@link RuleRepository},
+ * without reading back the issues from database. Only the components which are not part of the analysis
+ * anymore (see {@link ComponentsWithUnprocessedIssues}) are loaded from database.
+ * <p>
+ * The issues are indexed from database, as done by {@link IssueIndexer#index(String)}, when
+ * {@link #INDEX_FROM_DB_PROPERTY} is enabled or when some issues have been merged with concurrent
+ * changes by {@link UpdateConflictResolver}. This database indexing also recovers the issues which failed to be
+ * indexed previously.
+ */
 public class IndexIssuesStep implements ComputationStep {
 
+  public static final String INDEX_FROM_DB_PROPERTY = "sonar.ce.issueIndexing.fromDb";
+
+  private static final Logger LOG = Loggers.get(IndexIssuesStep.class);
+
   private final IssueIndexer indexer;
   private final TreeRootHolder treeRootHolder;
+  private final IssueCache issueCache;
+  private final RuleRepository ruleRepository;
+  private final ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues;
+  private final UpdateConflictResolver conflictResolver;
+  private final DbClient dbClient;
+  private final System2 system2;
+  private final Settings settings;
 
-  public IndexIssuesStep(IssueIndexer indexer, TreeRootHolder treeRootHolder) {
+  public IndexIssuesStep(IssueIndexer indexer, TreeRootHolder treeRootHolder, IssueCache issueCache, RuleRepository ruleRepository,
+    ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues, UpdateConflictResolver conflictResolver, DbClient dbClient,
+    System2 system2, Settings settings) {
     this.indexer = indexer;
     this.treeRootHolder = treeRootHolder;
+    this.issueCache = issueCache;
+    this.ruleRepository = ruleRepository;
+    this.componentsWithUnprocessedIssues = componentsWithUnprocessedIssues;
+    this.conflictResolver = conflictResolver;
+    this.dbClient = dbClient;
+    this.system2 = system2;
+    this.settings = settings;
   }
 
   @Override
   public void execute() {
-    indexer.index(treeRootHolder.getRoot().getUuid());
+    String projectUuid = treeRootHolder.getRoot().getUuid();
+    if (settings.getBoolean(INDEX_FROM_DB_PROPERTY)) {
+      indexer.index(projectUuid);
+      return;
+    }
+
+    Map<String, ComponentFields> componentFieldsByUuid = new HashMap<>();
+    addComponentFields(treeRootHolder.getRoot(), null, componentFieldsByUuid);
+    addRemovedComponentFields(componentFieldsByUuid);
+
+    IssueDocFactory docFactory = new IssueDocFactory(projectUuid, componentFieldsByUuid, new Date(system2.now()));
+    try (CloseableIterator<DefaultIssue> issues = issueCache.traverse()) {
+      Iterator<DefaultIssue> persistedIssues = Iterators.filter(issues, issue -> (issue.isNew() || issue.isChanged()) && docFactory.accept(issue));
+      indexer.index(Iterators.transform(persistedIssues, docFactory::create));
+    }
+
+    if (docFactory.hasUnknownComponents || !conflictResolver.getResolvedIssueKeys().isEmpty()) {
+      LOG.debug("Index issues of project {} from database", projectUuid);
+      indexer.index(projectUuid);
+    }
   }
 
   @Override
   public String getDescription() {
     return "Index issues";
   }
+
+  private static void addComponentFields(Component component, @Nullable ComponentFields parentModule, Map<String, ComponentFields> fieldsByUuid) {
+    ComponentFields fields;
+    switch (component.getType()) {
+      case PROJECT:
+        fields = new ComponentFields(UUID_PATH_SEPARATOR + component.getUuid() + UUID_PATH_SEPARATOR, null, Scopes.PROJECT);
+        break;
+      case MODULE:
+        fields = new ComponentFields(parentModule.moduleUuidPath + component.getUuid() + UUID_PATH_SEPARATOR, null, Scopes.PROJECT);
+        break;
+      case DIRECTORY:
+        fields = new ComponentFields(parentModule.moduleUuidPath, component.getReportAttributes().getPath(), Scopes.DIRECTORY);
+        break;
+      case FILE:
+        fields = new ComponentFields(parentModule.moduleUuidPath, component.getReportAttributes().getPath(), Scopes.FILE);
+        break;
+      default:
+        throw new IllegalStateException("Unsupported component type " + component.getType());
+    }
+    fieldsByUuid.put(component.getUuid(), fields);
+    ComponentFields childrenModule = Scopes.PROJECT.equals(fields.scope) ? fields : parentModule;
+    for (Component child : component.getChildren()) {
+      addComponentFields(child, childrenModule, fieldsByUuid);
+    }
+  }
+
+  private void addRemovedComponentFields(Map<String, ComponentFields> fieldsByUuid) {
+    Set<String> removedUuids = componentsWithUnprocessedIssues.getUuids();
+    if (removedUuids.isEmpty()) {
+      return;
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (ComponentDto dto : dbClient.componentDao().selectByUuids(dbSession, removedUuids)) {
+        fieldsByUuid.put(dto.uuid(), new ComponentFields(dto.moduleUuidPath(), Scopes.PROJECT.equals(dto.scope()) ? null : dto.path(), dto.scope()));
+      }
+    }
+  }
+
+  private class IssueDocFactory {
+    private final String projectUuid;
+    private final Map<String, ComponentFields> componentFieldsByUuid;
+    private final Date technicalUpdateDate;
+    private final Set<String> resolvedIssueKeys;
+    private boolean hasUnknownComponents = false;
+
+    private IssueDocFactory(String projectUuid, Map<String, ComponentFields> componentFieldsByUuid, Date technicalUpdateDate) {
+      this.projectUuid = projectUuid;
+      this.componentFieldsByUuid = componentFieldsByUuid;
+      this.technicalUpdateDate = technicalUpdateDate;
+      this.resolvedIssueKeys = conflictResolver.getResolvedIssueKeys();
+    }
+
+    /**
+     * Issues merged with concurrent changes or related to an unknown component are indexed from database
+     */
+    private boolean accept(DefaultIssue issue) {
+      if (resolvedIssueKeys.contains(issue.key())) {
+        return false;
+      }
+      if (!componentFieldsByUuid.containsKey(issue.componentUuid())) {
+        hasUnknownComponents = true;
+        return false;
+      }
+      return true;
+    }
+
+    private IssueDoc create(DefaultIssue issue) {
+      ComponentFields component = componentFieldsByUuid.get(issue.componentUuid());
+      IssueDoc doc = new IssueDoc(Maps.newHashMapWithExpectedSize(30));
+      // all the fields must be present, even if value is null
+      doc.setKey(issue.key());
+      doc.setProjectUuid(projectUuid);
+      doc.setTechnicalUpdateDate(technicalUpdateDate);
+      doc.setAssignee(issue.assignee());
+      doc.setGap(issue.gap());
+      doc.setAttributes(KeyValueFormat.format(issue.attributes()));
+      doc.setLine(issue.line());
+      doc.setMessage(issue.message());
+      doc.setResolution(issue.resolution());
+      doc.setSeverity(issue.severity());
+      doc.setManualSeverity(issue.manualSeverity());
+      doc.setChecksum(issue.checksum());
+      doc.setStatus(issue.status());
+      doc.setEffort(issue.effortInMinutes());
+      doc.setAuthorLogin(issue.authorLogin());
+      doc.setFuncCloseDate(issue.closeDate());
+      doc.setFuncCreationDate(issue.creationDate());
+      doc.setFuncUpdateDate(issue.updateDate());
+      doc.setRuleKey(issue.ruleKey().toString());
+      doc.setLanguage(ruleRepository.getByKey(issue.ruleKey()).getLanguage());
+      doc.setComponentUuid(issue.componentUuid());
+      doc.setModuleUuid(component.moduleUuid());
+      doc.setModuleUuidPath(component.moduleUuidPath);
+      doc.setFilePath(component.filePath);
+      doc.setDirectoryPath(component.directoryPath());
+      doc.setTags(ImmutableList.copyOf(issue.tags()));
+      doc.setType(issue.type());
+      return doc;
+    }
+  }
+
+  /**
+   * Fields of the component of an issue, as persisted in database
+   */
+  private static class ComponentFields {
+    private final String moduleUuidPath;
+    @CheckForNull
+    private final String filePath;
+    private final String scope;
+
+    private ComponentFields(String moduleUuidPath, @Nullable String filePath, String scope) {
+      this.moduleUuidPath = moduleUuidPath;
+      this.filePath = filePath;
+      this.scope = scope;
+    }
+
+    private String moduleUuid() {
+      String path = CharMatcher.is('.').trimFrom(moduleUuidPath);
+      return path.substring(path.lastIndexOf('.') + 1);
+    }
+
+    @CheckForNull
+    private String directoryPath() {
+      if (filePath == null) {
+        return null;
+      }
+      if (Scopes.DIRECTORY.equals(scope)) {
+        return filePath;
+      }
+      int lastSlashIndex = filePath.lastIndexOf('/');
+      return lastSlashIndex > 0 ? filePath.substring(0, lastSlashIndex) : "/";
+    }
+  }
 }
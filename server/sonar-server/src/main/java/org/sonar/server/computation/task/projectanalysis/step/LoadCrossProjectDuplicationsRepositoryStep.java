@@ -20,9 +20,26 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
@@ -30,7 +47,9 @@ import org.sonar.db.DbSession;
 import org.sonar.db.duplication.DuplicationUnitDto;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.CloneGroup;
 import org.sonar.scanner.protocol.output.ScannerReport.CpdTextBlock;
+import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
@@ -40,11 +59,11 @@ import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolde
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
-import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Lists.newArrayList;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
 /**
@@ -53,33 +72,81 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
  * Blocks can be empty if :
  * - The file is excluded from the analysis using {@link org.sonar.api.CoreProperties#CPD_EXCLUSIONS}
  * - On Java, if the number of statements of the file is too small, nothing will be sent.
+ *
+ * Files are processed by batches of {@link #FILES_PER_BATCH}. By default the candidates of each file are selected by
+ * hashes, using the index of DUPLICATIONS_INDEX. When {@link #BULK_LOOKUP_PROPERTY} is enabled, the candidates of all the
+ * files of a batch are loaded with a few streamed queries, after having discarded the hashes which are known by a Bloom
+ * filter to have no candidate in other projects. Clone detection then runs on {@link #THREADS_PROPERTY} threads.
  */
 public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationStep {
 
   private static final Logger LOGGER = Loggers.get(LoadCrossProjectDuplicationsRepositoryStep.class);
 
+  /**
+   * Number of threads detecting the clone groups of files.
+   */
+  static final String THREADS_PROPERTY = "sonar.ce.crossProjectDuplications.threads";
+
+  /**
+   * Whether candidates are looked up in bulk. The Bloom filter of each language requires to scan all the candidate
+   * hashes of other projects, which only pays off when the analysis has many files and the table is not too large
+   * compared to the number of hashes of the project. Disabled by default.
+   */
+  static final String BULK_LOOKUP_PROPERTY = "sonar.ce.crossProjectDuplications.bulkLookup";
+
+  /**
+   * Number of files of which blocks are kept in memory and candidates are loaded at once.
+   */
+  static final int FILES_PER_BATCH = 500;
+
+  /**
+   * Bounds the memory of a Bloom filter to about 24MB. Above, the rate of false positives increases, which only
+   * leads to loading hashes without candidates.
+   */
+  private static final int MAX_BLOOM_FILTER_INSERTIONS = 20_000_000;
+  private static final double BLOOM_FILTER_FPP = 0.01;
+
   private final TreeRootHolder treeRootHolder;
   private final BatchReportReader reportReader;
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final IntegrateCrossProjectDuplications integrateCrossProjectDuplications;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
   private final DbClient dbClient;
+  private final int threads;
+  private final boolean bulkLookup;
 
   public LoadCrossProjectDuplicationsRepositoryStep(TreeRootHolder treeRootHolder, BatchReportReader reportReader,
     AnalysisMetadataHolder analysisMetadataHolder, CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder,
-    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient) {
+    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient, Settings settings) {
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.integrateCrossProjectDuplications = integrateCrossProjectDuplications;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
     this.dbClient = dbClient;
+    this.threads = Math.max(1, settings.getInt(THREADS_PROPERTY));
+    this.bulkLookup = settings.getBoolean(BULK_LOOKUP_PROPERTY);
   }
 
   @Override
   public void execute() {
-    if (crossProjectDuplicationStatusHolder.isEnabled()) {
-      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor()).visit(treeRootHolder.getRoot());
+    if (!crossProjectDuplicationStatusHolder.isEnabled()) {
+      return;
+    }
+    Analysis baseAnalysis = analysisMetadataHolder.getBaseAnalysis();
+    String baseAnalysisUuid = baseAnalysis == null ? null : baseAnalysis.getUuid();
+    ExecutorService executorService = threads == 1 ? null : Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("CrossProjectDuplications-%d")
+      .setDaemon(true)
+      .build());
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      CrossProjectDuplicationVisitor visitor = new CrossProjectDuplicationVisitor(dbSession, baseAnalysisUuid, executorService);
+      new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+      visitor.processBatch();
+    } finally {
+      if (executorService != null) {
+        executorService.shutdownNow();
+      }
     }
   }
 
@@ -89,9 +156,19 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   }
 
   private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
+    private final DbSession dbSession;
+    @CheckForNull
+    private final String baseAnalysisUuid;
+    @CheckForNull
+    private final ExecutorService executorService;
+    private final Map<String, BloomFilter<CharSequence>> hashesByLanguage = new HashMap<>();
+    private final List<FileBlocks> batch = new ArrayList<>();
 
-    private CrossProjectDuplicationVisitor() {
+    private CrossProjectDuplicationVisitor(DbSession dbSession, @CheckForNull String baseAnalysisUuid, @CheckForNull ExecutorService executorService) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
+      this.dbSession = dbSession;
+      this.baseAnalysisUuid = baseAnalysisUuid;
+      this.executorService = executorService;
     }
 
     @Override
@@ -101,29 +178,145 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
       if (cpdTextBlocks.isEmpty()) {
         return;
       }
+      batch.add(new FileBlocks(file, cpdTextBlocks));
+      if (batch.size() >= FILES_PER_BATCH) {
+        processBatch();
+      }
+    }
+
+    private void processBatch() {
+      Map<String, List<FileBlocks>> batchByLanguage = new LinkedHashMap<>();
+      for (FileBlocks fileBlocks : batch) {
+        batchByLanguage.computeIfAbsent(fileBlocks.file.getFileAttributes().getLanguageKey(), l -> new ArrayList<>()).add(fileBlocks);
+      }
+      batch.clear();
+
+      List<FileDetection> detections = new ArrayList<>();
+      for (Map.Entry<String, List<FileBlocks>> entry : batchByLanguage.entrySet()) {
+        addDetections(entry.getKey(), entry.getValue(), detections);
+      }
+      List<List<CloneGroup>> cloneGroups = detect(detections);
+      for (int i = 0; i < detections.size(); i++) {
+        integrateCrossProjectDuplications.addDuplications(detections.get(i).file, cloneGroups.get(i));
+      }
+    }
+
+    private void addDetections(String language, List<FileBlocks> files, List<FileDetection> detections) {
+      if (!bulkLookup) {
+        for (FileBlocks fileBlocks : files) {
+          List<DuplicationUnitDto> dtos = dbClient.duplicationDao().selectCandidates(dbSession, baseAnalysisUuid, language,
+            from(fileBlocks.cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList());
+          addDetection(fileBlocks, from(dtos).transform(DtoToBlock.INSTANCE).toList(), detections);
+        }
+        return;
+      }
 
-      Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
-      if (dtos.isEmpty()) {
+      BloomFilter<CharSequence> knownHashes = hashesByLanguage.computeIfAbsent(language, this::loadHashes);
+      Set<String> hashes = new LinkedHashSet<>();
+      for (FileBlocks fileBlocks : files) {
+        for (CpdTextBlock cpdTextBlock : fileBlocks.cpdTextBlocks) {
+          if (knownHashes.mightContain(cpdTextBlock.getHash())) {
+            hashes.add(cpdTextBlock.getHash());
+          }
+        }
+      }
+      if (hashes.isEmpty()) {
         return;
       }
 
-      Collection<Block> duplicatedBlocks = from(dtos).transform(DtoToBlock.INSTANCE).toList();
-      Collection<Block> originBlocks = from(cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
-      LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), file.getKey());
+      Map<String, List<Block>> candidatesByHash = new HashMap<>();
+      dbClient.duplicationDao().scrollCandidates(dbSession, baseAnalysisUuid, language, hashes, context -> {
+        DuplicationUnitDto dto = (DuplicationUnitDto) context.getResultObject();
+        candidatesByHash.computeIfAbsent(dto.getHash(), h -> new ArrayList<>()).add(DtoToBlock.INSTANCE.apply(dto));
+      });
+      LOGGER.debug("Found candidates for {} hashes out of {} on {} files of language {}", candidatesByHash.size(), hashes.size(), files.size(), language);
+
+      for (FileBlocks fileBlocks : files) {
+        addDetection(fileBlocks, fileBlocks.selectDuplicatedBlocks(candidatesByHash), detections);
+      }
+    }
+
+    private void addDetection(FileBlocks fileBlocks, List<Block> duplicatedBlocks, List<FileDetection> detections) {
+      if (!duplicatedBlocks.isEmpty()) {
+        Collection<Block> originBlocks = from(fileBlocks.cpdTextBlocks).transform(new CpdTextBlockToBlock(fileBlocks.file.getKey())).toList();
+        LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), fileBlocks.file.getKey());
+        detections.add(new FileDetection(fileBlocks.file, originBlocks, duplicatedBlocks));
+      }
+    }
 
-      integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
+    /**
+     * Loads the hashes of all the candidates of a language. They do not depend on the files, so this is done only once per language.
+     */
+    private BloomFilter<CharSequence> loadHashes(String language) {
+      int count = dbClient.duplicationDao().countCandidates(dbSession, baseAnalysisUuid, language);
+      BloomFilter<CharSequence> hashes = BloomFilter.create(Funnels.stringFunnel(UTF_8), Math.min(count, MAX_BLOOM_FILTER_INSERTIONS), BLOOM_FILTER_FPP);
+      if (count > 0) {
+        dbClient.duplicationDao().scrollCandidateHashes(dbSession, baseAnalysisUuid, language, context -> hashes.put((String) context.getResultObject()));
+      }
+      LOGGER.debug("Loaded {} candidate hashes of language {}", count, language);
+      return hashes;
     }
 
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
-      DbSession dbSession = dbClient.openSession(false);
+    private List<List<CloneGroup>> detect(List<FileDetection> detections) {
+      List<List<CloneGroup>> cloneGroups = new ArrayList<>(detections.size());
+      if (executorService == null || detections.size() <= 1) {
+        for (FileDetection detection : detections) {
+          cloneGroups.add(detection.call());
+        }
+        return cloneGroups;
+      }
+
       try {
-        Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
-        String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
-        return dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, file.getFileAttributes().getLanguageKey(), hashes);
-      } finally {
-        dbClient.closeSession(dbSession);
+        for (Future<List<CloneGroup>> future : executorService.invokeAll(detections)) {
+          cloneGroups.add(future.get());
+        }
+        return cloneGroups;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while detecting cross project duplications", e);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause());
+        throw new IllegalStateException("Fail to detect cross project duplications", e.getCause());
+      }
+    }
+  }
+
+  private static class FileBlocks {
+    private final Component file;
+    private final List<CpdTextBlock> cpdTextBlocks;
+
+    private FileBlocks(Component file, List<CpdTextBlock> cpdTextBlocks) {
+      this.file = file;
+      this.cpdTextBlocks = cpdTextBlocks;
+    }
+
+    private List<Block> selectDuplicatedBlocks(Map<String, List<Block>> candidatesByHash) {
+      List<Block> duplicatedBlocks = new ArrayList<>();
+      Set<String> hashes = new LinkedHashSet<>(from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList());
+      for (String hash : hashes) {
+        List<Block> candidates = candidatesByHash.get(hash);
+        if (candidates != null) {
+          duplicatedBlocks.addAll(candidates);
+        }
       }
+      return duplicatedBlocks;
+    }
+  }
+
+  private class FileDetection implements Callable<List<CloneGroup>> {
+    private final Component file;
+    private final Collection<Block> originBlocks;
+    private final Collection<Block> duplicatedBlocks;
+
+    private FileDetection(Component file, Collection<Block> originBlocks, Collection<Block> duplicatedBlocks) {
+      this.file = file;
+      this.originBlocks = originBlocks;
+      this.duplicatedBlocks = duplicatedBlocks;
+    }
+
+    @Override
+    public List<CloneGroup> call() {
+      return integrateCrossProjectDuplications.detectCpd(file, originBlocks, duplicatedBlocks);
     }
   }
 
@@ -20,21 +20,31 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
-import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.db.source.FileSourceDto.Type;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -63,6 +73,20 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 
 public class PersistFileSourcesStep implements ComputationStep {
 
+  private static final Logger LOGGER = Loggers.get(PersistFileSourcesStep.class);
+
+  /**
+   * Maximum size of the data (binary data and line hashes) persisted in a single transaction. When zero,
+   * batch mode is disabled and each file source is committed on its own.
+   */
+  static final String BATCH_SIZE_PROPERTY = "sonar.ce.persistSources.batchSizeInKb";
+  private static final int DEFAULT_BATCH_SIZE_IN_KB = 16 * 1024;
+
+  /**
+   * Number of threads computing and compressing the data of files. Data are persisted by a single thread.
+   */
+  static final String THREADS_PROPERTY = "sonar.ce.persistSources.threads";
+
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
@@ -70,9 +94,11 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final long batchSizeInBytes;
+  private final int threads;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Settings settings) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -80,16 +106,35 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.batchSizeInBytes = 1024L * (settings.hasKey(BATCH_SIZE_PROPERTY) ? Math.max(0, settings.getInt(BATCH_SIZE_PROPERTY)) : DEFAULT_BATCH_SIZE_IN_KB);
+    this.threads = Math.max(1, settings.getInt(THREADS_PROPERTY));
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
-    DbSession session = dbClient.openSession(false);
+    // Batch inserts are bounded by the size of the data rather than by the number of rows, as keeping
+    // all the data of big files in memory can produce OOM
+    boolean batch = batchSizeInBytes > 0;
+    DbSession session = dbClient.openSession(batch);
+    ExecutorService executorService = null;
+    if (threads > 1) {
+      executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+        .setNameFormat("PersistFileSources-%d")
+        .setDaemon(true)
+        .build());
+    }
+    FileSourceVisitor visitor = new FileSourceVisitor(session, batch, executorService);
     try {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(session))
+      long start = System.currentTimeMillis();
+      new DepthTraversalTypeAwareCrawler(visitor)
         .visit(treeRootHolder.getRoot());
+      visitor.persistPendingFileSources();
+      visitor.commit();
+      visitor.logThroughput(System.currentTimeMillis() - start);
     } finally {
+      if (executorService != null) {
+        visitor.cancelPendingFileSources(executorService.shutdownNow());
+      }
       MyBatis.closeQuietly(session);
     }
   }
@@ -97,13 +142,28 @@ public class PersistFileSourcesStep implements ComputationStep {
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final boolean batch;
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
+    private long bytesInBatch = 0L;
+    private int files = 0;
+    private int inserts = 0;
+    private int updates = 0;
+    private int commits = 0;
+    private long bytes = 0L;
+
+    @CheckForNull
+    private final ExecutorService executorService;
+    // data of at most two files per thread are kept in memory while waiting to be persisted
+    private final Deque<PendingFileSource> pendingFileSources = new ArrayDeque<>();
+    private final int maxPendingFileSources = 2 * threads;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, boolean batch, @Nullable ExecutorService executorService) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.batch = batch;
+      this.executorService = executorService;
     }
 
     @Override
@@ -118,29 +178,47 @@ public class PersistFileSourcesStep implements ComputationStep {
 
     @Override
     public void visitFile(Component file) {
-      int fileRef = file.getReportAttributes().getRef();
-      ScannerReport.Component component = reportReader.readComponent(fileRef);
-      CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
+      files++;
+      // report and repositories are read by the crawling thread, only the computation of data is delegated to workers
+      ScannerReport.Component component = reportReader.readComponent(file.getReportAttributes().getRef());
+      // line readers are created first, so that the iterator of lines is not left open if their creation fails
       LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
-      try {
-        ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), component.getLines());
-        ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
-      } catch (Exception e) {
-        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
-      } finally {
-        linesIterator.close();
-        lineReaders.close();
+      PendingFileSource pending = new PendingFileSource(file, component, sourceLinesRepository.readLines(file), lineReaders);
+      if (executorService == null) {
+        persistSource(pending.compute());
+        return;
+      }
+      pending.future = executorService.submit(pending::compute);
+      pendingFileSources.add(pending);
+      if (pendingFileSources.size() >= maxPendingFileSources) {
+        persistSource(pendingFileSources.poll().get());
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
-      DbFileSources.Data fileData = fileSourceData.getFileSourceData();
+    private void persistPendingFileSources() {
+      while (!pendingFileSources.isEmpty()) {
+        persistSource(pendingFileSources.poll().get());
+      }
+    }
 
-      byte[] data = FileSourceDto.encodeSourceData(fileData);
-      String dataHash = DigestUtils.md5Hex(data);
-      String srcHash = fileSourceData.getSrcHash();
-      String lineHashes = fileSourceData.getLineHashes();
+    /**
+     * Closes the inputs of the files which computation has not started, when persistence has failed.
+     */
+    private void cancelPendingFileSources(List<Runnable> notStartedTasks) {
+      for (PendingFileSource pending : pendingFileSources) {
+        if (notStartedTasks.contains(pending.future)) {
+          pending.close();
+        }
+      }
+      pendingFileSources.clear();
+    }
+
+    private void persistSource(ComputedFileSource computed) {
+      byte[] data = computed.data;
+      String dataHash = computed.dataHash;
+      String srcHash = computed.srcHash;
+      String lineHashes = computed.lineHashes;
+      String componentUuid = computed.fileUuid;
       FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
 
       if (previousDto == null) {
@@ -154,14 +232,15 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setLineHashes(lineHashes)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
-          .setRevision(computeRevision(latestChange));
+          .setRevision(computed.revision);
         dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
+        inserts++;
+        written(data, lineHashes);
       } else {
         // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
         boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
         boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(latestChange);
+        String revision = computed.revision;
         boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
         if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
           previousDto
@@ -172,13 +251,86 @@ public class PersistFileSourcesStep implements ComputationStep {
             .setRevision(revision)
             .setUpdatedAt(system2.now());
           dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
+          updates++;
+          written(data, lineHashes);
         }
       }
     }
 
+    private void written(byte[] data, @Nullable String lineHashes) {
+      long size = data.length + (lineHashes == null ? 0 : lineHashes.length());
+      bytes += size;
+      bytesInBatch += size;
+      if (!batch || bytesInBatch >= batchSizeInBytes) {
+        commit();
+      }
+    }
+
+    private void commit() {
+      if (bytesInBatch > 0) {
+        session.commit();
+        commits++;
+        bytesInBatch = 0L;
+      }
+    }
+
+    private void logThroughput(long durationInMs) {
+      double seconds = Math.max(1L, durationInMs) / 1000.0;
+      LOGGER.info("Sources of {} files persisted ({} inserted, {} updated) | commits={} | size={}KB | time={}ms | throughput={} files/s, {}KB/s",
+        files, inserts, updates, commits, bytes / 1024, durationInMs, (long) (files / seconds), (long) (bytes / 1024 / seconds));
+    }
+
+  }
+
+  /**
+   * Inputs of the computation of the data of a file. Iterators are opened by the crawling thread, but consumed
+   * and closed by the thread computing data.
+   */
+  private static class PendingFileSource {
+    private final Component file;
+    private final ScannerReport.Component component;
+    private final CloseableIterator<String> linesIterator;
+    private final LineReaders lineReaders;
+    private Future<ComputedFileSource> future;
+
+    private PendingFileSource(Component file, ScannerReport.Component component, CloseableIterator<String> linesIterator, LineReaders lineReaders) {
+      this.file = file;
+      this.component = component;
+      this.linesIterator = linesIterator;
+      this.lineReaders = lineReaders;
+    }
+
+    private ComputedFileSource compute() {
+      try {
+        ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), component.getLines());
+        ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
+        return new ComputedFileSource(file.getUuid(), fileSourceData, computeRevision(lineReaders.getLatestChange()));
+      } catch (Exception e) {
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+      } finally {
+        close();
+      }
+    }
+
+    private void close() {
+      linesIterator.close();
+      lineReaders.close();
+    }
+
+    private ComputedFileSource get() {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(String.format("Interrupted while persisting sources of %s", file.getKey()), e);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause());
+        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e.getCause());
+      }
+    }
+
     @CheckForNull
-    private String computeRevision(@Nullable Changeset latestChange) {
+    private static String computeRevision(@Nullable Changeset latestChange) {
       if (latestChange == null) {
         return null;
       }
@@ -186,6 +338,25 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  private static class ComputedFileSource {
+    private final String fileUuid;
+    private final byte[] data;
+    private final String dataHash;
+    private final String srcHash;
+    private final String lineHashes;
+    @CheckForNull
+    private final String revision;
+
+    private ComputedFileSource(String fileUuid, ComputeFileSourceData.Data fileSourceData, @Nullable String revision) {
+      this.fileUuid = fileUuid;
+      this.data = FileSourceDto.encodeSourceData(fileSourceData.getFileSourceData());
+      this.dataHash = DigestUtils.md5Hex(data);
+      this.srcHash = fileSourceData.getSrcHash();
+      this.lineHashes = fileSourceData.getLineHashes();
+      this.revision = revision;
+    }
+  }
+
   private static class LineReaders {
     private final List<LineReader> readers = new ArrayList<>();
     private final List<CloseableIterator<?>> closeables = new ArrayList<>();
@@ -19,6 +19,10 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import org.sonar.api.issue.IssueComment;
 import org.sonar.api.utils.System2;
 import org.sonar.core.issue.DefaultIssue;
@@ -35,10 +39,16 @@ import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepository;
 import org.sonar.db.DbClient;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.stream.Collectors;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 public class PersistIssuesStep implements ComputationStep {
 
+  /**
+   * Maximum number of updated issues kept in memory before checking that they were not changed concurrently
+   */
+  private static final int MAX_UPDATED_ISSUES_TO_CHECK = 1_000;
+
   private final DbClient dbClient;
   private final System2 system2;
   private final UpdateConflictResolver conflictResolver;
@@ -56,9 +66,11 @@ public class PersistIssuesStep implements ComputationStep {
 
   @Override
   public void execute() {
+    long now = system2.now();
     DbSession session = dbClient.openSession(true);
     IssueMapper mapper = session.getMapper(IssueMapper.class);
     IssueChangeMapper changeMapper = session.getMapper(IssueChangeMapper.class);
+    List<DefaultIssue> updatedIssues = new ArrayList<>();
 
     CloseableIterator<DefaultIssue> issues = issueCache.traverse();
     try {
@@ -67,31 +79,55 @@ public class PersistIssuesStep implements ComputationStep {
         boolean saved = false;
         if (issue.isNew()) {
           Integer ruleId = ruleRepository.getByKey(issue.ruleKey()).getId();
-          IssueDto dto = IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now());
+          IssueDto dto = IssueDto.toDtoForComputationInsert(issue, ruleId, now);
           mapper.insert(dto);
           saved = true;
         } else if (issue.isChanged()) {
-          IssueDto dto = IssueDto.toDtoForUpdate(issue, system2.now());
-          int updateCount = mapper.updateIfBeforeSelectedDate(dto);
-          if (updateCount == 0) {
-            // End-user and scan changed the issue at the same time.
-            // See https://jira.sonarsource.com/browse/SONAR-4309
-            conflictResolver.resolve(issue, mapper);
-          }
+          IssueDto dto = IssueDto.toDtoForUpdate(issue, now);
+          // the number of updated rows is not known in batch mode, so conflicts are detected once the session is committed
+          mapper.updateIfBeforeSelectedDate(dto);
+          updatedIssues.add(issue);
           saved = true;
         }
         if (saved) {
           insertChanges(changeMapper, issue);
         }
+        if (updatedIssues.size() >= MAX_UPDATED_ISSUES_TO_CHECK) {
+          commitAndResolveConflicts(session, updatedIssues, now);
+        }
       }
-      session.flushStatements();
-      session.commit();
+      commitAndResolveConflicts(session, updatedIssues, now);
     } finally {
       MyBatis.closeQuietly(session);
       issues.close();
     }
   }
 
+  /**
+   * Updated issues of which UPDATED_AT is not {@code updatedAt} were not touched by
+   * {@link IssueMapper#updateIfBeforeSelectedDate(IssueDto)}: end-user and scan changed them at the same time.
+   * See https://jira.sonarsource.com/browse/SONAR-4309
+   */
+  private void commitAndResolveConflicts(DbSession batchSession, List<DefaultIssue> updatedIssues, long updatedAt) {
+    batchSession.flushStatements();
+    batchSession.commit();
+    if (updatedIssues.isEmpty()) {
+      return;
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      List<String> keys = updatedIssues.stream().map(DefaultIssue::key).collect(Collectors.toList(updatedIssues.size()));
+      Set<String> conflictingKeys = new HashSet<>(dbClient.issueDao().selectKeysNotUpdatedAt(dbSession, keys, updatedAt));
+      if (!conflictingKeys.isEmpty()) {
+        IssueMapper mapper = dbSession.getMapper(IssueMapper.class);
+        updatedIssues.stream()
+          .filter(issue -> conflictingKeys.contains(issue.key()))
+          .forEach(issue -> conflictResolver.resolve(issue, mapper));
+        dbSession.commit();
+      }
+    }
+    updatedIssues.clear();
+  }
+
   private static void insertChanges(IssueChangeMapper mapper, DefaultIssue issue) {
     for (IssueComment comment : issue.comments()) {
       DefaultIssueComment c = (DefaultIssueComment) comment;
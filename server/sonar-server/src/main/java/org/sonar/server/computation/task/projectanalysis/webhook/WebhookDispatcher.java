@@ -0,0 +1,267 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.HttpUrl;
+import org.picocontainer.Startable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.stream.Collectors;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Sends webhooks out of the Compute Engine workers, so that a slow endpoint does not delay the processing
+ * of the next tasks.
+ * <p>
+ * Calls are executed by a bounded pool of threads, with a limited number of concurrent calls to the same host.
+ * Calls which fail because of a connectivity problem or a server error (HTTP 5xx) are retried with an exponential
+ * backoff. The resulting {@link WebhookDelivery} are persisted by batches, then the old deliveries of the
+ * same components are purged.
+ * </p>
+ */
+@ComputeEngineSide
+public class WebhookDispatcher implements Startable {
+
+  public static final String THREADS_PROPERTY = "sonar.ce.webhooks.threads";
+  public static final String MAX_CALLS_PER_HOST_PROPERTY = "sonar.ce.webhooks.maxConcurrentCallsPerHost";
+  public static final String MAX_ATTEMPTS_PROPERTY = "sonar.ce.webhooks.maxAttempts";
+  public static final String RETRY_DELAY_PROPERTY = "sonar.ce.webhooks.retryDelayInMs";
+  public static final String QUEUE_SIZE_PROPERTY = "sonar.ce.webhooks.queueSize";
+
+  private static final int DEFAULT_THREADS = 4;
+  private static final int DEFAULT_MAX_CALLS_PER_HOST = 2;
+  private static final int DEFAULT_MAX_ATTEMPTS = 3;
+  private static final int DEFAULT_RETRY_DELAY_MS = 1_000;
+  private static final int DEFAULT_QUEUE_SIZE = 1_000;
+  private static final long HOST_BUSY_DELAY_MS = 100L;
+  private static final long FLUSH_PERIOD_MS = 1_000L;
+  private static final int FLUSH_SIZE = 50;
+  private static final long STOP_TIMEOUT_MS = 30_000L;
+
+  private static final Logger LOGGER = Loggers.get(WebhookDispatcher.class);
+
+  private final WebhookCaller caller;
+  private final WebhookDeliveryStorage deliveryStorage;
+  private final System2 system;
+  private final int threads;
+  private final int maxCallsPerHost;
+  private final int maxAttempts;
+  private final long retryDelayMs;
+  private final int queueSize;
+
+  private final AtomicInteger pendingDeliveries = new AtomicInteger(0);
+  private final ConcurrentMap<String, Semaphore> permitsByHost = new ConcurrentHashMap<>();
+  private final BlockingQueue<WebhookDelivery> deliveriesToPersist = new LinkedBlockingQueue<>();
+  private ScheduledThreadPoolExecutor executor;
+
+  public WebhookDispatcher(WebhookCaller caller, WebhookDeliveryStorage deliveryStorage, System2 system, Settings settings) {
+    this.caller = caller;
+    this.deliveryStorage = deliveryStorage;
+    this.system = system;
+    this.threads = getPositiveInt(settings, THREADS_PROPERTY, DEFAULT_THREADS);
+    this.maxCallsPerHost = getPositiveInt(settings, MAX_CALLS_PER_HOST_PROPERTY, DEFAULT_MAX_CALLS_PER_HOST);
+    this.maxAttempts = getPositiveInt(settings, MAX_ATTEMPTS_PROPERTY, DEFAULT_MAX_ATTEMPTS);
+    this.retryDelayMs = getPositiveInt(settings, RETRY_DELAY_PROPERTY, DEFAULT_RETRY_DELAY_MS);
+    this.queueSize = getPositiveInt(settings, QUEUE_SIZE_PROPERTY, DEFAULT_QUEUE_SIZE);
+  }
+
+  private static int getPositiveInt(Settings settings, String property, int defaultValue) {
+    return settings.hasKey(property) ? Math.max(1, settings.getInt(property)) : defaultValue;
+  }
+
+  @Override
+  public void start() {
+    executor = new ScheduledThreadPoolExecutor(threads,
+      new ThreadFactoryBuilder().setNameFormat("Webhook-%d").setDaemon(true).build());
+    executor.scheduleWithFixedDelay(this::flush, FLUSH_PERIOD_MS, FLUSH_PERIOD_MS, MILLISECONDS);
+  }
+
+  /**
+   * Calls already enqueued are executed but not retried anymore, then the remaining deliveries are persisted.
+   */
+  @Override
+  public void stop() {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(STOP_TIMEOUT_MS, MILLISECONDS)) {
+        LOGGER.warn("{} webhooks could not be sent before stop", pendingDeliveries.get());
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      executor.shutdownNow();
+    }
+    flush();
+  }
+
+  /**
+   * Enqueues the call of a webhook. Returns immediately.
+   */
+  public void dispatch(Webhook webhook, WebhookPayload payload) {
+    if (pendingDeliveries.incrementAndGet() > queueSize) {
+      pendingDeliveries.decrementAndGet();
+      WebhookDelivery delivery = new WebhookDelivery.Builder()
+        .setAt(system.now())
+        .setWebhook(webhook)
+        .setPayload(payload)
+        .setError(new IllegalStateException("Too many webhooks are waiting to be sent"))
+        .build();
+      complete(delivery);
+      return;
+    }
+    try {
+      executor.execute(new Call(webhook, payload, 1));
+    } catch (RejectedExecutionException e) {
+      pendingDeliveries.decrementAndGet();
+      throw new IllegalStateException("Webhooks can not be sent, Compute Engine is stopping", e);
+    }
+  }
+
+  @VisibleForTesting
+  int getPendingDeliveries() {
+    return pendingDeliveries.get();
+  }
+
+  private void complete(WebhookDelivery delivery) {
+    log(delivery);
+    deliveriesToPersist.add(delivery);
+    if (deliveriesToPersist.size() >= FLUSH_SIZE) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    List<WebhookDelivery> deliveries = new ArrayList<>();
+    deliveriesToPersist.drainTo(deliveries);
+    if (deliveries.isEmpty()) {
+      return;
+    }
+    try {
+      deliveryStorage.persist(deliveries);
+    } catch (RuntimeException e) {
+      LOGGER.error("Fail to persist {} webhook deliveries", deliveries.size(), e);
+      return;
+    }
+    Set<String> componentUuids = deliveries.stream().map(d -> d.getWebhook().getComponentUuid()).collect(Collectors.toSet());
+    for (String componentUuid : componentUuids) {
+      try {
+        deliveryStorage.purge(componentUuid);
+      } catch (RuntimeException e) {
+        LOGGER.error("Fail to purge webhook deliveries of component {}", componentUuid, e);
+      }
+    }
+  }
+
+  /**
+   * @return {@code false} if the executor is shutting down
+   */
+  private boolean schedule(Runnable runnable, long delayMs) {
+    try {
+      executor.schedule(runnable, delayMs, MILLISECONDS);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+  }
+
+  private static boolean isRetryable(WebhookDelivery delivery) {
+    return delivery.getError().isPresent() || delivery.getHttpStatus().orElse(0) >= 500;
+  }
+
+  private static String hostOf(Webhook webhook) {
+    HttpUrl url = HttpUrl.parse(webhook.getUrl());
+    return url == null ? webhook.getUrl() : url.host();
+  }
+
+  private static void log(WebhookDelivery delivery) {
+    Optional<String> error = delivery.getErrorMessage();
+    if (error.isPresent()) {
+      LOGGER.debug("Failed to send webhook '{}' | url={} | message={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), error.get());
+    } else {
+      LOGGER.debug("Sent webhook '{}' | url={} | time={}ms | status={}",
+        delivery.getWebhook().getName(), delivery.getWebhook().getUrl(), delivery.getDurationInMs().orElse(-1), delivery.getHttpStatus().orElse(-1));
+    }
+  }
+
+  private class Call implements Runnable {
+    private final Webhook webhook;
+    private final WebhookPayload payload;
+    private final int attempt;
+
+    private Call(Webhook webhook, WebhookPayload payload, int attempt) {
+      this.webhook = webhook;
+      this.payload = payload;
+      this.attempt = attempt;
+    }
+
+    @Override
+    public void run() {
+      Semaphore permits = permitsByHost.computeIfAbsent(hostOf(webhook), host -> new Semaphore(maxCallsPerHost));
+      if (!permits.tryAcquire()) {
+        if (schedule(this, HOST_BUSY_DELAY_MS)) {
+          return;
+        }
+        // shutting down, no more deferred execution
+        permits.acquireUninterruptibly();
+      }
+      WebhookDelivery delivery;
+      try {
+        delivery = caller.call(webhook, payload);
+      } catch (RuntimeException e) {
+        delivery = new WebhookDelivery.Builder().setAt(system.now()).setWebhook(webhook).setPayload(payload).setError(e).build();
+      } finally {
+        permits.release();
+      }
+
+      if (attempt < maxAttempts && isRetryable(delivery)) {
+        long delayMs = retryDelayMs << (attempt - 1);
+        if (schedule(new Call(webhook, payload, attempt + 1), delayMs)) {
+          LOGGER.debug("Failed to send webhook '{}' (attempt {}/{}), retrying in {}ms | url={}",
+            webhook.getName(), attempt, maxAttempts, delayMs, webhook.getUrl());
+          return;
+        }
+      }
+      pendingDeliveries.decrementAndGet();
+      complete(delivery);
+    }
+  }
+}
@@ -22,7 +22,7 @@ package org.sonar.server.computation.taskprocessor;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListenableScheduledFuture;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
@@ -31,8 +31,8 @@ import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.configuration.CeConfiguration;
+import org.sonar.server.computation.queue.InternalCeQueue;
 
-import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable {
@@ -40,15 +40,17 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
   private final CeProcessingSchedulerExecutorService executorService;
   private final CeWorkerCallable workerRunnable;
+  private final InternalCeQueue queue;
 
   private final long delayBetweenTasks;
   private final TimeUnit timeUnit;
   private final ChainingCallback[] chainingCallbacks;
 
   public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
-    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable) {
+    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable, InternalCeQueue queue) {
     this.executorService = processingExecutorService;
     this.workerRunnable = workerRunnable;
+    this.queue = queue;
 
     this.delayBetweenTasks = ceConfiguration.getQueuePollingDelay();
     this.timeUnit = MILLISECONDS;
@@ -68,8 +70,17 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
   @Override
   public void startScheduling() {
     for (ChainingCallback chainingCallback : chainingCallbacks) {
-      ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
-      addCallback(future, chainingCallback, executorService);
+      chainingCallback.chainWithDelay();
+    }
+    queue.addTaskAvailableListener(this::wakeUp);
+  }
+
+  /**
+   * Workers waiting for the polling delay are executed immediately.
+   */
+  private void wakeUp() {
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      chainingCallback.wakeUp();
     }
   }
 
@@ -84,9 +95,10 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
     @CheckForNull
     private ListenableFuture<Boolean> workerFuture;
+    private boolean delayed = false;
 
     @Override
-    public void onSuccess(@Nullable Boolean result) {
+    public synchronized void onSuccess(@Nullable Boolean result) {
       if (result != null && result) {
         chainWithoutDelay();
       } else {
@@ -95,7 +107,11 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
     }
 
     @Override
-    public void onFailure(Throwable t) {
+    public synchronized void onFailure(Throwable t) {
+      if (t instanceof CancellationException) {
+        // cancelled by stop() or wakeUp(), which take care of chaining
+        return;
+      }
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else {
@@ -106,17 +122,25 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
     private void chainWithoutDelay() {
       if (keepRunning()) {
         workerFuture = executorService.submit(workerRunnable);
+        delayed = false;
       }
       addCallback();
     }
 
-    private void chainWithDelay() {
+    private synchronized void chainWithDelay() {
       if (keepRunning()) {
         workerFuture = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
+        delayed = true;
       }
       addCallback();
     }
 
+    private synchronized void wakeUp() {
+      if (delayed && workerFuture != null && keepRunning() && workerFuture.cancel(false)) {
+        chainWithoutDelay();
+      }
+    }
+
     private void addCallback() {
       if (workerFuture != null && keepRunning()) {
         Futures.addCallback(workerFuture, this, executorService);
@@ -127,7 +151,7 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       return keepRunning.get();
     }
 
-    public void stop() {
+    public synchronized void stop() {
       this.keepRunning.set(false);
       if (workerFuture != null) {
         workerFuture.cancel(false);
@@ -67,7 +67,8 @@ public class IssueIndexer extends BaseIndexer {
   }
 
   /**
-   * For benchmarks
+   * Indexes documents built by the caller, for example by the Compute Engine from the issues
+   * it has just persisted. Also used by benchmarks.
    */
   public void index(Iterator<IssueDoc> issues) {
     doIndex(createBulkIndexer(false), issues);
@@ -51,6 +51,7 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.measure.MeasureQuery;
 import org.sonar.db.measure.MeasureTreeQuery;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricDtoFunctions;
@@ -71,6 +72,7 @@ import static org.sonar.api.utils.Paging.offset;
 import static org.sonar.server.component.ComponentFinder.ParamNames.BASE_COMPONENT_ID_AND_KEY;
 import static org.sonar.server.component.ComponentFinder.ParamNames.DEVELOPER_ID_AND_KEY;
 import static org.sonar.server.measure.ws.ComponentTreeAction.LEAVES_STRATEGY;
+import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_PERIOD_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.STRATEGIES;
 import static org.sonar.server.measure.ws.ComponentTreeAction.WITH_MEASURES_ONLY_METRIC_SORT_FILTER;
 import static org.sonar.server.measure.ws.SnapshotDtoToWsPeriods.snapshotToWsPeriods;
@@ -105,9 +107,15 @@ public class ComponentTreeDataLoader {
       Long developerId = searchDeveloperId(dbSession, wsRequest);
 
       ComponentTreeQuery componentTreeQuery = toComponentTreeQuery(wsRequest, baseComponent);
-      List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery);
       List<MetricDto> metrics = searchMetrics(dbSession, wsRequest);
       List<WsMeasures.Period> periods = snapshotToWsPeriods(baseSnapshot.get());
+      java.util.Optional<List<ComponentTreeQuery.Sort>> dbSorts = ComponentTreeSort.toDbSorts(wsRequest, metrics);
+      if (dbSorts.isPresent()) {
+        ComponentTreeQuery sortedQuery = toSortedComponentTreeQuery(wsRequest, baseComponent, baseSnapshot.get(), dbSorts.get(), metrics, periods, developerId);
+        return loadPageSortedByDb(dbSession, wsRequest, baseComponent, sortedQuery, metrics, periods, developerId);
+      }
+
+      List<ComponentDto> components = searchComponents(dbSession, componentTreeQuery);
       Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = searchMeasuresByComponentUuidAndMetric(dbSession, baseComponent, componentTreeQuery, components,
         metrics, periods, developerId);
 
@@ -131,6 +139,56 @@ public class ComponentTreeDataLoader {
     }
   }
 
+  /**
+   * Components are sorted, filtered and paginated by the database, so that only the components and the measures
+   * of the requested page are loaded.
+   */
+  private ComponentTreeData loadPageSortedByDb(DbSession dbSession, ComponentTreeWsRequest wsRequest, ComponentDto baseComponent, ComponentTreeQuery query,
+    List<MetricDto> metrics, List<WsMeasures.Period> periods, @Nullable Long developerId) {
+    List<ComponentDto> components = Collections.emptyList();
+    int componentCount = 0;
+    Collection<String> qualifiers = query.getQualifiers();
+    if (qualifiers == null || !qualifiers.isEmpty()) {
+      components = dbClient.componentDao().selectDescendants(dbSession, query, offset(wsRequest.getPage(), wsRequest.getPageSize()), wsRequest.getPageSize());
+      componentCount = dbClient.componentDao().countDescendants(dbSession, query);
+    }
+
+    return ComponentTreeData.builder()
+      .setBaseComponent(baseComponent)
+      .setComponentsFromDb(components)
+      .setComponentCount(componentCount)
+      .setMeasuresByComponentUuidAndMetric(searchMeasuresOfComponents(dbSession, baseComponent, components, metrics, periods, developerId))
+      .setMetrics(metrics)
+      .setPeriods(periods)
+      .setReferenceComponentsByUuid(searchReferenceComponentsById(dbSession, components))
+      .build();
+  }
+
+  private Table<String, MetricDto, MeasureDto> searchMeasuresOfComponents(DbSession dbSession, ComponentDto baseComponent, List<ComponentDto> components,
+    List<MetricDto> metrics, List<WsMeasures.Period> periods, @Nullable Long developerId) {
+    Map<Integer, MetricDto> metricsById = Maps.uniqueIndex(metrics, MetricDtoFunctions.toId());
+    List<String> componentUuids = new ArrayList<>(components.size() + 1);
+    componentUuids.add(baseComponent.uuid());
+    components.forEach(component -> componentUuids.add(component.uuid()));
+    MeasureQuery measureQuery = MeasureQuery.builder()
+      .setComponentUuids(baseComponent.projectUuid(), componentUuids)
+      .setMetricIds(metricsById.keySet())
+      .setPersonId(developerId)
+      .build();
+
+    Table<String, MetricDto, MeasureDto> measuresByComponentUuidAndMetric = HashBasedTable.create(componentUuids.size(), metrics.size());
+    for (MeasureDto measureDto : dbClient.measureDao().selectByQuery(dbSession, measureQuery)) {
+      measuresByComponentUuidAndMetric.put(
+        measureDto.getComponentUuid(),
+        metricsById.get(measureDto.getMetricId()),
+        measureDto);
+    }
+
+    addBestValuesToMeasures(measuresByComponentUuidAndMetric, components, metrics, periods);
+
+    return measuresByComponentUuidAndMetric;
+  }
+
   @CheckForNull
   private Long searchDeveloperId(DbSession dbSession, ComponentTreeWsRequest wsRequest) {
     if (wsRequest.getDeveloperId() == null && wsRequest.getDeveloperKey() == null) {
@@ -283,6 +341,10 @@ public class ComponentTreeDataLoader {
   }
 
   private ComponentTreeQuery toComponentTreeQuery(ComponentTreeWsRequest wsRequest, ComponentDto baseComponent) {
+    return toComponentTreeQueryBuilder(wsRequest, baseComponent).build();
+  }
+
+  private ComponentTreeQuery.Builder toComponentTreeQueryBuilder(ComponentTreeWsRequest wsRequest, ComponentDto baseComponent) {
     List<String> childrenQualifiers = childrenQualifiers(wsRequest, baseComponent.qualifier());
 
     ComponentTreeQuery.Builder componentTreeQueryBuilder = ComponentTreeQuery.builder()
@@ -295,6 +357,31 @@ public class ComponentTreeDataLoader {
     if (childrenQualifiers != null) {
       componentTreeQueryBuilder.setQualifiers(childrenQualifiers);
     }
+    return componentTreeQueryBuilder;
+  }
+
+  private ComponentTreeQuery toSortedComponentTreeQuery(ComponentTreeWsRequest wsRequest, ComponentDto baseComponent, SnapshotDto baseSnapshot,
+    List<ComponentTreeQuery.Sort> sorts, List<MetricDto> metrics, List<WsMeasures.Period> periods, @Nullable Long developerId) {
+    ComponentTreeQuery.Builder componentTreeQueryBuilder = toComponentTreeQueryBuilder(wsRequest, baseComponent)
+      .setSorts(sorts);
+    String metricKeyToSort = wsRequest.getMetricSort();
+    java.util.Optional<MetricDto> metricToSort = metrics.stream().filter(metric -> metric.getKey().equals(metricKeyToSort)).findFirst();
+    if (metricToSort.isPresent()) {
+      MetricDto metric = metricToSort.get();
+      List<String> sortParameters = wsRequest.getSort();
+      Integer variationIndex = sortParameters != null && sortParameters.contains(METRIC_PERIOD_SORT) ? wsRequest.getMetricPeriodSort() : null;
+      ComponentTreeQuery.MeasureSortBuilder measureSort = ComponentTreeQuery.MeasureSort.builder()
+        .setAnalysisUuid(baseSnapshot.getUuid())
+        .setMetricId(metric.getId())
+        .setVariationIndex(variationIndex)
+        .setPersonId(developerId)
+        .setWithMeasuresOnly(componentWithMeasuresOnly(wsRequest));
+      if (MetricDtoFunctions.isOptimizedForBestValue().apply(metric)) {
+        MeasureDto bestValue = new MetricDtoToMetricDtoWithBestValue(periods).apply(metric).getBestValue();
+        measureSort.setBestValue(variationIndex == null ? bestValue.getValue() : bestValue.getVariation(variationIndex), QUALIFIERS_ELIGIBLE_FOR_BEST_VALUE);
+      }
+      componentTreeQueryBuilder.setMeasureSort(measureSort.build());
+    }
     return componentTreeQueryBuilder.build();
   }
 
@@ -24,15 +24,18 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Table;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.Metric.ValueType;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricDtoFunctions;
@@ -56,6 +59,7 @@ import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.NAME_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.PATH_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.QUALIFIER_SORT;
+import static org.sonar.server.measure.ws.ComponentTreeAction.WITH_MEASURES_ONLY_METRIC_SORT_FILTER;
 
 public class ComponentTreeSort {
 
@@ -94,6 +98,57 @@ public class ComponentTreeSort {
     return primaryOrdering.immutableSortedCopy(components);
   }
 
+  /**
+   * Translates the sort of the request into a sort executed by the database, so that only the requested page of
+   * components has to be loaded. Sorting on a metric is supported only for numerical values.
+   *
+   * @return {@link Optional#empty()} if components must be sorted in memory by {@link #sortComponents(List, ComponentTreeWsRequest, List, Table)}
+   */
+  static Optional<List<ComponentTreeQuery.Sort>> toDbSorts(ComponentTreeWsRequest wsRequest, List<MetricDto> metrics) {
+    List<String> sortParameters = wsRequest.getSort();
+    if (sortParameters == null || sortParameters.isEmpty()) {
+      return Optional.of(new ArrayList<>());
+    }
+    boolean sortOnValue = sortParameters.contains(METRIC_SORT);
+    boolean sortOnVariation = sortParameters.contains(METRIC_PERIOD_SORT);
+    boolean withMeasuresOnly = WITH_MEASURES_ONLY_METRIC_SORT_FILTER.equals(wsRequest.getMetricSortFilter());
+    if (withMeasuresOnly && !sortOnValue && !sortOnVariation) {
+      return Optional.empty();
+    }
+    if (sortOnValue || sortOnVariation) {
+      MetricDto metric = Maps.uniqueIndex(metrics, MetricDtoFunctions.toKey()).get(wsRequest.getMetricSort());
+      boolean filterOnVariation = withMeasuresOnly && wsRequest.getMetricPeriodSort() != null;
+      if (metric == null || !NUMERIC_VALUE_TYPES.contains(ValueType.valueOf(metric.getValueType()))
+        || (sortOnValue && (sortOnVariation || filterOnVariation))
+        || (sortOnVariation && wsRequest.getMetricPeriodSort() == null)) {
+        return Optional.empty();
+      }
+    }
+
+    boolean isAscending = wsRequest.getAsc();
+    List<ComponentTreeQuery.Sort> sorts = new ArrayList<>(sortParameters.size());
+    for (String sortParameter : sortParameters) {
+      sorts.add(new ComponentTreeQuery.Sort(toDbSortField(sortParameter), isAscending));
+    }
+    return Optional.of(sorts);
+  }
+
+  private static ComponentTreeQuery.SortField toDbSortField(String sortParameter) {
+    switch (sortParameter) {
+      case NAME_SORT:
+        return ComponentTreeQuery.SortField.NAME;
+      case QUALIFIER_SORT:
+        return ComponentTreeQuery.SortField.QUALIFIER;
+      case PATH_SORT:
+        return ComponentTreeQuery.SortField.PATH;
+      case METRIC_SORT:
+      case METRIC_PERIOD_SORT:
+        return ComponentTreeQuery.SortField.MEASURE;
+      default:
+        throw new IllegalArgumentException("Unknown sort: " + sortParameter);
+    }
+  }
+
   private static Ordering<ComponentDto> componentNameOrdering(boolean isAscending) {
     return stringOrdering(isAscending, ComponentDto::name);
   }
@@ -34,6 +34,7 @@ import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.permission.GroupPermissionDto;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserGroupDto;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.user.UserSession;
 import org.sonarqube.ws.Organizations.CreateWsResponse;
 
@@ -59,13 +60,16 @@ public class CreateAction implements OrganizationsAction {
   private final DbClient dbClient;
   private final UuidFactory uuidFactory;
   private final OrganizationsWsSupport wsSupport;
+  private final AuthorizationCache authorizationCache;
 
-  public CreateAction(Settings settings, UserSession userSession, DbClient dbClient, UuidFactory uuidFactory, OrganizationsWsSupport wsSupport) {
+  public CreateAction(Settings settings, UserSession userSession, DbClient dbClient, UuidFactory uuidFactory, OrganizationsWsSupport wsSupport,
+    AuthorizationCache authorizationCache) {
     this.settings = settings;
     this.userSession = userSession;
     this.dbClient = dbClient;
     this.uuidFactory = uuidFactory;
     this.wsSupport = wsSupport;
+    this.authorizationCache = authorizationCache;
   }
 
   @Override
@@ -113,6 +117,7 @@ public class CreateAction implements OrganizationsAction {
       GroupDto group = createOwnersGroup(dbSession, dto);
       addCurrentUserToGroup(dbSession, group);
       dbSession.commit();
+      authorizationCache.invalidateUser(userSession.getUserId());
 
       writeResponse(request, response, dto);
     }
@@ -0,0 +1,54 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import com.google.common.cache.CacheStats;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.source.DecoratedSourceCache;
+
+/**
+ * Usage of the cache of sources decorated as HTML
+ */
+public class SourceCacheMonitor implements Monitor {
+  private final DecoratedSourceCache cache;
+
+  public SourceCacheMonitor(DecoratedSourceCache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public String name() {
+    return "Sources Cache";
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    CacheStats stats = cache.stats();
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Max Size (MB)", cache.getMaxSizeInBytes() / (1024L * 1024L));
+    attributes.put("Entries", cache.size());
+    attributes.put("Hits", stats.hitCount());
+    attributes.put("Misses", stats.missCount());
+    attributes.put("Hit Rate (%)", Math.round(stats.hitRate() * 100));
+    attributes.put("Evictions", stats.evictionCount());
+    return attributes;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.plugins;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.sonar.api.utils.ZipUtils;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
+import org.sonar.server.platform.ServerFileSystem;
+
+import static org.apache.commons.io.FileUtils.forceMkdir;
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
+/**
+ * Directory of exploded plugin JARs, shared by web server and Compute Engine and kept across restarts.
+ * An entry is a directory named by the SHA-256 of the JAR content. It contains a copy of the JAR and
+ * the embedded libraries. An entry is verified by hashing its JAR before being used.
+ * <p/>
+ * Entries are created in a temporary directory and then moved, so that a process never sees a
+ * partially exploded plugin. A lock file prevents web server and Compute Engine from exploding the same
+ * JAR at the same time.
+ */
+public class ExplodedPluginCache {
+
+  private static final Logger LOG = Loggers.get(ExplodedPluginCache.class);
+  private static final String RELATIVE_PATH_IN_DATA_DIR = "exploded-plugins";
+  private static final String LOCK_SUFFIX = ".lock";
+  private static final String TEMP_PREFIX = "tmp_";
+
+  private final File dir;
+  private final Predicate<ZipEntry> libFilter;
+  private final Set<String> usedEntries = ConcurrentHashMap.newKeySet();
+
+  public ExplodedPluginCache(ServerFileSystem fs, Predicate<ZipEntry> libFilter) {
+    this(new File(fs.getDataDir(), RELATIVE_PATH_IN_DATA_DIR), libFilter);
+  }
+
+  ExplodedPluginCache(File dir, Predicate<ZipEntry> libFilter) {
+    this.dir = dir;
+    this.libFilter = libFilter;
+  }
+
+  /**
+   * Directory containing a copy of the JAR, with the same file name, and its libraries. The
+   * JAR is exploded only if the cache does not already contain it.
+   */
+  public File get(String pluginKey, File jar) throws IOException {
+    Profiler profiler = Profiler.create(LOG).start();
+    String hash = hash(jar);
+    File entry = new File(dir, hash);
+    usedEntries.add(hash);
+    if (isValid(entry, jar.getName(), hash)) {
+      profiler.stopDebug(String.format("Plugin %s loaded from cache", pluginKey));
+      return entry;
+    }
+
+    forceMkdir(dir);
+    File lockFile = new File(dir, hash + LOCK_SUFFIX);
+    try (FileOutputStream out = new FileOutputStream(lockFile);
+      FileLock lock = out.getChannel().lock()) {
+      // Recheck in case of concurrent processes
+      if (!isValid(entry, jar.getName(), hash)) {
+        deleteQuietly(entry);
+        File tempDir = Files.createTempDirectory(dir.toPath(), TEMP_PREFIX).toFile();
+        FileUtils.copyFile(jar, new File(tempDir, jar.getName()));
+        ZipUtils.unzip(jar, tempDir, libFilter);
+        Files.move(tempDir.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      }
+    }
+    profiler.stopInfo(String.format("Plugin %s exploded", pluginKey));
+    return entry;
+  }
+
+  /**
+   * Deletes the entries that have not been requested by {@link #get(String, File)} since this
+   * instance was created, for example the versions of plugins which have been updated or uninstalled.
+   */
+  public void purgeUnusedEntries() {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String name = file.getName();
+      String hash = name.endsWith(LOCK_SUFFIX) ? name.substring(0, name.length() - LOCK_SUFFIX.length()) : name;
+      if (!usedEntries.contains(hash)) {
+        LOG.debug("Delete unused exploded plugin {}", file.getAbsolutePath());
+        deleteQuietly(file);
+      }
+    }
+  }
+
+  private static boolean isValid(File entry, String jarName, String hash) throws IOException {
+    File jar = new File(entry, jarName);
+    return jar.isFile() && hash.equals(hash(jar));
+  }
+
+  private static String hash(File file) throws IOException {
+    try (InputStream input = new FileInputStream(file)) {
+      return DigestUtils.sha256Hex(input);
+    }
+  }
+}
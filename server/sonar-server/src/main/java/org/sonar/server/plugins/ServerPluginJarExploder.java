@@ -20,13 +20,15 @@
 package org.sonar.server.plugins;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Map;
 import org.apache.commons.io.FileUtils;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.server.ServerSide;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.core.platform.ExplodedPlugin;
 import org.sonar.core.platform.PluginInfo;
 import org.sonar.core.platform.PluginJarExploder;
+import org.sonar.core.util.stream.Collectors;
 import org.sonar.server.platform.ServerFileSystem;
 
 import static org.apache.commons.io.FileUtils.forceMkdir;
@@ -36,15 +38,18 @@ import static org.apache.commons.io.FileUtils.forceMkdir;
 public class ServerPluginJarExploder extends PluginJarExploder {
 
   private final ServerFileSystem fs;
+  private final ExplodedPluginCache cache;
 
   public ServerPluginJarExploder(ServerFileSystem fs) {
     this.fs = fs;
+    this.cache = new ExplodedPluginCache(fs, newLibFilter());
   }
 
   /**
    * JAR files of directory extensions/plugins can be moved when server is up and plugins are uninstalled.
-   * For this reason these files must not be locked by classloaders. They are copied to the directory
-   * web/deploy/plugins in order to be loaded by {@link org.sonar.core.platform.PluginLoader}.
+   * For this reason these files must not be locked by classloaders. Classloaders use the copies stored
+   * in {@link ExplodedPluginCache}. JAR files are also copied to the directory web/deploy/plugins
+   * in order to be downloaded by scanners.
    */
   @Override
   public ExplodedPlugin explode(PluginInfo pluginInfo) {
@@ -54,13 +59,25 @@ public class ServerPluginJarExploder extends PluginJarExploder {
       org.sonar.core.util.FileUtils.cleanDirectory(toDir);
 
       File jarSource = pluginInfo.getNonNullJarFile();
-      File jarTarget = new File(toDir, jarSource.getName());
-      FileUtils.copyFile(jarSource, jarTarget);
-      ZipUtils.unzip(jarSource, toDir, newLibFilter());
-      return explodeFromUnzippedDir(pluginInfo.getKey(), jarTarget, toDir);
+      FileUtils.copyFile(jarSource, new File(toDir, jarSource.getName()));
+      File explodedDir = cache.get(pluginInfo.getKey(), jarSource);
+      return explodeFromUnzippedDir(pluginInfo.getKey(), new File(explodedDir, jarSource.getName()), explodedDir);
     } catch (Exception e) {
       throw new IllegalStateException(String.format(
         "Fail to unzip plugin [%s] %s to %s", pluginInfo.getKey(), pluginInfo.getNonNullJarFile().getAbsolutePath(), toDir.getAbsolutePath()), e);
     }
   }
+
+  /**
+   * Plugins are exploded concurrently. Then the entries of cache that are not used anymore, for example
+   * by uninstalled plugins, are deleted. Compute Engine is not started yet, so it does not use them.
+   */
+  @Override
+  public Map<String, ExplodedPlugin> explodeAll(Collection<PluginInfo> infos) {
+    Map<String, ExplodedPlugin> result = infos.parallelStream()
+      .map(this::explode)
+      .collect(Collectors.uniqueIndex(ExplodedPlugin::getKey, infos.size()));
+    cache.purgeUnusedEntries();
+    return result;
+  }
 }
@@ -32,6 +32,12 @@ public interface InternalProperties {
    */
   String DEFAULT_ORGANIZATION = "organization.default";
 
+  /**
+   * Fingerprint of the rule definitions registered at the last startup.
+   * See {@link org.sonar.server.rule.RegisterRules}.
+   */
+  String RULES_FINGERPRINT = "rules.fingerprint";
+
   /**
    * Read the value of the specified property.
    *
@@ -23,7 +23,6 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.CheckForNull;
@@ -32,6 +31,7 @@ import org.sonar.api.rule.RuleKey;
 import org.sonar.api.server.ServerSide;
 import org.sonar.api.server.rule.RuleParamType;
 import org.sonar.api.utils.System2;
+import org.sonar.core.util.stream.Collectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.qualityprofile.ActiveRuleDao;
@@ -49,6 +49,7 @@ import org.sonar.server.user.UserSession;
 import org.sonar.server.util.TypeValidations;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.singletonList;
 
 /**
  * Activation and deactivation of rules in Quality profiles
@@ -77,21 +78,22 @@ public class RuleActivator {
   }
 
   public List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, String profileKey) {
-    RuleActivatorContext context = contextFactory.create(profileKey, activation.getRuleKey(), dbSession);
-    return doActivate(dbSession, activation, context);
+    return activate(dbSession, activation, contextFactory.selectProfile(dbSession, profileKey));
   }
 
   public List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, QProfileName profileName) {
-    RuleActivatorContext context = contextFactory.create(profileName, activation.getRuleKey(), dbSession);
-    return doActivate(dbSession, activation, context);
+    return activate(dbSession, activation, contextFactory.selectProfile(dbSession, profileName));
   }
 
   List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, QualityProfileDto profileDto) {
-    RuleActivatorContext context = contextFactory.create(profileDto, activation.getRuleKey(), dbSession);
-    return doActivate(dbSession, activation, context);
+    RuleActivatorCache cache = contextFactory.load(profileDto, singletonList(activation.getRuleKey()), dbSession);
+    List<ActiveRuleChange> changes = doActivate(dbSession, activation, profileDto, cache);
+    updateProfileDates(dbSession, cache);
+    return changes;
   }
 
-  private List<ActiveRuleChange> doActivate(DbSession dbSession, RuleActivation activation, RuleActivatorContext context) {
+  private List<ActiveRuleChange> doActivate(DbSession dbSession, RuleActivation activation, QualityProfileDto profile, RuleActivatorCache cache) {
+    RuleActivatorContext context = contextFactory.create(profile, activation.getRuleKey(), cache);
     context.verifyForActivation();
     List<ActiveRuleChange> changes = Lists.newArrayList();
     ActiveRuleChange change;
@@ -136,26 +138,30 @@ public class RuleActivator {
 
     if (change != null) {
       changes.add(change);
-      persist(change, context, dbSession);
+      persist(change, context, cache, dbSession);
     }
 
     if (!stopPropagation) {
-      changes.addAll(cascadeActivation(dbSession, activation, context.profile().getKey()));
+      changes.addAll(cascadeActivation(dbSession, activation, profile, cache));
     }
 
     if (!changes.isEmpty()) {
-      updateProfileDates(dbSession, context);
+      cache.markAsUpdated(profile);
     }
     return changes;
   }
 
-  private void updateProfileDates(DbSession dbSession, RuleActivatorContext context) {
-    QualityProfileDto profile = context.profile();
-    profile.setRulesUpdatedAtAsDate(context.getInitDate());
-    if (userSession.isLoggedIn()) {
-      profile.setUserUpdatedAt(context.getInitDate().getTime());
+  /**
+   * Each updated profile is persisted once, whatever the number of changed rules
+   */
+  private void updateProfileDates(DbSession dbSession, RuleActivatorCache cache) {
+    for (QualityProfileDto profile : cache.updatedProfiles()) {
+      profile.setRulesUpdatedAtAsDate(cache.getInitDate());
+      if (userSession.isLoggedIn()) {
+        profile.setUserUpdatedAt(cache.getInitDate().getTime());
+      }
+      db.qualityProfileDao().update(dbSession, profile);
     }
-    db.qualityProfileDao().update(dbSession, profile);
   }
 
   /**
@@ -228,19 +234,18 @@ public class RuleActivator {
     return null;
   }
 
-  private List<ActiveRuleChange> cascadeActivation(DbSession session, RuleActivation activation, String profileKey) {
+  private List<ActiveRuleChange> cascadeActivation(DbSession session, RuleActivation activation, QualityProfileDto profile, RuleActivatorCache cache) {
     List<ActiveRuleChange> changes = Lists.newArrayList();
 
     // get all inherited profiles
-    List<QualityProfileDto> children = db.qualityProfileDao().selectChildren(session, profileKey);
-    for (QualityProfileDto child : children) {
+    for (QualityProfileDto child : cache.children(profile.getKey())) {
       RuleActivation childActivation = new RuleActivation(activation).setCascade(true);
-      changes.addAll(activate(session, childActivation, child.getKey()));
+      changes.addAll(doActivate(session, childActivation, child, cache));
     }
     return changes;
   }
 
-  private ActiveRuleDto persist(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession) {
+  private ActiveRuleDto persist(ActiveRuleChange change, RuleActivatorContext context, RuleActivatorCache cache, DbSession dbSession) {
     ActiveRuleDto activeRule = null;
     if (change.getType() == ActiveRuleChange.Type.ACTIVATED) {
       activeRule = doInsert(change, context, dbSession);
@@ -252,6 +257,13 @@ public class RuleActivator {
       activeRule = doUpdate(change, context, dbSession);
     }
 
+    // keep the cache consistent with db for the propagation to descendants
+    if (activeRule == null) {
+      cache.removeActiveRule(change.getKey());
+    } else {
+      cache.putActiveRule(activeRule, context.activeRuleParamsAsMap().values());
+    }
+
     db.qProfileChangeDao().insert(dbSession, change.toDto(userSession.getLogin()));
     return activeRule;
   }
@@ -276,8 +288,10 @@ public class RuleActivator {
         ActiveRuleParamDto paramDto = ActiveRuleParamDto.createFor(context.ruleParamsByKeys().get(param.getKey()));
         paramDto.setValue(param.getValue());
         dao.insertParam(dbSession, activeRule, paramDto);
+        context.activeRuleParamsAsMap().put(paramDto.getKey(), paramDto);
       }
     }
+    context.setActiveRule(activeRule);
     return activeRule;
   }
 
@@ -304,6 +318,7 @@ public class RuleActivator {
             activeRuleParamDto = ActiveRuleParamDto.createFor(context.ruleParamsByKeys().get(param.getKey()));
             activeRuleParamDto.setValue(param.getValue());
             dao.insertParam(dbSession, activeRule, activeRuleParamDto);
+            context.activeRuleParamsAsMap().put(param.getKey(), activeRuleParamDto);
           }
         } else {
           if (param.getValue() != null) {
@@ -311,6 +326,7 @@ public class RuleActivator {
             dao.updateParam(dbSession, activeRule, activeRuleParamDto);
           } else {
             dao.deleteParam(dbSession, activeRule, activeRuleParamDto);
+            context.activeRuleParamsAsMap().remove(param.getKey());
           }
         }
       }
@@ -357,34 +373,36 @@ public class RuleActivator {
    * @param force if true then inherited rules are deactivated
    */
   public List<ActiveRuleChange> deactivate(DbSession dbSession, ActiveRuleKey key, boolean force) {
-    return cascadeDeactivation(key, dbSession, false, force);
+    QualityProfileDto profile = contextFactory.selectProfile(dbSession, key.qProfile());
+    RuleActivatorCache cache = contextFactory.load(profile, singletonList(key.ruleKey()), dbSession);
+    List<ActiveRuleChange> changes = cascadeDeactivation(key.ruleKey(), profile, cache, dbSession, false, force);
+    updateProfileDates(dbSession, cache);
+    return changes;
   }
 
-  private List<ActiveRuleChange> cascadeDeactivation(ActiveRuleKey key, DbSession dbSession, boolean isCascade, boolean force) {
+  private List<ActiveRuleChange> cascadeDeactivation(RuleKey ruleKey, QualityProfileDto profile, RuleActivatorCache cache, DbSession dbSession,
+    boolean isCascade, boolean force) {
     List<ActiveRuleChange> changes = Lists.newArrayList();
-    RuleActivatorContext context = contextFactory.create(key.qProfile(), key.ruleKey(), dbSession);
+    RuleActivatorContext context = contextFactory.create(profile, ruleKey, cache);
     ActiveRuleChange change;
     ActiveRuleDto activeRuleDto = context.activeRule();
     if (activeRuleDto == null) {
       return changes;
     }
     if (!force && !isCascade && activeRuleDto.getInheritance() != null) {
-      throw new BadRequestException("Cannot deactivate inherited rule '" + key.ruleKey() + "'");
+      throw new BadRequestException("Cannot deactivate inherited rule '" + ruleKey + "'");
     }
-    change = ActiveRuleChange.createFor(ActiveRuleChange.Type.DEACTIVATED, key);
+    change = ActiveRuleChange.createFor(ActiveRuleChange.Type.DEACTIVATED, context.activeRuleKey());
     changes.add(change);
-    persist(change, context, dbSession);
+    persist(change, context, cache, dbSession);
 
     // get all inherited profiles
-    List<QualityProfileDto> profiles = db.qualityProfileDao().selectChildren(dbSession, key.qProfile());
-
-    for (QualityProfileDto profile : profiles) {
-      ActiveRuleKey activeRuleKey = ActiveRuleKey.of(profile.getKey(), key.ruleKey());
-      changes.addAll(cascadeDeactivation(activeRuleKey, dbSession, true, force));
+    for (QualityProfileDto child : cache.children(profile.getKey())) {
+      changes.addAll(cascadeDeactivation(ruleKey, child, cache, dbSession, true, force));
     }
 
     if (!changes.isEmpty()) {
-      updateProfileDates(dbSession, context);
+      cache.markAsUpdated(profile);
     }
 
     return changes;
@@ -404,17 +422,21 @@ public class RuleActivator {
     return value;
   }
 
+  /**
+   * Rules, active rules and descendant profiles are loaded once for all the rules matching the query
+   */
   BulkChangeResult bulkActivate(RuleQuery ruleQuery, String profileKey, @Nullable String severity) {
     DbSession dbSession = db.openSession(false);
     BulkChangeResult result = new BulkChangeResult();
     try {
-      Iterator<RuleKey> rules = ruleIndex.searchAll(ruleQuery);
-      while (rules.hasNext()) {
-        RuleKey ruleKey = rules.next();
+      QualityProfileDto profile = contextFactory.selectProfile(dbSession, profileKey);
+      List<RuleKey> ruleKeys = newArrayList(ruleIndex.searchAll(ruleQuery));
+      RuleActivatorCache cache = contextFactory.load(profile, ruleKeys, dbSession);
+      for (RuleKey ruleKey : ruleKeys) {
         try {
           RuleActivation activation = new RuleActivation(ruleKey);
           activation.setSeverity(severity);
-          List<ActiveRuleChange> changes = activate(dbSession, activation, profileKey);
+          List<ActiveRuleChange> changes = doActivate(dbSession, activation, profile, cache);
           result.addChanges(changes);
           if (!changes.isEmpty()) {
             result.incrementSucceeded();
@@ -426,6 +448,7 @@ public class RuleActivator {
           result.getErrors().add(e.errors());
         }
       }
+      updateProfileDates(dbSession, cache);
       dbSession.commit();
       activeRuleIndexer.index(result.getChanges());
     } finally {
@@ -434,16 +457,19 @@ public class RuleActivator {
     return result;
   }
 
-  BulkChangeResult bulkDeactivate(RuleQuery ruleQuery, String profile) {
+  /**
+   * Rules, active rules and descendant profiles are loaded once for all the rules matching the query
+   */
+  BulkChangeResult bulkDeactivate(RuleQuery ruleQuery, String profileKey) {
     DbSession dbSession = db.openSession(false);
     BulkChangeResult result = new BulkChangeResult();
     try {
-      Iterator<RuleKey> rules = ruleIndex.searchAll(ruleQuery);
-      while (rules.hasNext()) {
+      QualityProfileDto profile = contextFactory.selectProfile(dbSession, profileKey);
+      List<RuleKey> ruleKeys = newArrayList(ruleIndex.searchAll(ruleQuery));
+      RuleActivatorCache cache = contextFactory.load(profile, ruleKeys, dbSession);
+      for (RuleKey ruleKey : ruleKeys) {
         try {
-          RuleKey ruleKey = rules.next();
-          ActiveRuleKey key = ActiveRuleKey.of(profile, ruleKey);
-          List<ActiveRuleChange> changes = deactivate(dbSession, key);
+          List<ActiveRuleChange> changes = cascadeDeactivation(ruleKey, profile, cache, dbSession, false, false);
           result.addChanges(changes);
           if (!changes.isEmpty()) {
             result.incrementSucceeded();
@@ -454,6 +480,7 @@ public class RuleActivator {
           result.getErrors().add(e.errors());
         }
       }
+      updateProfileDates(dbSession, cache);
       dbSession.commit();
       activeRuleIndexer.index(result.getChanges());
       return result;
@@ -479,15 +506,19 @@ public class RuleActivator {
       // set new parent
       profile.setParentKee(parentKey);
       db.qualityProfileDao().update(dbSession, profile);
-      for (ActiveRuleDto parentActiveRule : db.activeRuleDao().selectByProfileKey(dbSession, parentKey)) {
+      List<RuleKey> parentRuleKeys = db.activeRuleDao().selectByProfileKey(dbSession, parentKey).stream()
+        .map(activeRule -> activeRule.getKey().ruleKey())
+        .collect(Collectors.toList());
+      RuleActivatorCache cache = contextFactory.load(profile, parentRuleKeys, dbSession);
+      for (RuleKey ruleKey : parentRuleKeys) {
         try {
-          RuleActivation activation = new RuleActivation(parentActiveRule.getKey().ruleKey());
-          changes.addAll(activate(dbSession, activation, profileKey));
+          changes.addAll(doActivate(dbSession, new RuleActivation(ruleKey), profile, cache));
         } catch (BadRequestException e) {
           // for example because rule status is REMOVED
           // TODO return errors
         }
       }
+      updateProfileDates(dbSession, cache);
     }
     dbSession.commit();
     activeRuleIndexer.index(changes);
@@ -21,7 +21,6 @@ package org.sonar.server.qualityprofile;
 
 import com.google.common.collect.Maps;
 import java.util.Collection;
-import java.util.Date;
 import java.util.Map;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -37,7 +36,6 @@ import org.sonar.server.exceptions.BadRequestException;
 
 class RuleActivatorContext {
 
-  private final Date initDate = new Date();
   private RuleDto rule;
   private final Map<String, RuleParamDto> ruleParams = Maps.newHashMap();
   private QualityProfileDto profile;
@@ -62,10 +60,6 @@ class RuleActivatorContext {
     return this;
   }
 
-  Date getInitDate() {
-    return initDate;
-  }
-
   Map<String, RuleParamDto> ruleParamsByKeys() {
     return ruleParams;
   }
@@ -19,10 +19,13 @@
  */
 package org.sonar.server.qualityprofile;
 
-import com.google.common.base.Optional;
+import com.google.common.collect.Multimap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.server.ServerSide;
+import org.sonar.core.util.stream.Collectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.qualityprofile.ActiveRuleDto;
@@ -30,6 +33,7 @@ import org.sonar.db.qualityprofile.ActiveRuleKey;
 import org.sonar.db.qualityprofile.ActiveRuleParamDto;
 import org.sonar.db.qualityprofile.QualityProfileDto;
 import org.sonar.db.rule.RuleDto;
+import org.sonar.db.rule.RuleParamDto;
 import org.sonar.server.exceptions.BadRequestException;
 
 @ServerSide
@@ -41,63 +45,86 @@ public class RuleActivatorContextFactory {
     this.db = db;
   }
 
-  RuleActivatorContext create(String profileKey, RuleKey ruleKey, DbSession session) {
-    RuleActivatorContext context = new RuleActivatorContext();
+  QualityProfileDto selectProfile(DbSession session, String profileKey) {
     QualityProfileDto profile = db.qualityProfileDao().selectByKey(session, profileKey);
     if (profile == null) {
       throw new BadRequestException("Quality profile not found: " + profileKey);
     }
-    context.setProfile(profile);
-    return create(ruleKey, session, context);
+    return profile;
   }
 
-  RuleActivatorContext create(QProfileName profileName, RuleKey ruleKey, DbSession session) {
-    RuleActivatorContext context = new RuleActivatorContext();
+  QualityProfileDto selectProfile(DbSession session, QProfileName profileName) {
     QualityProfileDto profile = db.qualityProfileDao().selectByNameAndLanguage(profileName.getName(), profileName.getLanguage(), session);
     if (profile == null) {
       throw new BadRequestException("Quality profile not found: " + profileName);
     }
-    context.setProfile(profile);
-    return create(ruleKey, session, context);
+    return profile;
   }
 
-  RuleActivatorContext create(QualityProfileDto profile, RuleKey ruleKey, DbSession session) {
-    return create(ruleKey, session, new RuleActivatorContext().setProfile(profile));
-  }
-
-  private RuleActivatorContext create(RuleKey ruleKey, DbSession session, RuleActivatorContext context) {
-    initRule(ruleKey, context, session);
-    initActiveRules(context.profile().getKey(), ruleKey, context, session, false);
-    String parentKee = context.profile().getParentKee();
+  /**
+   * Loads the descendants of the profile, the rules and their active rules on the profile, on its parent
+   * and on its descendants. The number of queries does not depend on the number of rules.
+   */
+  RuleActivatorCache load(QualityProfileDto profile, Collection<RuleKey> ruleKeys, DbSession session) {
+    RuleActivatorCache cache = new RuleActivatorCache();
+    List<String> profileKeys = new ArrayList<>();
+    profileKeys.add(profile.getKey());
+    String parentKee = profile.getParentKee();
     if (parentKee != null) {
-      initActiveRules(parentKee, ruleKey, context, session, true);
+      profileKeys.add(parentKee);
+    }
+    for (QualityProfileDto descendant : db.qualityProfileDao().selectDescendants(session, profile.getKey())) {
+      cache.addDescendant(descendant);
+      profileKeys.add(descendant.getKey());
+    }
+    if (ruleKeys.isEmpty()) {
+      return cache;
     }
-    return context;
-  }
 
-  private RuleDto initRule(RuleKey ruleKey, RuleActivatorContext context, DbSession dbSession) {
-    Optional<RuleDto> rule = db.ruleDao().selectByKey(dbSession, ruleKey);
-    if (!rule.isPresent()) {
-      throw new BadRequestException("Rule not found: " + ruleKey);
+    List<RuleKey> keys = new ArrayList<>(ruleKeys);
+    List<RuleDto> rules = db.ruleDao().selectByKeys(session, keys);
+    Multimap<Integer, RuleParamDto> ruleParamsByRuleId = db.ruleDao().selectRuleParamsByRuleKeys(session, keys)
+      .stream()
+      .collect(Collectors.index(RuleParamDto::getRuleId));
+    for (RuleDto rule : rules) {
+      cache.addRule(rule, ruleParamsByRuleId.get(rule.getId()));
     }
-    context.setRule(rule.get());
-    context.setRuleParams(db.ruleDao().selectRuleParamsByRuleKey(dbSession, rule.get().getKey()));
-    return rule.get();
+
+    List<Integer> ruleIds = rules.stream().map(RuleDto::getId).collect(Collectors.toList(rules.size()));
+    List<ActiveRuleDto> activeRules = db.activeRuleDao().selectByRuleIdsAndProfileKeys(session, ruleIds, profileKeys);
+    List<Integer> activeRuleIds = activeRules.stream().map(ActiveRuleDto::getId).collect(Collectors.toList(activeRules.size()));
+    Multimap<Integer, ActiveRuleParamDto> activeRuleParamsByActiveRuleId = db.activeRuleDao().selectParamsByActiveRuleIds(session, activeRuleIds)
+      .stream()
+      .collect(Collectors.index(ActiveRuleParamDto::getActiveRuleId));
+    for (ActiveRuleDto activeRule : activeRules) {
+      cache.putActiveRule(activeRule, activeRuleParamsByActiveRuleId.get(activeRule.getId()));
+    }
+    return cache;
   }
 
-  private void initActiveRules(String profileKey, RuleKey ruleKey, RuleActivatorContext context, DbSession session, boolean parent) {
-    ActiveRuleKey key = ActiveRuleKey.of(profileKey, ruleKey);
-    Optional<ActiveRuleDto> activeRule = db.activeRuleDao().selectByKey(session, key);
-    Collection<ActiveRuleParamDto> activeRuleParams = null;
-    if (activeRule.isPresent()) {
-      activeRuleParams = db.activeRuleDao().selectParamsByActiveRuleId(session, activeRule.get().getId());
+  /**
+   * Creates the context of the rule on a profile of the hierarchy loaded by {@link #load(QualityProfileDto, Collection, DbSession)}.
+   */
+  RuleActivatorContext create(QualityProfileDto profile, RuleKey ruleKey, RuleActivatorCache cache) {
+    RuleDto rule = cache.rule(ruleKey);
+    if (rule == null) {
+      throw new BadRequestException("Rule not found: " + ruleKey);
     }
-    if (parent) {
-      context.setParentActiveRule(activeRule.orNull());
-      context.setParentActiveRuleParams(activeRuleParams);
-    } else {
-      context.setActiveRule(activeRule.orNull());
-      context.setActiveRuleParams(activeRuleParams);
+    RuleActivatorContext context = new RuleActivatorContext()
+      .setProfile(profile)
+      .setRule(rule)
+      .setRuleParams(cache.ruleParams(rule));
+
+    ActiveRuleDto activeRule = cache.activeRule(ActiveRuleKey.of(profile.getKey(), ruleKey));
+    context.setActiveRule(activeRule);
+    context.setActiveRuleParams(activeRule == null ? null : cache.activeRuleParams(activeRule));
+
+    String parentKee = profile.getParentKee();
+    if (parentKee != null) {
+      ActiveRuleDto parentActiveRule = cache.activeRule(ActiveRuleKey.of(parentKee, ruleKey));
+      context.setParentActiveRule(parentActiveRule);
+      context.setParentActiveRuleParams(parentActiveRule == null ? null : cache.activeRuleParams(parentActiveRule));
     }
+    return context;
   }
 }
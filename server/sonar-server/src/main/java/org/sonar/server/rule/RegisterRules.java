@@ -20,21 +20,24 @@
 package org.sonar.server.rule;
 
 import com.google.common.base.Function;
-import com.google.common.base.Optional;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
+import org.sonar.api.SonarRuntime;
 import org.sonar.api.resources.Languages;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.RuleStatus;
@@ -54,6 +57,7 @@ import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleDto.Format;
 import org.sonar.db.rule.RuleParamDto;
 import org.sonar.db.rule.RuleRepositoryDto;
+import org.sonar.server.property.InternalProperties;
 import org.sonar.server.qualityprofile.ActiveRuleChange;
 import org.sonar.server.qualityprofile.RuleActivator;
 import org.sonar.server.qualityprofile.index.ActiveRuleIndexer;
@@ -64,7 +68,8 @@ import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.intersection;
 
 /**
- * Register rules at server startup
+ * Register rules at server startup. Registration is skipped when the rule definitions did not change since
+ * the last startup, see {@link RuleDefinitionsFingerprint}.
  */
 public class RegisterRules implements Startable {
 
@@ -77,9 +82,10 @@ public class RegisterRules implements Startable {
   private final ActiveRuleIndexer activeRuleIndexer;
   private final Languages languages;
   private final System2 system2;
+  private final SonarRuntime runtime;
 
   public RegisterRules(RuleDefinitionsLoader defLoader, RuleActivator ruleActivator, DbClient dbClient, RuleIndexer ruleIndexer,
-    ActiveRuleIndexer activeRuleIndexer, Languages languages, System2 system2) {
+    ActiveRuleIndexer activeRuleIndexer, Languages languages, System2 system2, SonarRuntime runtime) {
     this.defLoader = defLoader;
     this.ruleActivator = ruleActivator;
     this.dbClient = dbClient;
@@ -87,37 +93,80 @@ public class RegisterRules implements Startable {
     this.activeRuleIndexer = activeRuleIndexer;
     this.languages = languages;
     this.system2 = system2;
+    this.runtime = runtime;
   }
 
   @Override
   public void start() {
     Profiler profiler = Profiler.create(LOG).startInfo("Register rules");
-    DbSession session = dbClient.openSession(false);
-    try {
-      Map<RuleKey, RuleDto> allRules = loadRules(session);
-
+    try (DbSession session = dbClient.openSession(false)) {
       RulesDefinition.Context context = defLoader.load();
-      for (RulesDefinition.ExtendedRepository repoDef : getRepositories(context)) {
-        if (languages.get(repoDef.language()) != null) {
-          for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
-            registerRule(ruleDef, allRules, session);
-          }
-          session.commit();
-        }
+      String fingerprint = RuleDefinitionsFingerprint.compute(context, languages, runtime.getApiVersion());
+      Optional<String> registeredFingerprint = dbClient.internalPropertiesDao().selectByKey(session, InternalProperties.RULES_FINGERPRINT);
+      if (registeredFingerprint.isPresent() && registeredFingerprint.get().equals(fingerprint)) {
+        LOG.info("Rule definitions did not change, registration is skipped");
+        // indexing is incremental, it only recovers rules that could not be indexed previously
+        ruleIndexer.index();
+        profiler.stopDebug();
+        return;
       }
-      List<RuleDto> activeRules = processRemainingDbRules(allRules.values(), session);
-      List<ActiveRuleChange> changes = removeActiveRulesOnStillExistingRepositories(session, activeRules, context);
+
+      List<ActiveRuleChange> changes = register(session, context);
+      dbClient.internalPropertiesDao().save(session, InternalProperties.RULES_FINGERPRINT, fingerprint);
       session.commit();
 
-      persistRepositories(session, context.repositories());
       ruleIndexer.index();
       activeRuleIndexer.index(changes);
       profiler.stopDebug();
-    } finally {
-      session.close();
     }
   }
 
+  private List<ActiveRuleChange> register(DbSession session, RulesDefinition.Context context) {
+    Map<RuleKey, RuleDto> allRules = loadRules(session);
+    Map<Integer, RuleDto> allRulesById = allRules.values().stream().collect(Collectors.uniqueIndex(RuleDto::getId));
+    RegistrationContext registration = new RegistrationContext(loadRuleParams(session, allRulesById.keySet()));
+
+    for (RulesDefinition.ExtendedRepository repoDef : getRepositories(context)) {
+      if (languages.get(repoDef.language()) != null) {
+        for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
+          registerRule(ruleDef, allRules, registration, session);
+        }
+        session.commit();
+      }
+    }
+    propagateDefaultValuesOfNewParams(session, registration);
+    List<RuleDto> removedRules = processRemainingDbRules(allRules.values(), allRulesById, session);
+    List<ActiveRuleChange> changes = removeActiveRulesOnStillExistingRepositories(session, removedRules, context);
+    session.commit();
+
+    persistRepositories(session, context.repositories());
+    return changes;
+  }
+
+  private Multimap<Integer, RuleParamDto> loadRuleParams(DbSession session, Collection<Integer> ruleIds) {
+    return dbClient.ruleDao().selectRuleParamsByRuleIds(session, new ArrayList<>(ruleIds))
+      .stream()
+      .collect(Collectors.index(RuleParamDto::getRuleId));
+  }
+
+  /**
+   * Default values of the parameters added to existing rules are copied to the related active rules.
+   * Active rules are loaded in a single pass once all the rules are registered.
+   */
+  private void propagateDefaultValuesOfNewParams(DbSession session, RegistrationContext registration) {
+    if (registration.newParamsWithDefaultValue.isEmpty()) {
+      return;
+    }
+    List<ActiveRuleDto> activeRules = dbClient.activeRuleDao().selectByRuleIds(session, new ArrayList<>(registration.newParamsWithDefaultValue.keySet()));
+    for (ActiveRuleDto activeRule : activeRules) {
+      for (RuleParamDto paramDto : registration.newParamsWithDefaultValue.get(activeRule.getRuleId())) {
+        ActiveRuleParamDto activeParam = ActiveRuleParamDto.createFor(paramDto).setValue(paramDto.getDefaultValue());
+        dbClient.activeRuleDao().insertParam(session, activeRule, activeParam);
+      }
+    }
+    session.commit();
+  }
+
   private void persistRepositories(DbSession dbSession, List<RulesDefinition.Repository> repositories) {
     dbClient.ruleRepositoryDao().truncate(dbSession);
     List<RuleRepositoryDto> dtos = repositories
@@ -133,10 +182,11 @@ public class RegisterRules implements Startable {
     // nothing
   }
 
-  private void registerRule(RulesDefinition.Rule ruleDef, Map<RuleKey, RuleDto> allRules, DbSession session) {
+  private void registerRule(RulesDefinition.Rule ruleDef, Map<RuleKey, RuleDto> allRules, RegistrationContext registration, DbSession session) {
     RuleKey ruleKey = RuleKey.of(ruleDef.repository().key(), ruleDef.key());
 
-    RuleDto rule = allRules.containsKey(ruleKey) ? allRules.remove(ruleKey) : createRuleDto(ruleDef, session);
+    RuleDto existingRule = allRules.remove(ruleKey);
+    RuleDto rule = existingRule == null ? createRuleDto(ruleDef, session) : existingRule;
 
     boolean executeUpdate = false;
     if (mergeRule(ruleDef, rule)) {
@@ -155,7 +205,11 @@ public class RegisterRules implements Startable {
       update(session, rule);
     }
 
-    mergeParams(ruleDef, rule, session);
+    if (existingRule == null) {
+      insertParams(ruleDef, rule, session);
+    } else {
+      mergeParams(ruleDef, rule, registration, session);
+    }
   }
 
   private Map<RuleKey, RuleDto> loadRules(DbSession session) {
@@ -296,8 +350,14 @@ public class RegisterRules implements Startable {
     return changed;
   }
 
-  private void mergeParams(RulesDefinition.Rule ruleDef, RuleDto rule, DbSession session) {
-    List<RuleParamDto> paramDtos = dbClient.ruleDao().selectRuleParamsByRuleKey(session, rule.getKey());
+  private void insertParams(RulesDefinition.Rule ruleDef, RuleDto rule, DbSession session) {
+    for (RulesDefinition.Param param : ruleDef.params()) {
+      dbClient.ruleDao().insertRuleParam(session, rule, createParamDto(rule, param));
+    }
+  }
+
+  private void mergeParams(RulesDefinition.Rule ruleDef, RuleDto rule, RegistrationContext registration, DbSession session) {
+    Collection<RuleParamDto> paramDtos = registration.paramsByRuleId.get(rule.getId());
     Map<String, RuleParamDto> existingParamsByName = Maps.newHashMap();
 
     for (RuleParamDto paramDto : paramDtos) {
@@ -319,23 +379,23 @@ public class RegisterRules implements Startable {
       if (paramDto != null) {
         continue;
       }
-      paramDto = RuleParamDto.createFor(rule)
-        .setName(param.key())
-        .setDescription(param.description())
-        .setDefaultValue(param.defaultValue())
-        .setType(param.type().toString());
+      paramDto = createParamDto(rule, param);
       dbClient.ruleDao().insertRuleParam(session, rule, paramDto);
-      if (StringUtils.isEmpty(param.defaultValue())) {
-        continue;
-      }
-      // Propagate the default value to existing active rule parameters
-      for (ActiveRuleDto activeRule : dbClient.activeRuleDao().selectByRuleId(session, rule.getId())) {
-        ActiveRuleParamDto activeParam = ActiveRuleParamDto.createFor(paramDto).setValue(param.defaultValue());
-        dbClient.activeRuleDao().insertParam(session, activeRule, activeParam);
+      if (!StringUtils.isEmpty(param.defaultValue())) {
+        // the default value is propagated to existing active rule parameters
+        registration.newParamsWithDefaultValue.put(rule.getId(), paramDto);
       }
     }
   }
 
+  private static RuleParamDto createParamDto(RuleDto rule, RulesDefinition.Param param) {
+    return RuleParamDto.createFor(rule)
+      .setName(param.key())
+      .setDescription(param.description())
+      .setDefaultValue(param.defaultValue())
+      .setType(param.type().toString());
+  }
+
   private boolean mergeParam(RuleParamDto paramDto, RulesDefinition.Param paramDef) {
     boolean changed = false;
     if (!StringUtils.equals(paramDto.getType(), paramDef.type().toString())) {
@@ -370,7 +430,7 @@ public class RegisterRules implements Startable {
     return changed;
   }
 
-  private List<RuleDto> processRemainingDbRules(Collection<RuleDto> existingRules, DbSession session) {
+  private List<RuleDto> processRemainingDbRules(Collection<RuleDto> existingRules, Map<Integer, RuleDto> allRulesById, DbSession session) {
     // custom rules check status of template, so they must be processed at the end
     List<RuleDto> customRules = newArrayList();
     List<RuleDto> removedRules = newArrayList();
@@ -386,9 +446,10 @@ public class RegisterRules implements Startable {
     for (RuleDto customRule : customRules) {
       Integer templateId = customRule.getTemplateId();
       checkNotNull(templateId, "Template id of the custom rule '%s' is null", customRule);
-      Optional<RuleDto> template = dbClient.ruleDao().selectById(templateId, session);
-      if (template.isPresent() && template.get().getStatus() != RuleStatus.REMOVED) {
-        if (updateCustomRuleFromTemplateRule(customRule, template.get())) {
+      // templates are loaded at the beginning of registration, then updated in place
+      RuleDto template = allRulesById.get(templateId);
+      if (template != null && template.getStatus() != RuleStatus.REMOVED) {
+        if (updateCustomRuleFromTemplateRule(customRule, template)) {
           update(session, customRule);
         }
       } else {
@@ -482,4 +543,13 @@ public class RegisterRules implements Startable {
     rule.setUpdatedAt(system2.now());
     dbClient.ruleDao().update(session, rule);
   }
+
+  private static class RegistrationContext {
+    private final Multimap<Integer, RuleParamDto> paramsByRuleId;
+    private final Multimap<Integer, RuleParamDto> newParamsWithDefaultValue = ArrayListMultimap.create();
+
+    private RegistrationContext(Multimap<Integer, RuleParamDto> paramsByRuleId) {
+      this.paramsByRuleId = paramsByRuleId;
+    }
+  }
 }
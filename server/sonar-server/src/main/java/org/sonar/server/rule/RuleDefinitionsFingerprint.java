@@ -0,0 +1,112 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.rule;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.resources.Languages;
+import org.sonar.api.server.debt.DebtRemediationFunction;
+import org.sonar.api.server.rule.RulesDefinition;
+import org.sonar.api.utils.Version;
+
+/**
+ * Hash of all the attributes of rule definitions that are persisted by {@link RegisterRules}. The version
+ * of server is part of the hash, so that db migrations of an upgrade are always followed by a full registration.
+ */
+class RuleDefinitionsFingerprint {
+
+  private static final byte SEPARATOR = 0;
+
+  private final MessageDigest digest = DigestUtils.getSha256Digest();
+
+  private RuleDefinitionsFingerprint() {
+    // use compute()
+  }
+
+  static String compute(RulesDefinition.Context context, Languages languages, Version version) {
+    RuleDefinitionsFingerprint fingerprint = new RuleDefinitionsFingerprint();
+    fingerprint.add(version.toString());
+    List<RulesDefinition.ExtendedRepository> repositories = new ArrayList<>(context.repositories());
+    repositories.addAll(context.extendedRepositories());
+    repositories.sort(Comparator.comparing(RulesDefinition.ExtendedRepository::key).thenComparing(r -> r instanceof RulesDefinition.Repository));
+    for (RulesDefinition.ExtendedRepository repository : repositories) {
+      fingerprint.add(repository, languages.get(repository.language()) != null);
+    }
+    return Hex.encodeHexString(fingerprint.digest.digest());
+  }
+
+  private void add(RulesDefinition.ExtendedRepository repository, boolean languageInstalled) {
+    add(repository.key());
+    add(repository.language());
+    add(String.valueOf(languageInstalled));
+    if (repository instanceof RulesDefinition.Repository) {
+      add(((RulesDefinition.Repository) repository).name());
+    }
+    List<RulesDefinition.Rule> rules = new ArrayList<>(repository.rules());
+    rules.sort(Comparator.comparing(RulesDefinition.Rule::key));
+    for (RulesDefinition.Rule rule : rules) {
+      add(rule);
+    }
+  }
+
+  private void add(RulesDefinition.Rule rule) {
+    add(rule.key());
+    add(rule.name());
+    add(rule.htmlDescription());
+    add(rule.markdownDescription());
+    add(rule.internalKey());
+    add(rule.severity());
+    add(String.valueOf(rule.template()));
+    add(rule.status().name());
+    add(rule.type().name());
+    DebtRemediationFunction function = rule.debtRemediationFunction();
+    if (function != null) {
+      add(function.type().name());
+      add(function.gapMultiplier());
+      add(function.baseEffort());
+    }
+    add(rule.gapDescription());
+    for (String tag : new TreeSet<>(rule.tags())) {
+      add(tag);
+    }
+    List<RulesDefinition.Param> params = new ArrayList<>(rule.params());
+    params.sort(Comparator.comparing(RulesDefinition.Param::key));
+    for (RulesDefinition.Param param : params) {
+      add(param.key());
+      add(param.type().toString());
+      add(param.defaultValue());
+      add(param.description());
+    }
+  }
+
+  private void add(@Nullable String s) {
+    if (s != null) {
+      digest.update(s.getBytes(StandardCharsets.UTF_8));
+    }
+    digest.update(SEPARATOR);
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+
+import static java.lang.String.format;
+
+/**
+ * Cache of the lines of sources decorated as HTML. As the sources of a file are immutable as long as
+ * column FILE_SOURCES.DATA_HASH does not change, entries are keyed by data hash and range of lines. Entries of
+ * previous versions of a file are never requested again and are evicted when the cache is full. Size of
+ * cache is bounded by the estimated memory used by the decorated lines.
+ */
+@Properties({
+  @Property(
+    key = DecoratedSourceCache.PROPERTY_MAX_SIZE_IN_MB,
+    defaultValue = "" + DecoratedSourceCache.DEFAULT_MAX_SIZE_IN_MB,
+    name = "Maximum size of the cache of sources decorated as HTML, in MB. Zero disables the cache.",
+    global = false)
+})
+@ServerSide
+public class DecoratedSourceCache {
+
+  public static final String PROPERTY_MAX_SIZE_IN_MB = "sonar.web.sourceCache.maxSizeInMb";
+  static final int DEFAULT_MAX_SIZE_IN_MB = 32;
+
+  // estimation of the memory used by the references to a line and by the key
+  private static final int LINE_OVERHEAD_IN_BYTES = 48;
+  private static final int ENTRY_OVERHEAD_IN_BYTES = 128;
+
+  private final long maxSizeInBytes;
+  private final Cache<Key, List<String>> cache;
+
+  public DecoratedSourceCache(Settings settings) {
+    this.maxSizeInBytes = Math.max(0L, settings.getLong(PROPERTY_MAX_SIZE_IN_MB)) * 1024L * 1024L;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxSizeInBytes)
+      .weigher(DecoratedSourceCache::weigh)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Get the decorated lines of the range {@code [from, toInclusive]} of the sources identified by {@code dataHash}.
+   * Lines are decorated by {@code decorator} if they are not in cache. Cache is bypassed when {@code dataHash} is null.
+   */
+  public List<String> get(@Nullable String dataHash, int from, int toInclusive, Supplier<List<String>> decorator) {
+    if (dataHash == null || maxSizeInBytes == 0L) {
+      return decorator.get();
+    }
+    try {
+      return cache.get(new Key(dataHash, from, toInclusive), decorator::get);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(format("Fail to decorate lines %d to %d of source %s", from, toInclusive, dataHash), e.getCause());
+    }
+  }
+
+  public long getMaxSizeInBytes() {
+    return maxSizeInBytes;
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  private static int weigh(Key key, List<String> lines) {
+    long weight = ENTRY_OVERHEAD_IN_BYTES + 2L * key.dataHash.length();
+    for (String line : lines) {
+      weight += LINE_OVERHEAD_IN_BYTES + (line == null ? 0 : (2L * line.length()));
+    }
+    return (int) Math.min(Integer.MAX_VALUE, weight);
+  }
+
+  private static final class Key {
+    private final String dataHash;
+    private final int from;
+    private final int toInclusive;
+
+    private Key(String dataHash, int from, int toInclusive) {
+      this.dataHash = dataHash;
+      this.from = from;
+      this.toInclusive = toInclusive;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return from == key.from && toInclusive == key.toInclusive && dataHash.equals(key.dataHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(dataHash, from, toInclusive);
+    }
+  }
+}
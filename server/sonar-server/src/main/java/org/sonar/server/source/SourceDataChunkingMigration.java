@@ -0,0 +1,146 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.picocontainer.Startable;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.server.property.InternalProperties;
+
+/**
+ * Rewrites, in background, the sources stored in the legacy single-block format of column
+ * FILE_SOURCES.BINARY_DATA into the chunked format, so that line-range reads only decode the
+ * chunks they need. Both formats are supported when reading, so the server is fully functional
+ * while the migration is running. Rows updated concurrently by the Compute Engine are skipped,
+ * as they are already written in the new format.
+ */
+@ServerSide
+public class SourceDataChunkingMigration implements Startable {
+
+  static final String DONE_PROPERTY = "fileSources.chunkedFormat.migrated";
+  static final int BATCH_SIZE = 100;
+
+  private static final Logger LOG = Loggers.get(SourceDataChunkingMigration.class);
+  private static final String THREAD_NAME_PREFIX = "sq-source-data-migration-";
+
+  private final DbClient dbClient;
+  private final InternalProperties internalProperties;
+
+  private ExecutorService executorService;
+  private volatile boolean stopping = false;
+
+  public SourceDataChunkingMigration(DbClient dbClient, InternalProperties internalProperties) {
+    this.dbClient = dbClient;
+    this.internalProperties = internalProperties;
+  }
+
+  @Override
+  public void start() {
+    if (internalProperties.read(DONE_PROPERTY).isPresent()) {
+      return;
+    }
+    executorService = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder()
+        .setNameFormat(THREAD_NAME_PREFIX + "%d")
+        .setPriority(Thread.MIN_PRIORITY)
+        .setDaemon(true)
+        .build());
+    executorService.submit(() -> {
+      try {
+        migrate();
+      } catch (Exception e) {
+        LOG.error("Fail to migrate sources to chunked format. Migration will be resumed at next startup.", e);
+      }
+    });
+  }
+
+  @Override
+  public void stop() {
+    if (executorService == null) {
+      return;
+    }
+    try {
+      stopping = true;
+      executorService.shutdown();
+      executorService.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      LOG.error("Error during stop of migration of sources", e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @return the number of converted rows
+   */
+  @VisibleForTesting
+  long migrate() {
+    LOG.info("Migrating sources to chunked format");
+    long lastId = 0L;
+    long converted = 0L;
+    List<FileSourceDto> batch;
+    do {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        batch = dbClient.fileSourceDao().selectSourcesAfterId(dbSession, lastId, BATCH_SIZE);
+        for (FileSourceDto dto : batch) {
+          lastId = dto.getId();
+          if (convert(dbSession, dto)) {
+            converted++;
+          }
+        }
+        dbSession.commit();
+      }
+      if (stopping) {
+        LOG.info("Migration of sources to chunked format interrupted after {} files. It will be resumed at next startup.", converted);
+        return converted;
+      }
+    } while (batch.size() == BATCH_SIZE);
+
+    internalProperties.write(DONE_PROPERTY, String.valueOf(true));
+    LOG.info("Migration of sources to chunked format done ({} files)", converted);
+    return converted;
+  }
+
+  private boolean convert(DbSession dbSession, FileSourceDto dto) {
+    byte[] binaryData = dto.getBinaryData();
+    if (binaryData == null || FileSourceDto.isChunkedSourceData(binaryData)) {
+      return false;
+    }
+    byte[] chunkedData;
+    try {
+      chunkedData = FileSourceDto.encodeSourceData(dto.decodeSourceData(binaryData));
+    } catch (RuntimeException e) {
+      // a corrupted row must not prevent the migration from completing. It is kept as is.
+      LOG.warn("Fail to convert source of file {} (id {}) to chunked format. It is ignored.", dto.getFileUuid(), dto.getId(), e);
+      return false;
+    }
+    return dbClient.fileSourceDao().updateBinaryDataIfDataHash(dbSession, dto.getId(), dto.getDataHash(), chunkedData, DigestUtils.md5Hex(chunkedData));
+  }
+}
@@ -25,6 +25,9 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -35,10 +38,12 @@ public class SourceService {
 
   private final DbClient dbClient;
   private final HtmlSourceDecorator htmlDecorator;
+  private final DecoratedSourceCache decoratedSourceCache;
 
-  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator) {
+  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator, DecoratedSourceCache decoratedSourceCache) {
     this.dbClient = dbClient;
     this.htmlDecorator = htmlDecorator;
+    this.decoratedSourceCache = decoratedSourceCache;
   }
 
   /**
@@ -59,29 +64,65 @@ public class SourceService {
   }
 
   public Optional<Iterable<String>> getLinesAsHtml(DbSession dbSession, String fileUuid, int from, int toInclusive) {
-    return getLines(dbSession, fileUuid, from, toInclusive, lineToHtml());
+    Optional<List<DecoratedLine>> lines = getDecoratedLines(dbSession, fileUuid, from, toInclusive);
+    if (!lines.isPresent()) {
+      return Optional.absent();
+    }
+    return Optional.of(FluentIterable.from(lines.get()).transform(DecoratedLine::getHtml));
+  }
+
+  /**
+   * Returns a range of lines as raw db data, along with the source of each line decorated as HTML.
+   * Decorated lines are cached as long as sources of file are not updated.
+   * @see #getLines(DbSession, String, int, int)
+   */
+  public Optional<List<DecoratedLine>> getDecoratedLines(DbSession dbSession, String fileUuid, int from, int toInclusive) {
+    FileSourceDto dto = selectSource(dbSession, fileUuid, from, toInclusive);
+    if (dto == null) {
+      return Optional.absent();
+    }
+    List<DbFileSources.Line> lines = linesInRange(dto, from, toInclusive).toList();
+    List<String> htmlLines = decoratedSourceCache.get(dto.getDataHash(), from, toInclusive, () -> decorate(lines));
+    List<DecoratedLine> result = new ArrayList<>(lines.size());
+    for (int i = 0; i < lines.size(); i++) {
+      result.add(new DecoratedLine(lines.get(i), htmlLines.get(i)));
+    }
+    return Optional.of(result);
   }
 
   private <E> Optional<Iterable<E>> getLines(DbSession dbSession, String fileUuid, int from, int toInclusive, Function<DbFileSources.Line, E> function) {
-    verifyLine(from);
-    Preconditions.checkArgument(toInclusive >= from, String.format("Line number must greater than or equal to %d, got %d", from, toInclusive));
-    FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
+    FileSourceDto dto = selectSource(dbSession, fileUuid, from, toInclusive);
     if (dto == null) {
       return Optional.absent();
     }
-    DbFileSources.Data data = dto.getSourceData();
-    return Optional.of(FluentIterable.from(data.getLinesList())
+    return Optional.of(linesInRange(dto, from, toInclusive).transform(function));
+  }
+
+  @CheckForNull
+  private FileSourceDto selectSource(DbSession dbSession, String fileUuid, int from, int toInclusive) {
+    verifyLine(from);
+    Preconditions.checkArgument(toInclusive >= from, String.format("Line number must greater than or equal to %d, got %d", from, toInclusive));
+    return dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
+  }
+
+  private static FluentIterable<DbFileSources.Line> linesInRange(FileSourceDto dto, int from, int toInclusive) {
+    // only the chunks containing the requested lines are decoded
+    DbFileSources.Data data = dto.getSourceData(from, toInclusive);
+    return FluentIterable.from(data.getLinesList())
       .filter(new IsGreaterOrEqualThanLine(from))
-      .limit(toInclusive - from + 1)
-      .transform(function));
+      .limit(toInclusive - from + 1);
   }
 
   private static void verifyLine(int line) {
     Preconditions.checkArgument(line >= 1, String.format("Line number must start at 1, got %d", line));
   }
 
-  private Function<DbFileSources.Line, String> lineToHtml() {
-    return line -> htmlDecorator.getDecoratedSourceAsHtml(line.getSource(), line.getHighlighting(), line.getSymbols());
+  private List<String> decorate(List<DbFileSources.Line> lines) {
+    List<String> htmlLines = new ArrayList<>(lines.size());
+    for (DbFileSources.Line line : lines) {
+      htmlLines.add(htmlDecorator.getDecoratedSourceAsHtml(line.getSource(), line.getHighlighting(), line.getSymbols()));
+    }
+    return htmlLines;
   }
 
   private enum LineToRaw implements Function<DbFileSources.Line, String> {
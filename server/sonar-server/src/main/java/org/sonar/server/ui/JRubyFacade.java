@@ -54,6 +54,7 @@ import org.sonar.server.platform.db.migration.version.DatabaseVersion;
 import org.sonar.process.ProcessProperties;
 import org.sonar.server.authentication.IdentityProviderRepository;
 import org.sonar.server.component.ComponentCleanerService;
+import org.sonar.server.component.es.ComponentIndexer;
 import org.sonar.server.platform.PersistentSettings;
 import org.sonar.server.platform.Platform;
 import org.sonar.server.platform.db.migration.DatabaseMigrationState;
@@ -336,9 +337,13 @@ public final class JRubyFacade {
    */
   public void indexComponent(String componentUuid) {
     DbClient dbClient = get(DbClient.class);
+    String projectUuid;
     try (DbSession dbSession = dbClient.openSession(false)) {
       dbClient.componentIndexDao().indexResource(dbSession, componentUuid);
+      dbSession.commit();
+      projectUuid = dbClient.componentDao().selectOrFailByUuid(dbSession, componentUuid).projectUuid();
     }
+    get(ComponentIndexer.class).indexProject(projectUuid);
   }
 
   public List<IdentityProvider> getIdentityProviders() {
@@ -0,0 +1,212 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+
+import static java.lang.String.format;
+
+/**
+ * Server-wide cache of the permissions granted to users, shared by all the {@link ServerUserSession}.
+ * Entries are keyed by user (or anonymous) and by scope: global permissions, permissions on an organization,
+ * or projects on which a permission is granted. The latter are stored as sorted arrays of project UUIDs.
+ * As such an array can reference all the projects of the instance, size of cache is bounded by the estimated
+ * memory used by the entries rather than by their number.
+ * <p>
+ * Cache is invalidated by the components which change permissions, group memberships or which apply
+ * permission templates. Entries also expire after a short delay in order to bound the staleness
+ * of changes made by other means (for example by another server of a cluster).
+ * </p>
+ */
+@Properties({
+  @Property(
+    key = AuthorizationCache.PROPERTY_MAX_SIZE_IN_MB,
+    defaultValue = "" + AuthorizationCache.DEFAULT_MAX_SIZE_IN_MB,
+    name = "Maximum size of the cache of permissions, in MB. Zero disables the cache.",
+    global = false),
+  @Property(
+    key = AuthorizationCache.PROPERTY_TTL_IN_SECONDS,
+    defaultValue = "" + AuthorizationCache.DEFAULT_TTL_IN_SECONDS,
+    name = "Delay in seconds after which cached permissions are reloaded from database.",
+    global = false)
+})
+@ServerSide
+public class AuthorizationCache {
+
+  public static final String PROPERTY_MAX_SIZE_IN_MB = "sonar.web.authorizationCache.maxSizeInMb";
+  public static final String PROPERTY_TTL_IN_SECONDS = "sonar.web.authorizationCache.ttlInSeconds";
+  static final int DEFAULT_MAX_SIZE_IN_MB = 32;
+  static final int DEFAULT_TTL_IN_SECONDS = 60;
+
+  private static final String GLOBAL_SCOPE = "global";
+  private static final String ORGANIZATION_SCOPE_PREFIX = "organization:";
+  private static final String PROJECT_SCOPE_PREFIX = "project:";
+
+  // estimation of the memory used by the references to a string and by the key
+  private static final int STRING_OVERHEAD_IN_BYTES = 48;
+  private static final int ENTRY_OVERHEAD_IN_BYTES = 128;
+
+  private final DbClient dbClient;
+  private final long maxSizeInBytes;
+  private final Cache<Key, Object> cache;
+
+  public AuthorizationCache(DbClient dbClient, Settings settings) {
+    this.dbClient = dbClient;
+    this.maxSizeInBytes = Math.max(0L, settings.getLong(PROPERTY_MAX_SIZE_IN_MB)) * 1024L * 1024L;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxSizeInBytes)
+      .weigher(AuthorizationCache::weigh)
+      .expireAfterWrite(Math.max(0L, settings.getLong(PROPERTY_TTL_IN_SECONDS)), TimeUnit.SECONDS)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Global permissions of the user, or of anonymous if {@code userId} is null.
+   */
+  @SuppressWarnings("unchecked")
+  public List<String> globalPermissions(@Nullable Integer userId, @Nullable String login) {
+    return (List<String>) get(new Key(userId, GLOBAL_SCOPE),
+      () -> ImmutableList.copyOf(dbClient.authorizationDao().selectGlobalPermissions(login)));
+  }
+
+  /**
+   * Permissions of the user, or of anonymous if {@code userId} is null, on the specified organization.
+   */
+  @SuppressWarnings("unchecked")
+  public Set<String> organizationPermissions(@Nullable Integer userId, String organizationUuid) {
+    return (Set<String>) get(new Key(userId, ORGANIZATION_SCOPE_PREFIX + organizationUuid), () -> {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        if (userId == null) {
+          return ImmutableSet.copyOf(dbClient.authorizationDao().selectOrganizationPermissionsOfAnonymous(dbSession, organizationUuid));
+        }
+        return ImmutableSet.copyOf(dbClient.authorizationDao().selectOrganizationPermissions(dbSession, organizationUuid, userId));
+      }
+    });
+  }
+
+  /**
+   * Whether the permission is granted to the user, or to anonymous if {@code userId} is null, on the
+   * specified root project.
+   */
+  public boolean hasProjectPermission(@Nullable Integer userId, String permission, String projectUuid) {
+    String[] projectUuids = (String[]) get(new Key(userId, PROJECT_SCOPE_PREFIX + permission), () -> {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        Collection<String> uuids = dbClient.authorizationDao().selectAuthorizedRootProjectsUuids(dbSession, userId, permission);
+        String[] sortedUuids = uuids.toArray(new String[uuids.size()]);
+        Arrays.sort(sortedUuids);
+        return sortedUuids;
+      }
+    });
+    return Arrays.binarySearch(projectUuids, projectUuid) >= 0;
+  }
+
+  /**
+   * Remove the cached permissions of a user, for example when groups of user change.
+   */
+  public void invalidateUser(long userId) {
+    cache.asMap().keySet().removeIf(key -> key.userId != null && key.userId == userId);
+  }
+
+  /**
+   * Remove all the cached permissions, for example when permissions of a group or of anonymous change.
+   */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public long getMaxSizeInBytes() {
+    return maxSizeInBytes;
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  private Object get(Key key, Callable<Object> loader) {
+    try {
+      return cache.get(key, loader);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(format("Fail to load permissions of user %s", key.userId), e.getCause());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int weigh(Key key, Object value) {
+    Iterable<String> strings = value instanceof String[] ? Arrays.asList((String[]) value) : (Collection<String>) value;
+    long weight = ENTRY_OVERHEAD_IN_BYTES + 2L * key.scope.length();
+    for (String string : strings) {
+      weight += STRING_OVERHEAD_IN_BYTES + 2L * string.length();
+    }
+    return (int) Math.min(Integer.MAX_VALUE, weight);
+  }
+
+  private static final class Key {
+    @CheckForNull
+    private final Integer userId;
+    private final String scope;
+
+    private Key(@Nullable Integer userId, String scope) {
+      this.userId = userId;
+      this.scope = scope;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return Objects.equals(userId, key.userId) && scope.equals(key.scope);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(userId, scope);
+    }
+  }
+}
@@ -19,11 +19,6 @@
  */
 package org.sonar.server.user;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.SetMultimap;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
@@ -48,35 +43,30 @@ import static java.util.Objects.requireNonNull;
  * Part of the current HTTP session
  */
 public class ServerUserSession extends AbstractUserSession {
-  private Map<String, String> projectKeyByComponentKey = newHashMap();
-
   @CheckForNull
   private final UserDto userDto;
   private final DbClient dbClient;
+  private final AuthorizationCache authorizationCache;
   private final ResourceDao resourceDao;
   private final Set<String> userGroups;
-  private List<String> globalPermissions = null;
-  private SetMultimap<String, String> projectKeyByPermission = HashMultimap.create();
-  private SetMultimap<String, String> projectUuidByPermission = HashMultimap.create();
-  private SetMultimap<String, String> permissionsByOrganizationUuid;
+  private Map<String, String> projectUuidByComponentKey = newHashMap();
   private Map<String, String> projectUuidByComponentUuid = newHashMap();
-  private List<String> projectPermissionsCheckedByKey = new ArrayList<>();
-  private List<String> projectPermissionsCheckedByUuid = new ArrayList<>();
 
-  private ServerUserSession(DbClient dbClient, @Nullable UserDto userDto) {
+  private ServerUserSession(DbClient dbClient, AuthorizationCache authorizationCache, @Nullable UserDto userDto) {
     this.userDto = userDto;
     this.dbClient = dbClient;
+    this.authorizationCache = authorizationCache;
     this.resourceDao = dbClient.resourceDao();
     this.userGroups = loadUserGroups();
   }
 
-  public static ServerUserSession createForUser(DbClient dbClient, UserDto userDto) {
+  public static ServerUserSession createForUser(DbClient dbClient, AuthorizationCache authorizationCache, UserDto userDto) {
     requireNonNull(userDto, "UserDto must not be null");
-    return new ServerUserSession(dbClient, userDto);
+    return new ServerUserSession(dbClient, authorizationCache, userDto);
   }
 
-  public static ServerUserSession createForAnonymous(DbClient dbClient) {
-    return new ServerUserSession(dbClient, null);
+  public static ServerUserSession createForAnonymous(DbClient dbClient, AuthorizationCache authorizationCache) {
+    return new ServerUserSession(dbClient, authorizationCache, null);
   }
 
   private Set<String> loadUserGroups() {
@@ -131,35 +121,12 @@ public class ServerUserSession extends AbstractUserSession {
 
   @Override
   public boolean hasOrganizationPermission(String organizationUuid, String permission) {
-    if (permissionsByOrganizationUuid == null) {
-      permissionsByOrganizationUuid = HashMultimap.create();
-    }
-    Set<String> permissions;
-    if (permissionsByOrganizationUuid.containsKey(organizationUuid)) {
-      permissions = permissionsByOrganizationUuid.get(organizationUuid);
-    } else {
-      permissions = loadOrganizationPermissions(organizationUuid);
-      permissionsByOrganizationUuid.putAll(organizationUuid, permissions);
-    }
-    return permissions.contains(permission);
- }
-
-  private Set<String> loadOrganizationPermissions(String organizationUuid) {
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      if (userDto != null && userDto.getId() != null) {
-        return dbClient.authorizationDao().selectOrganizationPermissions(dbSession, organizationUuid, userDto.getId());
-      }
-      return dbClient.authorizationDao().selectOrganizationPermissionsOfAnonymous(dbSession, organizationUuid);
-    }
+    return authorizationCache.organizationPermissions(authorizedUserId(), organizationUuid).contains(permission);
   }
 
   @Override
   public List<String> globalPermissions() {
-    if (globalPermissions == null) {
-      List<String> permissionKeys = dbClient.authorizationDao().selectGlobalPermissions(getLogin());
-      globalPermissions = ImmutableList.copyOf(permissionKeys);
-    }
-    return globalPermissions;
+    return authorizationCache.globalPermissions(authorizedUserId(), getLogin());
   }
 
   @Override
@@ -168,38 +135,22 @@ public class ServerUserSession extends AbstractUserSession {
       return true;
     }
 
-    String projectKey = projectKeyByComponentKey.get(componentKey);
-    if (projectKey == null) {
+    String projectUuid = projectUuidByComponentKey.get(componentKey);
+    if (projectUuid == null) {
       ResourceDto project = resourceDao.getRootProjectByComponentKey(componentKey);
       if (project == null) {
         return false;
       }
-      projectKey = project.getKey();
+      projectUuid = project.getUuid();
     }
-    boolean hasComponentPermission = hasProjectPermission(permission, projectKey);
+    boolean hasComponentPermission = authorizationCache.hasProjectPermission(authorizedUserId(), permission, projectUuid);
     if (hasComponentPermission) {
-      projectKeyByComponentKey.put(componentKey, projectKey);
+      projectUuidByComponentKey.put(componentKey, projectUuid);
       return true;
     }
     return false;
   }
 
-  private boolean hasProjectPermission(String permission, String projectKey) {
-    if (isRoot()) {
-      return true;
-    }
-    if (!projectPermissionsCheckedByKey.contains(permission)) {
-      try (DbSession dbSession = dbClient.openSession(false)) {
-        Collection<String> projectKeys = dbClient.authorizationDao().selectAuthorizedRootProjectsKeys(dbSession, getUserId(), permission);
-        for (String key : projectKeys) {
-          projectKeyByPermission.put(permission, key);
-        }
-        projectPermissionsCheckedByKey.add(permission);
-      }
-    }
-    return projectKeyByPermission.get(permission).contains(projectKey);
-  }
-
   @Override
   public boolean hasComponentUuidPermission(String permission, String componentUuid) {
     if (isRoot() || hasPermission(permission)) {
@@ -214,7 +165,7 @@ public class ServerUserSession extends AbstractUserSession {
       }
       projectUuid = project.getProjectUuid();
     }
-    boolean hasComponentPermission = hasProjectPermissionByUuid(permission, projectUuid);
+    boolean hasComponentPermission = authorizationCache.hasProjectPermission(authorizedUserId(), permission, projectUuid);
     if (hasComponentPermission) {
       projectUuidByComponentUuid.put(componentUuid, projectUuid);
       return true;
@@ -222,22 +173,12 @@ public class ServerUserSession extends AbstractUserSession {
     return false;
   }
 
-  // To keep private
-  private boolean hasProjectPermissionByUuid(String permission, String projectUuid) {
-    if (!projectPermissionsCheckedByUuid.contains(permission)) {
-      try (DbSession dbSession = dbClient.openSession(false)) {
-        Collection<String> projectUuids = dbClient.authorizationDao().selectAuthorizedRootProjectsUuids(dbSession, getUserId(), permission);
-        addProjectPermission(permission, projectUuids);
-      }
-    }
-    return projectUuidByPermission.get(permission).contains(projectUuid);
-  }
-
-  private void addProjectPermission(String permission, Collection<String> authorizedProjectUuids) {
-    for (String key : authorizedProjectUuids) {
-      projectUuidByPermission.put(permission, key);
-    }
-    projectPermissionsCheckedByUuid.add(permission);
+  /**
+   * Id of user in the {@link AuthorizationCache}, {@code null} for anonymous.
+   */
+  @CheckForNull
+  private Integer authorizedUserId() {
+    return userDto == null || userDto.getId() == null ? null : userDto.getId().intValue();
   }
 
 }
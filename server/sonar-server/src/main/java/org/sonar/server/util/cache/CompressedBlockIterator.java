@@ -0,0 +1,88 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.apache.commons.io.IOUtils;
+import org.sonar.core.util.CloseableIterator;
+
+/**
+ * Reads the blocks written by {@link CompressedBlockWriter}. Only one block is decompressed in memory at a time.
+ */
+class CompressedBlockIterator<O> extends CloseableIterator<O> {
+
+  private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+  private final DiskCacheCodec<O> codec;
+  private final DataInputStream input;
+  private byte[] compressed = new byte[0];
+  private byte[] raw = new byte[0];
+  private ByteArrayInputStream block = new ByteArrayInputStream(raw);
+  private DataInputStream blockInput = new DataInputStream(block);
+
+  CompressedBlockIterator(DiskCacheCodec<O> codec, InputStream input) {
+    this.codec = codec;
+    this.input = new DataInputStream(input);
+  }
+
+  @Override
+  protected O doNext() {
+    try {
+      if (block.available() == 0 && !readNextBlock()) {
+        return null;
+      }
+      return codec.read(blockInput);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read compressed block", e);
+    }
+  }
+
+  private boolean readNextBlock() throws IOException {
+    int rawLength;
+    try {
+      rawLength = input.readInt();
+    } catch (EOFException e) {
+      return false;
+    }
+    int compressedLength = input.readInt();
+    if (compressed.length < compressedLength) {
+      compressed = new byte[compressedLength];
+    }
+    input.readFully(compressed, 0, compressedLength);
+    if (raw.length < rawLength) {
+      raw = new byte[rawLength];
+    }
+    DECOMPRESSOR.decompress(compressed, 0, raw, 0, rawLength);
+    block = new ByteArrayInputStream(raw, 0, rawLength);
+    blockInput = new DataInputStream(block);
+    return true;
+  }
+
+  @Override
+  protected void doClose() {
+    IOUtils.closeQuietly(input);
+  }
+}
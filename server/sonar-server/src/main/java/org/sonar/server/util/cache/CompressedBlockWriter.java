@@ -0,0 +1,96 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.util.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * Writes objects encoded by a {@link DiskCacheCodec} into blocks compressed with LZ4. A block is written
+ * as soon as its uncompressed size exceeds the limit, or when the writer is closed. Each block is
+ * prefixed by its uncompressed and compressed sizes, so files written by several successive writers
+ * can be read as a single sequence of blocks by {@link CompressedBlockIterator}.
+ */
+class CompressedBlockWriter<O> implements Closeable {
+
+  private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+
+  private final DiskCacheCodec<O> codec;
+  private final DataOutputStream output;
+  private final int blockSize;
+  private final BlockBuffer block;
+  private final DataOutputStream blockOutput;
+  private byte[] compressed = new byte[0];
+
+  CompressedBlockWriter(DiskCacheCodec<O> codec, OutputStream output, int blockSize) {
+    this.codec = codec;
+    this.output = new DataOutputStream(output);
+    this.blockSize = blockSize;
+    this.block = new BlockBuffer(blockSize);
+    this.blockOutput = new DataOutputStream(block);
+  }
+
+  void write(O object) throws IOException {
+    codec.write(object, blockOutput);
+    if (block.size() >= blockSize) {
+      flushBlock();
+    }
+  }
+
+  private void flushBlock() throws IOException {
+    int rawLength = block.size();
+    if (rawLength == 0) {
+      return;
+    }
+    int maxCompressedLength = COMPRESSOR.maxCompressedLength(rawLength);
+    if (compressed.length < maxCompressedLength) {
+      compressed = new byte[maxCompressedLength];
+    }
+    int compressedLength = COMPRESSOR.compress(block.buffer(), 0, rawLength, compressed, 0, maxCompressedLength);
+    output.writeInt(rawLength);
+    output.writeInt(compressedLength);
+    output.write(compressed, 0, compressedLength);
+    block.reset();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flushBlock();
+    } finally {
+      output.close();
+    }
+  }
+
+  private static class BlockBuffer extends ByteArrayOutputStream {
+    private BlockBuffer(int size) {
+      super(size);
+    }
+
+    private byte[] buffer() {
+      return buf;
+    }
+  }
+}
@@ -34,6 +34,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.authentication.event.AuthenticationEvent;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.user.ThreadLocalUserSession;
 import org.sonar.server.user.UserSession;
 
@@ -73,7 +74,9 @@ public class BaseContextFactoryTest {
   private BaseIdentityProvider identityProvider = mock(BaseIdentityProvider.class);
   private JwtHttpHandler jwtHttpHandler = mock(JwtHttpHandler.class);
 
-  private BaseContextFactory underTest = new BaseContextFactory(dbClient, userIdentityAuthenticator, server, jwtHttpHandler, threadLocalUserSession);
+  private AuthorizationCache authorizationCache = mock(AuthorizationCache.class);
+
+  private BaseContextFactory underTest = new BaseContextFactory(dbClient, authorizationCache, userIdentityAuthenticator, server, jwtHttpHandler, threadLocalUserSession);
 
   @Before
   public void setUp() throws Exception {
@@ -36,6 +36,7 @@ import org.sonar.db.DbTester;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.authentication.event.AuthenticationEvent;
 import org.sonar.server.authentication.event.AuthenticationException;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.user.ServerUserSession;
 import org.sonar.server.user.ThreadLocalUserSession;
 import org.sonar.server.user.UserSession;
@@ -78,7 +79,9 @@ public class UserSessionInitializerTest {
 
   private UserDto user = newUserDto();
 
-  private UserSessionInitializer underTest = new UserSessionInitializer(dbClient, settings, jwtHttpHandler, basicAuthenticator,
+  private AuthorizationCache authorizationCache = mock(AuthorizationCache.class);
+
+  private UserSessionInitializer underTest = new UserSessionInitializer(dbClient, authorizationCache, settings, jwtHttpHandler, basicAuthenticator,
     ssoAuthenticator, userSession, authenticationEvent);
 
   @Before
@@ -39,6 +39,7 @@ import org.sonar.server.authentication.JwtHttpHandler;
 import org.sonar.server.authentication.event.AuthenticationEvent;
 import org.sonar.server.authentication.event.AuthenticationException;
 import org.sonar.server.exceptions.UnauthorizedException;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.user.ThreadLocalUserSession;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -75,7 +76,9 @@ public class LoginActionTest {
 
   private UserDto user = UserTesting.newUserDto().setLogin(LOGIN);
 
-  private LoginAction underTest = new LoginAction(dbClient, credentialsAuthenticator, jwtHttpHandler, threadLocalUserSession, authenticationEvent);
+  private AuthorizationCache authorizationCache = mock(AuthorizationCache.class);
+
+  private LoginAction underTest = new LoginAction(dbClient, authorizationCache, credentialsAuthenticator, jwtHttpHandler, threadLocalUserSession, authenticationEvent);
 
   @Before
   public void setUp() throws Exception {
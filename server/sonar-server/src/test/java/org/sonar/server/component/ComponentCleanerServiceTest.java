@@ -39,6 +39,8 @@ import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueTesting;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
+import org.sonar.server.component.es.ComponentIndexDefinition;
+import org.sonar.server.component.es.ComponentIndexer;
 import org.sonar.server.component.es.ProjectMeasuresIndexDefinition;
 import org.sonar.server.component.es.ProjectMeasuresIndexer;
 import org.sonar.server.es.EsTester;
@@ -71,7 +73,8 @@ public class ComponentCleanerServiceTest {
   public EsTester es = new EsTester(
     new IssueIndexDefinition(new MapSettings()),
     new TestIndexDefinition(new MapSettings()),
-    new ProjectMeasuresIndexDefinition(new MapSettings()));
+    new ProjectMeasuresIndexDefinition(new MapSettings()),
+    new ComponentIndexDefinition(new MapSettings()));
 
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
@@ -82,10 +85,11 @@ public class ComponentCleanerServiceTest {
   private IssueIndexer issueIndexer = new IssueIndexer(system2, dbClient, es.client());
   private TestIndexer testIndexer = new TestIndexer(system2, dbClient, es.client());
   private ProjectMeasuresIndexer projectMeasuresIndexer = new ProjectMeasuresIndexer(system2, dbClient, es.client());
+  private ComponentIndexer componentIndexer = new ComponentIndexer(system2, dbClient, es.client(), new MapSettings().setProperty(ComponentIndexer.ENABLED_PROPERTY, true));
   private ResourceTypes mockResourceTypes = mock(ResourceTypes.class);
 
-  private ComponentCleanerService underTest = new ComponentCleanerService(dbClient, issueIndexer, testIndexer, projectMeasuresIndexer, mockResourceTypes,
-    new ComponentFinder(dbClient));
+  private ComponentCleanerService underTest = new ComponentCleanerService(dbClient, issueIndexer, testIndexer, projectMeasuresIndexer, componentIndexer,
+    mockResourceTypes, new ComponentFinder(dbClient));
 
   @Test
   public void delete_project_by_key_in_db() {
@@ -224,6 +228,7 @@ public class ComponentCleanerServiceTest {
     dbClient.componentDao().insert(dbSession, project);
     dbSession.commit();
     projectMeasuresIndexer.index();
+    componentIndexer.indexProject(project.uuid());
     permissionIndexer.index(dbSession, project.uuid());
 
     String issueKey = "issue-key-" + suffix;
@@ -250,12 +255,14 @@ public class ComponentCleanerServiceTest {
       assertThat(es.getIds(TestIndexDefinition.INDEX, TestIndexDefinition.TYPE)).contains(data.testId);
       assertThat(es.getIds(ProjectMeasuresIndexDefinition.INDEX_PROJECT_MEASURES, ProjectMeasuresIndexDefinition.TYPE_PROJECT_MEASURES)).contains(data.project.uuid());
       assertThat(es.getIds(ProjectMeasuresIndexDefinition.INDEX_PROJECT_MEASURES, ProjectMeasuresIndexDefinition.TYPE_AUTHORIZATION)).contains(data.project.uuid());
+      assertThat(es.getIds(ComponentIndexDefinition.INDEX_COMPONENTS, ComponentIndexDefinition.TYPE_COMPONENT)).contains(data.project.uuid());
     } else {
       assertThat(es.getIds(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE)).doesNotContain(data.issueKey);
       assertThat(es.getIds(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_AUTHORIZATION)).doesNotContain(data.project.uuid());
       assertThat(es.getIds(TestIndexDefinition.INDEX, TestIndexDefinition.TYPE)).doesNotContain(data.testId);
       assertThat(es.getIds(ProjectMeasuresIndexDefinition.INDEX_PROJECT_MEASURES, ProjectMeasuresIndexDefinition.TYPE_PROJECT_MEASURES)).doesNotContain(data.project.uuid());
       assertThat(es.getIds(ProjectMeasuresIndexDefinition.INDEX_PROJECT_MEASURES, ProjectMeasuresIndexDefinition.TYPE_AUTHORIZATION)).doesNotContain(data.project.uuid());
+      assertThat(es.getIds(ComponentIndexDefinition.INDEX_COMPONENTS, ComponentIndexDefinition.TYPE_COMPONENT)).doesNotContain(data.project.uuid());
     }
   }
 
@@ -33,6 +33,8 @@ import org.sonar.db.component.ComponentDbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ResourceDao;
 import org.sonar.db.component.ResourceDto;
+import org.sonar.server.component.es.ComponentIndexDefinition;
+import org.sonar.server.component.es.ComponentIndexer;
 import org.sonar.server.component.es.ProjectMeasuresIndexDefinition;
 import org.sonar.server.component.es.ProjectMeasuresIndexer;
 import org.sonar.server.es.EsTester;
@@ -63,7 +65,7 @@ public class DefaultRubyComponentServiceTest {
   public UserSessionRule userSession = UserSessionRule.standalone();
 
   @Rule
-  public EsTester es = new EsTester(new ProjectMeasuresIndexDefinition(new MapSettings()));
+  public EsTester es = new EsTester(new ProjectMeasuresIndexDefinition(new MapSettings()), new ComponentIndexDefinition(new MapSettings()));
 
   private I18nRule i18n = new I18nRule();
 
@@ -72,7 +74,7 @@ public class DefaultRubyComponentServiceTest {
 
   private ResourceDao resourceDao = dbClient.resourceDao();
   private ComponentService componentService = new ComponentService(dbClient, i18n, userSession, system2, new ComponentFinder(dbClient),
-    new ProjectMeasuresIndexer(system2, dbClient, es.client()));
+    new ProjectMeasuresIndexer(system2, dbClient, es.client()), new ComponentIndexer(system2, dbClient, es.client(), new MapSettings().setProperty(ComponentIndexer.ENABLED_PROPERTY, true)));
   private PermissionTemplateService permissionTemplateService = mock(PermissionTemplateService.class);
   private FavoriteUpdater favoriteUpdater = mock(FavoriteUpdater.class);
 
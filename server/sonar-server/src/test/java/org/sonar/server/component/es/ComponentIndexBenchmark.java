@@ -0,0 +1,160 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.es;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.rules.ExternalResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentQuery;
+import org.sonar.server.es.EsTester;
+import org.sonar.server.es.SearchOptions;
+
+import static java.util.Collections.singletonList;
+import static org.sonar.db.component.ComponentTesting.newDirectory;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.db.component.ComponentTesting.newProjectDto;
+
+/**
+ * Compares the db table RESOURCE_INDEX with the Elasticsearch index of components: time to index
+ * all the components of a project and time to search them by substring of name. Db is the embedded
+ * H2 used by tests, so absolute values of the "resource_index" storage are only indicative.
+ * Not executed by unit tests. Run the method {@link #main(String[])} from the IDE, or after "mvn test-compile":
+ * <pre>
+ * java -cp &lt;test classpath&gt; org.openjdk.jmh.Main ComponentIndexBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ComponentIndexBenchmark {
+
+  private static final int NB_DIRECTORIES = 100;
+  private static final int NB_FILES_PER_DIRECTORY = 100;
+  private static final String QUERY = "ntroller42";
+
+  @Param({"resource_index", "elasticsearch"})
+  public String storage;
+
+  private final DbTester db = DbTester.create(System2.INSTANCE);
+  private final EsTester es = new EsTester(new ComponentIndexDefinition(new MapSettings()));
+  private ComponentIndexer indexer;
+  private ComponentIndex index;
+  private ComponentDto project;
+  private final List<ComponentDoc> docs = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    invoke(db, "before");
+    invoke(es, "before");
+    indexer = new ComponentIndexer(System2.INSTANCE, db.getDbClient(), es.client(), new MapSettings().setProperty(ComponentIndexer.ENABLED_PROPERTY, true));
+    index = new ComponentIndex(es.client());
+
+    // RESOURCE_INDEX is fed only for analysed projects
+    project = newProjectDto().setName("Project");
+    db.components().insertProjectAndSnapshot(project);
+    DbSession dbSession = db.getSession();
+    for (int d = 0; d < NB_DIRECTORIES; d++) {
+      ComponentDto directory = newDirectory(project, "src/main/java/org/sonar/dir" + d);
+      db.getDbClient().componentDao().insert(dbSession, directory);
+      for (int f = 0; f < NB_FILES_PER_DIRECTORY; f++) {
+        ComponentDto file = newFileDto(project, directory).setName("Controller" + d + "_" + f + ".java");
+        db.getDbClient().componentDao().insert(dbSession, file);
+        docs.add(ComponentIndexer.toDoc(file));
+      }
+    }
+    dbSession.commit();
+    indexProject();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    invoke(es, "after");
+    invoke(db, "after");
+  }
+
+  /**
+   * Files are never re-indexed in RESOURCE_INDEX once they are indexed, so the table is truncated
+   * to measure a first analysis.
+   */
+  @Setup(Level.Invocation)
+  public void truncateResourceIndex() {
+    if ("resource_index".equals(storage)) {
+      db.executeUpdateSql("delete from resource_index");
+    }
+  }
+
+  @Benchmark
+  public void indexProject() {
+    if ("resource_index".equals(storage)) {
+      db.getDbClient().componentIndexDao().indexProject(project.uuid());
+    } else {
+      indexer.index(project.uuid(), docs.iterator());
+    }
+  }
+
+  @Benchmark
+  public List<?> search() {
+    if ("resource_index".equals(storage)) {
+      ComponentQuery query = ComponentQuery.builder().setNameOrKeyQuery(QUERY).setQualifiers(Qualifiers.FILE).build();
+      return db.getDbClient().componentDao().selectByQuery(db.getSession(), query, 0, 100);
+    }
+    return index.search(new ComponentIndexQuery(QUERY).setQualifiers(singletonList(Qualifiers.FILE)), new SearchOptions().setLimit(100)).getIds();
+  }
+
+  /**
+   * Rules are started outside of JUnit
+   */
+  private static void invoke(ExternalResource rule, String methodName) throws Exception {
+    Method method = ExternalResource.class.getDeclaredMethod(methodName);
+    method.setAccessible(true);
+    method.invoke(rule);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ComponentIndexBenchmark.class.getSimpleName()).build()).run();
+  }
+}
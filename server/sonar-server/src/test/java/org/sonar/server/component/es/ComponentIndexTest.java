@@ -0,0 +1,140 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.es;
+
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.server.es.EsTester;
+import org.sonar.server.es.SearchIdResult;
+import org.sonar.server.es.SearchOptions;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ComponentIndexTest {
+
+  @Rule
+  public EsTester es = new EsTester(new ComponentIndexDefinition(new MapSettings()));
+
+  ComponentIndexer indexer = new ComponentIndexer(System2.INSTANCE, mock(DbClient.class), es.client(), new MapSettings().setProperty(ComponentIndexer.ENABLED_PROPERTY, true));
+
+  ComponentIndex underTest = new ComponentIndex(es.client());
+
+  @Test
+  public void search_by_substring_of_name_ignoring_case() {
+    index(
+      newDoc("F1", "Dictionary.java", Qualifiers.FILE),
+      newDoc("F2", "DictionaryTest.java", Qualifiers.UNIT_TEST_FILE),
+      newDoc("F3", "Index.java", Qualifiers.FILE));
+
+    assertThat(search("ctionary").getIds()).containsExactly("F1", "F2");
+    assertThat(search("TEST.JAVA").getIds()).containsExactly("F2");
+    assertThat(search("unknown").getIds()).isEmpty();
+  }
+
+  @Test
+  public void search_by_query_longer_than_max_size_of_grams() {
+    index(
+      newDoc("F1", "AbstractSingletonProxyFactoryBean.java", Qualifiers.FILE),
+      newDoc("F2", "AbstractSingletonFactoryBean.java", Qualifiers.FILE));
+
+    assertThat(search("tractSingletonProxyFactory").getIds()).containsExactly("F1");
+  }
+
+  @Test
+  public void search_by_single_character() {
+    index(
+      newDoc("F1", "Bar.java", Qualifiers.FILE),
+      newDoc("F2", "Foo.java", Qualifiers.FILE),
+      newDoc("F3", "Index.cpp", Qualifiers.FILE));
+
+    assertThat(search("A").getIds()).containsExactly("F1", "F2");
+    assertThat(search("x").getIds()).containsExactly("F3");
+  }
+
+  @Test
+  public void search_component_with_single_character_name() {
+    index(
+      newDoc("D1", "a", Qualifiers.DIRECTORY),
+      newDoc("D2", "b", Qualifiers.DIRECTORY));
+
+    assertThat(search("a").getIds()).containsExactly("D1");
+    assertThat(search("B").getIds()).containsExactly("D2");
+  }
+
+  @Test
+  public void search_by_exact_key() {
+    index(
+      newDoc("F1", "Foo.java", Qualifiers.FILE).setKey("project:src/Foo.java"),
+      newDoc("F2", "Bar.java", Qualifiers.FILE).setKey("project:src/Bar.java"));
+
+    assertThat(search("project:src/Foo.java").getIds()).containsExactly("F1");
+  }
+
+  @Test
+  public void filter_by_qualifiers_and_language() {
+    index(
+      newDoc("P1", "Sample", Qualifiers.PROJECT),
+      newDoc("F1", "Sample.java", Qualifiers.FILE).setLanguage("java"),
+      newDoc("F2", "Sample.cpp", Qualifiers.FILE).setLanguage("cpp"));
+
+    assertThat(underTest.search(new ComponentIndexQuery("sample").setQualifiers(singletonList(Qualifiers.FILE)), new SearchOptions()).getIds())
+      .containsExactly("F2", "F1");
+    assertThat(underTest.search(new ComponentIndexQuery("sample").setLanguage("java"), new SearchOptions()).getIds())
+      .containsExactly("F1");
+  }
+
+  @Test
+  public void sort_by_name_and_paginate() {
+    index(
+      newDoc("F1", "c.java", Qualifiers.FILE),
+      newDoc("F2", "a.java", Qualifiers.FILE),
+      newDoc("F3", "B.java", Qualifiers.FILE));
+
+    SearchIdResult<String> result = underTest.search(new ComponentIndexQuery("java"), new SearchOptions().setPage(2, 2));
+
+    assertThat(result.getIds()).containsExactly("F1");
+    assertThat(result.getTotal()).isEqualTo(3);
+  }
+
+  private SearchIdResult<String> search(String query) {
+    return underTest.search(new ComponentIndexQuery(query), new SearchOptions());
+  }
+
+  private void index(ComponentDoc... docs) {
+    indexer.index("P1", Arrays.asList(docs).iterator());
+  }
+
+  private static ComponentDoc newDoc(String uuid, String name, String qualifier) {
+    return new ComponentDoc()
+      .setId(uuid)
+      .setProjectUuid("P1")
+      .setKey("KEY_" + uuid)
+      .setName(name)
+      .setQualifier(qualifier)
+      .setLanguage(null);
+  }
+}
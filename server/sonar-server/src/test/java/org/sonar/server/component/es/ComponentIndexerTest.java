@@ -0,0 +1,162 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.es;
+
+import java.util.Date;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.server.es.EsTester;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.db.component.ComponentTesting.newProjectDto;
+import static org.sonar.server.component.es.ComponentIndexDefinition.INDEX_COMPONENTS;
+import static org.sonar.server.component.es.ComponentIndexDefinition.TYPE_COMPONENT;
+
+public class ComponentIndexerTest {
+
+  private System2 system2 = mock(System2.class);
+
+  @Rule
+  public EsTester esTester = new EsTester(new ComponentIndexDefinition(new MapSettings()));
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+
+  ComponentDbTester componentDbTester = new ComponentDbTester(dbTester);
+
+  ComponentIndexer underTest = new ComponentIndexer(system2, dbTester.getDbClient(), esTester.client(), new MapSettings().setProperty(ComponentIndexer.ENABLED_PROPERTY, true));
+
+  @Test
+  public void index_nothing() {
+    underTest.index();
+
+    assertThat(esTester.countDocuments(INDEX_COMPONENTS, TYPE_COMPONENT)).isZero();
+  }
+
+  @Test
+  public void index_all_components_on_startup() {
+    when(system2.now()).thenReturn(1_000L);
+    ComponentDto project = componentDbTester.insertComponent(newProjectDto());
+    ComponentDto file = componentDbTester.insertComponent(newFileDto(project).setLanguage("java"));
+    componentDbTester.insertComponent(newFileDto(project).setEnabled(false));
+
+    underTest.index();
+
+    assertThat(esTester.getIds(INDEX_COMPONENTS, TYPE_COMPONENT)).containsOnly(project.uuid(), file.uuid());
+    ComponentDoc doc = esTester.getDocuments(INDEX_COMPONENTS, TYPE_COMPONENT, ComponentDoc.class).stream()
+      .filter(d -> d.getId().equals(file.uuid())).findFirst().get();
+    assertThat(doc.getProjectUuid()).isEqualTo(project.uuid());
+    assertThat(doc.getKey()).isEqualTo(file.key());
+    assertThat(doc.getName()).isEqualTo(file.name());
+    assertThat(doc.getQualifier()).isEqualTo(file.qualifier());
+    assertThat(doc.getLanguage()).isEqualTo("java");
+    assertThat(doc.getUpdatedAt()).isEqualTo(new Date(1_000L));
+  }
+
+  @Test
+  public void do_not_index_on_startup_if_index_is_not_empty() {
+    ComponentDto project = componentDbTester.insertComponent(newProjectDto());
+    underTest.index();
+    componentDbTester.insertComponent(newProjectDto());
+
+    underTest.index();
+
+    assertThat(esTester.getIds(INDEX_COMPONENTS, TYPE_COMPONENT)).containsOnly(project.uuid());
+  }
+
+  @Test
+  public void index_project_from_db_and_remove_deleted_components() {
+    when(system2.now()).thenReturn(1_000L);
+    ComponentDto project = componentDbTester.insertComponent(newProjectDto());
+    ComponentDto file = componentDbTester.insertComponent(newFileDto(project));
+    ComponentDto otherProject = componentDbTester.insertComponent(newProjectDto());
+    underTest.index();
+
+    dbTester.executeUpdateSql("update projects set enabled=? where uuid=?", false, file.uuid());
+    when(system2.now()).thenReturn(2_000L);
+    underTest.indexProject(project.uuid());
+
+    assertThat(esTester.getIds(INDEX_COMPONENTS, TYPE_COMPONENT)).containsOnly(project.uuid(), otherProject.uuid());
+  }
+
+  @Test
+  public void index_docs_of_project() {
+    when(system2.now()).thenReturn(1_000L);
+    underTest.index("P1", asList(newDoc("P1", "F1"), newDoc("P1", "F2"), newDoc("P2", "F3")).iterator());
+
+    when(system2.now()).thenReturn(2_000L);
+    underTest.index("P1", asList(newDoc("P1", "F1"), newDoc("P1", "F4")).iterator());
+
+    assertThat(esTester.getIds(INDEX_COMPONENTS, TYPE_COMPONENT)).containsOnly("F1", "F3", "F4");
+  }
+
+  @Test
+  public void delete_project() {
+    underTest.index("P1", asList(newDoc("P1", "F1"), newDoc("P1", "F2")).iterator());
+    underTest.index("P2", asList(newDoc("P2", "F3")).iterator());
+
+    underTest.deleteProject("P1");
+
+    assertThat(esTester.getIds(INDEX_COMPONENTS, TYPE_COMPONENT)).containsOnly("F3");
+  }
+
+  @Test
+  public void do_not_index_if_disabled() {
+    when(system2.now()).thenReturn(1_000L);
+    ComponentIndexer disabledIndexer = new ComponentIndexer(system2, dbTester.getDbClient(), esTester.client(), new MapSettings());
+    ComponentDto project = componentDbTester.insertComponent(newProjectDto());
+
+    disabledIndexer.index();
+    disabledIndexer.indexProject(project.uuid());
+    disabledIndexer.index("P1", asList(newDoc("P1", "F1")).iterator());
+
+    assertThat(esTester.countDocuments(INDEX_COMPONENTS, TYPE_COMPONENT)).isZero();
+  }
+
+  @Test
+  public void remove_all_documents_on_startup_if_disabled() {
+    when(system2.now()).thenReturn(1_000L);
+    underTest.index("P1", asList(newDoc("P1", "F1"), newDoc("P1", "F2")).iterator());
+    when(system2.now()).thenReturn(2_000L);
+
+    new ComponentIndexer(system2, dbTester.getDbClient(), esTester.client(), new MapSettings()).index();
+
+    assertThat(esTester.countDocuments(INDEX_COMPONENTS, TYPE_COMPONENT)).isZero();
+  }
+
+  private static ComponentDoc newDoc(String projectUuid, String uuid) {
+    return new ComponentDoc()
+      .setId(uuid)
+      .setProjectUuid(projectUuid)
+      .setKey("KEY_" + uuid)
+      .setName("NAME_" + uuid)
+      .setQualifier("FIL")
+      .setLanguage(null);
+  }
+}
@@ -22,6 +22,7 @@ package org.sonar.server.component.ws;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.i18n.I18n;
 import org.sonar.api.resources.Language;
 import org.sonar.api.resources.Languages;
@@ -31,6 +32,7 @@ import org.sonar.api.server.ws.WebService;
 import org.sonar.api.utils.Durations;
 import org.sonar.db.DbClient;
 import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.component.es.ComponentIndex;
 import org.sonar.server.tester.UserSessionRule;
 import org.sonar.server.ws.WsTester;
 
@@ -53,7 +55,7 @@ public class ComponentsWsTest {
     WsTester tester = new WsTester(new ComponentsWs(
       new AppAction(mock(DbClient.class), userSessionRule, mock(ComponentFinder.class)),
       new SearchViewComponentsAction(mock(DbClient.class), userSessionRule, mock(ComponentFinder.class)),
-      new SearchAction(mock(org.sonar.db.DbClient.class), mock(ResourceTypes.class), mock(I18n.class), userSessionRule, languages)
+      new SearchAction(mock(org.sonar.db.DbClient.class), mock(ComponentIndex.class), mock(ResourceTypes.class), mock(I18n.class), userSessionRule, languages, new MapSettings())
       ));
     controller = tester.controller("api/components");
   }
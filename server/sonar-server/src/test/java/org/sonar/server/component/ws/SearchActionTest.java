@@ -22,6 +22,7 @@ package org.sonar.server.component.ws;
 import com.google.common.base.Joiner;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -30,12 +31,25 @@ import org.sonar.api.resources.Language;
 import org.sonar.api.resources.Languages;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.server.ws.WebService.Param;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
+import org.sonar.api.web.UserRole;
 import org.sonar.core.permission.GlobalPermissions;
+import org.sonar.core.util.stream.Collectors;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ResourceTypesRule;
+import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.component.ComponentService;
+import org.sonar.server.component.NewComponent;
+import org.sonar.server.component.es.ComponentIndex;
+import org.sonar.server.component.es.ComponentIndexDefinition;
+import org.sonar.server.component.es.ComponentIndexer;
+import org.sonar.server.component.es.ProjectMeasuresIndexDefinition;
+import org.sonar.server.component.es.ProjectMeasuresIndexer;
+import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.UnauthorizedException;
 import org.sonar.server.i18n.I18nRule;
@@ -43,6 +57,7 @@ import org.sonar.server.tester.UserSessionRule;
 import org.sonar.server.ws.TestRequest;
 import org.sonar.server.ws.WsActionTester;
 import org.sonarqube.ws.MediaTypes;
+import org.sonarqube.ws.WsComponents.Component;
 import org.sonarqube.ws.WsComponents.SearchWsResponse;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -64,12 +79,18 @@ public class SearchActionTest {
   public UserSessionRule userSession = UserSessionRule.standalone();
   @Rule
   public DbTester db = DbTester.create(System2.INSTANCE);
+  @Rule
+  public EsTester es = new EsTester(new ComponentIndexDefinition(new MapSettings()), new ProjectMeasuresIndexDefinition(new MapSettings()));
   ComponentDbTester componentDb = new ComponentDbTester(db);
   I18nRule i18n = new I18nRule();
 
   WsActionTester ws;
   ResourceTypesRule resourceTypes = new ResourceTypesRule();
   Languages languages;
+  Settings settings = new MapSettings().setProperty(ComponentIndexer.ENABLED_PROPERTY, true);
+  ComponentIndexer componentIndexer = new ComponentIndexer(System2.INSTANCE, db.getDbClient(), es.client(), settings);
+  ComponentService componentService = new ComponentService(db.getDbClient(), i18n, userSession, System2.INSTANCE, new ComponentFinder(db.getDbClient()),
+    new ProjectMeasuresIndexer(System2.INSTANCE, db.getDbClient(), es.client()), componentIndexer);
 
   @Before
   public void setUp() {
@@ -78,7 +99,7 @@ public class SearchActionTest {
     languages = mock(Languages.class);
     when(languages.all()).thenReturn(javaLanguage());
 
-    ws = new WsActionTester(new SearchAction(db.getDbClient(), resourceTypes, i18n, userSession, languages));
+    ws = newWsActionTester();
   }
 
   @Test
@@ -137,6 +158,7 @@ public class SearchActionTest {
     componentDb.insertComponent(newProjectDto().setKey("project-_%-key"));
     componentDb.insertComponent(newProjectDto().setKey("project-key-without-escaped-characters"));
     db.commit();
+    componentIndexer.index();
 
     InputStream responseStream = newRequest(Qualifiers.PROJECT)
       .setParam(Param.TEXT_QUERY, "project-_%-key")
@@ -147,6 +169,118 @@ public class SearchActionTest {
     assertThat(response.getComponentsList()).extracting("key").containsExactly("project-_%-key");
   }
 
+  @Test
+  public void search_with_substring_of_name_query() throws IOException {
+    ComponentDto project = componentDb.insertComponent(newProjectDto("project-uuid").setName("Project"));
+    componentDb.insertComponent(newFileDto(project, null, "file-uuid-1").setName("Dictionary.java"));
+    componentDb.insertComponent(newFileDto(project, null, "file-uuid-2").setName("DictionaryTest.java"));
+    componentDb.insertComponent(newFileDto(project, null, "file-uuid-3").setName("Index.java"));
+    componentDb.insertComponent(newFileDto(project, null, "file-uuid-4").setName("Removed Dictionary.java").setEnabled(false));
+    db.commit();
+    componentIndexer.index();
+
+    InputStream responseStream = newRequest(Qualifiers.FILE)
+      .setParam(Param.TEXT_QUERY, "CTIONARY")
+      .execute().getInputStream();
+    SearchWsResponse response = SearchWsResponse.parseFrom(responseStream);
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-1", "file-uuid-2");
+    assertThat(response.getPaging().getTotal()).isEqualTo(2);
+  }
+
+  @Test
+  public void search_with_single_character_query() throws IOException {
+    componentDb.insertComponent(newProjectDto("project-uuid-1").setName("Apache"));
+    componentDb.insertComponent(newProjectDto("project-uuid-2").setName("Sonar"));
+    componentDb.insertComponent(newProjectDto("project-uuid-3").setName("Struts"));
+    db.commit();
+    componentIndexer.index();
+
+    InputStream responseStream = newRequest(Qualifiers.PROJECT)
+      .setParam(Param.TEXT_QUERY, "a")
+      .execute().getInputStream();
+    SearchWsResponse response = SearchWsResponse.parseFrom(responseStream);
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("project-uuid-1", "project-uuid-2");
+  }
+
+  @Test
+  public void search_component_with_single_character_name() throws IOException {
+    ComponentDto project = componentDb.insertComponent(newProjectDto("project-uuid").setName("Project"));
+    componentDb.insertComponent(newDirectory(project, "a").setUuid("dir-uuid-1").setName("a"));
+    componentDb.insertComponent(newDirectory(project, "src/b").setUuid("dir-uuid-2").setName("b"));
+    db.commit();
+    componentIndexer.index();
+
+    InputStream responseStream = newRequest(Qualifiers.DIRECTORY)
+      .setParam(Param.TEXT_QUERY, "b")
+      .execute().getInputStream();
+    SearchWsResponse response = SearchWsResponse.parseFrom(responseStream);
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("dir-uuid-2");
+  }
+
+  @Test
+  public void search_by_name_in_db_when_component_index_is_disabled() throws IOException {
+    settings.setProperty(ComponentIndexer.ENABLED_PROPERTY, false);
+    ws = newWsActionTester();
+    ComponentDto project = componentDb.insertComponent(newProjectDto("project-uuid").setName("Project"));
+    componentDb.insertComponent(newFileDto(project, null, "file-uuid-1").setName("Dictionary.java"));
+    componentDb.insertComponent(newFileDto(project, null, "file-uuid-2").setName("Index.java"));
+    db.commit();
+    componentDb.indexComponents("file-uuid-1", "file-uuid-2");
+
+    InputStream responseStream = newRequest(Qualifiers.FILE)
+      .setParam(Param.TEXT_QUERY, "ctionary")
+      .execute().getInputStream();
+    SearchWsResponse response = SearchWsResponse.parseFrom(responseStream);
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("file-uuid-1");
+  }
+
+  @Test
+  public void search_provisioned_project_by_name() throws IOException {
+    userSession.setGlobalPermissions(GlobalPermissions.SYSTEM_ADMIN, GlobalPermissions.PROVISIONING);
+    componentService.create(db.getSession(), NewComponent.create("provisioned-key", "Provisioned Project"));
+
+    InputStream responseStream = newRequest(Qualifiers.PROJECT)
+      .setParam(Param.TEXT_QUERY, "visioned")
+      .execute().getInputStream();
+    SearchWsResponse response = SearchWsResponse.parseFrom(responseStream);
+
+    assertThat(response.getComponentsList()).extracting("key").containsExactly("provisioned-key");
+  }
+
+  @Test
+  public void search_project_by_its_new_key_once_renamed() throws IOException {
+    ComponentDto project = componentDb.insertComponent(newProjectDto("project-uuid").setKey("old-key"));
+    db.commit();
+    componentIndexer.index();
+    userSession.addProjectUuidPermissions(UserRole.ADMIN, project.uuid());
+
+    componentService.updateKey(db.getSession(), "old-key", "new-key");
+
+    assertThat(searchProjectKeys("new-key")).containsExactly("new-key");
+    assertThat(searchProjectKeys("old-key")).isEmpty();
+  }
+
+  @Test
+  public void search_with_query_and_language() throws IOException {
+    ComponentDto project = componentDb.insertComponent(newProjectDto());
+    componentDb.insertComponent(newFileDto(project, null, "java-file").setName("Sample.java").setLanguage("java"));
+    componentDb.insertComponent(newFileDto(project, null, "cpp-file").setName("Sample.cpp").setLanguage("cpp"));
+    db.commit();
+    componentIndexer.index();
+
+    InputStream responseStream = newRequest(Qualifiers.FILE)
+      .setParam(Param.TEXT_QUERY, "sample")
+      .setParam(PARAM_LANGUAGE, "java")
+      .execute().getInputStream();
+    SearchWsResponse response = SearchWsResponse.parseFrom(responseStream);
+
+    assertThat(response.getComponentsList()).extracting("id").containsExactly("java-file");
+  }
+
   @Test
   public void search_with_language() throws IOException {
     componentDb.insertComponent(newProjectDto().setKey("java-project").setLanguage("java"));
@@ -186,6 +320,19 @@ public class SearchActionTest {
     newRequest(Qualifiers.PROJECT).execute();
   }
 
+  private WsActionTester newWsActionTester() {
+    return new WsActionTester(new SearchAction(db.getDbClient(), new ComponentIndex(es.client()), resourceTypes, i18n, userSession, languages, settings));
+  }
+
+  private List<String> searchProjectKeys(String query) throws IOException {
+    InputStream responseStream = newRequest(Qualifiers.PROJECT)
+      .setParam(Param.TEXT_QUERY, query)
+      .execute().getInputStream();
+    return SearchWsResponse.parseFrom(responseStream).getComponentsList().stream()
+      .map(Component::getKey)
+      .collect(Collectors.toList());
+  }
+
   private TestRequest newRequest(String... qualifiers) {
     return ws.newRequest()
       .setMediaType(MediaTypes.PROTOBUF)
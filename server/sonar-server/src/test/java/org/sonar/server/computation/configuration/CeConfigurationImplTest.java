@@ -29,6 +29,7 @@ import org.sonar.api.utils.MessageException;
 
 import static java.lang.Math.abs;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_QUEUE_CLAIM_BATCH_SIZE_PROPERTY;
 import static org.sonar.server.computation.configuration.CeConfigurationImpl.CE_WORKERS_COUNT_PROPERTY;
 
 public class CeConfigurationImplTest {
@@ -103,6 +104,29 @@ public class CeConfigurationImplTest {
     new CeConfigurationImpl(settings);
   }
 
+  @Test
+  public void getQueueClaimBatchSize_returns_1_when_property_is_not_defined() {
+    assertThat(new CeConfigurationImpl(settings).getQueueClaimBatchSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void getQueueClaimBatchSize_returns_value_of_property() {
+    settings.setProperty(CE_QUEUE_CLAIM_BATCH_SIZE_PROPERTY, 5);
+
+    assertThat(new CeConfigurationImpl(settings).getQueueClaimBatchSize()).isEqualTo(5);
+  }
+
+  @Test
+  public void constructor_throws_MessageException_when_claim_batch_size_property_is_0() {
+    settings.setProperty(CE_QUEUE_CLAIM_BATCH_SIZE_PROPERTY, "0");
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '0' of property " + CE_QUEUE_CLAIM_BATCH_SIZE_PROPERTY + " is invalid. " +
+      "It must an integer strictly greater than 0");
+
+    new CeConfigurationImpl(settings);
+  }
+
   private void expectMessageException(int value) {
     expectedException.expect(MessageException.class);
     expectedException.expectMessage("value '" + value + "' of property " + CE_WORKERS_COUNT_PROPERTY + " is invalid. " +
@@ -29,6 +29,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 public class CeConfigurationRule extends ExternalResource implements CeConfiguration {
   private int workerCount = CeConfigurationImpl.DEFAULT_WORKER_COUNT;
   private long queuePollingDelay = CeConfigurationImpl.DEFAULT_QUEUE_POLLING_DELAY;
+  private int queueClaimBatchSize = CeConfigurationImpl.DEFAULT_QUEUE_CLAIM_BATCH_SIZE;
 
   @Override
   public int getWorkerCount() {
@@ -50,4 +51,15 @@ public class CeConfigurationRule extends ExternalResource implements CeConfigura
     checkArgument(queuePollingDelay > 0, "Queue polling delay must be >= 0");
     this.queuePollingDelay = queuePollingDelay;
   }
+
+  @Override
+  public int getQueueClaimBatchSize() {
+    return queueClaimBatchSize;
+  }
+
+  public CeConfigurationRule setQueueClaimBatchSize(int queueClaimBatchSize) {
+    checkArgument(queueClaimBatchSize >= 1, "queue claim batch size must be >= 1");
+    this.queueClaimBatchSize = queueClaimBatchSize;
+    return this;
+  }
 }
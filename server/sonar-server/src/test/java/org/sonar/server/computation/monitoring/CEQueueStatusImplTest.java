@@ -133,6 +133,25 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getProcessingTime()).isEqualTo(calls);
   }
 
+  @Test
+  public void addQueueLatency_throws_IAE_if_time_is_less_than_0() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Queue latency can not be < 0");
+
+    underTest.addQueueLatency(-1);
+  }
+
+  @Test
+  public void addQueueLatency_sums_latencies_and_keeps_the_max() {
+    underTest.addQueueLatency(10);
+    underTest.addQueueLatency(30);
+    underTest.addQueueLatency(20);
+
+    assertThat(underTest.getQueueLatency()).isEqualTo(60);
+    assertThat(underTest.getMaxQueueLatency()).isEqualTo(30);
+    assertThat(underTest.getInProgressCount()).isEqualTo(0);
+  }
+
   @Test
   public void count_Pending_from_database() {
     when(dbClient.ceQueueDao().countByStatus(any(DbSession.class), eq(CeQueueDto.Status.PENDING))).thenReturn(42);
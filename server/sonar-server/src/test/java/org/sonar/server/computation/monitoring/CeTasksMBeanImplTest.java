@@ -37,7 +37,10 @@ public class CeTasksMBeanImplTest {
   private static final long ERROR_COUNT = 10;
   private static final long SUCCESS_COUNT = 13;
   private static final long PROCESSING_TIME = 987;
+  private static final long QUEUE_LATENCY = 4_321;
+  private static final long MAX_QUEUE_LATENCY = 1_234;
   private static final int WORKER_COUNT = 56;
+  private static final int QUEUE_CLAIM_BATCH_SIZE = 3;
 
   private CeTasksMBeanImpl underTest = new CeTasksMBeanImpl(new DumbCEQueueStatus(), new DumbCeConfiguration());
 
@@ -59,6 +62,8 @@ public class CeTasksMBeanImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(ERROR_COUNT);
     assertThat(underTest.getSuccessCount()).isEqualTo(SUCCESS_COUNT);
     assertThat(underTest.getProcessingTime()).isEqualTo(PROCESSING_TIME);
+    assertThat(underTest.getQueueLatency()).isEqualTo(QUEUE_LATENCY);
+    assertThat(underTest.getMaxQueueLatency()).isEqualTo(MAX_QUEUE_LATENCY);
   }
 
   @Test
@@ -66,11 +71,16 @@ public class CeTasksMBeanImplTest {
     assertThat(underTest.getWorkerCount()).isEqualTo(WORKER_COUNT);
   }
 
+  @Test
+  public void getQueueClaimBatchSize_delegates_to_the_CEConfiguration_instance() {
+    assertThat(underTest.getQueueClaimBatchSize()).isEqualTo(QUEUE_CLAIM_BATCH_SIZE);
+  }
+
   @Test
   public void export_system_info() {
     ProtobufSystemInfo.Section section = underTest.toProtobuf();
     assertThat(section.getName()).isEqualTo("Compute Engine Tasks");
-    assertThat(section.getAttributesCount()).isEqualTo(6);
+    assertThat(section.getAttributesCount()).isEqualTo(9);
   }
 
   /**
@@ -119,6 +129,21 @@ public class CeTasksMBeanImplTest {
       return PROCESSING_TIME;
     }
 
+    @Override
+    public void addQueueLatency(long queueLatency) {
+      methodNotImplemented();
+    }
+
+    @Override
+    public long getQueueLatency() {
+      return QUEUE_LATENCY;
+    }
+
+    @Override
+    public long getMaxQueueLatency() {
+      return MAX_QUEUE_LATENCY;
+    }
+
     private long methodNotImplemented() {
       throw new UnsupportedOperationException("Not Implemented");
     }
@@ -134,6 +159,11 @@ public class CeTasksMBeanImplTest {
     public long getQueuePollingDelay() {
       throw new UnsupportedOperationException("getQueuePollingDelay is not implemented");
     }
+
+    @Override
+    public int getQueueClaimBatchSize() {
+      return QUEUE_CLAIM_BATCH_SIZE;
+    }
   }
 
   @CheckForNull
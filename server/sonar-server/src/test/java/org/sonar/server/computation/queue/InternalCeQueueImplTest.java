@@ -23,11 +23,11 @@ import com.google.common.base.Optional;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
-import org.sonar.api.utils.System2;
 import org.sonar.api.utils.internal.TestSystem2;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.ce.queue.CeTask;
@@ -42,6 +42,7 @@ import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.server.computation.configuration.CeConfigurationRule;
 import org.sonar.server.computation.monitoring.CEQueueStatusImpl;
 
 import static java.util.Arrays.asList;
@@ -58,7 +59,7 @@ public class InternalCeQueueImplTest {
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
 
-  System2 system2 = new TestSystem2().setNow(1_450_000_000_000L);
+  TestSystem2 system2 = new TestSystem2().setNow(1_450_000_000_000L);
 
   @Rule
   public DbTester dbTester = DbTester.create(system2);
@@ -66,7 +67,8 @@ public class InternalCeQueueImplTest {
 
   UuidFactory uuidFactory = UuidFactoryImpl.INSTANCE;
   CEQueueStatus queueStatus = new CEQueueStatusImpl(dbTester.getDbClient());
-  InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus);
+  CeConfigurationRule ceConfiguration = new CeConfigurationRule();
+  InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, ceConfiguration);
 
   @Test
   public void submit_returns_task_populated_from_CeTaskSubmit_and_creates_CeQueue_row() {
@@ -151,6 +153,76 @@ public class InternalCeQueueImplTest {
     assertThat(history.get().getAnalysisUuid()).isNull();
   }
 
+  @Test
+  public void peek_keeps_tasks_loaded_in_batch_for_next_calls() {
+    InternalCeQueue batchQueue = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, ceConfiguration.setQueueClaimBatchSize(3));
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_3");
+    AtomicInteger notifications = new AtomicInteger();
+    batchQueue.addTaskAvailableListener(notifications::incrementAndGet);
+
+    assertThat(batchQueue.peek().get().getUuid()).isEqualTo(task1.getUuid());
+    // remaining tasks are available to other workers but stay pending until they are peeked
+    assertThat(dbTester.getDbClient().ceQueueDao().countByStatus(session, CeQueueDto.Status.IN_PROGRESS)).isEqualTo(1);
+    assertThat(dbTester.getDbClient().ceQueueDao().countByStatus(session, CeQueueDto.Status.PENDING)).isEqualTo(2);
+    assertThat(notifications.get()).isEqualTo(1);
+
+    system2.setNow(1_450_000_001_000L);
+    assertThat(batchQueue.peek().get().getUuid()).isEqualTo(task2.getUuid());
+    assertThat(dbTester.getDbClient().ceQueueDao().selectByUuid(session, task2.getUuid()).get().getStartedAt()).isEqualTo(1_450_000_001_000L);
+    assertThat(batchQueue.peek().get().getUuid()).isEqualTo(task3.getUuid());
+    assertThat(batchQueue.peek().isPresent()).isFalse();
+    assertThat(queueStatus.getInProgressCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void peek_skips_tasks_loaded_in_batch_which_have_been_canceled() {
+    InternalCeQueue batchQueue = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, ceConfiguration.setQueueClaimBatchSize(2));
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+
+    batchQueue.peek();
+    assertThat(batchQueue.cancel(task2.getUuid())).isTrue();
+
+    assertThat(batchQueue.peek().isPresent()).isFalse();
+  }
+
+  @Test
+  public void tasks_loaded_in_batch_are_not_held_when_peek_is_paused() {
+    InternalCeQueue batchQueue = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, ceConfiguration.setQueueClaimBatchSize(2));
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+
+    batchQueue.peek();
+    batchQueue.pausePeek();
+
+    assertThat(batchQueue.peek().isPresent()).isFalse();
+    assertThat(dbTester.getDbClient().ceQueueDao().selectByUuid(session, task2.getUuid()).get().getStatus()).isEqualTo(CeQueueDto.Status.PENDING);
+  }
+
+  @Test
+  public void submit_notifies_task_available_listeners() {
+    AtomicInteger notifications = new AtomicInteger();
+    underTest.addTaskAvailableListener(notifications::incrementAndGet);
+
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    underTest.massSubmit(asList(createTaskSubmit("some type"), createTaskSubmit("some type")));
+
+    assertThat(notifications.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void peek_adds_time_spent_in_queue_to_queue_latency() {
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    system2.setNow(1_450_000_000_500L);
+
+    underTest.peek();
+
+    assertThat(queueStatus.getQueueLatency()).isEqualTo(500L);
+    assertThat(queueStatus.getMaxQueueLatency()).isEqualTo(500L);
+  }
+
   @Test
   public void remove_throws_IAE_if_exception_is_provided_but_status_is_SUCCESS() {
     expectedException.expect(IllegalArgumentException.class);
@@ -25,6 +25,7 @@ import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -55,12 +56,14 @@ public class BatchReportReaderImplTest {
   @Rule
   public JUnitTempFolder tempFolder = new JUnitTempFolder();
 
+  private File reportDir;
   private ScannerReportWriter writer;
   private BatchReportReaderImpl underTest;
 
   @Before
   public void setUp() {
-    BatchReportDirectoryHolder holder = new ImmutableBatchReportDirectoryHolder(tempFolder.newDir());
+    reportDir = tempFolder.newDir();
+    BatchReportDirectoryHolder holder = new ImmutableBatchReportDirectoryHolder(reportDir);
     underTest = new BatchReportReaderImpl(holder);
     writer = new ScannerReportWriter(holder.getDirectory());
   }
@@ -315,4 +318,28 @@ public class BatchReportReaderImplTest {
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void read_report_from_zip_file_without_extracting_it() throws IOException {
+    writer.writeComponentIssues(COMPONENT_REF, of(ISSUE));
+    writer.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    FileUtils.write(writer.getFileStructure().analysisLog(), "log1\nlog2");
+    File zip = tempFolder.newFile();
+    ZipUtils.zipDir(reportDir, zip);
+    BatchReportDirectoryHolderImpl holder = new BatchReportDirectoryHolderImpl();
+    holder.setZipFile(zip);
+    BatchReportReaderImpl zipReader = new BatchReportReaderImpl(holder);
+
+    try {
+      assertThat(zipReader.readComponentIssues(COMPONENT_REF)).containsExactly(ISSUE);
+      assertThat(zipReader.readTests(COMPONENT_REF)).containsExactly(TEST_1, TEST_2);
+      assertThat(zipReader.readFileSource(COMPONENT_REF).get()).containsExactly("1", "2", "3");
+      assertThat(zipReader.readScannerLogs()).containsExactly("log1", "log2");
+      assertThat(zipReader.readCoverageDetails(COMPONENT_REF)).isEmpty();
+      assertThat(zipReader.readFileSource(COMPONENT_REF + 1)).isAbsent();
+    } finally {
+      zipReader.stop();
+    }
+  }
 }
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.task.projectanalysis.batch;
 
+import com.google.common.base.Optional;
 import java.io.File;
 import java.util.Objects;
 
@@ -33,4 +34,9 @@ public class ImmutableBatchReportDirectoryHolder implements BatchReportDirectory
   public File getDirectory() {
     return directory;
   }
+
+  @Override
+  public Optional<File> getZipFile() {
+    return Optional.absent();
+  }
 }
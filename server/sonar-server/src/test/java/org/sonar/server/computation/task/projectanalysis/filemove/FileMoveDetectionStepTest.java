@@ -24,17 +24,22 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.function.Function;
 import org.apache.commons.io.FileUtils;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.MapSettings;
 import org.sonar.core.hash.SourceHashComputer;
 import org.sonar.core.hash.SourceLinesHashesComputer;
 import org.sonar.db.DbClient;
@@ -56,7 +61,9 @@ import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.sonar.api.resources.Qualifiers.FILE;
@@ -230,16 +237,31 @@ public class FileMoveDetectionStepTest {
   private ComponentDao componentDao = mock(ComponentDao.class);
   private FileSourceDao fileSourceDao = mock(FileSourceDao.class);
   private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
+  private MapSettings settings = new MapSettings();
+  private Map<String, FileSourceDto> fileSourcesByUuid = new HashMap<>();
   private long dbIdGenerator = 0;
 
   private FileMoveDetectionStep underTest = new FileMoveDetectionStep(analysisMetadataHolder, treeRootHolder, dbClient,
-    sourceLinesRepository, fileSimilarity, movedFilesRepository);
+    sourceLinesRepository, fileSimilarity, movedFilesRepository, settings);
 
   @Before
   public void setUp() throws Exception {
     when(dbClient.openSession(false)).thenReturn(dbSession);
     when(dbClient.componentDao()).thenReturn(componentDao);
     when(dbClient.fileSourceDao()).thenReturn(fileSourceDao);
+    doAnswer(invocation -> {
+      Collection<String> fileUuids = (Collection<String>) invocation.getArguments()[1];
+      ResultHandler handler = (ResultHandler) invocation.getArguments()[2];
+      for (String fileUuid : fileUuids) {
+        FileSourceDto dto = fileSourcesByUuid.get(fileUuid);
+        if (dto != null) {
+          ResultContext context = mock(ResultContext.class);
+          when(context.getResultObject()).thenReturn(dto);
+          handler.handleResult(context);
+        }
+      }
+      return null;
+    }).when(fileSourceDao).scrollLineHashesByFileUuids(eq(dbSession), anyCollection(), any(ResultHandler.class));
     treeRootHolder.setRoot(PROJECT);
   }
 
@@ -487,6 +509,53 @@ public class FileMoveDetectionStepTest {
       .isEqualTo("AddComponentUuidColumnToDuplicationsIndex.java");
   }
 
+  @Test
+  public void real_life_use_case_with_several_threads() throws Exception {
+    settings.setProperty(FileMoveDetectionStep.THREADS_PROPERTY, 4);
+    underTest = new FileMoveDetectionStep(analysisMetadataHolder, treeRootHolder, dbClient,
+      sourceLinesRepository, fileSimilarity, movedFilesRepository, settings);
+
+    real_life_use_case();
+  }
+
+  @Test
+  public void execute_detects_moves_among_many_files() {
+    // more pairs of files than MIN_PAIRS_FOR_CANDIDATES_PRUNING, so that only candidates of MinHashIndex are scored
+    int nbFiles = 110;
+    assertThat((long) nbFiles * nbFiles).isGreaterThanOrEqualTo(FileMoveDetectionStep.MIN_PAIRS_FOR_CANDIDATES_PRUNING);
+    settings.setProperty(FileMoveDetectionStep.THREADS_PROPERTY, 2);
+    underTest = new FileMoveDetectionStep(analysisMetadataHolder, treeRootHolder, dbClient,
+      sourceLinesRepository, fileSimilarity, movedFilesRepository, settings);
+    analysisMetadataHolder.setBaseAnalysis(ANALYSIS);
+
+    Random random = new Random(1);
+    String[] dbKeys = new String[nbFiles];
+    Component[] reportFiles = new Component[nbFiles];
+    for (int i = 0; i < nbFiles; i++) {
+      String[] content = new String[40];
+      for (int line = 0; line < content.length; line++) {
+        // lines shared by all files, as blank lines or closing braces
+        content[line] = line % 4 == 0 ? "}" : ("line " + random.nextInt());
+      }
+      dbKeys[i] = "old_" + i;
+      mockContentOfFileInDb(dbKeys[i], content);
+
+      // moved with a small change
+      content[1] = "changed";
+      reportFiles[i] = builder(Component.Type.FILE, 10 + i).setKey("new_" + i).setPath("new_" + i).build();
+      setFileContentInReport(10 + i, content);
+    }
+    mockComponents(dbKeys);
+    setFilesInReport(reportFiles);
+
+    underTest.execute();
+
+    assertThat(movedFilesRepository.getComponentsWithOriginal()).hasSize(nbFiles);
+    for (int i = 0; i < nbFiles; i++) {
+      assertThat(movedFilesRepository.getOriginalFile(reportFiles[i]).get().getKey()).isEqualTo("old_" + i);
+    }
+  }
+
   private String[] readLines(File filename) throws IOException {
     return FileUtils
       .readLines(filename, StandardCharsets.UTF_8)
@@ -507,10 +576,10 @@ public class FileMoveDetectionStepTest {
       sourceHashComputer.addLine(line, lineIterator.hasNext());
     }
 
-    when(fileSourceDao.selectSourceByFileUuid(dbSession, componentUuidOf(key)))
-      .thenReturn(new FileSourceDto()
-        .setLineHashes(on('\n').join(linesHashesComputer.getLineHashes()))
-        .setSrcHash(sourceHashComputer.getHash()));
+    fileSourcesByUuid.put(componentUuidOf(key), new FileSourceDto()
+      .setFileUuid(componentUuidOf(key))
+      .setLineHashes(on('\n').join(linesHashesComputer.getLineHashes()))
+      .setSrcHash(sourceHashComputer.getHash()));
   }
 
   private void setFilesInReport(Component... files) {
@@ -0,0 +1,46 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LineHashesInternerTest {
+
+  private LineHashesInterner underTest = new LineHashesInterner();
+
+  @Test
+  public void equal_line_hashes_have_same_id_across_files() {
+    int[] file1 = underTest.intern(asList("a", "b", "", "a"));
+    int[] file2 = underTest.intern(asList("", "c", "b"));
+
+    assertThat(file1).containsExactly(0, 1, 2, 0);
+    assertThat(file2).containsExactly(2, 3, 1);
+    assertThat(underTest.size()).isEqualTo(4);
+  }
+
+  @Test
+  public void no_lines() {
+    assertThat(underTest.intern(asList())).isEmpty();
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MinHashIndexTest {
+
+  private MinHashIndex underTest = new MinHashIndex();
+
+  @Test
+  public void signature_does_not_depend_on_order_nor_duplication_of_lines() {
+    assertThat(MinHashIndex.signature(new int[] {1, 2, 3}))
+      .containsExactly(MinHashIndex.signature(new int[] {3, 1, 2, 2, 1}))
+      .hasSize(MinHashIndex.BANDS * MinHashIndex.ROWS);
+  }
+
+  @Test
+  public void file_is_candidate_of_itself() {
+    underTest.add(0, range(0, 50));
+    underTest.add(1, range(1000, 1050));
+
+    assertThat(underTest.candidates(range(0, 50)).stream().toArray()).containsExactly(0);
+    assertThat(underTest.candidates(range(1000, 1050)).stream().toArray()).containsExactly(1);
+  }
+
+  @Test
+  public void similar_files_are_candidates_and_unrelated_files_are_not() {
+    underTest.add(0, range(0, 100));
+    underTest.add(1, range(100, 200));
+    underTest.add(2, range(200, 300));
+
+    // 90% of lines in common with file 0
+    assertThat(underTest.candidates(IntStream.concat(IntStream.range(0, 90), IntStream.range(5000, 5010)).toArray()).stream().toArray())
+      .containsExactly(0);
+    assertThat(underTest.candidates(range(10000, 10100)).isEmpty()).isTrue();
+  }
+
+  private static int[] range(int startInclusive, int endExclusive) {
+    return IntStream.range(startInclusive, endExclusive).toArray();
+  }
+}
@@ -53,4 +53,23 @@ public class SourceSimilarityImplTest {
     assertThat(underTest.score(asList("a"), asList("a", "b", "c"))).isEqualTo(33);
     assertThat(underTest.score(asList("a", "b", "c"), asList("a"))).isEqualTo(33);
   }
+
+  @Test
+  public void score_of_line_hash_ids() {
+    assertThat(underTest.score(new int[] {1, 2, 3}, new int[] {4, 5})).isEqualTo(0);
+    assertThat(underTest.score(new int[] {1, 2, 3}, new int[] {1, 2, 3})).isEqualTo(100);
+    assertThat(underTest.score(new int[] {1, 2, 3, 4}, new int[] {1, 2, 5, 6})).isEqualTo(50);
+    assertThat(underTest.score(new int[] {1}, new int[] {1, 2, 3})).isEqualTo(33);
+  }
+
+  @Test
+  public void levenshtein_distance_of_line_hash_ids_is_the_same_as_on_lists() {
+    List<Integer> left = asList(1, 2, 3, 4, 5, 1, 2);
+    List<Integer> right = asList(2, 3, 9, 5, 1, 2, 7, 8);
+
+    assertThat(underTest.levenshteinDistance(new int[] {1, 2, 3, 4, 5, 1, 2}, new int[] {2, 3, 9, 5, 1, 2, 7, 8}))
+      .isEqualTo(underTest.levenshteinDistance(left, right))
+      .isEqualTo(4);
+    assertThat(underTest.levenshteinDistance(new int[0], new int[] {1, 2})).isEqualTo(2);
+  }
 }
@@ -0,0 +1,135 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.internal.JUnitTempFolder;
+import org.sonar.core.issue.DefaultIssue;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BaseInputStoreTest {
+
+  @Rule
+  public JUnitTempFolder tempFolder = new JUnitTempFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void issues_are_not_available_before_store_is_loaded() {
+    BaseInputStore underTest = new BaseInputStore(tempFolder, new MapSettings());
+    underTest.putIssues("FILE1", singletonList(newIssue("ISSUE1")));
+
+    assertThat(underTest.isLoaded()).isFalse();
+    assertThat(underTest.takeIssues("FILE1")).isNull();
+  }
+
+  @Test
+  public void take_issues_kept_in_memory() {
+    BaseInputStore underTest = new BaseInputStore(tempFolder, new MapSettings());
+    underTest.putIssues("FILE1", asList(newIssue("ISSUE1"), newIssue("ISSUE2")));
+    underTest.putIssues("FILE2", singletonList(newIssue("ISSUE3")));
+    underTest.setLoaded();
+
+    assertThat(underTest.getComponentUuids()).containsOnly("FILE1", "FILE2");
+    assertThat(underTest.takeIssues("FILE1")).extracting("key").containsExactly("ISSUE1", "ISSUE2");
+    assertThat(underTest.takeIssues("FILE2")).extracting("key").containsExactly("ISSUE3");
+    assertThat(underTest.hasSpilled()).isFalse();
+  }
+
+  @Test
+  public void take_issues_spilled_to_disk_when_memory_limit_is_reached() {
+    BaseInputStore underTest = new BaseInputStore(tempFolder, 0L);
+    underTest.putIssues("FILE1", asList(newIssue("ISSUE1"), newIssue("ISSUE2")));
+    underTest.putIssues("FILE2", singletonList(newIssue("ISSUE3")));
+    underTest.setLoaded();
+
+    assertThat(underTest.hasSpilled()).isTrue();
+    assertThat(underTest.takeIssues("FILE2")).extracting("key").containsExactly("ISSUE3");
+    List<DefaultIssue> issues = underTest.takeIssues("FILE1");
+    assertThat(issues).extracting("key").containsExactly("ISSUE1", "ISSUE2");
+    assertThat(issues.get(0).ruleKey()).isEqualTo(RuleKey.of("xoo", "S001"));
+    assertThat(issues.get(0).line()).isEqualTo(10);
+
+    underTest.stop();
+  }
+
+  @Test
+  public void components_without_issues_have_no_base_issues_once_loaded() {
+    BaseInputStore underTest = new BaseInputStore(tempFolder, new MapSettings());
+    underTest.setLoaded();
+
+    assertThat(underTest.takeIssues("UNKNOWN")).isEmpty();
+  }
+
+  @Test
+  public void issues_can_be_taken_only_once() {
+    BaseInputStore underTest = new BaseInputStore(tempFolder, new MapSettings());
+    underTest.putIssues("FILE1", singletonList(newIssue("ISSUE1")));
+    underTest.setLoaded();
+
+    assertThat(underTest.takeIssues("FILE1")).hasSize(1);
+    assertThat(underTest.takeIssues("FILE1")).isNull();
+    assertThat(underTest.takeIssues("UNKNOWN")).isEmpty();
+    assertThat(underTest.takeIssues("UNKNOWN")).isNull();
+  }
+
+  @Test
+  public void take_line_hashes() {
+    BaseInputStore underTest = new BaseInputStore(tempFolder, 0L);
+    underTest.putLineHashes("FILE1", "h1\nh2\nh3");
+    underTest.putLineHashes("FILE2", "");
+    underTest.setLoaded();
+
+    assertThat(underTest.takeLineHashes("FILE1")).containsExactly("h1", "h2", "h3");
+    assertThat(underTest.takeLineHashes("FILE1")).isNull();
+    assertThat(underTest.takeLineHashes("FILE2")).isEmpty();
+    assertThat(underTest.takeLineHashes("UNKNOWN")).isNull();
+
+    underTest.stop();
+  }
+
+  @Test
+  public void fail_to_put_issues_once_loaded() {
+    BaseInputStore underTest = new BaseInputStore(tempFolder, new MapSettings());
+    underTest.setLoaded();
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Store is already loaded");
+
+    underTest.putIssues("FILE1", singletonList(newIssue("ISSUE1")));
+  }
+
+  private static DefaultIssue newIssue(String key) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setRuleKey(RuleKey.of("xoo", "S001"))
+      .setComponentUuid("FILE")
+      .setLine(10)
+      .setMessage("message of " + key);
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class DefaultIssueCodecTest {
+
+  private DefaultIssueCodec underTest = new DefaultIssueCodec();
+
+  @Test
+  public void write_and_read_issue_with_all_fields() throws Exception {
+    Date creationDate = new Date(1_400_000_000_000L);
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE_KEY")
+      .setType(RuleType.BUG)
+      .setComponentUuid("FILE_UUID")
+      .setComponentKey("FILE_KEY")
+      .setModuleUuid("MODULE_UUID")
+      .setModuleUuidPath(".MODULE_UUID.")
+      .setProjectUuid("PROJECT_UUID")
+      .setProjectKey("PROJECT_KEY")
+      .setRuleKey(RuleKey.of("xoo", "S001"))
+      .setLanguage("xoo")
+      .setSeverity(Severity.MAJOR)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(42)
+      .setGap(1.5)
+      .setEffort(Duration.create(10L))
+      .setStatus("OPEN")
+      .setResolution("FIXED")
+      .setAssignee("john")
+      .setChecksum("CHECKSUM")
+      .setAttributes(ImmutableMap.of("JIRA", "FOO-123"))
+      .setAuthorLogin("simon")
+      .setTags(Arrays.asList("tag1", "tag2"))
+      .setLocations(DbIssues.Locations.newBuilder().setTextRange(DbCommons.TextRange.newBuilder().setStartLine(42).setEndLine(43)).build())
+      .setCreationDate(creationDate)
+      .setUpdateDate(new Date(1_500_000_000_000L))
+      .setCloseDate(new Date(1_600_000_000_000L))
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_700_000_000_000L);
+    issue.addComment(new DefaultIssueComment().setKey("COMMENT_KEY").setIssueKey("ISSUE_KEY").setUserLogin("john").setMarkdownText("a *comment*")
+      .setCreatedAt(creationDate).setUpdatedAt(creationDate).setNew(true));
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.key()).isEqualTo("ISSUE_KEY");
+    assertThat(read.type()).isEqualTo(RuleType.BUG);
+    assertThat(read.componentUuid()).isEqualTo("FILE_UUID");
+    assertThat(read.componentKey()).isEqualTo("FILE_KEY");
+    assertThat(read.moduleUuid()).isEqualTo("MODULE_UUID");
+    assertThat(read.moduleUuidPath()).isEqualTo(".MODULE_UUID.");
+    assertThat(read.projectUuid()).isEqualTo("PROJECT_UUID");
+    assertThat(read.projectKey()).isEqualTo("PROJECT_KEY");
+    assertThat(read.ruleKey()).isEqualTo(RuleKey.of("xoo", "S001"));
+    assertThat(read.language()).isEqualTo("xoo");
+    assertThat(read.severity()).isEqualTo(Severity.MAJOR);
+    assertThat(read.manualSeverity()).isTrue();
+    assertThat(read.message()).isEqualTo("the message");
+    assertThat(read.line()).isEqualTo(42);
+    assertThat(read.gap()).isEqualTo(1.5);
+    assertThat(read.effort()).isEqualTo(Duration.create(10L));
+    assertThat(read.status()).isEqualTo("OPEN");
+    assertThat(read.resolution()).isEqualTo("FIXED");
+    assertThat(read.assignee()).isEqualTo("john");
+    assertThat(read.checksum()).isEqualTo("CHECKSUM");
+    assertThat(read.attributes()).containsOnly(entry("JIRA", "FOO-123"));
+    assertThat(read.authorLogin()).isEqualTo("simon");
+    assertThat(read.tags()).containsExactly("tag1", "tag2");
+    assertThat((DbIssues.Locations) read.getLocations()).isEqualTo(issue.getLocations());
+    assertThat(read.creationDate()).isEqualTo(creationDate);
+    assertThat(read.updateDate()).isEqualTo(new Date(1_500_000_000_000L));
+    assertThat(read.closeDate()).isEqualTo(new Date(1_600_000_000_000L));
+    assertThat(read.isNew()).isFalse();
+    assertThat(read.isBeingClosed()).isTrue();
+    assertThat(read.isOnDisabledRule()).isTrue();
+    assertThat(read.isChanged()).isTrue();
+    assertThat(read.mustSendNotifications()).isTrue();
+    assertThat(read.selectedAt()).isEqualTo(1_700_000_000_000L);
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT_KEY");
+    assertThat(comment.issueKey()).isEqualTo("ISSUE_KEY");
+    assertThat(comment.userLogin()).isEqualTo("john");
+    assertThat(comment.markdownText()).isEqualTo("a *comment*");
+    assertThat(comment.createdAt()).isEqualTo(creationDate);
+    assertThat(comment.updatedAt()).isEqualTo(creationDate);
+    assertThat(comment.isNew()).isTrue();
+  }
+
+  @Test
+  public void write_and_read_issue_with_only_mandatory_fields() throws Exception {
+    DefaultIssue read = writeAndRead(new DefaultIssue().setKey("ISSUE_KEY"));
+
+    assertThat(read.key()).isEqualTo("ISSUE_KEY");
+    assertThat(read.type()).isNull();
+    assertThat(read.ruleKey()).isNull();
+    assertThat(read.line()).isNull();
+    assertThat(read.gap()).isNull();
+    assertThat(read.effort()).isNull();
+    assertThat(read.status()).isNull();
+    assertThat(read.attributes()).isEmpty();
+    assertThat(read.tags()).isEmpty();
+    assertThat((Object) read.getLocations()).isNull();
+    assertThat(read.creationDate()).isNull();
+    assertThat(read.comments()).isEmpty();
+    assertThat(read.changes()).isEmpty();
+    assertThat(read.currentChange()).isNull();
+    assertThat(read.isNew()).isTrue();
+    assertThat(read.selectedAt()).isNull();
+  }
+
+  @Test
+  public void current_change_is_shared_with_list_of_changes() throws Exception {
+    IssueChangeContext context = IssueChangeContext.createUser(new Date(1_400_000_000_000L), "john");
+    FieldDiffs previousChange = new FieldDiffs().setIssueKey("ISSUE_KEY").setCreationDate(new Date(1_300_000_000_000L)).setDiff("severity", "MINOR", "MAJOR");
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE_KEY").addChange(previousChange);
+    issue.setFieldChange(context, "type", RuleType.CODE_SMELL, RuleType.BUG);
+    issue.setFieldChange(context, "technicalDebt", 10L, 20L);
+    issue.setFieldChange(context, "line", 1, null);
+    issue.setFieldChange(context, "gap", 2.0, 3.0);
+    issue.setFieldChange(context, "manual", false, true);
+    issue.setFieldChange(context, "date", null, new Date(1_000L));
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.changes()).hasSize(7);
+    assertThat(read.changes().get(0).toString()).isEqualTo(previousChange.toString());
+    assertThat(read.changes().get(0).creationDate()).isEqualTo(previousChange.creationDate());
+    FieldDiffs currentChange = read.currentChange();
+    assertThat(currentChange.userLogin()).isEqualTo("john");
+    assertThat(currentChange.creationDate()).isEqualTo(new Date(1_400_000_000_000L));
+    // FieldDiffs does not override equals()
+    assertThat(read.changes().subList(1, 7)).containsOnly(currentChange);
+    assertThat(currentChange.get("type").oldValue()).isEqualTo(RuleType.CODE_SMELL);
+    assertThat(currentChange.get("type").newValue()).isEqualTo(RuleType.BUG);
+    assertThat(currentChange.get("technicalDebt").newValue()).isEqualTo(20L);
+    assertThat(currentChange.get("line").oldValue()).isEqualTo(1);
+    assertThat(currentChange.get("line").newValue()).isNull();
+    assertThat(currentChange.get("gap").newValue()).isEqualTo(3.0);
+    assertThat(currentChange.get("manual").newValue()).isEqualTo(true);
+    assertThat(currentChange.get("date").newValue()).isEqualTo(new Date(1_000L));
+  }
+
+  @Test
+  public void current_change_which_is_not_in_list_of_changes() throws Exception {
+    FieldDiffs currentChange = new FieldDiffs().setDiff("severity", "MINOR", "MAJOR");
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE_KEY").setCurrentChange(currentChange);
+    issue.setChanges(Arrays.asList(new FieldDiffs().setDiff("status", "OPEN", "CLOSED")));
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.currentChange().toString()).isEqualTo("severity=MINOR|MAJOR");
+    assertThat(read.changes()).extracting(FieldDiffs::toString).containsExactly("status=OPEN|CLOSED");
+  }
+
+  private DefaultIssue writeAndRead(DefaultIssue issue) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    underTest.write(issue, new DataOutputStream(bytes));
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    DefaultIssue read = underTest.read(input);
+    assertThat(input.available()).isZero();
+    return read;
+  }
+}
@@ -37,6 +37,7 @@ public class DumbRule implements Rule {
   private RuleType type = RuleType.CODE_SMELL;
   private Set<String> tags = new HashSet<>();
   private DebtRemediationFunction function;
+  private String language;
 
   public DumbRule(RuleKey key) {
     this.key = key;
@@ -78,6 +79,11 @@ public class DumbRule implements Rule {
     return function;
   }
 
+  @Override
+  public String getLanguage() {
+    return language;
+  }
+
   public DumbRule setId(Integer id) {
     this.id = id;
     return this;
@@ -105,4 +111,9 @@ public class DumbRule implements Rule {
   public void setType(RuleType type) {
     this.type = type;
   }
+
+  public DumbRule setLanguage(@Nullable String language) {
+    this.language = language;
+    return this;
+  }
 }
@@ -20,6 +20,7 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.junit.Before;
@@ -27,10 +28,13 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.Severity;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Tracker;
 import org.sonar.db.DbTester;
@@ -44,8 +48,13 @@ import org.sonar.scanner.protocol.Constants;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitor;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.component.VisitException;
+import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawler;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.commonrule.CommonRuleEngineImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.filter.IssueFilter;
@@ -56,8 +65,10 @@ import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -85,6 +96,8 @@ public class IntegrateIssuesVisitorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
   @Rule
+  public JUnitTempFolder tempFolder = new JUnitTempFolder();
+  @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
   @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
@@ -103,9 +116,11 @@ public class IntegrateIssuesVisitorTest {
 
   IssueFilter issueFilter = mock(IssueFilter.class);
 
-  BaseIssuesLoader baseIssuesLoader = new BaseIssuesLoader(treeRootHolder, dbTester.getDbClient(), ruleRepositoryRule, activeRulesHolderRule);
+  BaseInputStore baseInputStore = new BaseInputStore(tempFolder, new MapSettings());
+  BaseIssuesLoader baseIssuesLoader = new BaseIssuesLoader(treeRootHolder, dbTester.getDbClient(), ruleRepositoryRule, activeRulesHolderRule, baseInputStore,
+    new MapSettings());
   MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
-  TrackerExecution tracker = new TrackerExecution(new TrackerBaseInputFactory(baseIssuesLoader, dbTester.getDbClient(), movedFilesRepository),
+  TrackerExecution tracker = new TrackerExecution(new TrackerBaseInputFactory(baseIssuesLoader, baseInputStore, dbTester.getDbClient(), movedFilesRepository),
     new TrackerRawInputFactory(treeRootHolder, reportReader,
       fileSourceRepository, new CommonRuleEngineImpl(), issueFilter),
     new Tracker<>());
@@ -116,6 +131,8 @@ public class IntegrateIssuesVisitorTest {
   IssueVisitors issueVisitors = new IssueVisitors(new IssueVisitor[] {issueVisitor});
   ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues = new ComponentsWithUnprocessedIssues();
 
+  MapSettings settings = new MapSettings();
+
   TypeAwareVisitor underTest;
 
   @Before
@@ -124,7 +141,12 @@ public class IntegrateIssuesVisitorTest {
     issueCache = new IssueCache(temp.newFile(), System2.INSTANCE);
     when(issueFilter.accept(any(DefaultIssue.class), eq(FILE))).thenReturn(true);
     when(movedFilesRepository.getOriginalFile(any(Component.class))).thenReturn(Optional.<MovedFilesRepository.OriginalFile>absent());
-    underTest = new IntegrateIssuesVisitor(tracker, issueCache, issueLifecycle, issueVisitors, componentsWithUnprocessedIssues, componentIssuesRepository, movedFilesRepository);
+    underTest = newVisitor();
+  }
+
+  private IntegrateIssuesVisitor newVisitor() {
+    return new IntegrateIssuesVisitor(treeRootHolder, tracker, issueCache, issueLifecycle, issueVisitors, componentsWithUnprocessedIssues, componentIssuesRepository,
+      movedFilesRepository, settings);
   }
 
   @Test
@@ -187,6 +209,33 @@ public class IntegrateIssuesVisitorTest {
     assertThat(componentsWithUnprocessedIssues.getUuids()).isEmpty();
   }
 
+  @Test
+  public void process_existing_issue_preloaded_by_bulk_load() throws Exception {
+    RuleKey ruleKey = RuleTesting.XOO_X1;
+    addBaseIssue(ruleKey);
+    componentsWithUnprocessedIssues.setUuids(baseIssuesLoader.loadUuidsOfComponentsWithOpenIssues());
+    assertThat(componentsWithUnprocessedIssues.getUuids()).containsOnly(FILE_UUID);
+
+    ScannerReport.Issue reportIssue = ScannerReport.Issue.newBuilder()
+      .setMsg("the message")
+      .setRuleRepository(ruleKey.repository())
+      .setRuleKey(ruleKey.rule())
+      .setSeverity(Constants.Severity.BLOCKER)
+      .build();
+    reportReader.putIssues(FILE_REF, asList(reportIssue));
+    fileSourceRepository.addLine(FILE_REF, "line1");
+
+    underTest.visitAny(FILE);
+
+    ArgumentCaptor<DefaultIssue> baseIssueCaptor = ArgumentCaptor.forClass(DefaultIssue.class);
+    verify(issueLifecycle).mergeExistingOpenIssue(any(DefaultIssue.class), baseIssueCaptor.capture());
+    assertThat(baseIssueCaptor.getValue().key()).isEqualTo("ISSUE");
+    assertThat(baseIssueCaptor.getValue().severity()).isEqualTo(Severity.MAJOR);
+    // issues of the file have been read from the store
+    assertThat(baseInputStore.takeIssues(FILE_UUID)).isNull();
+    assertThat(componentsWithUnprocessedIssues.getUuids()).isEmpty();
+  }
+
   @Test
   public void execute_issue_visitors() throws Exception {
     componentsWithUnprocessedIssues.setUuids(Collections.<String>emptySet());
@@ -263,6 +312,79 @@ public class IntegrateIssuesVisitorTest {
     assertThat(componentIssuesRepository.getIssues(PROJECT)).isEmpty();
   }
 
+  @Test
+  public void track_components_concurrently_but_process_issues_in_order_of_components() throws Exception {
+    settings.setProperty("sonar.ce.issueTracking.threads", 2);
+    underTest = newVisitor();
+    componentsWithUnprocessedIssues.setUuids(newHashSet(FILE_UUID));
+    RuleKey ruleKey = RuleTesting.XOO_X1;
+    addBaseIssue(ruleKey);
+    ScannerReport.Issue reportIssue = ScannerReport.Issue.newBuilder()
+      .setMsg("the message")
+      .setRuleRepository(ruleKey.repository())
+      .setRuleKey(ruleKey.rule())
+      .setSeverity(Constants.Severity.BLOCKER)
+      .build();
+    reportReader.putIssues(FILE_REF, asList(reportIssue));
+    fileSourceRepository.addLine(FILE_REF, "line1");
+
+    underTest.visitAny(FILE);
+    underTest.visitAny(PROJECT);
+
+    InOrder inOrder = inOrder(issueVisitor);
+    inOrder.verify(issueVisitor).beforeComponent(FILE);
+    inOrder.verify(issueVisitor).onIssue(eq(FILE), any(DefaultIssue.class));
+    inOrder.verify(issueVisitor).afterComponent(FILE);
+    inOrder.verify(issueVisitor).beforeComponent(PROJECT);
+    inOrder.verify(issueVisitor).afterComponent(PROJECT);
+    verify(issueLifecycle).mergeExistingOpenIssue(any(DefaultIssue.class), any(DefaultIssue.class));
+    List<DefaultIssue> issues = newArrayList(issueCache.traverse());
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).severity()).isEqualTo(Severity.BLOCKER);
+    assertThat(componentsWithUnprocessedIssues.getUuids()).isEmpty();
+  }
+
+  @Test
+  public void stop_tracking_threads_when_another_visitor_fails() throws Exception {
+    settings.setProperty("sonar.ce.issueTracking.threads", 2);
+    IntegrateIssuesVisitor visitor = newVisitor();
+    componentsWithUnprocessedIssues.setUuids(Collections.<String>emptySet());
+    ComponentVisitor failingVisitor = new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, ComponentVisitor.Order.POST_ORDER) {
+      @Override
+      public void visitFile(Component file) {
+        throw new IllegalStateException("BOOM");
+      }
+    };
+
+    try {
+      new VisitorsCrawler(asList(visitor, failingVisitor)).visit(PROJECT);
+      fail("A VisitException should have been raised");
+    } catch (VisitException e) {
+      assertThat(e.getCause()).hasMessage("BOOM");
+    }
+    assertThat(issueTrackingThreads()).isNotEmpty();
+
+    visitor.stop();
+
+    assertThat(issueTrackingThreads()).isEmpty();
+  }
+
+  private static List<Thread> issueTrackingThreads() throws InterruptedException {
+    List<Thread> threads = new ArrayList<>();
+    // threads of a terminated pool may still be alive for a short time
+    for (int i = 0; i < 100; i++) {
+      threads.clear();
+      Thread.getAllStackTraces().keySet().stream()
+        .filter(thread -> thread.getName().startsWith("IssueTracking-") && thread.isAlive())
+        .forEach(threads::add);
+      if (threads.isEmpty()) {
+        break;
+      }
+      Thread.sleep(20L);
+    }
+    return threads;
+  }
+
   @Test
   public void remove_uuid_of_original_file_from_componentsWithUnprocessedIssues_if_component_has_one() {
     String originalFileUuid = "original file uuid";
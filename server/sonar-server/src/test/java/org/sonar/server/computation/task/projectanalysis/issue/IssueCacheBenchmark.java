@@ -0,0 +1,154 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.DiskCache;
+
+/**
+ * Compares the throughput of {@link IssueCache} with the Java serialization used by default by {@link DiskCache}.
+ * Not executed by unit tests. Run the method {@link #main(String[])} from the IDE, or after "mvn test-compile":
+ * <pre>
+ * java -cp &lt;test classpath&gt; org.openjdk.jmh.Main IssueCacheBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IssueCacheBenchmark {
+
+  private static final int NB_ISSUES = 10_000;
+
+  @Param({"serialization", "codec"})
+  public String format;
+
+  private final List<DefaultIssue> issues = new ArrayList<>(NB_ISSUES);
+  private File file;
+  private DiskCache<DefaultIssue> cache;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    for (int i = 0; i < NB_ISSUES; i++) {
+      issues.add(newIssue(i));
+    }
+    file = Files.createTempFile("issues", ".dat").toFile();
+    appendIssues();
+    System.out.printf("%nSize of file with %d issues in format %s: %d bytes%n", NB_ISSUES, format, file.length());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Benchmark
+  public void write() {
+    appendIssues();
+  }
+
+  @Benchmark
+  public void traverse(Blackhole blackhole) {
+    try (CloseableIterator<DefaultIssue> it = cache.traverse()) {
+      while (it.hasNext()) {
+        blackhole.consume(it.next());
+      }
+    }
+  }
+
+  private void appendIssues() {
+    // file is truncated by constructor, so that it does not grow during iterations
+    cache = "codec".equals(format) ? new IssueCache(file, System2.INSTANCE) : new DiskCache<>(file, System2.INSTANCE);
+    try (DiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender()) {
+      for (DefaultIssue issue : issues) {
+        appender.append(issue);
+      }
+    }
+  }
+
+  private static DefaultIssue newIssue(int i) {
+    return new DefaultIssue()
+      .setKey("AVk-Vd3LZTbG8CrLLVBX" + i)
+      .setType(RuleType.CODE_SMELL)
+      .setComponentUuid("AVk-Vd3LZTbG8CrLLVB" + (i % 100))
+      .setComponentKey("org.sonarsource:project:src/main/java/org/sonar/File" + (i % 100) + ".java")
+      .setModuleUuid("AVk-Vd3LZTbG8CrLLVAA")
+      .setModuleUuidPath(".AVk-Vd3LZTbG8CrLLVAA.")
+      .setProjectUuid("AVk-Vd3LZTbG8CrLLVAA")
+      .setProjectKey("org.sonarsource:project")
+      .setRuleKey(RuleKey.of("squid", "S" + (i % 500)))
+      .setLanguage("java")
+      .setSeverity(Severity.MAJOR)
+      .setMessage("Remove this unused private \"field" + i + "\" field.")
+      .setLine(1 + i % 1000)
+      .setGap(1.0)
+      .setEffort(Duration.create(5L))
+      .setStatus("OPEN")
+      .setAssignee("john")
+      .setChecksum("5f4dcc3b5aa765d61d8327deb882cf99")
+      .setAuthorLogin("simon")
+      .setTags(Arrays.asList("unused", "pitfall"))
+      .setLocations(DbIssues.Locations.newBuilder()
+        .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(1 + i % 1000).setEndLine(1 + i % 1000).setStartOffset(2).setEndOffset(10))
+        .build())
+      .setCreationDate(new Date(1_480_000_000_000L + i))
+      .setUpdateDate(new Date(1_480_000_000_000L + i))
+      .setNew(i % 10 == 0);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(IssueCacheBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -22,6 +22,9 @@ package org.sonar.server.computation.task.projectanalysis.issue;
 import com.google.common.base.Optional;
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.utils.TempFolder;
+import org.sonar.core.issue.tracking.LineHashSequence;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDao;
@@ -29,10 +32,12 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class TrackerBaseInputFactoryTest {
@@ -46,7 +51,9 @@ public class TrackerBaseInputFactoryTest {
 
   private MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
 
-  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, dbClient, movedFilesRepository);
+  private BaseInputStore baseInputStore = new BaseInputStore(mock(TempFolder.class), new MapSettings());
+
+  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, baseInputStore, dbClient, movedFilesRepository);
 
   @Before
   public void setUp() throws Exception {
@@ -77,6 +84,18 @@ public class TrackerBaseInputFactoryTest {
     verify(fileSourceDao, times(0)).selectLineHashes(dbSession, FILE_UUID);
   }
 
+  @Test
+  public void create_returns_Input_which_reads_lines_hashes_from_store_when_preloaded() {
+    baseInputStore.putLineHashes(FILE_UUID, "h1\nh2");
+    baseInputStore.setLoaded();
+
+    LineHashSequence lineHashSequence = underTest.create(FILE).getLineHashSequence();
+
+    assertThat(lineHashSequence.length()).isEqualTo(2);
+    assertThat(lineHashSequence.getHashForLine(2)).isEqualTo("h2");
+    verifyZeroInteractions(fileSourceDao);
+  }
+
   @Test
   public void create_returns_Input_which_retrieves_issues_of_specified_file_component_when_it_has_no_original_file() {
     underTest.create(FILE).getIssues();
@@ -63,13 +63,15 @@ public class UpdateConflictResolverTest {
         .setAssignee("arthur")
       );
 
-    new UpdateConflictResolver().resolve(issue, mapper);
+    UpdateConflictResolver underTest = new UpdateConflictResolver();
+    underTest.resolve(issue, mapper);
 
     ArgumentCaptor<IssueDto> argument = ArgumentCaptor.forClass(IssueDto.class);
     verify(mapper).update(argument.capture());
     IssueDto updatedIssue = argument.getValue();
     assertThat(updatedIssue.getKee()).isEqualTo("ABCDE");
     assertThat(updatedIssue.getAssignee()).isEqualTo("arthur");
+    assertThat(underTest.getResolvedIssueKeys()).containsOnly("ABCDE");
   }
 
   @Test
@@ -0,0 +1,189 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.SetMultimap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+public class ArrayBasedRawMeasureRepositoryTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey("file cpt key").build();
+  private static final ReportComponent OTHER_COMPONENT = ReportComponent.builder(Component.Type.FILE, 2).setKey("some other key").build();
+  private static final ReportComponent FAR_COMPONENT = ReportComponent.builder(Component.Type.FILE, 10_000).setKey("far key").build();
+  private static final Developer SOME_DEVELOPER = new DumbDeveloper("DEV1");
+
+  private final Metric intMetric = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+  private final Metric longMetric = new MetricImpl(2, "long", "long", Metric.MetricType.WORK_DUR);
+  private final Metric doubleMetric = new MetricImpl(3, "double", "double", Metric.MetricType.FLOAT);
+  private final Metric booleanMetric = new MetricImpl(4, "boolean", "boolean", Metric.MetricType.BOOL);
+  private final Metric stringMetric = new MetricImpl(5, "string", "string", Metric.MetricType.STRING);
+  private final Metric levelMetric = new MetricImpl(6, "level", "level", Metric.MetricType.LEVEL);
+
+  private ArrayBasedRawMeasureRepository underTest = new ArrayBasedRawMeasureRepository();
+
+  @Test
+  public void getBaseMeasure_is_not_supported() {
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.getBaseMeasure(FILE_COMPONENT, intMetric);
+  }
+
+  @Test
+  public void restores_numeric_measures() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(12));
+    underTest.add(FILE_COMPONENT, longMetric, newMeasureBuilder().create(1_234_567_890_123L));
+    underTest.add(FILE_COMPONENT, doubleMetric, newMeasureBuilder().create(12.3456789d, 3));
+    underTest.add(FILE_COMPONENT, booleanMetric, newMeasureBuilder().create(true));
+    underTest.add(OTHER_COMPONENT, booleanMetric, newMeasureBuilder().create(false));
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(12);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, longMetric).get().getLongValue()).isEqualTo(1_234_567_890_123L);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, doubleMetric).get().getDoubleValue()).isEqualTo(12.346d);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, booleanMetric).get().getBooleanValue()).isTrue();
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, booleanMetric).get().getBooleanValue()).isFalse();
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, intMetric)).isAbsent();
+  }
+
+  @Test
+  public void keeps_measures_which_are_not_only_numeric_as_is() {
+    Measure withData = newMeasureBuilder().create(12, "some data");
+    Measure withVariations = newMeasureBuilder().setVariations(new MeasureVariations(1d)).create(13);
+    Measure stringMeasure = newMeasureBuilder().create("foo");
+    Measure levelMeasure = newMeasureBuilder().create(Measure.Level.ERROR);
+    Measure noValue = newMeasureBuilder().createNoValue();
+
+    underTest.add(FILE_COMPONENT, intMetric, withData);
+    underTest.add(OTHER_COMPONENT, intMetric, withVariations);
+    underTest.add(FILE_COMPONENT, stringMetric, stringMeasure);
+    underTest.add(FILE_COMPONENT, levelMetric, levelMeasure);
+    underTest.add(FILE_COMPONENT, doubleMetric, noValue);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get()).isSameAs(withData);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, intMetric).get()).isSameAs(withVariations);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, stringMetric).get()).isSameAs(stringMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, levelMetric).get()).isSameAs(levelMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, doubleMetric).get()).isSameAs(noValue);
+  }
+
+  @Test
+  public void update_switches_between_numeric_and_other_measures() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(1));
+    Measure noValue = newMeasureBuilder().createNoValue();
+    underTest.update(FILE_COMPONENT, intMetric, noValue);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get()).isSameAs(noValue);
+
+    underTest.update(FILE_COMPONENT, intMetric, newMeasureBuilder().create(2));
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(2);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT, intMetric)).hasSize(1);
+  }
+
+  @Test
+  public void add_throws_UOE_if_numeric_measure_already_exists() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(1));
+
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be set only once for a specific Component (key=file cpt key), Metric (key=int). Use update method");
+
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(2));
+  }
+
+  @Test
+  public void update_throws_UOE_if_measure_does_not_exist() {
+    underTest.add(OTHER_COMPONENT, intMetric, newMeasureBuilder().create(1));
+
+    expectedException.expect(UnsupportedOperationException.class);
+    expectedException.expectMessage("a measure can be updated only if one already exists for a specific Component (key=file cpt key), Metric (key=int). Use add method");
+
+    underTest.update(FILE_COMPONENT, intMetric, newMeasureBuilder().create(2));
+  }
+
+  @Test
+  public void add_with_DO_NOT_OVERRIDE_policy_keeps_existing_measure() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(1));
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(2), OverridePolicy.DO_NOT_OVERRIDE);
+    underTest.add(OTHER_COMPONENT, intMetric, newMeasureBuilder().create(3), OverridePolicy.DO_NOT_OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(1);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, intMetric).get().getIntValue()).isEqualTo(3);
+  }
+
+  @Test
+  public void supports_components_with_large_ref() {
+    underTest.add(FAR_COMPONENT, intMetric, newMeasureBuilder().create(7));
+
+    assertThat(underTest.getRawMeasure(FAR_COMPONENT, intMetric).get().getIntValue()).isEqualTo(7);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric)).isAbsent();
+  }
+
+  @Test
+  public void developer_measures_are_stored_apart() {
+    Measure devMeasure = newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(5);
+    underTest.add(FILE_COMPONENT, intMetric, devMeasure);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric)).isAbsent();
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT, intMetric)).containsOnly(devMeasure);
+
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(3));
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT, intMetric)).hasSize(2);
+
+    expectedException.expect(UnsupportedOperationException.class);
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(6));
+  }
+
+  @Test
+  public void getRawMeasures_of_component_returns_all_measures_by_metric_key() {
+    Measure devMeasure = newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(5);
+    Measure stringMeasure = newMeasureBuilder().create("foo");
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(3));
+    underTest.add(FILE_COMPONENT, intMetric, devMeasure);
+    underTest.add(FILE_COMPONENT, stringMetric, stringMeasure);
+    underTest.add(OTHER_COMPONENT, doubleMetric, newMeasureBuilder().create(2d, 1));
+
+    SetMultimap<String, Measure> measures = underTest.getRawMeasures(FILE_COMPONENT);
+
+    assertThat(measures.keySet()).containsOnly("int", "string");
+    assertThat(measures.get("int")).hasSize(2);
+    assertThat(measures.get("string")).containsOnly(stringMeasure);
+    assertThat(underTest.getRawMeasures(ReportComponent.builder(Component.Type.FILE, 3).build()).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void getRawMeasure_returns_absent_for_unknown_metric() {
+    Optional<Measure> measure = underTest.getRawMeasure(FILE_COMPONENT, intMetric);
+
+    assertThat(measure).isAbsent();
+  }
+}
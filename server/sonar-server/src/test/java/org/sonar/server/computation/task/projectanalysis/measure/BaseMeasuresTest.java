@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.db.measure.MeasureDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BaseMeasuresTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private BaseMeasures underTest = new BaseMeasures();
+
+  @Test
+  public void get_returns_null_when_measure_does_not_exist() {
+    underTest.put(1, new MeasureDto().setMetricId(10).setValue(2.0));
+
+    assertThat(underTest.get(1, 11)).isNull();
+    assertThat(underTest.get(2, 10)).isNull();
+  }
+
+  @Test
+  public void numeric_measure_is_rebuilt_from_value() {
+    underTest.put(1, new MeasureDto().setMetricId(10).setValue(2.5).setComponentUuid("FILE"));
+
+    MeasureDto measure = underTest.get(1, 10);
+    assertThat(measure.getMetricId()).isEqualTo(10);
+    assertThat(measure.getValue()).isEqualTo(2.5);
+  }
+
+  @Test
+  public void measure_with_data_or_variations_is_kept_as_is() {
+    MeasureDto withData = new MeasureDto().setMetricId(10).setData("data");
+    MeasureDto withVariation = new MeasureDto().setMetricId(11).setValue(1.0).setVariation(1, 3.0);
+    MeasureDto withAlert = new MeasureDto().setMetricId(12).setAlertStatus("ERROR");
+    underTest.put(1, withData);
+    underTest.put(1, withVariation);
+    underTest.put(1, withAlert);
+
+    assertThat(underTest.get(1, 10)).isSameAs(withData);
+    assertThat(underTest.get(1, 11)).isSameAs(withVariation);
+    assertThat(underTest.get(1, 12)).isSameAs(withAlert);
+  }
+
+  @Test
+  public void put_replaces_existing_measure() {
+    underTest.put(1, new MeasureDto().setMetricId(10).setData("data"));
+    underTest.put(1, new MeasureDto().setMetricId(10).setValue(4.0));
+
+    assertThat(underTest.size()).isEqualTo(1);
+    assertThat(underTest.get(1, 10).getData()).isNull();
+    assertThat(underTest.get(1, 10).getValue()).isEqualTo(4.0);
+  }
+
+  @Test
+  public void grow_when_many_measures_are_added() {
+    for (int ref = 1; ref <= 1000; ref++) {
+      for (int metricId = 1; metricId <= 20; metricId++) {
+        underTest.put(ref, new MeasureDto().setMetricId(metricId).setValue((double) (ref * metricId)));
+      }
+    }
+
+    assertThat(underTest.size()).isEqualTo(20_000);
+    for (int ref = 1; ref <= 1000; ref++) {
+      for (int metricId = 1; metricId <= 20; metricId++) {
+        assertThat(underTest.get(ref, metricId).getValue()).isEqualTo((double) (ref * metricId));
+      }
+    }
+  }
+
+  @Test
+  public void fail_if_component_ref_is_not_strictly_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Component ref must be strictly positive");
+
+    underTest.put(0, new MeasureDto().setMetricId(10).setValue(2.0));
+  }
+}
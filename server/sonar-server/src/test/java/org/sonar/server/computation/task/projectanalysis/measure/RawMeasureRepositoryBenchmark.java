@@ -0,0 +1,126 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
+
+/**
+ * Compares memory consumption and throughput of {@link ArrayBasedRawMeasureRepository} and
+ * {@link MapBasedRawMeasureRepository} when storing the numerical measures of a large project.
+ * Not executed by unit tests. Run the method {@link #main(String[])} from the IDE, or after "mvn test-compile":
+ * <pre>
+ * java -cp &lt;test classpath&gt; org.openjdk.jmh.Main RawMeasureRepositoryBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RawMeasureRepositoryBenchmark {
+
+  private static final int NB_COMPONENTS = 20_000;
+  private static final int NB_METRICS = 60;
+
+  @Param({"map", "array"})
+  public String backend;
+
+  private final List<Component> components = new ArrayList<>(NB_COMPONENTS);
+  private final List<Metric> metrics = new ArrayList<>(NB_METRICS);
+  private MeasureRepository repository;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    for (int i = 1; i <= NB_COMPONENTS; i++) {
+      components.add(ReportComponent.builder(Component.Type.FILE, i).setKey("file" + i).build());
+    }
+    for (int i = 0; i < NB_METRICS; i++) {
+      metrics.add(new MetricImpl(i, "metric" + i, "metric" + i, i % 2 == 0 ? Metric.MetricType.INT : Metric.MetricType.FLOAT));
+    }
+
+    long before = usedMemory();
+    repository = fill();
+    long after = usedMemory();
+    System.out.printf("%nMemory used by %s repository with %d measures: %d KB%n", backend, NB_COMPONENTS * NB_METRICS, (after - before) / 1024);
+  }
+
+  @Benchmark
+  public void add(Blackhole blackhole) {
+    blackhole.consume(fill());
+  }
+
+  @Benchmark
+  public void read(Blackhole blackhole) {
+    for (Metric metric : metrics) {
+      for (Component component : components) {
+        blackhole.consume(repository.getRawMeasure(component, metric));
+      }
+    }
+  }
+
+  private MeasureRepository fill() {
+    MeasureRepository res = "array".equals(backend) ? new ArrayBasedRawMeasureRepository() : new MapBasedRawMeasureRepository<>(toReportRef());
+    for (Metric metric : metrics) {
+      for (Component component : components) {
+        int ref = component.getReportAttributes().getRef();
+        Measure measure = metric.getType() == Metric.MetricType.INT ? Measure.newMeasureBuilder().create(ref) : Measure.newMeasureBuilder().create(ref / 3d, 1);
+        res.add(component, metric, measure);
+      }
+    }
+    return res;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RawMeasureRepositoryBenchmark.class.getSimpleName()).build()).run();
+  }
+}
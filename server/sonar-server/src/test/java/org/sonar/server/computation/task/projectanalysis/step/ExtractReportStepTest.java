@@ -26,6 +26,8 @@ import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.ZipUtils;
@@ -59,7 +61,9 @@ public class ExtractReportStepTest {
   private MutableBatchReportDirectoryHolder reportDirectoryHolder = new BatchReportDirectoryHolderImpl();
   private CeTask ceTask = new CeTask.Builder().setType(CeTaskTypes.REPORT).setUuid(TASK_UUID).build();
 
-  private ExtractReportStep underTest = new ExtractReportStep(dbTester.getDbClient(), ceTask, tempFolder, reportDirectoryHolder);
+  private Settings settings = new MapSettings();
+
+  private ExtractReportStep underTest = new ExtractReportStep(dbTester.getDbClient(), ceTask, tempFolder, reportDirectoryHolder, settings);
 
   @Test
   public void fail_if_report_zip_does_not_exist() throws Exception {
@@ -85,6 +89,24 @@ public class ExtractReportStepTest {
     assertThat(unzippedDir).isDirectory().exists();
     assertThat(unzippedDir.listFiles()).hasSize(1);
     assertThat(new File(unzippedDir, "metadata.pb")).hasContent("{metadata}");
+    assertThat(reportDirectoryHolder.getZipFile().isPresent()).isFalse();
+  }
+
+  @Test
+  public void copy_report_zip_without_extracting_it_if_enabled() throws Exception {
+    settings.setProperty(ExtractReportStep.READ_FROM_ZIP_PROPERTY, true);
+    File reportFile = generateReport();
+    try (InputStream input = FileUtils.openInputStream(reportFile)) {
+      dbTester.getDbClient().ceTaskInputDao().insert(dbTester.getSession(), TASK_UUID, input);
+    }
+    dbTester.getSession().commit();
+    dbTester.getSession().close();
+
+    underTest.execute();
+
+    File zipFile = reportDirectoryHolder.getZipFile().get();
+    assertThat(zipFile).isFile().exists();
+    assertThat(FileUtils.contentEquals(zipFile, reportFile)).isTrue();
   }
 
   private File generateReport() throws IOException {
@@ -19,19 +19,40 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.Date;
+import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
 import org.sonar.db.component.ResourceIndexDao;
+import org.sonar.server.component.es.ComponentDoc;
+import org.sonar.server.component.es.ComponentIndexDefinition;
+import org.sonar.server.component.es.ComponentIndexer;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
-import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
+import org.sonar.server.computation.task.projectanalysis.component.ProjectViewAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
 import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.es.EsTester;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.sonar.server.component.es.ComponentIndexDefinition.INDEX_COMPONENTS;
+import static org.sonar.server.component.es.ComponentIndexDefinition.TYPE_COMPONENT;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.MODULE;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT_VIEW;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.SUBVIEW;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.VIEW;
 
 public class IndexComponentsStepTest extends BaseStepTest {
@@ -43,9 +64,12 @@ public class IndexComponentsStepTest extends BaseStepTest {
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
+  @Rule
+  public EsTester es = new EsTester(new ComponentIndexDefinition(new MapSettings()));
 
   ResourceIndexDao resourceIndexDao = mock(ResourceIndexDao.class);
-  IndexComponentsStep underTest = new IndexComponentsStep(resourceIndexDao, treeRootHolder);
+  ComponentIndexer componentIndexer = new ComponentIndexer(System2.INSTANCE, mock(DbClient.class), es.client(), new MapSettings().setProperty(ComponentIndexer.ENABLED_PROPERTY, true));
+  IndexComponentsStep underTest = new IndexComponentsStep(resourceIndexDao, componentIndexer, treeRootHolder);
 
   @Test
   public void call_indexProject_of_dao_for_project() {
@@ -59,7 +83,7 @@ public class IndexComponentsStepTest extends BaseStepTest {
 
   @Test
   public void call_indexProject_of_dao_for_view() {
-    Component view = ViewsComponent.builder(VIEW, PROJECT_KEY).setUuid(PROJECT_UUID).build();
+    Component view = ViewsComponent.builder(VIEW, PROJECT_KEY).setUuid(PROJECT_UUID).setName("View").build();
     treeRootHolder.setRoot(view);
 
     underTest.execute();
@@ -67,6 +91,73 @@ public class IndexComponentsStepTest extends BaseStepTest {
     verify(resourceIndexDao).indexProject(PROJECT_UUID);
   }
 
+  @Test
+  public void index_components_of_project_tree() {
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).setName("Project")
+      .addChildren(ReportComponent.builder(MODULE, 2).setUuid("MODULE_UUID").setKey("MODULE_KEY").setName("Module")
+        .addChildren(ReportComponent.builder(DIRECTORY, 3).setUuid("DIR_UUID").setKey("DIR_KEY").setPath("src/main/java/foo")
+          .addChildren(
+            ReportComponent.builder(FILE, 4).setUuid("FILE_UUID").setKey("FILE_KEY").setPath("src/main/java/foo/Dictionary.java")
+              .setFileAttributes(new FileAttributes(false, "java")).build(),
+            ReportComponent.builder(FILE, 5).setUuid("TEST_UUID").setKey("TEST_KEY").setPath("src/main/java/foo/DictionaryTest.java")
+              .setFileAttributes(new FileAttributes(true, "java")).build())
+          .build())
+        .build())
+      .build());
+
+    underTest.execute();
+
+    List<ComponentDoc> docs = es.getDocuments(INDEX_COMPONENTS, TYPE_COMPONENT, ComponentDoc.class);
+    assertThat(docs).extracting(ComponentDoc::getId, ComponentDoc::getProjectUuid, ComponentDoc::getName, ComponentDoc::getQualifier, ComponentDoc::getLanguage)
+      .containsOnly(
+        tuple(PROJECT_UUID, PROJECT_UUID, "Project", Qualifiers.PROJECT, null),
+        tuple("MODULE_UUID", PROJECT_UUID, "Module", Qualifiers.MODULE, null),
+        tuple("DIR_UUID", PROJECT_UUID, "src/main/java/foo", Qualifiers.DIRECTORY, null),
+        tuple("FILE_UUID", PROJECT_UUID, "Dictionary.java", Qualifiers.FILE, "java"),
+        tuple("TEST_UUID", PROJECT_UUID, "DictionaryTest.java", Qualifiers.UNIT_TEST_FILE, "java"));
+  }
+
+  @Test
+  public void index_components_of_view_tree_except_project_copies() {
+    treeRootHolder.setRoot(ViewsComponent.builder(VIEW, PROJECT_KEY).setUuid(PROJECT_UUID).setName("View")
+      .addChildren(ViewsComponent.builder(SUBVIEW, "SUBVIEW_KEY").setUuid("SUBVIEW_UUID").setName("Sub view")
+        .addChildren(ViewsComponent.builder(PROJECT_VIEW, "PROJECT_VIEW_KEY").setUuid("PROJECT_VIEW_UUID").setName("Project")
+          .setProjectViewAttributes(new ProjectViewAttributes("PROJECT", null)).build())
+        .build())
+      .build());
+
+    underTest.execute();
+
+    List<ComponentDoc> docs = es.getDocuments(INDEX_COMPONENTS, TYPE_COMPONENT, ComponentDoc.class);
+    assertThat(docs).extracting(ComponentDoc::getId, ComponentDoc::getName, ComponentDoc::getQualifier)
+      .containsOnly(
+        tuple(PROJECT_UUID, "View", Qualifiers.VIEW),
+        tuple("SUBVIEW_UUID", "Sub view", Qualifiers.SUBVIEW));
+  }
+
+  @Test
+  public void remove_components_that_are_not_in_tree_anymore() throws Exception {
+    es.putDocuments(INDEX_COMPONENTS, TYPE_COMPONENT, new ComponentDoc().setId("REMOVED_UUID").setProjectUuid(PROJECT_UUID)
+      .setKey("REMOVED_KEY").setName("Removed").setQualifier(Qualifiers.FILE).setLanguage(null).setUpdatedAt(new Date(1_000L)));
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).setName("Project").build());
+
+    underTest.execute();
+
+    assertThat(es.getIds(INDEX_COMPONENTS, TYPE_COMPONENT)).containsOnly(PROJECT_UUID);
+  }
+
+  @Test
+  public void index_only_in_db_if_component_index_is_disabled() {
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).setName("Project").build());
+    componentIndexer = new ComponentIndexer(System2.INSTANCE, mock(DbClient.class), es.client(), new MapSettings());
+    underTest = new IndexComponentsStep(resourceIndexDao, componentIndexer, treeRootHolder);
+
+    underTest.execute();
+
+    verify(resourceIndexDao).indexProject(PROJECT_UUID);
+    assertThat(es.countDocuments(INDEX_COMPONENTS, TYPE_COMPONENT)).isZero();
+  }
+
   @Override
   protected ComputationStep step() {
     return underTest;
@@ -19,31 +19,219 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.collect.Iterators;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.issue.IssueTesting;
+import org.sonar.db.rule.RuleDto;
+import org.sonar.db.rule.RuleTesting;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.issue.ComponentsWithUnprocessedIssues;
+import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
+import org.sonar.server.computation.task.projectanalysis.issue.RuleRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
+import org.sonar.server.issue.index.IssueDoc;
 import org.sonar.server.issue.index.IssueIndexer;
 
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.db.component.ComponentTesting.newProjectDto;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.MODULE;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
 import static org.sonar.server.computation.task.projectanalysis.component.ReportComponent.builder;
 
 public class IndexIssuesStepTest {
 
   static String PROJECT_UUID = "PROJECT_UUID";
+  static final RuleKey RULE_KEY = RuleKey.of("xoo", "S001");
+  static final long NOW = 1_500_000_000_000L;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
   @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule()
-    .setRoot(builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey("PROJECT_KEY").build());
+    .setRoot(builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey("PROJECT_KEY")
+      .addChildren(builder(MODULE, 2).setUuid("MODULE_UUID").setKey("MODULE_KEY").setPath("module")
+        .addChildren(builder(DIRECTORY, 3).setUuid("DIR_UUID").setKey("DIR_KEY").setPath("src/main")
+          .addChildren(builder(FILE, 4).setUuid("FILE_UUID").setKey("FILE_KEY").setPath("src/main/Foo.java").build())
+          .build())
+        .build())
+      .build());
+
+  @Rule
+  public RuleRepositoryRule ruleRepository = new RuleRepositoryRule();
+
+  IssueIndexer issueIndexer = mock(IssueIndexer.class);
+  List<IssueDoc> indexedDocs = new ArrayList<>();
+  ComponentsWithUnprocessedIssues componentsWithUnprocessedIssues = new ComponentsWithUnprocessedIssues();
+  UpdateConflictResolver conflictResolver = new UpdateConflictResolver();
+  System2 system2 = mock(System2.class);
+  Settings settings = new MapSettings();
+  IssueCache issueCache;
+  IndexIssuesStep underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    ruleRepository.add(RULE_KEY).setLanguage("xoo");
+    when(system2.now()).thenReturn(NOW);
+    doAnswer(invocation -> {
+      Iterators.addAll(indexedDocs, (Iterator<IssueDoc>) invocation.getArguments()[0]);
+      return null;
+    }).when(issueIndexer).index(any(Iterator.class));
+    issueCache = new IssueCache(temp.newFile(), System2.INSTANCE);
+    underTest = new IndexIssuesStep(issueIndexer, treeRootHolder, issueCache, ruleRepository, componentsWithUnprocessedIssues, conflictResolver,
+      dbTester.getDbClient(), system2, settings);
+  }
 
   @Test
-  public void call_indexer() {
-    IssueIndexer issueIndexer = mock(IssueIndexer.class);
-    IndexIssuesStep underTest = new IndexIssuesStep(issueIndexer, treeRootHolder);
+  public void index_issues_from_db_if_enabled() {
+    settings.setProperty(IndexIssuesStep.INDEX_FROM_DB_PROPERTY, true);
+    componentsWithUnprocessedIssues.setUuids(emptySet());
 
     underTest.execute();
 
     verify(issueIndexer).index(PROJECT_UUID);
+    verify(issueIndexer, never()).index(any(Iterator.class));
+  }
+
+  @Test
+  public void index_new_and_changed_issues_from_cache() {
+    componentsWithUnprocessedIssues.setUuids(emptySet());
+    issueCache.newAppender()
+      .append(newIssue("NEW", "FILE_UUID").setNew(true))
+      .append(newIssue("CHANGED", "MODULE_UUID").setNew(false).setChanged(true))
+      .append(newIssue("UNCHANGED", "DIR_UUID").setNew(false).setChanged(false))
+      .close();
+
+    underTest.execute();
+
+    verify(issueIndexer, never()).index(anyString());
+    Map<String, IssueDoc> docsByKey = indexedDocs.stream().collect(Collectors.toMap(IssueDoc::key, Function.identity()));
+    assertThat(docsByKey.keySet()).containsOnly("NEW", "CHANGED");
+
+    IssueDoc fileIssue = docsByKey.get("NEW");
+    assertThat(fileIssue.projectUuid()).isEqualTo(PROJECT_UUID);
+    assertThat(fileIssue.componentUuid()).isEqualTo("FILE_UUID");
+    assertThat(fileIssue.moduleUuid()).isEqualTo("MODULE_UUID");
+    assertThat(fileIssue.modulePath()).isEqualTo(".PROJECT_UUID.MODULE_UUID.");
+    assertThat(fileIssue.filePath()).isEqualTo("src/main/Foo.java");
+    assertThat(fileIssue.directoryPath()).isEqualTo("src/main");
+    assertThat(fileIssue.ruleKey()).isEqualTo(RULE_KEY);
+    assertThat(fileIssue.language()).isEqualTo("xoo");
+    assertThat(fileIssue.severity()).isEqualTo(Severity.MAJOR);
+    assertThat(fileIssue.line()).isEqualTo(10);
+    assertThat(fileIssue.tags()).containsOnly("bug");
+    assertThat(fileIssue.type()).isEqualTo(RuleType.BUG);
+    assertThat(fileIssue.getTechnicalUpdateDate()).isEqualTo(new Date(NOW));
+
+    IssueDoc moduleIssue = docsByKey.get("CHANGED");
+    assertThat(moduleIssue.moduleUuid()).isEqualTo("MODULE_UUID");
+    assertThat(moduleIssue.modulePath()).isEqualTo(".PROJECT_UUID.MODULE_UUID.");
+    assertThat(moduleIssue.filePath()).isNull();
+    assertThat(moduleIssue.directoryPath()).isNull();
+  }
+
+  @Test
+  public void load_components_removed_from_analysis_from_db() {
+    ComponentDto project = dbTester.components().insertComponent(newProjectDto(PROJECT_UUID));
+    ComponentDto removedFile = dbTester.components().insertComponent(newFileDto(project).setPath("src/Removed.java"));
+    componentsWithUnprocessedIssues.setUuids(singleton(removedFile.uuid()));
+    issueCache.newAppender().append(newIssue("CLOSED", removedFile.uuid()).setNew(false).setChanged(true)).close();
+
+    underTest.execute();
+
+    verify(issueIndexer, never()).index(anyString());
+    assertThat(indexedDocs).hasSize(1);
+    IssueDoc doc = indexedDocs.get(0);
+    assertThat(doc.componentUuid()).isEqualTo(removedFile.uuid());
+    assertThat(doc.modulePath()).isEqualTo(removedFile.moduleUuidPath());
+    assertThat(doc.filePath()).isEqualTo("src/Removed.java");
+    assertThat(doc.directoryPath()).isEqualTo("src");
+  }
+
+  @Test
+  public void fall_back_to_db_for_issues_of_unknown_components() {
+    componentsWithUnprocessedIssues.setUuids(emptySet());
+    issueCache.newAppender()
+      .append(newIssue("UNKNOWN", "UNKNOWN_UUID").setNew(true))
+      .append(newIssue("NEW", "FILE_UUID").setNew(true))
+      .close();
+
+    underTest.execute();
+
+    assertThat(indexedDocs).extracting(IssueDoc::key).containsExactly("NEW");
+    verify(issueIndexer).index(PROJECT_UUID);
+  }
+
+  @Test
+  public void fall_back_to_db_for_issues_merged_with_concurrent_changes() {
+    componentsWithUnprocessedIssues.setUuids(emptySet());
+    RuleDto rule = RuleTesting.newDto(RULE_KEY);
+    dbTester.getDbClient().ruleDao().insert(dbTester.getSession(), rule);
+    ComponentDto project = dbTester.components().insertComponent(newProjectDto(PROJECT_UUID));
+    ComponentDto file = dbTester.components().insertComponent(newFileDto(project, null, "FILE_UUID"));
+    // CONFLICT is changed by a user after having been loaded by the analysis
+    dbTester.getDbClient().issueDao().insert(dbTester.getSession(),
+      IssueTesting.newDto(rule, file, project).setKee("CONFLICT").setUpdatedAt(NOW - 1_000L),
+      IssueTesting.newDto(rule, file, project).setKee("CHANGED").setUpdatedAt(NOW - 3_000L));
+    dbTester.commit();
+    issueCache.newAppender()
+      .append(newIssue("CONFLICT", "FILE_UUID").setNew(false).setChanged(true).setSelectedAt(NOW - 2_000L))
+      .append(newIssue("CHANGED", "FILE_UUID").setNew(false).setChanged(true).setSelectedAt(NOW - 2_000L))
+      .close();
+    new PersistIssuesStep(dbTester.getDbClient(), system2, conflictResolver, ruleRepository, issueCache).execute();
+
+    underTest.execute();
+
+    assertThat(indexedDocs).extracting(IssueDoc::key).containsExactly("CHANGED");
+    verify(issueIndexer).index(PROJECT_UUID);
+  }
+
+  private static DefaultIssue newIssue(String key, String componentUuid) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setComponentUuid(componentUuid)
+      .setProjectUuid(PROJECT_UUID)
+      .setRuleKey(RULE_KEY)
+      .setType(RuleType.BUG)
+      .setSeverity(Severity.MAJOR)
+      .setStatus("OPEN")
+      .setLine(10)
+      .setTags(singleton("bug"))
+      .setCreationDate(new Date(NOW))
+      .setUpdateDate(new Date(NOW));
   }
 }
@@ -30,7 +30,11 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
@@ -41,6 +45,7 @@ import org.sonar.db.component.SnapshotTesting;
 import org.sonar.db.duplication.DuplicationUnitDto;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.CloneGroup;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolderRule;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
@@ -55,9 +60,11 @@ import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
@@ -67,6 +74,8 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
+  @Rule
+  public LogTester logTester = new LogTester().setLevel(LoggerLevel.DEBUG);
 
   static final String XOO_LANGUAGE = "xoo";
 
@@ -103,8 +112,10 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
 
   Analysis baseProjectAnalysis;
 
+  Settings settings = new MapSettings();
+
   ComputationStep underTest = new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
-    integrateCrossProjectDuplications, dbClient);
+    integrateCrossProjectDuplications, dbClient, settings);
 
   @Before
   public void setUp() throws Exception {
@@ -153,7 +164,7 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
 
     underTest.execute();
 
-    verify(integrateCrossProjectDuplications).computeCpd(CURRENT_FILE,
+    verify(integrateCrossProjectDuplications).detectCpd(CURRENT_FILE,
       Arrays.asList(
         new Block.Builder()
           .setResourceId(CURRENT_FILE_KEY)
@@ -222,7 +233,7 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
     ArgumentCaptor<ArrayList<Block>> originBlocks = ArgumentCaptor.forClass(listClass);
     ArgumentCaptor<ArrayList<Block>> duplicationBlocks = ArgumentCaptor.forClass(listClass);
 
-    verify(integrateCrossProjectDuplications).computeCpd(eq(CURRENT_FILE), originBlocks.capture(), duplicationBlocks.capture());
+    verify(integrateCrossProjectDuplications).detectCpd(eq(CURRENT_FILE), originBlocks.capture(), duplicationBlocks.capture());
 
     Map<Integer, Block> originBlocksByIndex = blocksByIndexInFile(originBlocks.getValue());
     assertThat(originBlocksByIndex.get(0)).isEqualTo(
@@ -259,6 +270,77 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
         .build());
   }
 
+  @Test
+  public void call_compute_cpd_on_many_files_with_many_threads() throws Exception {
+    settings.setProperty("sonar.ce.crossProjectDuplications.threads", 2);
+
+    verifyDuplicationsOfManyFiles();
+
+    // candidates are selected by file
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).doesNotContain("Loaded 2 candidate hashes of language xoo");
+  }
+
+  @Test
+  public void call_compute_cpd_on_many_files_with_bulk_lookup() throws Exception {
+    settings.setProperty("sonar.ce.crossProjectDuplications.bulkLookup", true);
+
+    verifyDuplicationsOfManyFiles();
+
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains(
+      "Loaded 2 candidate hashes of language xoo",
+      "Found candidates for 2 hashes out of 2 on 3 files of language xoo");
+  }
+
+  @Test
+  public void call_compute_cpd_on_many_files_with_bulk_lookup_and_many_threads() throws Exception {
+    settings.setProperty("sonar.ce.crossProjectDuplications.bulkLookup", true);
+    settings.setProperty("sonar.ce.crossProjectDuplications.threads", 2);
+
+    verifyDuplicationsOfManyFiles();
+  }
+
+  private void verifyDuplicationsOfManyFiles() {
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    Component file1 = ReportComponent.builder(FILE, 3).setKey("FILE_1").setFileAttributes(new FileAttributes(false, XOO_LANGUAGE)).build();
+    Component file2 = ReportComponent.builder(FILE, 4).setKey("FILE_2").setFileAttributes(new FileAttributes(false, XOO_LANGUAGE)).build();
+    Component fileWithoutDuplicate = ReportComponent.builder(FILE, 5).setKey("FILE_3").setFileAttributes(new FileAttributes(false, XOO_LANGUAGE)).build();
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, PROJECT_REF).addChildren(file1, file2, fileWithoutDuplicate).build());
+
+    ComponentDto otherProject = createProject("OTHER_PROJECT_KEY");
+    SnapshotDto otherProjectSnapshot = createProjectSnapshot(otherProject);
+    ComponentDto otherFile = createFile("OTHER_FILE_KEY", otherProject);
+    String hash1 = "a8998353e96320ec";
+    String hash2 = "b1234353e96320ff";
+    for (String hash : asList(hash1, hash2)) {
+      dbClient.duplicationDao().insert(dbSession, new DuplicationUnitDto()
+        .setHash(hash)
+        .setStartLine(40)
+        .setEndLine(55)
+        .setIndexInFile(0)
+        .setAnalysisUuid(otherProjectSnapshot.getUuid())
+        .setComponentUuid(otherFile.uuid()));
+    }
+    dbSession.commit();
+
+    batchReportReader.putDuplicationBlocks(3, asList(newCpdTextBlock(hash1)));
+    batchReportReader.putDuplicationBlocks(4, asList(newCpdTextBlock(hash1), newCpdTextBlock(hash2)));
+    batchReportReader.putDuplicationBlocks(5, asList(newCpdTextBlock("c0000000000000ff")));
+
+    new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
+      integrateCrossProjectDuplications, dbClient, settings).execute();
+
+    Class<ArrayList<Block>> listClass = (Class<ArrayList<Block>>) (Class) ArrayList.class;
+    ArgumentCaptor<ArrayList<Block>> duplicationBlocks = ArgumentCaptor.forClass(listClass);
+    verify(integrateCrossProjectDuplications).detectCpd(eq(file1), anyCollectionOf(Block.class), duplicationBlocks.capture());
+    assertThat(duplicationBlocks.getValue()).extracting(Block::getBlockHash).containsExactly(new ByteArray(hash1));
+    verify(integrateCrossProjectDuplications).detectCpd(eq(file2), anyCollectionOf(Block.class), duplicationBlocks.capture());
+    assertThat(duplicationBlocks.getValue()).extracting(Block::getBlockHash).containsOnly(new ByteArray(hash1), new ByteArray(hash2));
+    verify(integrateCrossProjectDuplications).addDuplications(eq(file1), anyCollectionOf(CloneGroup.class));
+    verify(integrateCrossProjectDuplications).addDuplications(eq(file2), anyCollectionOf(CloneGroup.class));
+    verifyNoMoreInteractions(integrateCrossProjectDuplications);
+  }
+
   @Test
   public void nothing_to_do_when_cross_project_duplication_is_disabled() throws Exception {
     when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(false);
@@ -325,6 +407,16 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
     verifyZeroInteractions(integrateCrossProjectDuplications);
   }
 
+  private static ScannerReport.CpdTextBlock newCpdTextBlock(String hash) {
+    return ScannerReport.CpdTextBlock.newBuilder()
+      .setHash(hash)
+      .setStartLine(30)
+      .setEndLine(45)
+      .setStartTokenIndex(0)
+      .setEndTokenIndex(10)
+      .build();
+  }
+
   private ComponentDto createProject(String projectKey) {
     ComponentDto project = ComponentTesting.newProjectDto().setKey(projectKey);
     dbClient.componentDao().insert(dbSession, project);
@@ -24,7 +24,11 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
@@ -69,6 +73,8 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   @Rule
   public DbTester dbTester = DbTester.create(system2);
   @Rule
+  public LogTester logTester = new LogTester();
+  @Rule
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
@@ -87,7 +93,11 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   @Before
   public void setup() {
     when(system2.now()).thenReturn(NOW);
-    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository);
+    underTest = createStep(new MapSettings());
+  }
+
+  private PersistFileSourcesStep createStep(Settings settings) {
+    return new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository, settings);
   }
 
   @Override
@@ -119,6 +129,75 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(data.getLines(1).getSource()).isEqualTo("line2");
   }
 
+  @Test
+  public void persist_sources_of_all_files_in_a_single_batch() {
+    initReportWithFiles(3);
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(3);
+    assertThat(logTester.logs(LoggerLevel.INFO)).hasSize(1);
+    assertThat(logTester.logs(LoggerLevel.INFO).get(0)).startsWith("Sources of 3 files persisted (3 inserted, 0 updated) | commits=1 |");
+  }
+
+  @Test
+  public void commit_when_batch_size_is_reached() {
+    initReportWithFiles(3);
+    underTest = createStep(new MapSettings().setProperty("sonar.ce.persistSources.batchSizeInKb", 1));
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(3);
+    // every file source is bigger than 1KB
+    assertThat(logTester.logs(LoggerLevel.INFO).get(0)).startsWith("Sources of 3 files persisted (3 inserted, 0 updated) | commits=3 |");
+  }
+
+  @Test
+  public void commit_each_file_source_when_batch_mode_is_disabled() {
+    initReportWithFiles(3);
+    underTest = createStep(new MapSettings().setProperty("sonar.ce.persistSources.batchSizeInKb", 0));
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(3);
+    assertThat(logTester.logs(LoggerLevel.INFO).get(0)).startsWith("Sources of 3 files persisted (3 inserted, 0 updated) | commits=3 |");
+  }
+
+  @Test
+  public void compute_sources_in_parallel() {
+    initReportWithFiles(20);
+    underTest = createStep(new MapSettings().setProperty("sonar.ce.persistSources.threads", 4));
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(20);
+    for (int i = 0; i < 20; i++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID + i);
+      assertThat(fileSourceDto.getProjectUuid()).isEqualTo(PROJECT_UUID);
+      DbFileSources.Data data = fileSourceDto.getSourceData();
+      assertThat(data.getLinesCount()).isEqualTo(50);
+      assertThat(data.getLines(49).getSource()).isEqualTo("line 50 of file " + i);
+    }
+    assertThat(logTester.logs(LoggerLevel.INFO).get(0)).startsWith("Sources of 20 files persisted (20 inserted, 0 updated) | commits=1 |");
+  }
+
+  @Test
+  public void fail_with_file_key_when_computation_fails_in_parallel_mode() {
+    initReportWithFiles(5);
+    // SCM data of a single line for a file of 50 lines
+    scmInfoRepository.setScmInfo(FILE_REF + 2, Changeset.newChangesetBuilder()
+      .setAuthor("john")
+      .setDate(123456789L)
+      .setRevision("rev-1")
+      .build());
+    underTest = createStep(new MapSettings().setProperty("sonar.ce.persistSources.threads", 2));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Cannot persist sources of PROJECT_KEY:src/Foo2.java");
+
+    underTest.execute();
+  }
+
   @Test
   public void persist_source_hashes() {
     initBasicReport(2);
@@ -280,7 +359,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     long past = 150000L;
     String srcHash = "137f72c3708c6bd0de00a0e5a69c699b";
     String lineHashes = "137f72c3708c6bd0de00a0e5a69c699b";
-    String dataHash = "29f25900140c94db38035128cb6de6a2";
+    String dataHash = "c64f0174429e49fe9edc6a0a8a264258";
 
     dbClient.fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
       .setProjectUuid(PROJECT_UUID)
@@ -455,6 +534,27 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getRevision()).isNull();
   }
 
+  private void initReportWithFiles(int numberOfFiles) {
+    ReportComponent.Builder project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY);
+    ScannerReport.Component.Builder projectReport = ScannerReport.Component.newBuilder()
+      .setRef(1)
+      .setType(ComponentType.PROJECT);
+    for (int i = 0; i < numberOfFiles; i++) {
+      int ref = FILE_REF + i;
+      project.addChildren(ReportComponent.builder(Component.Type.FILE, ref).setUuid(FILE_UUID + i).setKey(PROJECT_KEY + ":src/Foo" + i + ".java").build());
+      projectReport.addChildRef(ref);
+      reportReader.putComponent(ScannerReport.Component.newBuilder()
+        .setRef(ref)
+        .setType(ComponentType.FILE)
+        .build());
+      for (int line = 1; line <= 50; line++) {
+        fileSourceRepository.addLine(ref, "line " + line + " of file " + i);
+      }
+    }
+    treeRootHolder.setRoot(project.build());
+    reportReader.putComponent(projectReport.build());
+  }
+
   private void initBasicReport(int numberOfLines) {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
       ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
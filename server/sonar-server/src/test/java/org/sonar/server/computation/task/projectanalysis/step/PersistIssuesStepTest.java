@@ -38,6 +38,7 @@ import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
 import org.sonar.db.issue.IssueDto;
+import org.sonar.db.issue.IssueTesting;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -72,6 +73,8 @@ public class PersistIssuesStepTest extends BaseStepTest {
 
   IssueCache issueCache;
 
+  UpdateConflictResolver conflictResolver = new UpdateConflictResolver();
+
   ComputationStep step;
 
   @Override
@@ -86,7 +89,20 @@ public class PersistIssuesStepTest extends BaseStepTest {
     when(system2.now()).thenReturn(NOW);
     reportReader.setMetadata(ScannerReport.Metadata.getDefaultInstance());
 
-    step = new PersistIssuesStep(dbClient, system2, new UpdateConflictResolver(), new RuleRepositoryImpl(dbClient), issueCache);
+    step = new PersistIssuesStep(dbClient, system2, conflictResolver, new RuleRepositoryImpl(dbClient), issueCache);
+  }
+
+  private static DefaultIssue newChangedIssue(String key, RuleDto rule, ComponentDto file, ComponentDto project) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setType(RuleType.CODE_SMELL)
+      .setRuleKey(rule.getKey())
+      .setComponentUuid(file.uuid())
+      .setProjectUuid(project.uuid())
+      .setSeverity(Severity.BLOCKER)
+      .setStatus(Issue.STATUS_OPEN)
+      .setNew(false)
+      .setChanged(true);
   }
 
   @After
@@ -128,6 +144,36 @@ public class PersistIssuesStepTest extends BaseStepTest {
     assertThat(result.getType()).isEqualTo(RuleType.BUG.getDbConstant());
   }
 
+  @Test
+  public void merge_issues_changed_concurrently_by_users() {
+    RuleDto rule = RuleTesting.newDto(RuleKey.of("xoo", "S01"));
+    dbClient.ruleDao().insert(session, rule);
+    ComponentDto project = ComponentTesting.newProjectDto();
+    dbClient.componentDao().insert(session, project);
+    ComponentDto file = ComponentTesting.newFileDto(project, null);
+    dbClient.componentDao().insert(session, file);
+    // assigned by a user after the issues were loaded by the analysis
+    dbClient.issueDao().insert(session, IssueTesting.newDto(rule, file, project).setKee("CONFLICT").setAssignee("john").setUpdatedAt(NOW - 1_000L));
+    dbClient.issueDao().insert(session, IssueTesting.newDto(rule, file, project).setKee("NO_CONFLICT").setUpdatedAt(NOW - 3_000L));
+    session.commit();
+
+    issueCache.newAppender()
+      .append(newChangedIssue("CONFLICT", rule, file, project).setSelectedAt(NOW - 2_000L))
+      .append(newChangedIssue("NO_CONFLICT", rule, file, project).setSelectedAt(NOW - 2_000L))
+      .close();
+
+    step.execute();
+
+    IssueDto conflict = dbClient.issueDao().selectOrFailByKey(session, "CONFLICT");
+    assertThat(conflict.getAssignee()).isEqualTo("john");
+    assertThat(conflict.getStatus()).isEqualTo(Issue.STATUS_OPEN);
+    assertThat(conflict.getSeverity()).isEqualTo(Severity.BLOCKER);
+    IssueDto noConflict = dbClient.issueDao().selectOrFailByKey(session, "NO_CONFLICT");
+    assertThat(noConflict.getSeverity()).isEqualTo(Severity.BLOCKER);
+    assertThat(noConflict.getUpdatedAt()).isEqualTo(NOW);
+    assertThat(conflictResolver.getResolvedIssueKeys()).containsOnly("CONFLICT");
+  }
+
   @Test
   public void close_issue() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -0,0 +1,269 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.webhook;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.sonar.api.SonarQubeSide;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.api.internal.SonarRuntimeImpl;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.Version;
+import org.sonar.server.util.OkHttpClientProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class WebhookDispatcherTest {
+
+  private static final WebhookPayload PAYLOAD = new WebhookPayload("P1", "{the payload}");
+
+  @Rule
+  public MockWebServer server = new MockWebServer();
+  @Rule
+  public Timeout timeout = Timeout.seconds(60);
+
+  private Settings settings = new MapSettings().setProperty(WebhookDispatcher.RETRY_DELAY_PROPERTY, 10);
+  private WebhookDeliveryStorage deliveryStorage = mock(WebhookDeliveryStorage.class);
+  private WebhookDispatcher underTest;
+
+  @After
+  public void tearDown() {
+    if (underTest != null) {
+      underTest.stop();
+    }
+  }
+
+  @Test
+  public void dispatch_does_not_wait_for_the_webhook_to_be_called() {
+    server.enqueue(new MockResponse().setResponseCode(200).setBodyDelay(1, TimeUnit.SECONDS).setBody("pong"));
+    underTest = startDispatcher(newHttpCaller());
+
+    long start = System.currentTimeMillis();
+    underTest.dispatch(newWebhook("hook"), PAYLOAD);
+    assertThat(System.currentTimeMillis() - start).isLessThan(1_000L);
+
+    underTest.stop();
+    List<WebhookDelivery> deliveries = persistedDeliveries();
+    assertThat(deliveries).hasSize(1);
+    assertThat(deliveries.get(0).getHttpStatus()).hasValue(200);
+    assertThat(underTest.getPendingDeliveries()).isEqualTo(0);
+  }
+
+  @Test
+  public void retry_on_server_error() {
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setResponseCode(200));
+    underTest = startDispatcher(newHttpCaller());
+
+    underTest.dispatch(newWebhook("hook"), PAYLOAD);
+    waitForRequests(2);
+    underTest.stop();
+
+    assertThat(server.getRequestCount()).isEqualTo(2);
+    List<WebhookDelivery> deliveries = persistedDeliveries();
+    assertThat(deliveries).hasSize(1);
+    assertThat(deliveries.get(0).getHttpStatus()).hasValue(200);
+  }
+
+  @Test
+  public void do_not_retry_on_client_error() {
+    server.enqueue(new MockResponse().setResponseCode(404));
+    underTest = startDispatcher(newHttpCaller());
+
+    underTest.dispatch(newWebhook("hook"), PAYLOAD);
+    underTest.stop();
+
+    assertThat(server.getRequestCount()).isEqualTo(1);
+    assertThat(persistedDeliveries().get(0).getHttpStatus()).hasValue(404);
+  }
+
+  @Test
+  public void give_up_after_max_attempts() {
+    settings.setProperty(WebhookDispatcher.MAX_ATTEMPTS_PROPERTY, 3);
+    for (int i = 0; i < 4; i++) {
+      server.enqueue(new MockResponse().setResponseCode(500));
+    }
+    underTest = startDispatcher(newHttpCaller());
+
+    underTest.dispatch(newWebhook("hook"), PAYLOAD);
+    waitForRequests(3);
+    underTest.stop();
+
+    assertThat(server.getRequestCount()).isEqualTo(3);
+    List<WebhookDelivery> deliveries = persistedDeliveries();
+    assertThat(deliveries).hasSize(1);
+    assertThat(deliveries.get(0).getHttpStatus()).hasValue(500);
+  }
+
+  @Test
+  public void limit_concurrent_calls_to_the_same_host() {
+    settings.setProperty(WebhookDispatcher.THREADS_PROPERTY, 4);
+    settings.setProperty(WebhookDispatcher.MAX_CALLS_PER_HOST_PROPERTY, 1);
+    ConcurrencyRecordingCaller caller = new ConcurrencyRecordingCaller();
+    underTest = startDispatcher(caller);
+
+    for (int i = 0; i < 6; i++) {
+      underTest.dispatch(new Webhook("P1", "T1", "hook" + i, "http://same.host/hook" + i), PAYLOAD);
+    }
+    underTest.stop();
+
+    assertThat(caller.calls.get()).isEqualTo(6);
+    assertThat(caller.maxConcurrentCalls.get()).isEqualTo(1);
+    assertThat(persistedDeliveries()).hasSize(6);
+  }
+
+  @Test
+  public void record_failed_delivery_when_queue_is_full() throws Exception {
+    settings.setProperty(WebhookDispatcher.QUEUE_SIZE_PROPERTY, 1);
+    CountDownLatch callStarted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    underTest = startDispatcher((webhook, payload) -> {
+      callStarted.countDown();
+      await(release);
+      return newDelivery(webhook, payload, 200);
+    });
+
+    underTest.dispatch(newWebhook("first"), PAYLOAD);
+    callStarted.await();
+    underTest.dispatch(newWebhook("second"), PAYLOAD);
+    release.countDown();
+    underTest.stop();
+
+    List<WebhookDelivery> deliveries = persistedDeliveries();
+    assertThat(deliveries).extracting(d -> d.getWebhook().getName()).containsOnly("first", "second");
+    WebhookDelivery rejected = deliveries.stream().filter(d -> d.getWebhook().getName().equals("second")).findFirst().get();
+    assertThat(rejected.getErrorMessage()).hasValue("Too many webhooks are waiting to be sent");
+  }
+
+  @Test
+  public void purge_old_deliveries_of_components_once_new_deliveries_are_persisted() {
+    underTest = startDispatcher((webhook, payload) -> newDelivery(webhook, payload, 200));
+
+    underTest.dispatch(new Webhook("P1", "T1", "first", "http://url1"), PAYLOAD);
+    underTest.dispatch(new Webhook("P1", "T1", "second", "http://url2"), PAYLOAD);
+    underTest.dispatch(new Webhook("P2", "T2", "third", "http://url3"), PAYLOAD);
+    underTest.stop();
+
+    InOrder inOrder = inOrder(deliveryStorage);
+    inOrder.verify(deliveryStorage, atLeastOnce()).persist(any(Collection.class));
+    inOrder.verify(deliveryStorage, atLeastOnce()).purge(anyString());
+    verify(deliveryStorage, atLeastOnce()).purge("P1");
+    verify(deliveryStorage, atLeastOnce()).purge("P2");
+  }
+
+  @Test
+  public void do_not_purge_deliveries_if_they_can_not_be_persisted() {
+    doThrow(new IllegalStateException("database is down")).when(deliveryStorage).persist(any(Collection.class));
+    underTest = startDispatcher((webhook, payload) -> newDelivery(webhook, payload, 200));
+
+    underTest.dispatch(newWebhook("hook"), PAYLOAD);
+    underTest.stop();
+
+    verify(deliveryStorage, never()).purge(anyString());
+  }
+
+  private WebhookDispatcher startDispatcher(WebhookCaller caller) {
+    WebhookDispatcher dispatcher = new WebhookDispatcher(caller, deliveryStorage, System2.INSTANCE, settings);
+    dispatcher.start();
+    return dispatcher;
+  }
+
+  private static WebhookCaller newHttpCaller() {
+    return new WebhookCallerImpl(System2.INSTANCE,
+      new OkHttpClientProvider().provide(new MapSettings(), SonarRuntimeImpl.forSonarQube(Version.parse("6.2"), SonarQubeSide.COMPUTE_ENGINE)));
+  }
+
+  private Webhook newWebhook(String name) {
+    return new Webhook("P1", "T1", name, server.url("/ping").toString());
+  }
+
+  private void waitForRequests(int count) {
+    while (server.getRequestCount() < count) {
+      sleep(10);
+    }
+  }
+
+  private List<WebhookDelivery> persistedDeliveries() {
+    ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+    verify(deliveryStorage, atLeastOnce()).persist(captor.capture());
+    List<WebhookDelivery> deliveries = new ArrayList<>();
+    for (Collection<WebhookDelivery> batch : captor.getAllValues()) {
+      deliveries.addAll(batch);
+    }
+    return deliveries;
+  }
+
+  private static WebhookDelivery newDelivery(Webhook webhook, WebhookPayload payload, int httpStatus) {
+    return new WebhookDelivery.Builder().setAt(0L).setWebhook(webhook).setPayload(payload).setHttpStatus(httpStatus).setDurationInMs(1).build();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void sleep(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class ConcurrencyRecordingCaller implements WebhookCaller {
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger concurrentCalls = new AtomicInteger();
+    private final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+
+    @Override
+    public WebhookDelivery call(Webhook webhook, WebhookPayload payload) {
+      calls.incrementAndGet();
+      int current = concurrentCalls.incrementAndGet();
+      maxConcurrentCalls.accumulateAndGet(current, Math::max);
+      sleep(20);
+      concurrentCalls.decrementAndGet();
+      return newDelivery(webhook, payload, 200);
+    }
+  }
+}
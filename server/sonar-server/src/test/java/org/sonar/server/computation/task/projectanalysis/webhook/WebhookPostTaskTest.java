@@ -20,24 +20,28 @@
 package org.sonar.server.computation.task.projectanalysis.webhook;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.ce.posttask.CeTask;
 import org.sonar.api.ce.posttask.PostProjectAnalysisTaskTester;
 import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.System2;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.computation.task.projectanalysis.component.SettingsRepository;
 import org.sonar.server.computation.task.projectanalysis.component.TestSettingsRepository;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.sonar.api.ce.posttask.PostProjectAnalysisTaskTester.newCeTaskBuilder;
@@ -84,7 +88,7 @@ public class WebhookPostTaskTest {
     assertThat(caller.countSent()).isEqualTo(2);
     assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | time=1234ms | status=200");
     assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Failed to send webhook 'Second' | url=http://url2 | message=Fail to connect");
-    verify(deliveryStorage, times(2)).persist(any(WebhookDelivery.class));
+    assertThat(persistedDeliveries()).hasSize(2);
     verify(deliveryStorage).purge(PROJECT_UUID);
   }
 
@@ -99,7 +103,7 @@ public class WebhookPostTaskTest {
 
     assertThat(caller.countSent()).isEqualTo(1);
     assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Sent webhook 'First' | url=http://url1 | time=1234ms | status=200");
-    verify(deliveryStorage).persist(any(WebhookDelivery.class));
+    assertThat(persistedDeliveries()).hasSize(1);
     verify(deliveryStorage).purge(PROJECT_UUID);
   }
 
@@ -128,9 +132,25 @@ public class WebhookPostTaskTest {
     assertThat(logTester.logs(LoggerLevel.DEBUG).stream().filter(log -> log.contains("Sent"))).hasSize(10);
   }
 
+  private List<WebhookDelivery> persistedDeliveries() {
+    ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+    verify(deliveryStorage, atLeastOnce()).persist(captor.capture());
+    List<WebhookDelivery> deliveries = new ArrayList<>();
+    for (Collection<WebhookDelivery> batch : captor.getAllValues()) {
+      deliveries.addAll(batch);
+    }
+    return deliveries;
+  }
+
   private void execute() {
     SettingsRepository settingsRepository = new TestSettingsRepository(settings);
-    WebhookPostTask task = new WebhookPostTask(rootHolder, settingsRepository, caller, deliveryStorage);
+    // a single thread and no retry, so that calls are in the same order as the responses of TestWebhookCaller
+    MapSettings dispatcherSettings = new MapSettings();
+    dispatcherSettings.setProperty(WebhookDispatcher.THREADS_PROPERTY, 1);
+    dispatcherSettings.setProperty(WebhookDispatcher.MAX_ATTEMPTS_PROPERTY, 1);
+    WebhookDispatcher dispatcher = new WebhookDispatcher(caller, deliveryStorage, System2.INSTANCE, dispatcherSettings);
+    dispatcher.start();
+    WebhookPostTask task = new WebhookPostTask(rootHolder, settingsRepository, dispatcher);
 
     PostProjectAnalysisTaskTester.of(task)
       .at(new Date())
@@ -145,5 +165,7 @@ public class WebhookPostTaskTest {
         .build())
       .withScannerContext(newScannerContextBuilder().build())
       .execute();
+    // waits for the calls
+    dispatcher.stop();
   }
 }
@@ -22,6 +22,7 @@ package org.sonar.server.measure.ws;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import java.util.List;
+import java.util.Optional;
 import javax.annotation.Nullable;
 import org.junit.Before;
 import org.junit.Test;
@@ -30,6 +31,7 @@ import org.sonar.api.measures.Metric.ValueType;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.core.util.Uuids;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTreeQuery;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.db.metric.MetricDto;
 import org.sonarqube.ws.client.measure.ComponentTreeWsRequest;
@@ -37,6 +39,10 @@ import org.sonarqube.ws.client.measure.ComponentTreeWsRequest;
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.MEASURE;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.NAME;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.PATH;
+import static org.sonar.db.component.ComponentTreeQuery.SortField.QUALIFIER;
 import static org.sonar.db.metric.MetricTesting.newMetricDto;
 import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_PERIOD_SORT;
 import static org.sonar.server.measure.ws.ComponentTreeAction.METRIC_SORT;
@@ -247,6 +253,37 @@ public class ComponentTreeSortTest {
       .setPath(path);
   }
 
+  @Test
+  public void translate_sort_by_fields_and_numerical_metric_to_db_sorts() {
+    ComponentTreeWsRequest wsRequest = newRequest(newArrayList(METRIC_SORT, NAME_SORT, PATH_SORT, QUALIFIER_SORT), false, NUM_METRIC_KEY);
+
+    Optional<List<ComponentTreeQuery.Sort>> result = ComponentTreeSort.toDbSorts(wsRequest, metrics);
+
+    assertThat(result.get()).extracting(ComponentTreeQuery.Sort::getField).containsExactly(MEASURE, NAME, PATH, QUALIFIER);
+    assertThat(result.get()).extracting(ComponentTreeQuery.Sort::isAsc).containsOnly(false);
+  }
+
+  @Test
+  public void translate_sort_by_numerical_metric_period_to_db_sorts() {
+    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_PERIOD_SORT), true, NUM_METRIC_KEY).setMetricPeriodSort(1);
+
+    assertThat(ComponentTreeSort.toDbSorts(wsRequest, metrics).get()).extracting(ComponentTreeQuery.Sort::getField).containsExactly(MEASURE);
+  }
+
+  @Test
+  public void textual_metric_must_be_sorted_in_memory() {
+    ComponentTreeWsRequest wsRequest = newRequest(singletonList(METRIC_SORT), true, TEXT_METRIC_KEY);
+
+    assertThat(ComponentTreeSort.toDbSorts(wsRequest, metrics)).isEmpty();
+  }
+
+  @Test
+  public void sort_on_both_value_and_period_of_metric_must_be_done_in_memory() {
+    ComponentTreeWsRequest wsRequest = newRequest(newArrayList(METRIC_SORT, METRIC_PERIOD_SORT), true, NUM_METRIC_KEY).setMetricPeriodSort(1);
+
+    assertThat(ComponentTreeSort.toDbSorts(wsRequest, metrics)).isEmpty();
+  }
+
   private static ComponentTreeWsRequest newRequest(List<String> sortFields, boolean isAscending, @Nullable String metricKey) {
     return new ComponentTreeWsRequest()
       .setAsc(isAscending)
@@ -41,10 +41,12 @@ import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
 import org.sonar.server.permission.index.PermissionIndexer;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.AuthorizationCache;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonar.core.permission.GlobalPermissions.PROVISIONING;
 import static org.sonar.core.permission.GlobalPermissions.SCAN_EXECUTION;
@@ -71,8 +73,9 @@ public class PermissionTemplateServiceTest {
   private Settings settings = new MapSettings();
   private PermissionIndexer permissionIndexer = mock(PermissionIndexer.class);
   private DefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(dbTester);
+  private AuthorizationCache authorizationCache = mock(AuthorizationCache.class);
   private PermissionTemplateService underTest = new PermissionTemplateService(dbTester.getDbClient(), settings,
-    permissionIndexer, userSession, defaultOrganizationProvider);
+    permissionIndexer, userSession, defaultOrganizationProvider, authorizationCache);
 
   @Before
   public void setUp() {
@@ -97,6 +100,7 @@ public class PermissionTemplateServiceTest {
     assertThat(selectProjectPermissionsOfUser(200L, PROJECT)).containsOnly("admin");
 
     checkAuthorizationUpdatedAtIsUpdated();
+    verify(authorizationCache).invalidateAll();
   }
 
   private List<String> selectProjectPermissionsOfGroup(String organizationUuid, @Nullable Long groupId, ComponentDto project) {
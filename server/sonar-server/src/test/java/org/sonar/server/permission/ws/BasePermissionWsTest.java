@@ -37,6 +37,7 @@ import org.sonar.server.permission.PermissionUpdater;
 import org.sonar.server.permission.UserPermissionChanger;
 import org.sonar.server.permission.index.PermissionIndexer;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.usergroups.ws.GroupWsSupport;
 import org.sonar.server.ws.TestRequest;
 import org.sonar.server.ws.WsActionTester;
@@ -54,6 +55,7 @@ public abstract class BasePermissionWsTest<A extends PermissionsWsAction> {
 
   private TestDefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(db);
   protected UserSessionRule userSession = UserSessionRule.standalone();
+  protected AuthorizationCache authorizationCache = mock(AuthorizationCache.class);
   protected WsActionTester wsTester;
 
   @Before
@@ -80,7 +82,8 @@ public abstract class BasePermissionWsTest<A extends PermissionsWsAction> {
     return new PermissionUpdater(db.getDbClient(),
       mock(PermissionIndexer.class),
       new UserPermissionChanger(db.getDbClient(), defaultOrganizationProvider),
-      new GroupPermissionChanger(db.getDbClient(), defaultOrganizationProvider));
+      new GroupPermissionChanger(db.getDbClient(), defaultOrganizationProvider),
+      authorizationCache);
   }
 
   protected TestRequest newRequest() {
@@ -77,7 +77,7 @@ public class ApplyTemplateActionTest extends BasePermissionWsTest<ApplyTemplateA
   @Override
   protected ApplyTemplateAction buildWsAction() {
     PermissionTemplateService permissionTemplateService = new PermissionTemplateService(db.getDbClient(),
-      new MapSettings(), permissionIndexer, userSession, defaultOrganizationProvider);
+      new MapSettings(), permissionIndexer, userSession, defaultOrganizationProvider, authorizationCache);
     return new ApplyTemplateAction(db.getDbClient(), userSession, permissionTemplateService, newPermissionWsSupport());
   }
 
@@ -26,6 +26,8 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.rule.RuleTesting;
 import org.sonar.server.component.es.ProjectMeasuresDoc;
+import org.sonar.server.component.es.ComponentDoc;
+import org.sonar.server.component.es.ComponentIndexDefinition;
 import org.sonar.server.component.es.ProjectMeasuresIndexDefinition;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.issue.IssueDocTesting;
@@ -45,7 +47,8 @@ public class BackendCleanupTest {
     new RuleIndexDefinition(new MapSettings()),
     new IssueIndexDefinition(new MapSettings()),
     new ViewIndexDefinition(new MapSettings()),
-    new ProjectMeasuresIndexDefinition(new MapSettings()));
+    new ProjectMeasuresIndexDefinition(new MapSettings()),
+    new ComponentIndexDefinition(new MapSettings()));
 
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
@@ -101,6 +104,11 @@ public class BackendCleanupTest {
       .setId("PROJECT")
       .setKey("Key")
       .setName("Name"));
+    esTester.putDocuments(ComponentIndexDefinition.INDEX_COMPONENTS, ComponentIndexDefinition.TYPE_COMPONENT, new ComponentDoc()
+      .setId("FILE")
+      .setProjectUuid("PROJECT")
+      .setKey("Key")
+      .setName("Name"));
 
     backendCleanup.resetData();
 
@@ -110,6 +118,7 @@ public class BackendCleanupTest {
     assertThat(esTester.countDocuments(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE)).isZero();
     assertThat(esTester.countDocuments(ViewIndexDefinition.INDEX, ViewIndexDefinition.TYPE_VIEW)).isZero();
     assertThat(esTester.countDocuments(ProjectMeasuresIndexDefinition.INDEX_PROJECT_MEASURES, ProjectMeasuresIndexDefinition.TYPE_PROJECT_MEASURES)).isZero();
+    assertThat(esTester.countDocuments(ComponentIndexDefinition.INDEX_COMPONENTS, ComponentIndexDefinition.TYPE_COMPONENT)).isZero();
 
     // Rules should not be removed
     assertThat(dbTester.countRowsOfTable("rules")).isEqualTo(1);
@@ -0,0 +1,57 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import com.google.common.cache.CacheStats;
+import java.util.Map;
+import org.junit.Test;
+import org.sonar.server.user.AuthorizationCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AuthorizationCacheMonitorTest {
+
+  AuthorizationCache cache = mock(AuthorizationCache.class);
+  AuthorizationCacheMonitor underTest = new AuthorizationCacheMonitor(cache);
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("Authorization Cache");
+  }
+
+  @Test
+  public void cache_statistics() {
+    when(cache.getMaxSizeInBytes()).thenReturn(32L * 1024 * 1024);
+    when(cache.size()).thenReturn(5L);
+    when(cache.stats()).thenReturn(new CacheStats(15L, 5L, 5L, 0L, 100L, 1L));
+
+    Map<String, Object> attributes = underTest.attributes();
+
+    assertThat(attributes)
+      .containsEntry("Max Size (MB)", 32L)
+      .containsEntry("Entries", 5L)
+      .containsEntry("Hits", 15L)
+      .containsEntry("Misses", 5L)
+      .containsEntry("Hit Rate (%)", 75L)
+      .containsEntry("Evictions", 1L);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.PropertyDefinitions;
+import org.sonar.server.source.DecoratedSourceCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceCacheMonitorTest {
+
+  DecoratedSourceCache cache = new DecoratedSourceCache(new MapSettings(new PropertyDefinitions(DecoratedSourceCache.class)));
+  SourceCacheMonitor underTest = new SourceCacheMonitor(cache);
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("Sources Cache");
+  }
+
+  @Test
+  public void cache_statistics() {
+    cache.get("HASH", 1, 1, () -> Arrays.asList("a"));
+    cache.get("HASH", 1, 1, () -> Arrays.asList("a"));
+    cache.get("HASH", 1, 1, () -> Arrays.asList("a"));
+    cache.get("OTHER_HASH", 1, 1, () -> Arrays.asList("b"));
+
+    Map<String, Object> attributes = underTest.attributes();
+
+    assertThat(attributes)
+      .containsEntry("Max Size (MB)", 32L)
+      .containsEntry("Entries", 2L)
+      .containsEntry("Hits", 2L)
+      .containsEntry("Misses", 2L)
+      .containsEntry("Hit Rate (%)", 50L)
+      .containsEntry("Evictions", 0L);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.plugins;
+
+import java.io.File;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExplodedPluginCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File cacheDir;
+  private File jar = TestProjectUtils.jarOf("test-libs-plugin");
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = new File(temp.newFolder(), "cache");
+  }
+
+  @Test
+  public void explode_jar_if_missing_from_cache() throws Exception {
+    ExplodedPluginCache underTest = newCache();
+
+    File entry = underTest.get("testlibs", jar);
+
+    assertThat(entry).isDirectory().hasParent(cacheDir);
+    assertThat(FileUtils.contentEquals(new File(entry, jar.getName()), jar)).isTrue();
+    assertThat(new File(entry, "META-INF/lib").list()).containsOnly("commons-daemon-1.0.15.jar", "commons-email-20030310.165926.jar");
+    // only the libraries are unzipped
+    assertThat(entry.list()).containsOnly(jar.getName(), "META-INF");
+  }
+
+  @Test
+  public void reuse_entry_across_instances() throws Exception {
+    File entry = newCache().get("testlibs", jar);
+    File marker = new File(entry, "marker.txt");
+    FileUtils.write(marker, "not exploded again");
+
+    File entry2 = newCache().get("testlibs", jar);
+
+    assertThat(entry2).isEqualTo(entry);
+    assertThat(marker).exists();
+  }
+
+  @Test
+  public void explode_again_if_entry_is_corrupted() throws Exception {
+    File entry = newCache().get("testlibs", jar);
+    File cachedJar = new File(entry, jar.getName());
+    FileUtils.write(cachedJar, "corrupted");
+
+    File entry2 = newCache().get("testlibs", jar);
+
+    assertThat(entry2).isEqualTo(entry);
+    assertThat(FileUtils.contentEquals(cachedJar, jar)).isTrue();
+  }
+
+  @Test
+  public void purge_entries_not_used_by_current_instance() throws Exception {
+    File obsoleteEntry = new File(cacheDir, "abcde");
+    FileUtils.forceMkdir(obsoleteEntry);
+    File obsoleteLock = new File(cacheDir, "abcde.lock");
+    FileUtils.touch(obsoleteLock);
+    ExplodedPluginCache underTest = newCache();
+    File entry = underTest.get("testlibs", jar);
+
+    underTest.purgeUnusedEntries();
+
+    assertThat(entry).isDirectory();
+    assertThat(obsoleteEntry).doesNotExist();
+    assertThat(obsoleteLock).doesNotExist();
+  }
+
+  @Test
+  public void purge_does_nothing_if_cache_does_not_exist() {
+    newCache().purgeUnusedEntries();
+
+    assertThat(cacheDir).doesNotExist();
+  }
+
+  private ExplodedPluginCache newCache() {
+    return new ExplodedPluginCache(cacheDir, ze -> ze.getName().startsWith("META-INF/lib"));
+  }
+}
@@ -20,6 +20,9 @@
 package org.sonar.server.plugins;
 
 import java.io.File;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -27,6 +30,7 @@ import org.sonar.core.platform.ExplodedPlugin;
 import org.sonar.core.platform.PluginInfo;
 import org.sonar.server.platform.ServerFileSystem;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -37,27 +41,54 @@ public class ServerPluginJarExploderTest {
   public TemporaryFolder temp = new TemporaryFolder();
 
   ServerFileSystem fs = mock(ServerFileSystem.class);
-  ServerPluginJarExploder underTest = new ServerPluginJarExploder(fs);
+  File deployDir;
+  File dataDir;
+  ServerPluginJarExploder underTest;
 
-  @Test
-  public void copy_all_classloader_files_to_dedicated_directory() throws Exception {
-    File deployDir = temp.newFolder();
+  @Before
+  public void setUp() throws Exception {
+    deployDir = temp.newFolder();
+    dataDir = temp.newFolder();
     when(fs.getDeployedPluginsDir()).thenReturn(deployDir);
+    when(fs.getDataDir()).thenReturn(dataDir);
+    underTest = new ServerPluginJarExploder(fs);
+  }
+
+  @Test
+  public void copy_all_classloader_files_to_cache_of_exploded_plugins() throws Exception {
     File jar = TestProjectUtils.jarOf("test-libs-plugin");
     PluginInfo info = PluginInfo.create(jar);
 
     ExplodedPlugin exploded = underTest.explode(info);
 
-    // all the files loaded by classloaders (JAR + META-INF/libs/*.jar) are copied to the dedicated directory
-    // web/deploy/{pluginKey}
-    File pluginDeployDir = new File(deployDir, "testlibs");
+    // all the files loaded by classloaders (JAR + META-INF/libs/*.jar) are copied to the cache
+    // of exploded plugins
+    File cacheDir = new File(dataDir, "exploded-plugins");
 
     assertThat(exploded.getKey()).isEqualTo("testlibs");
-    assertThat(exploded.getMain()).isFile().exists().hasParent(pluginDeployDir);
+    assertThat(exploded.getMain()).isFile().exists();
+    assertThat(exploded.getMain().getParentFile()).hasParent(cacheDir);
     assertThat(exploded.getLibs()).extracting("name").containsOnly("commons-daemon-1.0.15.jar", "commons-email-20030310.165926.jar");
     for (File lib : exploded.getLibs()) {
       assertThat(lib).exists().isFile();
-      assertThat(lib.getCanonicalPath()).startsWith(pluginDeployDir.getCanonicalPath());
+      assertThat(lib.getCanonicalPath()).startsWith(exploded.getMain().getParentFile().getCanonicalPath());
     }
+
+    // JAR is deployed in web/deploy/{pluginKey} to be downloaded by scanners
+    assertThat(FileUtils.contentEquals(new File(deployDir, "testlibs/" + jar.getName()), jar)).isTrue();
+  }
+
+  @Test
+  public void explode_all_plugins_and_purge_unused_entries_of_cache() throws Exception {
+    File obsoleteEntry = new File(dataDir, "exploded-plugins/obsolete");
+    FileUtils.forceMkdir(obsoleteEntry);
+    PluginInfo info1 = PluginInfo.create(TestProjectUtils.jarOf("test-libs-plugin"));
+    PluginInfo info2 = PluginInfo.create(TestProjectUtils.jarOf("test-base-plugin"));
+
+    Map<String, ExplodedPlugin> exploded = underTest.explodeAll(asList(info1, info2));
+
+    assertThat(exploded).containsOnlyKeys("testlibs", "testbase");
+    assertThat(FileUtils.contentEquals(exploded.get("testbase").getMain(), info2.getNonNullJarFile())).isTrue();
+    assertThat(obsoleteEntry).doesNotExist();
   }
 }
@@ -45,6 +45,8 @@ import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
 import org.sonar.server.component.ComponentCleanerService;
 import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.component.es.ComponentIndexDefinition;
+import org.sonar.server.component.es.ComponentIndexer;
 import org.sonar.server.component.es.ProjectMeasuresIndexer;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.ForbiddenException;
@@ -78,7 +80,8 @@ public class BulkDeleteActionTest {
 
   @Rule
   public EsTester es = new EsTester(new IssueIndexDefinition(new MapSettings()),
-    new TestIndexDefinition(new MapSettings()));
+    new TestIndexDefinition(new MapSettings()),
+    new ComponentIndexDefinition(new MapSettings()));
 
   @Rule
   public UserSessionRule userSessionRule = UserSessionRule.standalone();
@@ -103,6 +106,7 @@ public class BulkDeleteActionTest {
           new IssueIndexer(system2, dbClient, es.client()),
           new TestIndexer(system2, dbClient, es.client()),
           new ProjectMeasuresIndexer(system2, dbClient, es.client()),
+          new ComponentIndexer(system2, dbClient, es.client(), new MapSettings().setProperty(ComponentIndexer.ENABLED_PROPERTY, true)),
           mockResourceTypes,
           new ComponentFinder(dbClient)),
         dbClient,
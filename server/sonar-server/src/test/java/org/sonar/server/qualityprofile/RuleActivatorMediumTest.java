@@ -939,6 +939,39 @@ public class RuleActivatorMediumTest {
     assertThat(result.countFailed()).isGreaterThan(0);
   }
 
+  @Test
+  public void bulk_activation_is_propagated_to_child_profiles() {
+    createChildProfiles();
+
+    RuleQuery query = new RuleQuery().setRepositories(Arrays.asList(XOO_X1.repository())).setLanguages(Arrays.asList("xoo")).setIsTemplate(false);
+    BulkChangeResult result = ruleActivator.bulkActivate(query, XOO_P1_KEY, BLOCKER);
+
+    // custom rule, x1 and x2 on P1, P2 and P3
+    assertThat(result.countSucceeded()).isEqualTo(3);
+    assertThat(result.getChanges()).hasSize(9);
+    verifyHasActiveRuleInDbAndIndex(ActiveRuleKey.of(XOO_P1_KEY, XOO_X1), BLOCKER, null, ImmutableMap.of("max", "10"));
+    verifyHasActiveRuleInDbAndIndex(ActiveRuleKey.of(XOO_P2_KEY, XOO_X1), BLOCKER, INHERITED, ImmutableMap.of("max", "10"));
+    verifyHasActiveRuleInDbAndIndex(ActiveRuleKey.of(XOO_P3_KEY, XOO_X1), BLOCKER, INHERITED, ImmutableMap.of("max", "10"));
+    verifyHasActiveRuleInDbAndIndex(ActiveRuleKey.of(XOO_P3_KEY, XOO_X2), BLOCKER, INHERITED, Collections.<String, String>emptyMap());
+  }
+
+  @Test
+  public void bulk_deactivation_is_propagated_to_child_profiles() {
+    createChildProfiles();
+    activate(new RuleActivation(XOO_X1), XOO_P1_KEY);
+    activate(new RuleActivation(XOO_X2), XOO_P1_KEY);
+    assertThat(countActiveRules(XOO_P3_KEY)).isEqualTo(2);
+
+    BulkChangeResult result = ruleActivator.bulkDeactivate(new RuleQuery().setActivation(true).setQProfileKey(XOO_P1_KEY), XOO_P1_KEY);
+
+    dbSession.clearCache();
+    assertThat(result.countSucceeded()).isEqualTo(2);
+    assertThat(result.getChanges()).hasSize(6);
+    verifyZeroActiveRules(XOO_P1_KEY);
+    verifyZeroActiveRules(XOO_P2_KEY);
+    verifyZeroActiveRules(XOO_P3_KEY);
+  }
+
   @Test
   public void set_and_unset_parent_profile() {
     // x1 is activated on the "future parent" P1
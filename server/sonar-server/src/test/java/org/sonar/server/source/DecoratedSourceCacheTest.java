@@ -0,0 +1,105 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.PropertyDefinitions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DecoratedSourceCacheTest {
+
+  private AtomicInteger decorations = new AtomicInteger();
+  private DecoratedSourceCache underTest = new DecoratedSourceCache(new MapSettings(new PropertyDefinitions(DecoratedSourceCache.class)));
+
+  @Test
+  public void max_size_is_32MB_by_default() {
+    assertThat(underTest.getMaxSizeInBytes()).isEqualTo(32L * 1024 * 1024);
+  }
+
+  @Test
+  public void decorate_lines_only_once_per_data_hash_and_range() {
+    assertThat(underTest.get("HASH", 1, 2, decorator("a", "b"))).containsExactly("a", "b");
+    assertThat(underTest.get("HASH", 1, 2, decorator("c", "d"))).containsExactly("a", "b");
+    assertThat(underTest.get("HASH", 1, 3, decorator("e", "f", "g"))).containsExactly("e", "f", "g");
+    assertThat(underTest.get("OTHER_HASH", 1, 2, decorator("h", "i"))).containsExactly("h", "i");
+
+    assertThat(decorations.get()).isEqualTo(3);
+    assertThat(underTest.size()).isEqualTo(3);
+    assertThat(underTest.stats().hitCount()).isEqualTo(1);
+    assertThat(underTest.stats().missCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void bypass_cache_when_data_hash_is_null() {
+    underTest.get(null, 1, 2, decorator("a", "b"));
+    underTest.get(null, 1, 2, decorator("a", "b"));
+
+    assertThat(decorations.get()).isEqualTo(2);
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void cache_is_disabled_when_max_size_is_zero() {
+    underTest = new DecoratedSourceCache(new MapSettings().setProperty(DecoratedSourceCache.PROPERTY_MAX_SIZE_IN_MB, 0));
+
+    underTest.get("HASH", 1, 2, decorator("a", "b"));
+    underTest.get("HASH", 1, 2, decorator("a", "b"));
+
+    assertThat(decorations.get()).isEqualTo(2);
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void evict_entries_when_max_size_is_reached() {
+    underTest = new DecoratedSourceCache(new MapSettings().setProperty(DecoratedSourceCache.PROPERTY_MAX_SIZE_IN_MB, 1));
+    // each entry weighs more than 200KB
+    String line = String.join("", Collections.nCopies(100_000, "x"));
+
+    for (int i = 0; i < 20; i++) {
+      underTest.get("HASH_" + i, 1, 1, decorator(line));
+    }
+
+    assertThat(underTest.size()).isLessThan(5);
+    assertThat(underTest.stats().evictionCount()).isGreaterThan(15);
+  }
+
+  @Test
+  public void clear() {
+    underTest.get("HASH", 1, 2, decorator("a", "b"));
+
+    underTest.clear();
+
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+
+  private Supplier<List<String>> decorator(String... lines) {
+    return () -> {
+      decorations.incrementAndGet();
+      return Arrays.asList(lines);
+    };
+  }
+}
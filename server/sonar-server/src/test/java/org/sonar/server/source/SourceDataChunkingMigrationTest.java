@@ -0,0 +1,138 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.db.DbTester;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.server.property.InternalProperties;
+import org.sonar.server.property.InternalPropertiesImpl;
+import org.sonar.server.source.index.FileSourceTesting;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceDataChunkingMigrationTest {
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private InternalProperties internalProperties = new InternalPropertiesImpl(dbTester.getDbClient());
+  private SourceDataChunkingMigration underTest = new SourceDataChunkingMigration(dbTester.getDbClient(), internalProperties);
+
+  @Test
+  public void convert_sources_stored_in_legacy_format() throws IOException {
+    DbFileSources.Data data = FileSourceTesting.newFakeData(10).build();
+    insertLegacySource("FILE_1", data);
+    insertLegacySource("FILE_2", data);
+
+    assertThat(underTest.migrate()).isEqualTo(2);
+
+    for (String fileUuid : new String[] {"FILE_1", "FILE_2"}) {
+      FileSourceDto dto = dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), fileUuid);
+      assertThat(FileSourceDto.isChunkedSourceData(dto.getBinaryData())).isTrue();
+      assertThat(dto.getSourceData()).isEqualTo(data);
+      assertThat(dto.getDataHash()).isEqualTo(DigestUtils.md5Hex(dto.getBinaryData()));
+    }
+    assertThat(internalProperties.read(SourceDataChunkingMigration.DONE_PROPERTY)).contains("true");
+  }
+
+  @Test
+  public void ignore_sources_already_in_chunked_format() throws IOException {
+    FileSourceDto dto = new FileSourceDto()
+      .setFileUuid("FILE_1")
+      .setProjectUuid("PROJECT_UUID")
+      .setSourceData(FileSourceTesting.newFakeData(10).build())
+      .setDataHash("HASH");
+    dbTester.getDbClient().fileSourceDao().insert(dto);
+
+    assertThat(underTest.migrate()).isEqualTo(0);
+
+    assertThat(dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), "FILE_1").getDataHash()).isEqualTo("HASH");
+  }
+
+  @Test
+  public void skip_corrupted_sources() throws IOException {
+    DbFileSources.Data data = FileSourceTesting.newFakeData(10).build();
+    insertLegacySource("FILE_1", data);
+    byte[] corruptedData = new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+    dbTester.getDbClient().fileSourceDao().insert(new FileSourceDto()
+      .setFileUuid("CORRUPTED_FILE")
+      .setProjectUuid("PROJECT_UUID")
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setBinaryData(corruptedData)
+      .setDataHash(DigestUtils.md5Hex(corruptedData)));
+    insertLegacySource("FILE_2", data);
+
+    assertThat(underTest.migrate()).isEqualTo(2);
+
+    assertThat(dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), "CORRUPTED_FILE").getBinaryData()).isEqualTo(corruptedData);
+    assertThat(logTester.logs(LoggerLevel.WARN)).hasSize(1);
+    assertThat(logTester.logs(LoggerLevel.WARN).get(0)).startsWith("Fail to convert source of file CORRUPTED_FILE (id ");
+    assertThat(internalProperties.read(SourceDataChunkingMigration.DONE_PROPERTY)).contains("true");
+  }
+
+  @Test
+  public void convert_sources_by_batches() throws IOException {
+    DbFileSources.Data data = FileSourceTesting.newFakeData(3).build();
+    int count = SourceDataChunkingMigration.BATCH_SIZE + 5;
+    for (int i = 0; i < count; i++) {
+      insertLegacySource("FILE_" + i, data);
+    }
+
+    assertThat(underTest.migrate()).isEqualTo(count);
+  }
+
+  @Test
+  public void do_nothing_on_startup_if_migration_is_already_done() throws IOException {
+    byte[] legacyData = insertLegacySource("FILE_1", FileSourceTesting.newFakeData(10).build());
+    internalProperties.write(SourceDataChunkingMigration.DONE_PROPERTY, "true");
+
+    underTest.start();
+    underTest.stop();
+
+    assertThat(dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), "FILE_1").getBinaryData()).isEqualTo(legacyData);
+  }
+
+  private byte[] insertLegacySource(String fileUuid, DbFileSources.Data data) throws IOException {
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput)) {
+      data.writeTo(compressedOutput);
+    }
+    byte[] bytes = byteOutput.toByteArray();
+    dbTester.getDbClient().fileSourceDao().insert(new FileSourceDto()
+      .setFileUuid(fileUuid)
+      .setProjectUuid("PROJECT_UUID")
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setBinaryData(bytes)
+      .setDataHash(DigestUtils.md5Hex(bytes)));
+    return bytes;
+  }
+}
@@ -27,6 +27,8 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.PropertyDefinitions;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.protobuf.DbFileSources;
@@ -34,7 +36,10 @@ import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.source.index.FileSourceTesting;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SourceServiceTest {
@@ -49,7 +54,9 @@ public class SourceServiceTest {
 
   HtmlSourceDecorator htmlDecorator = mock(HtmlSourceDecorator.class);
 
-  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator);
+  DecoratedSourceCache decoratedSourceCache = new DecoratedSourceCache(new MapSettings(new PropertyDefinitions(DecoratedSourceCache.class)));
+
+  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator, decoratedSourceCache);
 
   @Before
   public void injectFakeLines() throws IOException {
@@ -70,6 +77,18 @@ public class SourceServiceTest {
     assertThat(lines.get(2).getLine()).isEqualTo(7);
   }
 
+  @Test
+  public void get_range_of_lines_overlapping_chunks() throws Exception {
+    FileSourceDto dto = new FileSourceDto();
+    dto.setFileUuid("BIG_FILE_UUID").setProjectUuid("PROJECT_UUID");
+    dto.setSourceData(FileSourceTesting.newFakeData(1_200).build());
+    dbTester.getDbClient().fileSourceDao().insert(dto);
+
+    Optional<Iterable<DbFileSources.Line>> linesOpt = underTest.getLines(dbTester.getSession(), "BIG_FILE_UUID", 499, 502);
+    assertThat(linesOpt.isPresent()).isTrue();
+    assertThat(linesOpt.get()).extracting(DbFileSources.Line::getLine).containsExactly(499, 500, 501, 502);
+  }
+
   @Test
   public void get_range_of_lines_as_raw_text() throws Exception {
     Optional<Iterable<String>> linesOpt = underTest.getLinesAsRawText(dbTester.getSession(), FILE_UUID, 5, 7);
@@ -90,6 +109,43 @@ public class SourceServiceTest {
     assertThat(lines).containsExactly("HTML_5", "HTML_6", "HTML_7");
   }
 
+  @Test
+  public void get_range_of_decorated_lines() throws Exception {
+    when(htmlDecorator.getDecoratedSourceAsHtml("SOURCE_5", "HIGHLIGHTING_5", "SYMBOLS_5")).thenReturn("HTML_5");
+    when(htmlDecorator.getDecoratedSourceAsHtml("SOURCE_6", "HIGHLIGHTING_6", "SYMBOLS_6")).thenReturn("HTML_6");
+
+    Optional<List<DecoratedLine>> linesOpt = underTest.getDecoratedLines(dbTester.getSession(), FILE_UUID, 5, 6);
+    assertThat(linesOpt.isPresent()).isTrue();
+    assertThat(linesOpt.get()).extracting(DecoratedLine::getHtml).containsExactly("HTML_5", "HTML_6");
+    assertThat(linesOpt.get()).extracting(line -> line.getLine().getLine()).containsExactly(5, 6);
+  }
+
+  @Test
+  public void decorated_lines_are_cached_until_data_hash_changes() throws Exception {
+    FileSourceDto dto = new FileSourceDto();
+    dto.setFileUuid("HASHED_FILE_UUID").setProjectUuid("PROJECT_UUID").setDataHash("HASH_1");
+    dto.setSourceData(FileSourceTesting.newFakeData(10).build());
+    dbTester.getDbClient().fileSourceDao().insert(dto);
+    when(htmlDecorator.getDecoratedSourceAsHtml(anyString(), anyString(), anyString())).thenReturn("HTML");
+
+    underTest.getDecoratedLines(dbTester.getSession(), "HASHED_FILE_UUID", 5, 7);
+    underTest.getLinesAsHtml(dbTester.getSession(), "HASHED_FILE_UUID", 5, 7);
+    verify(htmlDecorator, times(3)).getDecoratedSourceAsHtml(anyString(), anyString(), anyString());
+    assertThat(decoratedSourceCache.stats().hitCount()).isEqualTo(1);
+    assertThat(decoratedSourceCache.stats().missCount()).isEqualTo(1);
+
+    FileSourceDto reanalyzed = dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), "HASHED_FILE_UUID");
+    dbTester.getDbClient().fileSourceDao().update(reanalyzed.setDataHash("HASH_2"));
+    dbTester.commit();
+    underTest.getLinesAsHtml(dbTester.getSession(), "HASHED_FILE_UUID", 5, 7).get().forEach(html -> assertThat(html).isEqualTo("HTML"));
+    verify(htmlDecorator, times(6)).getDecoratedSourceAsHtml(anyString(), anyString(), anyString());
+  }
+
+  @Test
+  public void getDecoratedLines_file_does_not_exist() {
+    assertThat(underTest.getDecoratedLines(dbTester.getSession(), "FILE_DOES_NOT_EXIST", 1, 10).isPresent()).isFalse();
+  }
+
   @Test
   public void getLines_fails_if_range_starts_at_zero() {
     expectedException.expect(IllegalArgumentException.class);
@@ -0,0 +1,165 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.PropertyDefinitions;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.web.UserRole;
+import org.sonar.core.util.Uuids;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.organization.OrganizationDto;
+import org.sonar.db.user.UserDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.core.permission.GlobalPermissions.PROVISIONING;
+import static org.sonar.core.permission.GlobalPermissions.SYSTEM_ADMIN;
+
+public class AuthorizationCacheTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private Settings settings = new MapSettings(new PropertyDefinitions(AuthorizationCache.class));
+  private AuthorizationCache underTest = new AuthorizationCache(db.getDbClient(), settings);
+
+  @Test
+  public void load_global_permissions_once() {
+    UserDto user = db.users().insertUser();
+    db.users().insertPermissionOnUser(user, PROVISIONING);
+
+    assertThat(underTest.globalPermissions(user.getId().intValue(), user.getLogin())).containsOnly(PROVISIONING);
+    db.users().insertPermissionOnUser(user, SYSTEM_ADMIN);
+    assertThat(underTest.globalPermissions(user.getId().intValue(), user.getLogin())).containsOnly(PROVISIONING);
+
+    assertThat(underTest.size()).isEqualTo(1L);
+    assertThat(underTest.stats().missCount()).isEqualTo(1L);
+    assertThat(underTest.stats().hitCount()).isEqualTo(1L);
+  }
+
+  @Test
+  public void load_organization_permissions_of_user_and_of_anonymous() {
+    OrganizationDto organization = db.organizations().insert();
+    UserDto user = db.users().insertUser();
+    db.users().insertPermissionOnUser(organization, user, SYSTEM_ADMIN);
+    db.users().insertPermissionOnAnyone(organization, PROVISIONING);
+
+    assertThat(underTest.organizationPermissions(user.getId().intValue(), organization.getUuid())).containsOnly(SYSTEM_ADMIN, PROVISIONING);
+    assertThat(underTest.organizationPermissions(null, organization.getUuid())).containsOnly(PROVISIONING);
+    assertThat(underTest.organizationPermissions(null, "another-org")).isEmpty();
+  }
+
+  @Test
+  public void check_project_permissions() {
+    UserDto user = db.users().insertUser();
+    ComponentDto project1 = db.components().insertProject();
+    ComponentDto project2 = db.components().insertProject();
+    ComponentDto project3 = db.components().insertProject();
+    db.users().insertProjectPermissionOnUser(user, UserRole.USER, project1);
+    db.users().insertProjectPermissionOnUser(user, UserRole.USER, project3);
+    db.users().insertProjectPermissionOnAnyone(UserRole.USER, project2);
+
+    int userId = user.getId().intValue();
+    assertThat(underTest.hasProjectPermission(userId, UserRole.USER, project1.uuid())).isTrue();
+    assertThat(underTest.hasProjectPermission(userId, UserRole.USER, project2.uuid())).isTrue();
+    assertThat(underTest.hasProjectPermission(userId, UserRole.USER, project3.uuid())).isTrue();
+    assertThat(underTest.hasProjectPermission(userId, UserRole.ADMIN, project1.uuid())).isFalse();
+    assertThat(underTest.hasProjectPermission(null, UserRole.USER, project1.uuid())).isFalse();
+    assertThat(underTest.hasProjectPermission(null, UserRole.USER, project2.uuid())).isTrue();
+    assertThat(underTest.hasProjectPermission(userId, UserRole.USER, "unknown")).isFalse();
+
+    assertThat(underTest.size()).isEqualTo(3L);
+  }
+
+  @Test
+  public void invalidate_permissions_of_user() {
+    UserDto user1 = db.users().insertUser();
+    UserDto user2 = db.users().insertUser();
+    underTest.globalPermissions(user1.getId().intValue(), user1.getLogin());
+    underTest.globalPermissions(user2.getId().intValue(), user2.getLogin());
+    underTest.globalPermissions(null, null);
+    db.users().insertPermissionOnUser(user1, PROVISIONING);
+
+    underTest.invalidateUser(user1.getId());
+
+    assertThat(underTest.size()).isEqualTo(2L);
+    assertThat(underTest.globalPermissions(user1.getId().intValue(), user1.getLogin())).containsOnly(PROVISIONING);
+  }
+
+  @Test
+  public void invalidate_all_permissions() {
+    UserDto user = db.users().insertUser();
+    underTest.globalPermissions(user.getId().intValue(), user.getLogin());
+    underTest.globalPermissions(null, null);
+
+    underTest.invalidateAll();
+
+    assertThat(underTest.size()).isZero();
+  }
+
+  @Test
+  public void max_size_is_32MB_by_default() {
+    assertThat(underTest.getMaxSizeInBytes()).isEqualTo(32L * 1024 * 1024);
+  }
+
+  @Test
+  public void cache_is_disabled_if_max_size_is_zero() {
+    settings.setProperty(AuthorizationCache.PROPERTY_MAX_SIZE_IN_MB, 0);
+    AuthorizationCache cache = new AuthorizationCache(db.getDbClient(), settings);
+    UserDto user = db.users().insertUser();
+
+    assertThat(cache.globalPermissions(user.getId().intValue(), user.getLogin())).isEmpty();
+    db.users().insertPermissionOnUser(user, PROVISIONING);
+    assertThat(cache.globalPermissions(user.getId().intValue(), user.getLogin())).containsOnly(PROVISIONING);
+    assertThat(cache.getMaxSizeInBytes()).isZero();
+  }
+
+  @Test
+  public void evict_entries_when_max_size_is_reached() {
+    DbClient dbClient = mock(DbClient.class, RETURNS_DEEP_STUBS);
+    // each entry weighs more than 150KB
+    List<String> projectUuids = IntStream.range(0, 2_000).mapToObj(i -> Uuids.createFast()).collect(Collectors.toList());
+    when(dbClient.authorizationDao().selectAuthorizedRootProjectsUuids(any(DbSession.class), anyInt(), eq(UserRole.USER))).thenReturn(projectUuids);
+    settings.setProperty(AuthorizationCache.PROPERTY_MAX_SIZE_IN_MB, 1);
+    AuthorizationCache cache = new AuthorizationCache(dbClient, settings);
+
+    for (int userId = 0; userId < 20; userId++) {
+      assertThat(cache.hasProjectPermission(userId, UserRole.USER, projectUuids.get(0))).isTrue();
+    }
+
+    assertThat(cache.size()).isLessThan(7);
+    assertThat(cache.stats().evictionCount()).isGreaterThan(13);
+  }
+}
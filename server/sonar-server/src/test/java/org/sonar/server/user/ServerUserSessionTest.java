@@ -24,6 +24,8 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.PropertyDefinitions;
 import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
 import org.sonar.core.permission.GlobalPermissions;
@@ -66,6 +68,7 @@ public class ServerUserSessionTest {
   public ExpectedException expectedException = ExpectedException.none();
 
   private DbClient dbClient = db.getDbClient();
+  private AuthorizationCache authorizationCache = new AuthorizationCache(dbClient, new MapSettings(new PropertyDefinitions(AuthorizationCache.class)));
   private UserDto userDto = newUserDto().setLogin(LOGIN);
   private ComponentDto project;
 
@@ -357,12 +360,36 @@ public class ServerUserSessionTest {
     assertThat(session.hasOrganizationPermission("another-org", GlobalPermissions.PROVISIONING)).isFalse();
   }
 
+  @Test
+  public void permissions_are_shared_by_sessions_until_user_is_invalidated_in_cache() {
+    addProjectPermissions(project, UserRole.USER);
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.USER, FILE_KEY)).isTrue();
+
+    db.getDbClient().userPermissionDao().deleteProjectPermissions(db.getSession(), project.getId());
+    db.commit();
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.USER, FILE_KEY)).isTrue();
+
+    authorizationCache.invalidateUser(userDto.getId());
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.USER, FILE_KEY)).isFalse();
+  }
+
+  @Test
+  public void project_permissions_are_checked_by_uuid_of_root_project() {
+    addProjectPermissions(project, UserRole.USER);
+    UserSession session = newUserSession(userDto);
+
+    assertThat(session.hasComponentPermission(UserRole.USER, FILE_KEY)).isTrue();
+    assertThat(session.hasComponentUuidPermission(UserRole.USER, FILE_UUID)).isTrue();
+    assertThat(authorizationCache.stats().missCount()).isEqualTo(2L);
+    assertThat(authorizationCache.stats().hitCount()).isEqualTo(2L);
+  }
+
   private ServerUserSession newUserSession(UserDto userDto) {
-    return createForUser(dbClient, userDto);
+    return createForUser(dbClient, authorizationCache, userDto);
   }
 
   private ServerUserSession newAnonymousSession() {
-    return createForAnonymous(dbClient);
+    return createForAnonymous(dbClient, authorizationCache);
   }
 
   private void addGlobalPermissions(String... permissions) {
@@ -22,6 +22,8 @@ package org.sonar.core.platform;
 import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Predicate;
 import java.util.zip.ZipEntry;
 
@@ -33,6 +35,18 @@ public abstract class PluginJarExploder {
 
   public abstract ExplodedPlugin explode(PluginInfo info);
 
+  /**
+   * Explodes all the plugins to be loaded, by key. Plugins are exploded sequentially
+   * by default. Implementations can override this method to explode them concurrently.
+   */
+  public Map<String, ExplodedPlugin> explodeAll(Collection<PluginInfo> infos) {
+    Map<String, ExplodedPlugin> result = new HashMap<>();
+    for (PluginInfo info : infos) {
+      result.put(info.getKey(), explode(info));
+    }
+    return result;
+  }
+
   protected Predicate<ZipEntry> newLibFilter() {
     return ze -> ze.getName().startsWith(LIB_RELATIVE_PATH_IN_JAR);
   }
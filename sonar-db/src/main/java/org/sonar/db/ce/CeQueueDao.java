@@ -20,13 +20,17 @@
 package org.sonar.db.ce;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.apache.ibatis.session.RowBounds;
 import org.sonar.api.utils.System2;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Collections.emptyList;
 import static org.sonar.db.ce.CeQueueDto.Status.IN_PROGRESS;
 import static org.sonar.db.ce.CeQueueDto.Status.PENDING;
@@ -118,7 +122,35 @@ public class CeQueueDao implements Dao {
     return tryToPeek(session, taskUuid);
   }
 
-  private Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
+  /**
+   * Selects up to {@code maxTasks} of the oldest pending tasks which are eligible for peek, with a single task by
+   * component. Their status is not changed: a task must then be peeked with {@link #tryToPeek(DbSession, String)}.
+   */
+  public List<CeQueueDto> selectEligibleForPeek(DbSession session, int maxTasks) {
+    checkArgument(maxTasks > 0, "Max number of tasks must be greater than 0");
+    // some eligible tasks may share the same component
+    List<CeQueueDto> eligibles = mapper(session).selectEligibleDtosForPeek(new RowBounds(0, 2 * maxTasks));
+    List<CeQueueDto> result = new ArrayList<>(maxTasks);
+    Set<String> componentUuids = new HashSet<>();
+    for (CeQueueDto eligible : eligibles) {
+      if (result.size() == maxTasks) {
+        break;
+      }
+      String componentUuid = eligible.getComponentUuid();
+      if (componentUuid == null || componentUuids.add(componentUuid)) {
+        result.add(eligible);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Changes the status of the specified task from {@link CeQueueDto.Status#PENDING} to
+   * {@link CeQueueDto.Status#IN_PROGRESS}.
+   *
+   * @return the peeked task, or absent if the task does not exist anymore or is not pending
+   */
+  public Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
     int touchedRows = mapper(session).updateIfStatus(taskUuid, IN_PROGRESS, system2.now(), system2.now(), PENDING);
     if (touchedRows != 1) {
       return Optional.absent();
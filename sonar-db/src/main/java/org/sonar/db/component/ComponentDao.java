@@ -30,6 +30,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
@@ -57,6 +58,14 @@ public class ComponentDao implements Dao {
     return Optional.fromNullable(mapper(session).selectById(id));
   }
 
+  /**
+   * Scrolls over the enabled components which are not copies of projects in views, for
+   * example to index them. All the components of the database are returned if {@code projectUuid} is {@code null}.
+   */
+  public void scrollForIndexing(DbSession session, @Nullable String projectUuid, ResultHandler handler) {
+    mapper(session).scrollForIndexing(projectUuid, handler);
+  }
+
   public Optional<ComponentDto> selectByUuid(DbSession session, String uuid) {
     return Optional.fromNullable(mapper(session).selectByUuid(uuid));
   }
@@ -178,6 +187,33 @@ public class ComponentDao implements Dao {
     return mapper(dbSession).selectDescendants(query, componentOpt.get().uuid(), query.getUuidPath(component));
   }
 
+  /**
+   * Page of the children or the leaves of a base component, sorted by {@link ComponentTreeQuery#getSorts()}.
+   * Components without measure are filtered out if {@link ComponentTreeQuery.MeasureSort#isWithMeasuresOnly()}.
+   *
+   * @see #selectDescendants(DbSession, ComponentTreeQuery)
+   */
+  public List<ComponentDto> selectDescendants(DbSession dbSession, ComponentTreeQuery query, int offset, int limit) {
+    Optional<ComponentDto> componentOpt = selectByUuid(dbSession, query.getBaseUuid());
+    if (!componentOpt.isPresent()) {
+      return emptyList();
+    }
+    ComponentDto component = componentOpt.get();
+    return mapper(dbSession).selectSortedDescendants(query, component.uuid(), query.getUuidPath(component), new RowBounds(offset, limit));
+  }
+
+  /**
+   * Number of components returned by {@link #selectDescendants(DbSession, ComponentTreeQuery, int, int)} without paging
+   */
+  public int countDescendants(DbSession dbSession, ComponentTreeQuery query) {
+    Optional<ComponentDto> componentOpt = selectByUuid(dbSession, query.getBaseUuid());
+    if (!componentOpt.isPresent()) {
+      return 0;
+    }
+    ComponentDto component = componentOpt.get();
+    return mapper(dbSession).countSortedDescendants(query, component.uuid(), query.getUuidPath(component));
+  }
+
   public ComponentDto selectOrFailByKey(DbSession session, String key) {
     Optional<ComponentDto> component = selectByKey(session, key);
     if (!component.isPresent()) {
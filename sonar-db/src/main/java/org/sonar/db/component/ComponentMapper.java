@@ -25,6 +25,7 @@ import java.util.Map;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 
 /**
@@ -52,6 +53,8 @@ public interface ComponentMapper {
 
   List<ComponentDto> selectByUuids(@Param("uuids") Collection<String> uuids);
 
+  void scrollForIndexing(@Param("projectUuid") @Nullable String projectUuid, ResultHandler handler);
+
   List<ComponentDto> selectByProjectUuid(@Param("projectUuid") String projectUuid);
 
   List<String> selectExistingUuids(@Param("uuids") Collection<String> uuids);
@@ -66,6 +69,11 @@ public interface ComponentMapper {
 
   List<ComponentDto> selectDescendants(@Param("query") ComponentTreeQuery query, @Param("baseUuid") String baseUuid, @Param("baseUuidPath") String baseUuidPath);
 
+  List<ComponentDto> selectSortedDescendants(@Param("query") ComponentTreeQuery query, @Param("baseUuid") String baseUuid, @Param("baseUuidPath") String baseUuidPath,
+    RowBounds rowBounds);
+
+  int countSortedDescendants(@Param("query") ComponentTreeQuery query, @Param("baseUuid") String baseUuid, @Param("baseUuidPath") String baseUuidPath);
+
   /**
    * Return all project (PRJ/TRK) uuids
    */
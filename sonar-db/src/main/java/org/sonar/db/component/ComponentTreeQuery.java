@@ -21,11 +21,14 @@ package org.sonar.db.component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.db.WildcardPosition;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Objects.requireNonNull;
 import static org.sonar.db.DatabaseUtils.buildLikeValue;
@@ -37,6 +40,14 @@ public class ComponentTreeQuery {
     CHILDREN, LEAVES
   }
 
+  public enum SortField {
+    NAME, QUALIFIER, PATH,
+    /**
+     * Value of the measure defined by {@link MeasureSort}
+     */
+    MEASURE
+  }
+
   @CheckForNull
   private final String nameOrKeyQuery;
   // SONAR-7681 a public implementation of List must be used in MyBatis - potential concurrency exceptions otherwise
@@ -44,12 +55,17 @@ public class ComponentTreeQuery {
   private final ArrayList<String> qualifiers;
   private final String baseUuid;
   private final Strategy strategy;
+  private final ArrayList<Sort> sorts;
+  @CheckForNull
+  private final MeasureSort measureSort;
 
   private ComponentTreeQuery(Builder builder) {
     this.nameOrKeyQuery = builder.nameOrKeyQuery;
     this.qualifiers = builder.qualifiers == null ? null : newArrayList(builder.qualifiers);
     this.baseUuid = builder.baseUuid;
     this.strategy = requireNonNull(builder.strategy);
+    this.sorts = newArrayList(builder.sorts);
+    this.measureSort = builder.measureSort;
   }
 
   @CheckForNull
@@ -75,6 +91,19 @@ public class ComponentTreeQuery {
     return strategy;
   }
 
+  /**
+   * Sorts applied by {@link ComponentDao#selectDescendants(org.sonar.db.DbSession, ComponentTreeQuery, int, int)}.
+   * Components are finally sorted by id, so that pages are stable.
+   */
+  public List<Sort> getSorts() {
+    return sorts;
+  }
+
+  @CheckForNull
+  public MeasureSort getMeasureSort() {
+    return measureSort;
+  }
+
   public String getUuidPath(ComponentDto component) {
     switch (strategy) {
       case CHILDREN:
@@ -97,6 +126,9 @@ public class ComponentTreeQuery {
     private Collection<String> qualifiers;
     private String baseUuid;
     private Strategy strategy;
+    private List<Sort> sorts = Collections.emptyList();
+    @CheckForNull
+    private MeasureSort measureSort;
 
     private Builder() {
       // private constructor
@@ -104,6 +136,8 @@ public class ComponentTreeQuery {
 
     public ComponentTreeQuery build() {
       requireNonNull(baseUuid);
+      checkArgument(measureSort != null || sorts.stream().noneMatch(sort -> sort.getField() == SortField.MEASURE),
+        "Measure must be defined when sorting on measure");
       return new ComponentTreeQuery(this);
     }
 
@@ -126,5 +160,168 @@ public class ComponentTreeQuery {
       this.strategy = requireNonNull(strategy);
       return this;
     }
+
+    public Builder setSorts(List<Sort> sorts) {
+      this.sorts = requireNonNull(sorts);
+      return this;
+    }
+
+    /**
+     * Measure which value is used by {@link SortField#MEASURE}. It also allows to filter out the components without value.
+     */
+    public Builder setMeasureSort(@Nullable MeasureSort measureSort) {
+      this.measureSort = measureSort;
+      return this;
+    }
+  }
+
+  public static class Sort {
+    private final SortField field;
+    private final boolean asc;
+
+    public Sort(SortField field, boolean asc) {
+      this.field = requireNonNull(field);
+      this.asc = asc;
+    }
+
+    public SortField getField() {
+      return field;
+    }
+
+    public boolean isAsc() {
+      return asc;
+    }
+  }
+
+  /**
+   * Measure of the components, in a given analysis, used to sort them. Components without measure
+   * are sorted last.
+   */
+  public static class MeasureSort {
+    private static final int MAX_VARIATION_INDEX = 5;
+
+    private final String analysisUuid;
+    private final int metricId;
+    @CheckForNull
+    private final Integer variationIndex;
+    @CheckForNull
+    private final Long personId;
+    @CheckForNull
+    private final Double bestValue;
+    // SONAR-7681 a public implementation of List must be used in MyBatis - potential concurrency exceptions otherwise
+    private final ArrayList<String> bestValueQualifiers;
+    private final boolean withMeasuresOnly;
+
+    private MeasureSort(MeasureSortBuilder builder) {
+      this.analysisUuid = requireNonNull(builder.analysisUuid);
+      this.metricId = requireNonNull(builder.metricId);
+      this.variationIndex = builder.variationIndex;
+      this.personId = builder.personId;
+      this.bestValue = builder.bestValue;
+      this.bestValueQualifiers = newArrayList(builder.bestValueQualifiers);
+      this.withMeasuresOnly = builder.withMeasuresOnly;
+    }
+
+    public String getAnalysisUuid() {
+      return analysisUuid;
+    }
+
+    public int getMetricId() {
+      return metricId;
+    }
+
+    @CheckForNull
+    public Integer getVariationIndex() {
+      return variationIndex;
+    }
+
+    /**
+     * Column of table PROJECT_MEASURES containing the value to sort on
+     */
+    public String getValueColumn() {
+      return variationIndex == null ? "value" : ("variation_value_" + variationIndex);
+    }
+
+    @CheckForNull
+    public Long getPersonId() {
+      return personId;
+    }
+
+    @CheckForNull
+    public Double getBestValue() {
+      return bestValue;
+    }
+
+    public List<String> getBestValueQualifiers() {
+      return bestValueQualifiers;
+    }
+
+    public boolean isWithMeasuresOnly() {
+      return withMeasuresOnly;
+    }
+
+    public static MeasureSortBuilder builder() {
+      return new MeasureSortBuilder();
+    }
+  }
+
+  public static class MeasureSortBuilder {
+    private String analysisUuid;
+    private Integer metricId;
+    private Integer variationIndex;
+    private Long personId;
+    private Double bestValue;
+    private Collection<String> bestValueQualifiers = Collections.emptyList();
+    private boolean withMeasuresOnly = false;
+
+    private MeasureSortBuilder() {
+      // use MeasureSort#builder()
+    }
+
+    public MeasureSortBuilder setAnalysisUuid(String analysisUuid) {
+      this.analysisUuid = analysisUuid;
+      return this;
+    }
+
+    public MeasureSortBuilder setMetricId(int metricId) {
+      this.metricId = metricId;
+      return this;
+    }
+
+    /**
+     * Sort on the variation of the given period instead of the value
+     */
+    public MeasureSortBuilder setVariationIndex(@Nullable Integer variationIndex) {
+      checkArgument(variationIndex == null || (variationIndex >= 1 && variationIndex <= MeasureSort.MAX_VARIATION_INDEX),
+        "Variation index must be between 1 and %s, got %s", MeasureSort.MAX_VARIATION_INDEX, variationIndex);
+      this.variationIndex = variationIndex;
+      return this;
+    }
+
+    public MeasureSortBuilder setPersonId(@Nullable Long personId) {
+      this.personId = personId;
+      return this;
+    }
+
+    /**
+     * Value of the components having one of the given qualifiers but no measure
+     */
+    public MeasureSortBuilder setBestValue(@Nullable Double bestValue, Collection<String> qualifiers) {
+      this.bestValue = bestValue;
+      this.bestValueQualifiers = requireNonNull(qualifiers);
+      return this;
+    }
+
+    /**
+     * Filter out the components without value
+     */
+    public MeasureSortBuilder setWithMeasuresOnly(boolean withMeasuresOnly) {
+      this.withMeasuresOnly = withMeasuresOnly;
+      return this;
+    }
+
+    public MeasureSort build() {
+      return new MeasureSort(this);
+    }
   }
 }
@@ -22,10 +22,12 @@ package org.sonar.db.duplication;
 import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
 
 public class DuplicationDao implements Dao {
 
@@ -38,6 +40,35 @@ public class DuplicationDao implements Dao {
       partition -> session.getMapper(DuplicationMapper.class).selectCandidates(analysisUuid, language, partition));
   }
 
+  /**
+   * Same as {@link #selectCandidates(DbSession, String, String, Collection)} for many files at once. The rows matching
+   * the hashes are streamed to {@code handler} as {@link DuplicationUnitDto}, in as few queries as possible.
+   * A row is returned once per partition of hashes it matches, so hashes are expected to be distinct.
+   */
+  public void scrollCandidates(DbSession session, @Nullable String analysisUuid, String language, Collection<String> hashes, ResultHandler handler) {
+    DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
+    executeLargeInputsWithoutOutput(hashes, partition -> {
+      mapper.scrollCandidates(analysisUuid, language, partition, handler);
+      return null;
+    });
+  }
+
+  /**
+   * Number of rows which can be candidates of duplications in the given language, which is the number of
+   * hashes returned by {@link #scrollCandidateHashes(DbSession, String, String, ResultHandler)}.
+   */
+  public int countCandidates(DbSession session, @Nullable String analysisUuid, String language) {
+    return session.getMapper(DuplicationMapper.class).countCandidates(analysisUuid, language);
+  }
+
+  /**
+   * Streams to {@code handler} the hashes, as {@link String}, of all the rows which can be candidates of
+   * duplications in the given language. The same hash can be returned several times.
+   */
+  public void scrollCandidateHashes(DbSession session, @Nullable String analysisUuid, String language, ResultHandler handler) {
+    session.getMapper(DuplicationMapper.class).scrollCandidateHashes(analysisUuid, language, handler);
+  }
+
   /**
    * Insert rows in the table DUPLICATIONS_INDEX.
    * Note that generated ids are not returned.
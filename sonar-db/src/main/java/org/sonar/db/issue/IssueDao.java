@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.RowNotFoundException;
@@ -86,6 +87,23 @@ public class IssueDao implements Dao {
     }
   }
 
+  /**
+   * Streams the non-closed issues of all the components of the given project, ordered by component uuid,
+   * so that callers can group them without loading the whole result set in memory.
+   */
+  public void scrollNonClosedByProjectUuid(DbSession session, String projectUuid, ResultHandler handler) {
+    mapper(session).scrollNonClosedByProjectUuid(projectUuid, handler);
+  }
+
+  /**
+   * Keys of the given issues of which column UPDATED_AT differs from {@code updatedAt}, for example because they were
+   * not touched by {@link IssueMapper#updateIfBeforeSelectedDate(IssueDto)}. Keys of issues which do not exist are
+   * not returned.
+   */
+  public List<String> selectKeysNotUpdatedAt(DbSession session, List<String> keys, long updatedAt) {
+    return executeLargeInputs(keys, partition -> mapper(session).selectKeysNotUpdatedAt(partition, updatedAt));
+  }
+
   public Set<String> selectComponentUuidsOfOpenIssuesForProjectUuid(DbSession session, String projectUuid) {
     return mapper(session).selectComponentUuidsOfOpenIssuesForProjectUuid(projectUuid);
   }
@@ -30,10 +30,14 @@ public interface IssueMapper {
 
   void selectNonClosedByComponentUuid(@Param("componentUuid") String componentUuid, ResultHandler resultHandler);
 
+  void scrollNonClosedByProjectUuid(@Param("projectUuid") String projectUuid, ResultHandler resultHandler);
+
   Set<String> selectComponentUuidsOfOpenIssuesForProjectUuid(String projectUuid);
 
   List<IssueDto> selectByKeys(List<String> keys);
 
+  List<String> selectKeysNotUpdatedAt(@Param("keys") List<String> keys, @Param("updatedAt") long updatedAt);
+
   void insert(IssueDto issue);
 
   int update(IssueDto issue);
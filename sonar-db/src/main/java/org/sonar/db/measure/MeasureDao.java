@@ -104,6 +104,14 @@ public class MeasureDao implements Dao {
     mapper(dbSession).selectByQueryOnSingleComponent(query, resultHandler);
   }
 
+  /**
+   * Streams the measures of all the components of the last analysis of the given project, excluding
+   * measures associated to developers.
+   */
+  public void scrollLastMeasuresOfProject(DbSession dbSession, String projectUuid, ResultHandler resultHandler) {
+    mapper(dbSession).scrollLastMeasuresOfProject(projectUuid, resultHandler);
+  }
+
   public List<MeasureDto> selectTreeByQuery(DbSession dbSession, ComponentDto baseComponent, MeasureTreeQuery query) {
     if (query.returnsEmpty()) {
       return Collections.emptyList();
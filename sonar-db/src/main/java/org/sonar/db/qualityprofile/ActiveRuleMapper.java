@@ -19,6 +19,7 @@
  */
 package org.sonar.db.qualityprofile;
 
+import java.util.Collection;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import org.apache.ibatis.annotations.Param;
@@ -39,6 +40,8 @@ public interface ActiveRuleMapper {
 
   List<ActiveRuleDto> selectByRuleIds(@Param("ruleIds") List<Integer> partitionOfRuleIds);
 
+  List<ActiveRuleDto> selectByRuleIdsAndProfileKeys(@Param("ruleIds") List<Integer> partitionOfRuleIds, @Param("profileKeys") Collection<String> profileKeys);
+
   List<ActiveRuleDto> selectByProfileKey(String key);
 
   List<ActiveRuleDto> selectAll();
@@ -0,0 +1,141 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import com.google.protobuf.CodedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import org.sonar.db.protobuf.DbFileSources;
+
+/**
+ * Layout of column FILE_SOURCES.BINARY_DATA in which lines of {@link DbFileSources.Data} are split into chunks
+ * which are serialized and compressed independently, so that a range of lines can be read without decompressing
+ * and deserializing the whole file.
+ * <pre>
+ * magic        4 bytes  {@link #MAGIC}
+ * chunkCount   int
+ * chunk table  chunkCount * (int firstLine, int lastLine, int offset, int length)
+ * chunks       LZ4 compressed {@link DbFileSources.Data}, offsets are relative to the start of the binary data
+ * </pre>
+ * Previous layout, a single LZ4 compressed {@link DbFileSources.Data}, starts with the magic of LZ4 blocks ("LZ4Block")
+ * and can't be mistaken for this one.
+ */
+final class ChunkedSourceData {
+
+  static final int DEFAULT_LINES_PER_CHUNK = 500;
+
+  private static final byte[] MAGIC = {'S', 'Q', 'C', '1'};
+  private static final int HEADER_SIZE = MAGIC.length + 4;
+  private static final int CHUNK_ENTRY_SIZE = 4 * 4;
+
+  private ChunkedSourceData() {
+    // only static methods
+  }
+
+  static boolean isChunked(byte[] binaryData) {
+    if (binaryData.length < HEADER_SIZE) {
+      return false;
+    }
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (binaryData[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static byte[] encode(DbFileSources.Data data, int linesPerChunk) throws IOException {
+    List<DbFileSources.Line> lines = data.getLinesList();
+    int chunkCount = (lines.size() + linesPerChunk - 1) / linesPerChunk;
+    byte[][] chunks = new byte[chunkCount][];
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      List<DbFileSources.Line> chunkLines = lines.subList(chunk * linesPerChunk, Math.min(lines.size(), (chunk + 1) * linesPerChunk));
+      chunks[chunk] = compress(DbFileSources.Data.newBuilder().addAllLines(chunkLines).build());
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.write(MAGIC);
+    output.writeInt(chunkCount);
+    int offset = HEADER_SIZE + chunkCount * CHUNK_ENTRY_SIZE;
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      output.writeInt(lines.get(chunk * linesPerChunk).getLine());
+      output.writeInt(lines.get(Math.min(lines.size(), (chunk + 1) * linesPerChunk) - 1).getLine());
+      output.writeInt(offset);
+      output.writeInt(chunks[chunk].length);
+      offset += chunks[chunk].length;
+    }
+    for (byte[] chunk : chunks) {
+      output.write(chunk);
+    }
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  static DbFileSources.Data decode(byte[] binaryData) throws IOException {
+    return decode(binaryData, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Decodes only the chunks containing lines between {@code fromLine} and {@code toLineInclusive}. Returned data
+   * can contain other lines of these chunks.
+   */
+  static DbFileSources.Data decode(byte[] binaryData, int fromLine, int toLineInclusive) throws IOException {
+    DataInputStream header = new DataInputStream(new ByteArrayInputStream(binaryData, MAGIC.length, binaryData.length - MAGIC.length));
+    int chunkCount = header.readInt();
+    DbFileSources.Data.Builder data = DbFileSources.Data.newBuilder();
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      int firstLine = header.readInt();
+      int lastLine = header.readInt();
+      int offset = header.readInt();
+      int length = header.readInt();
+      if (lastLine >= fromLine && firstLine <= toLineInclusive) {
+        data.addAllLines(decompress(binaryData, offset, length).getLinesList());
+      }
+    }
+    return data.build();
+  }
+
+  private static byte[] compress(DbFileSources.Data data) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(bytes)) {
+      data.writeTo(compressedOutput);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static DbFileSources.Data decompress(byte[] binaryData, int offset, int length) throws IOException {
+    if (offset < 0 || length < 0 || offset + length > binaryData.length) {
+      throw new IOException("Invalid chunk [offset=" + offset + ",length=" + length + "]");
+    }
+    try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData, offset, length))) {
+      CodedInputStream input = CodedInputStream.newInstance(lz4Input);
+      // a chunk of a few hundred lines can exceed the default limit of 64MB only with huge lines
+      input.setSizeLimit(Integer.MAX_VALUE);
+      return DbFileSources.Data.parseFrom(input);
+    }
+  }
+}
@@ -26,16 +26,22 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
+
 public class FileSourceDao implements Dao {
 
   private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
@@ -85,6 +91,18 @@ public class FileSourceDao implements Dao {
     }
   }
 
+  /**
+   * Loads the line hashes of many files at once. The handler receives {@link FileSourceDto} instances
+   * in which only {@code fileUuid} and {@code lineHashes} are set. Files without source are ignored.
+   */
+  public void scrollLineHashesByFileUuids(DbSession dbSession, Collection<String> fileUuids, ResultHandler handler) {
+    FileSourceMapper mapper = mapper(dbSession);
+    executeLargeInputsWithoutOutput(fileUuids, partition -> {
+      mapper.selectLineHashesByFileUuids(partition, Type.SOURCE, handler);
+      return null;
+    });
+  }
+
   public <T> void readLineHashesStream(DbSession dbSession, String fileUuid, Function<Reader, T> function) {
     Connection connection = dbSession.getConnection();
     PreparedStatement pstmt = null;
@@ -109,6 +127,14 @@ public class FileSourceDao implements Dao {
     }
   }
 
+  /**
+   * Sources (not tests) with an id greater than {@code afterId}, sorted by id. Only {@code id}, {@code projectUuid},
+   * {@code fileUuid}, {@code binaryData}, {@code dataHash} and {@code dataType} are loaded.
+   */
+  public List<FileSourceDto> selectSourcesAfterId(DbSession dbSession, long afterId, int limit) {
+    return mapper(dbSession).selectAfterId(afterId, Type.SOURCE, new RowBounds(0, limit));
+  }
+
   public void insert(FileSourceDto dto) {
     DbSession session = mybatis.openSession(false);
     try {
@@ -137,6 +163,15 @@ public class FileSourceDao implements Dao {
     mapper(session).update(dto);
   }
 
+  /**
+   * Replaces column BINARY_DATA if it has not been updated since {@code previousDataHash} has been read.
+   *
+   * @return false if the row does not exist anymore or if data has been updated concurrently
+   */
+  public boolean updateBinaryDataIfDataHash(DbSession session, long id, @Nullable String previousDataHash, byte[] binaryData, String dataHash) {
+    return mapper(session).updateBinaryDataIfDataHash(id, previousDataHash, binaryData, dataHash) == 1;
+  }
+
   public void updateDateWhenUpdatedDateIsZero(DbSession session, String projectUuid, long updateDate) {
     mapper(session).updateDateWhenUpdatedDateIsZero(projectUuid, updateDate);
   }
@@ -95,6 +95,27 @@ public class FileSourceDto {
 
   public DbFileSources.Data decodeSourceData(byte[] binaryData) {
     try {
+      if (ChunkedSourceData.isChunked(binaryData)) {
+        return ChunkedSourceData.decode(binaryData);
+      }
+      return decodeRegularSourceData(binaryData);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+        format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
+        e);
+    }
+  }
+
+  /**
+   * Decodes the lines between {@code fromLine} and {@code toLineInclusive}. Only the chunks containing these lines
+   * are decompressed when data is in the chunked layout (see {@link #isChunkedSourceData(byte[])}), otherwise
+   * the whole data is decoded. Returned data can contain lines out of the requested range.
+   */
+  public DbFileSources.Data decodeSourceData(byte[] binaryData, int fromLine, int toLineInclusive) {
+    try {
+      if (ChunkedSourceData.isChunked(binaryData)) {
+        return ChunkedSourceData.decode(binaryData, fromLine, toLineInclusive);
+      }
       return decodeRegularSourceData(binaryData);
     } catch (IOException e) {
       throw new IllegalStateException(
@@ -103,6 +124,14 @@ public class FileSourceDto {
     }
   }
 
+  /**
+   * Whether the value of column BINARY_DATA is in the layout written by {@link #encodeSourceData(DbFileSources.Data)}.
+   * Data persisted by previous versions is a single LZ4 compressed message.
+   */
+  public static boolean isChunkedSourceData(byte[] binaryData) {
+    return ChunkedSourceData.isChunked(binaryData);
+  }
+
   private static DbFileSources.Data decodeRegularSourceData(byte[] binaryData) throws IOException {
     try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
       return DbFileSources.Data.parseFrom(lz4Input);
@@ -124,19 +153,13 @@ public class FileSourceDto {
 
   /**
    * Serialize and compress protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
-   * in the column BINARY_DATA.
+   * in the column BINARY_DATA, by chunks of lines.
    */
   public static byte[] encodeSourceData(DbFileSources.Data data) {
-    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-    LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput);
     try {
-      data.writeTo(compressedOutput);
-      compressedOutput.close();
-      return byteOutput.toByteArray();
+      return ChunkedSourceData.encode(data, ChunkedSourceData.DEFAULT_LINES_PER_CHUNK);
     } catch (IOException e) {
       throw new IllegalStateException("Fail to serialize and compress source data", e);
-    } finally {
-      IOUtils.closeQuietly(compressedOutput);
     }
   }
 
@@ -212,6 +235,13 @@ public class FileSourceDto {
     return decodeSourceData(binaryData);
   }
 
+  /**
+   * @see #decodeSourceData(byte[], int, int)
+   */
+  public DbFileSources.Data getSourceData(int fromLine, int toLineInclusive) {
+    return decodeSourceData(binaryData, fromLine, toLineInclusive);
+  }
+
   public FileSourceDto setSourceData(DbFileSources.Data data) {
     this.dataType = Type.SOURCE;
     this.binaryData = encodeSourceData(data);
@@ -21,7 +21,10 @@ package org.sonar.db.source;
 
 import java.util.List;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
 
 public interface FileSourceMapper {
 
@@ -30,9 +33,16 @@ public interface FileSourceMapper {
   @CheckForNull
   FileSourceDto select(@Param("fileUuid") String fileUuid, @Param("dataType") String dataType);
 
+  void selectLineHashesByFileUuids(@Param("fileUuids") List<String> fileUuids, @Param("dataType") String dataType, ResultHandler resultHandler);
+
+  List<FileSourceDto> selectAfterId(@Param("afterId") long afterId, @Param("dataType") String dataType, RowBounds rowBounds);
+
   void insert(FileSourceDto dto);
 
   void update(FileSourceDto dto);
 
+  int updateBinaryDataIfDataHash(@Param("id") long id, @Nullable @Param("previousDataHash") String previousDataHash,
+    @Param("binaryData") byte[] binaryData, @Param("dataHash") String dataHash);
+
   void updateDateWhenUpdatedDateIsZero(@Param("projectUuid") String projectUuid, @Param("date") Long updateDate);
 }
@@ -182,6 +182,45 @@ public class CeQueueDaoTest {
     assertThat(peek.get().getUuid()).isEqualTo(TASK_UUID_2);
   }
 
+  @Test
+  public void selectEligibleForPeek_returns_a_single_task_by_component() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 2_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+
+    List<CeQueueDto> eligibles = underTest.selectEligibleForPeek(db.getSession(), 3);
+
+    // second task is not returned as first one has the same component
+    assertThat(eligibles).extracting(CeQueueDto::getUuid).containsExactly(TASK_UUID_1, TASK_UUID_3);
+    // status is not changed
+    verifyCeQueueStatuses(TASK_UUID_1, PENDING, TASK_UUID_2, PENDING, TASK_UUID_3, PENDING);
+  }
+
+  @Test
+  public void selectEligibleForPeek_is_limited_by_max_tasks() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+
+    assertThat(underTest.selectEligibleForPeek(db.getSession(), 1)).extracting(CeQueueDto::getUuid).containsExactly(TASK_UUID_1);
+  }
+
+  @Test
+  public void tryToPeek_changes_only_pending_tasks() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, IN_PROGRESS);
+    system2.setNow(INIT_TIME + 5_000);
+
+    Optional<CeQueueDto> peeked = underTest.tryToPeek(db.getSession(), TASK_UUID_1);
+    assertThat(peeked.get().getStatus()).isEqualTo(IN_PROGRESS);
+    assertThat(peeked.get().getStartedAt()).isEqualTo(INIT_TIME + 5_000);
+    assertThat(underTest.tryToPeek(db.getSession(), TASK_UUID_1).isPresent()).isFalse();
+    assertThat(underTest.tryToPeek(db.getSession(), TASK_UUID_2).isPresent()).isFalse();
+    assertThat(underTest.tryToPeek(db.getSession(), "UNKNOWN").isPresent()).isFalse();
+  }
+
   @Test
   public void select_by_query() {
     // task status not in query
@@ -20,6 +20,7 @@
 package org.sonar.db.component;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -32,10 +33,12 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.RowNotFoundException;
+import org.sonar.db.metric.MetricDto;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -49,6 +52,8 @@ import static org.sonar.db.component.ComponentTesting.newSubView;
 import static org.sonar.db.component.ComponentTesting.newView;
 import static org.sonar.db.component.ComponentTreeQuery.Strategy.CHILDREN;
 import static org.sonar.db.component.ComponentTreeQuery.Strategy.LEAVES;
+import static org.sonar.db.measure.MeasureTesting.newMeasureDto;
+import static org.sonar.db.metric.MetricTesting.newMetricDto;
 
 public class ComponentDaoTest {
 
@@ -989,6 +994,98 @@ public class ComponentDaoTest {
     assertThat(components).extracting("uuid").containsOnly("project-copy-uuid", "subview-uuid");
   }
 
+  @Test
+  public void select_page_of_descendants_sorted_by_name_and_path() {
+    ComponentDto project = newProjectDto(PROJECT_UUID);
+    componentDb.insertProjectAndSnapshot(project);
+    ComponentDto fileB = componentDb.insertComponent(newFileDto(project, null, "file-b").setName("b").setPath("src/b"));
+    ComponentDto fileA = componentDb.insertComponent(newFileDto(project, null, "file-a").setName("A").setPath("src/a"));
+    ComponentDto fileC = componentDb.insertComponent(newFileDto(project, null, "file-c").setName("c").setPath(null));
+    db.commit();
+
+    ComponentTreeQuery query = newTreeQuery(PROJECT_UUID).setSorts(singletonList(new ComponentTreeQuery.Sort(ComponentTreeQuery.SortField.NAME, true))).build();
+    assertThat(underTest.selectDescendants(dbSession, query, 0, 2)).extracting(ComponentDto::uuid).containsExactly("file-a", "file-b");
+    assertThat(underTest.selectDescendants(dbSession, query, 2, 2)).extracting(ComponentDto::uuid).containsExactly("file-c");
+    assertThat(underTest.countDescendants(dbSession, query)).isEqualTo(3);
+
+    // components without path are last
+    query = newTreeQuery(PROJECT_UUID).setSorts(singletonList(new ComponentTreeQuery.Sort(ComponentTreeQuery.SortField.PATH, false))).build();
+    assertThat(underTest.selectDescendants(dbSession, query, 0, 10)).extracting(ComponentDto::uuid).containsExactly(fileB.uuid(), fileA.uuid(), fileC.uuid());
+  }
+
+  @Test
+  public void select_page_of_descendants_sorted_by_measure() {
+    ComponentDto project = newProjectDto(PROJECT_UUID);
+    SnapshotDto analysis = componentDb.insertProjectAndSnapshot(project);
+    ComponentDto module = componentDb.insertComponent(newModuleDto(MODULE_UUID, project).setName("module"));
+    ComponentDto file1 = componentDb.insertComponent(newFileDto(project, null, FILE_1_UUID).setName("file 1"));
+    ComponentDto file2 = componentDb.insertComponent(newFileDto(project, null, FILE_2_UUID).setName("file 2"));
+    ComponentDto file3 = componentDb.insertComponent(newFileDto(project, null, FILE_3_UUID).setName("file 3"));
+    MetricDto metric = newMetricDto();
+    db.getDbClient().metricDao().insert(dbSession, metric);
+    db.getDbClient().measureDao().insert(dbSession, newMeasureDto(metric, file1, analysis).setValue(5d).setVariation(1, -1d));
+    db.getDbClient().measureDao().insert(dbSession, newMeasureDto(metric, file2, analysis).setValue(10d).setVariation(1, 2d));
+    db.getDbClient().measureDao().insert(dbSession, newMeasureDto(metric, module, analysis).setValue(20d));
+    db.commit();
+    ComponentTreeQuery.MeasureSortBuilder measureSort = ComponentTreeQuery.MeasureSort.builder().setAnalysisUuid(analysis.getUuid()).setMetricId(metric.getId());
+    List<ComponentTreeQuery.Sort> sorts = asList(new ComponentTreeQuery.Sort(ComponentTreeQuery.SortField.MEASURE, false),
+      new ComponentTreeQuery.Sort(ComponentTreeQuery.SortField.NAME, true));
+
+    // components without measure are last
+    ComponentTreeQuery query = newTreeQuery(PROJECT_UUID).setSorts(sorts).setMeasureSort(measureSort.build()).build();
+    assertThat(underTest.selectDescendants(dbSession, query, 0, 10)).extracting(ComponentDto::uuid).containsExactly(MODULE_UUID, FILE_2_UUID, FILE_1_UUID, FILE_3_UUID);
+    assertThat(underTest.selectDescendants(dbSession, query, 1, 2)).extracting(ComponentDto::uuid).containsExactly(FILE_2_UUID, FILE_1_UUID);
+
+    // filter components without measure
+    query = newTreeQuery(PROJECT_UUID).setSorts(sorts).setMeasureSort(measureSort.setWithMeasuresOnly(true).build()).build();
+    assertThat(underTest.selectDescendants(dbSession, query, 0, 10)).extracting(ComponentDto::uuid).containsExactly(MODULE_UUID, FILE_2_UUID, FILE_1_UUID);
+    assertThat(underTest.countDescendants(dbSession, query)).isEqualTo(3);
+
+    // best value of files without measure
+    query = newTreeQuery(PROJECT_UUID).setSorts(sorts).setMeasureSort(measureSort.setBestValue(7d, singletonList(Qualifiers.FILE)).build()).build();
+    assertThat(underTest.selectDescendants(dbSession, query, 0, 10)).extracting(ComponentDto::uuid).containsExactly(MODULE_UUID, FILE_2_UUID, FILE_3_UUID, FILE_1_UUID);
+    assertThat(underTest.countDescendants(dbSession, query)).isEqualTo(4);
+
+    // variation
+    query = newTreeQuery(PROJECT_UUID).setSorts(sorts)
+      .setMeasureSort(measureSort.setBestValue(null, emptyList()).setVariationIndex(1).build()).build();
+    assertThat(underTest.selectDescendants(dbSession, query, 0, 10)).extracting(ComponentDto::uuid).containsExactly(FILE_2_UUID, FILE_1_UUID);
+  }
+
+  @Test
+  public void select_page_of_descendants_returns_empty_list_if_base_component_does_not_exist() {
+    ComponentTreeQuery query = newTreeQuery(PROJECT_UUID).build();
+
+    assertThat(underTest.selectDescendants(dbSession, query, 0, 10)).isEmpty();
+    assertThat(underTest.countDescendants(dbSession, query)).isEqualTo(0);
+  }
+
+  @Test
+  public void fail_to_sort_descendants_on_measure_if_measure_is_not_defined() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Measure must be defined when sorting on measure");
+
+    newTreeQuery(PROJECT_UUID).setSorts(singletonList(new ComponentTreeQuery.Sort(ComponentTreeQuery.SortField.MEASURE, true))).build();
+  }
+
+  @Test
+  public void scroll_for_indexing_returns_enabled_components_and_ignores_project_copies() {
+    ComponentDto project = componentDb.insertComponent(newProjectDto());
+    ComponentDto file = componentDb.insertComponent(newFileDto(project));
+    componentDb.insertComponent(newFileDto(project).setEnabled(false));
+    ComponentDto otherProject = componentDb.insertComponent(newProjectDto());
+    ComponentDto view = componentDb.insertComponent(newView());
+    componentDb.insertComponent(newProjectCopy("PC1", otherProject, view));
+
+    List<String> all = new ArrayList<>();
+    underTest.scrollForIndexing(dbSession, null, context -> all.add(((ComponentDto) context.getResultObject()).uuid()));
+    assertThat(all).containsOnly(project.uuid(), file.uuid(), otherProject.uuid(), view.uuid());
+
+    List<String> ofProject = new ArrayList<>();
+    underTest.scrollForIndexing(dbSession, project.uuid(), context -> ofProject.add(((ComponentDto) context.getResultObject()).uuid()));
+    assertThat(ofProject).containsOnly(project.uuid(), file.uuid());
+  }
+
   private static ComponentTreeQuery.Builder newTreeQuery(String baseUuid) {
     return ComponentTreeQuery.builder()
       .setBaseUuid(baseUuid)
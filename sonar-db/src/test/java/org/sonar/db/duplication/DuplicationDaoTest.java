@@ -25,8 +25,10 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -61,6 +63,33 @@ public class DuplicationDaoTest {
     assertThat(blocks).hasSize(2);
   }
 
+  @Test
+  public void scroll_candidates_returns_same_rows_as_select_candidates() {
+    db.prepareDbUnit(getClass(), "select_candidates.xml");
+    dbSession.commit();
+
+    List<DuplicationUnitDto> blocks = new ArrayList<>();
+    dao.scrollCandidates(dbSession, "u7", "java", asList("aa", "bb"), context -> blocks.add((DuplicationUnitDto) context.getResultObject()));
+
+    assertThat(blocks).extracting(DuplicationUnitDto::getId)
+      .containsOnly(dao.selectCandidates(dbSession, "u7", "java", asList("aa", "bb")).stream().map(DuplicationUnitDto::getId).toArray(Long[]::new));
+    assertThat(blocks).extracting(DuplicationUnitDto::getComponentKey).contains("bar-last");
+  }
+
+  @Test
+  public void count_and_scroll_hashes_of_candidates() {
+    db.prepareDbUnit(getClass(), "select_candidates.xml");
+    dbSession.commit();
+
+    List<String> hashes = new ArrayList<>();
+    dao.scrollCandidateHashes(dbSession, "u7", "java", context -> hashes.add((String) context.getResultObject()));
+
+    assertThat(dao.countCandidates(dbSession, "u7", "java")).isEqualTo(hashes.size());
+    assertThat(hashes).containsOnly("aa");
+    assertThat(dao.countCandidates(dbSession, null, "java")).isGreaterThan(hashes.size());
+    assertThat(dao.countCandidates(dbSession, "u7", "cobol")).isZero();
+  }
+
   @Test
   public void insert() {
     db.prepareDbUnit(getClass(), "insert.xml");
@@ -19,6 +19,7 @@
  */
 package org.sonar.db.issue;
 
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Rule;
 import org.junit.Test;
@@ -119,6 +120,41 @@ public class IssueDaoTest {
     assertThat(issues).extracting("key").containsExactly("I2", "I1");
   }
 
+  @Test
+  public void selectKeysNotUpdatedAt() {
+    // contains I1 and I2, updated at 1_440_000_000_000L
+    prepareTables();
+    IssueDto issue2 = underTest.selectOrFailByKey(dbTester.getSession(), ISSUE_KEY2);
+    underTest.update(dbTester.getSession(), issue2.setUpdatedAt(1_500_000_000_000L));
+    dbTester.getSession().commit();
+
+    assertThat(underTest.selectKeysNotUpdatedAt(dbTester.getSession(), asList("I1", "I2", "I3"), 1_440_000_000_000L)).containsExactly("I2");
+    assertThat(underTest.selectKeysNotUpdatedAt(dbTester.getSession(), asList("I1", "I2"), 1_500_000_000_000L)).containsExactly("I1");
+  }
+
+  @Test
+  public void scrollNonClosedByProjectUuid() {
+    prepareTables();
+    ComponentDto otherFile = ComponentTesting.newFileDto(PROJECT, null);
+    dbTester.getDbClient().componentDao().insert(dbTester.getSession(), otherFile);
+    underTest.insert(dbTester.getSession(), newIssueDto("I3")
+      .setRuleId(RULE.getId())
+      .setComponentUuid(otherFile.uuid())
+      .setProjectUuid(PROJECT.uuid()));
+    underTest.insert(dbTester.getSession(), newIssueDto("I4")
+      .setStatus("CLOSED")
+      .setRuleId(RULE.getId())
+      .setComponentUuid(otherFile.uuid())
+      .setProjectUuid(PROJECT.uuid()));
+    dbTester.getSession().commit();
+
+    List<IssueDto> issues = new ArrayList<>();
+    underTest.scrollNonClosedByProjectUuid(dbTester.getSession(), PROJECT.uuid(), context -> issues.add((IssueDto) context.getResultObject()));
+
+    assertThat(issues).extracting("key").containsOnly("I1", "I2", "I3");
+    assertThat(issues).extracting("componentUuid").isSorted();
+  }
+
   private static IssueDto newIssueDto(String key) {
     IssueDto dto = new IssueDto();
     dto.setComponent(new ComponentDto().setKey("struts:Action").setId(123L).setUuid("component-uuid"));
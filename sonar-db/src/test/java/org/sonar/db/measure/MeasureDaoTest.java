@@ -301,6 +301,32 @@ public class MeasureDaoTest {
       "P1_M3");
   }
 
+  @Test
+  public void scrollLastMeasuresOfProject() {
+    ComponentDto project1 = db.components().insertProject();
+    ComponentDto module = db.components().insertComponent(newModuleDto(project1));
+    db.components().insertComponent(newFileDto(module).setUuid("C1"));
+    insertAnalysis(LAST_ANALYSIS_UUID, project1.uuid(), true);
+    insertAnalysis(OTHER_ANALYSIS_UUID, project1.uuid(), false);
+    String project2LastAnalysisUuid = "P2_LAST_ANALYSIS";
+    ComponentDto project2 = db.components().insertProject();
+    insertAnalysis(project2LastAnalysisUuid, project2.uuid(), true);
+
+    insertMeasure("P1_M1", LAST_ANALYSIS_UUID, project1.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("P1_M2", OTHER_ANALYSIS_UUID, project1.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("M1", LAST_ANALYSIS_UUID, module.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("M2", LAST_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID);
+    insertMeasure("M3", LAST_ANALYSIS_UUID, "C1", COVERAGE_METRIC_ID);
+    insertMeasureOnPerson("M4", LAST_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID, A_PERSON_ID);
+    insertMeasure("P2_M1", project2LastAnalysisUuid, project2.uuid(), NCLOC_METRIC_ID);
+    db.commit();
+
+    List<MeasureDto> measures = new ArrayList<>();
+    underTest.scrollLastMeasuresOfProject(db.getSession(), project1.uuid(), context -> measures.add((MeasureDto) context.getResultObject()));
+
+    assertThat(measures).extracting(MeasureDto::getData).containsOnly("P1_M1", "M1", "M2", "M3");
+  }
+
   @Test
   public void selectSingle() {
     ComponentDto project = db.components().insertProject();
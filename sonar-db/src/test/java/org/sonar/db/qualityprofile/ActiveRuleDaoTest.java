@@ -38,6 +38,8 @@ import org.sonar.db.rule.RuleTesting;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.guava.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -173,6 +175,24 @@ public class ActiveRuleDaoTest {
       .extracting("key").containsOnly(activeRule1.getKey(), activeRule2.getKey(), activeRule3.getKey());
   }
 
+  @Test
+  public void select_by_rule_ids_and_profile_keys() {
+    ActiveRuleDto activeRule1 = createFor(profile1, rule1).setSeverity(BLOCKER);
+    ActiveRuleDto activeRule2 = createFor(profile1, rule2).setSeverity(BLOCKER);
+    ActiveRuleDto activeRule3 = createFor(profile2, rule1).setSeverity(BLOCKER);
+    underTest.insert(dbSession, activeRule1);
+    underTest.insert(dbSession, activeRule2);
+    underTest.insert(dbSession, activeRule3);
+    dbSession.commit();
+
+    assertThat(underTest.selectByRuleIdsAndProfileKeys(dbSession, singletonList(rule1.getId()), singletonList(profile1.getKey())))
+      .extracting("key").containsOnly(activeRule1.getKey());
+    assertThat(underTest.selectByRuleIdsAndProfileKeys(dbSession, newArrayList(rule1.getId(), rule2.getId()), asList(profile1.getKey(), profile2.getKey())))
+      .extracting("key").containsOnly(activeRule1.getKey(), activeRule2.getKey(), activeRule3.getKey());
+    assertThat(underTest.selectByRuleIdsAndProfileKeys(dbSession, singletonList(rule3.getId()), singletonList(profile1.getKey()))).isEmpty();
+    assertThat(underTest.selectByRuleIdsAndProfileKeys(dbSession, singletonList(rule1.getId()), emptyList())).isEmpty();
+  }
+
   @Test
   public void select_all() {
     ActiveRuleDto activeRule1 = createFor(profile1, rule1).setSeverity(BLOCKER);
@@ -24,6 +24,8 @@ import com.google.common.base.Throwables;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
@@ -33,6 +35,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.assertj.core.api.Assertions.in;
@@ -73,6 +76,18 @@ public class FileSourceDaoTest {
     assertThat(fn.result).isEqualTo("ABC\\nDEF\\nGHI");
   }
 
+  @Test
+  public void scroll_line_hashes_by_file_uuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    List<FileSourceDto> dtos = new ArrayList<>();
+    underTest.scrollLineHashesByFileUuids(session, asList("FILE1_UUID", "unknown"), context -> dtos.add((FileSourceDto) context.getResultObject()));
+
+    assertThat(dtos).hasSize(1);
+    assertThat(dtos.get(0).getFileUuid()).isEqualTo("FILE1_UUID");
+    assertThat(dtos.get(0).getLineHashes()).isEqualTo("ABC\\nDEF\\nGHI");
+  }
+
   @Test
   public void no_line_hashes_on_unknown_file() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -179,6 +194,52 @@ public class FileSourceDaoTest {
       "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at", "data_type", "revision");
   }
 
+  @Test
+  public void select_sources_after_id() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    insertSource("FILE2_UUID", Type.SOURCE);
+    insertSource("FILE3_UUID", Type.TEST);
+    insertSource("FILE4_UUID", Type.SOURCE);
+
+    List<FileSourceDto> dtos = underTest.selectSourcesAfterId(session, 0L, 10);
+    assertThat(dtos).extracting(FileSourceDto::getFileUuid).containsExactly("FILE1_UUID", "FILE2_UUID", "FILE4_UUID");
+    assertThat(dtos.get(1).getBinaryData()).isEqualTo("FILE2_UUID_DATA".getBytes());
+    assertThat(dtos.get(1).getDataHash()).isEqualTo("FILE2_UUID_HASH");
+    assertThat(dtos.get(1).getProjectUuid()).isEqualTo("PRJ_UUID");
+
+    assertThat(underTest.selectSourcesAfterId(session, 0L, 2)).extracting(FileSourceDto::getFileUuid).containsExactly("FILE1_UUID", "FILE2_UUID");
+    assertThat(underTest.selectSourcesAfterId(session, dtos.get(1).getId(), 10)).extracting(FileSourceDto::getFileUuid).containsExactly("FILE4_UUID");
+    assertThat(underTest.selectSourcesAfterId(session, dtos.get(2).getId(), 10)).isEmpty();
+  }
+
+  @Test
+  public void update_binary_data_only_if_data_hash_has_not_changed() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    assertThat(underTest.updateBinaryDataIfDataHash(session, 101L, "other hash", "new data".getBytes(), "new hash")).isFalse();
+    assertThat(underTest.updateBinaryDataIfDataHash(session, 101L, null, "new data".getBytes(), "new hash")).isFalse();
+    assertThat(underTest.updateBinaryDataIfDataHash(session, 999L, "hash", "new data".getBytes(), "new hash")).isFalse();
+    assertThat(underTest.selectSourceByFileUuid(session, "FILE1_UUID").getDataHash()).isEqualTo("hash");
+
+    assertThat(underTest.updateBinaryDataIfDataHash(session, 101L, "hash", "new data".getBytes(), "new hash")).isTrue();
+    FileSourceDto dto = underTest.selectSourceByFileUuid(session, "FILE1_UUID");
+    assertThat(dto.getBinaryData()).isEqualTo("new data".getBytes());
+    assertThat(dto.getDataHash()).isEqualTo("new hash");
+    assertThat(dto.getLineHashes()).isEqualTo("ABC\\nDEF\\nGHI");
+  }
+
+  private void insertSource(String fileUuid, String dataType) {
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid(fileUuid)
+      .setBinaryData((fileUuid + "_DATA").getBytes())
+      .setDataHash(fileUuid + "_HASH")
+      .setDataType(dataType)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+    session.commit();
+  }
+
   @Test
   public void update_date_when_updated_date_is_zero() {
     dbTester.prepareDbUnit(getClass(), "update_date_when_updated_date_is_zero.xml");
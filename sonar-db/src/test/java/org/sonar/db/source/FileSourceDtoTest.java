@@ -19,8 +19,13 @@
  */
 package org.sonar.db.source;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -80,6 +85,74 @@ public class FileSourceDtoTest {
     assertThat(data.getLinesCount()).isEqualTo(build.getLinesCount());
   }
 
+  @Test
+  public void encode_source_data_by_chunks() {
+    DbFileSources.Data data = createData(1_200);
+
+    byte[] bytes = FileSourceDto.encodeSourceData(data);
+
+    assertThat(FileSourceDto.isChunkedSourceData(bytes)).isTrue();
+    assertThat(new FileSourceDto().decodeSourceData(bytes)).isEqualTo(data);
+  }
+
+  @Test
+  public void decode_only_chunks_of_requested_lines() {
+    byte[] bytes = FileSourceDto.encodeSourceData(createData(1_200));
+
+    DbFileSources.Data data = new FileSourceDto().decodeSourceData(bytes, 520, 530);
+
+    // second chunk only
+    assertThat(data.getLinesList()).extracting(DbFileSources.Line::getLine).containsExactlyElementsOf(range(501, 1000));
+    assertThat(new FileSourceDto().setBinaryData(bytes).getSourceData(499, 1001).getLinesCount()).isEqualTo(1_200);
+    assertThat(new FileSourceDto().setBinaryData(bytes).getSourceData(1_300, 1_400).getLinesCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void decode_source_data_persisted_by_previous_versions() throws IOException {
+    DbFileSources.Data data = createData(1_200);
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput)) {
+      data.writeTo(compressedOutput);
+    }
+    byte[] bytes = byteOutput.toByteArray();
+
+    assertThat(FileSourceDto.isChunkedSourceData(bytes)).isFalse();
+    assertThat(new FileSourceDto().decodeSourceData(bytes)).isEqualTo(data);
+    // whole data is decoded
+    assertThat(new FileSourceDto().decodeSourceData(bytes, 520, 530)).isEqualTo(data);
+  }
+
+  @Test
+  public void encode_and_decode_empty_source_data() {
+    byte[] bytes = FileSourceDto.encodeSourceData(DbFileSources.Data.getDefaultInstance());
+
+    assertThat(FileSourceDto.isChunkedSourceData(bytes)).isTrue();
+    assertThat(new FileSourceDto().decodeSourceData(bytes).getLinesCount()).isEqualTo(0);
+    assertThat(new FileSourceDto().decodeSourceData(bytes, 1, 10).getLinesCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void getSourceData_throws_ISE_when_chunked_data_is_truncated() {
+    byte[] bytes = FileSourceDto.encodeSourceData(createData(1_200));
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to decompress and deserialize source data");
+
+    new FileSourceDto().setBinaryData(Arrays.copyOf(bytes, bytes.length - 10)).getSourceData(1_100, 1_200);
+  }
+
+  private static DbFileSources.Data createData(int lines) {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= lines; i++) {
+      dataBuilder.addLinesBuilder().setLine(i).setSource("line " + i).setScmRevision("rev" + (i % 7));
+    }
+    return dataBuilder.build();
+  }
+
+  private static List<Integer> range(int from, int toInclusive) {
+    return IntStream.rangeClosed(from, toInclusive).boxed().collect(Collectors.toList());
+  }
+
   private static DbFileSources.Data createOver64MBDataStructure() {
     DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
@@ -83,10 +83,21 @@ class AndPredicate extends AbstractFilePredicate {
     if (predicates.isEmpty()) {
       return index.inputFiles();
     }
-    // Optimization, use get on first predicate then filter with next predicates
+    // Optimization, use get on the most selective of the predicates using index then filter with other predicates.
+    // Probing the other predicates is cheaper than intersecting their indexed sets.
+    int selected = 0;
     Iterable<InputFile> result = predicates.get(0).get(index);
-    for (int i = 1; i < predicates.size(); i++) {
-      result = predicates.get(i).filter(result);
+    for (int i = 1; i < predicates.size() && predicates.get(i).priority() >= USE_INDEX && result instanceof Collection; i++) {
+      Iterable<InputFile> candidates = predicates.get(i).get(index);
+      if (candidates instanceof Collection && ((Collection<InputFile>) candidates).size() < ((Collection<InputFile>) result).size()) {
+        selected = i;
+        result = candidates;
+      }
+    }
+    for (int i = 0; i < predicates.size(); i++) {
+      if (i != selected) {
+        result = predicates.get(i).filter(result);
+      }
     }
     return result;
   }
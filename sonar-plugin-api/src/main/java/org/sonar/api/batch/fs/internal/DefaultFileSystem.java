@@ -26,11 +26,15 @@ import java.nio.charset.Charset;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.FilePredicate;
@@ -241,20 +245,70 @@ public class DefaultFileSystem implements FileSystem {
     // nothing to do by default
   }
 
+  /**
+   * Index of files and directories. Besides the index by relative path provided by implementations,
+   * files are indexed by language, type and status, so that the related predicates do not need to
+   * scan all the files. These attributes are expected to be set before files are added.
+   */
   public abstract static class Cache implements Index {
 
+    private final Map<String, SortedMap<String, InputFile>> filesByLanguage = new HashMap<>();
+    private final Map<InputFile.Type, SortedMap<String, InputFile>> filesByType = new EnumMap<>(InputFile.Type.class);
+    private final Map<InputFile.Status, SortedMap<String, InputFile>> filesByStatus = new EnumMap<>(InputFile.Status.class);
+
     protected abstract void doAdd(InputFile inputFile);
 
     protected abstract void doAdd(InputDir inputDir);
 
     final void add(InputFile inputFile) {
+      InputFile previous = inputFile(inputFile.relativePath());
+      if (previous != null) {
+        unindex(previous);
+      }
       doAdd(inputFile);
+      index(inputFile);
     }
 
     public void add(InputDir inputDir) {
       doAdd(inputDir);
     }
 
+    Collection<InputFile> inputFilesByLanguage(String language) {
+      return indexed(filesByLanguage, language);
+    }
+
+    Collection<InputFile> inputFilesByType(InputFile.Type type) {
+      return indexed(filesByType, type);
+    }
+
+    Collection<InputFile> inputFilesByStatus(InputFile.Status status) {
+      return indexed(filesByStatus, status);
+    }
+
+    private void index(InputFile inputFile) {
+      String relativePath = inputFile.relativePath();
+      if (inputFile.language() != null) {
+        filesByLanguage.computeIfAbsent(inputFile.language(), k -> new TreeMap<>()).put(relativePath, inputFile);
+      }
+      if (inputFile.type() != null) {
+        filesByType.computeIfAbsent(inputFile.type(), k -> new TreeMap<>()).put(relativePath, inputFile);
+      }
+      if (inputFile.status() != null) {
+        filesByStatus.computeIfAbsent(inputFile.status(), k -> new TreeMap<>()).put(relativePath, inputFile);
+      }
+    }
+
+    private void unindex(InputFile inputFile) {
+      String relativePath = inputFile.relativePath();
+      filesByLanguage.values().forEach(files -> files.remove(relativePath));
+      filesByType.values().forEach(files -> files.remove(relativePath));
+      filesByStatus.values().forEach(files -> files.remove(relativePath));
+    }
+
+    private static <K> Collection<InputFile> indexed(Map<K, SortedMap<String, InputFile>> filesByKey, K key) {
+      SortedMap<String, InputFile> files = filesByKey.get(key);
+      return files == null ? Collections.emptyList() : Collections.unmodifiableCollection(files.values());
+    }
   }
 
   /**
@@ -270,10 +270,24 @@ public class FileMetadata {
    * Maximum performance is needed.
    */
   public Metadata readMetadata(File file, Charset encoding) {
+    return readMetadata(file, encoding, null);
+  }
+
+  /**
+   * Same as {@link #readMetadata(File, Charset)} but also computes the hashes used for issue tracking
+   * (see {@link #computeLineHashesForIssueTracking(DefaultInputFile, LineHashConsumer)}) while reading the file,
+   * so that it's read and decoded only once.
+   * @since 6.3
+   */
+  public Metadata readMetadata(File file, Charset encoding, @Nullable LineHashConsumer lineHashConsumer) {
     LineCounter lineCounter = new LineCounter(file, encoding);
     FileHashComputer fileHashComputer = new FileHashComputer(file);
     LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-    readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
+    if (lineHashConsumer == null) {
+      readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
+    } else {
+      readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter, new LineHashComputer(lineHashConsumer, file));
+    }
     return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
       lineOffsetCounter.getLastValidOffset());
   }
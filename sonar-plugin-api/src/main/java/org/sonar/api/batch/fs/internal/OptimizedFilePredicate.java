@@ -43,7 +43,8 @@ public interface OptimizedFilePredicate extends FilePredicate, Comparable<Optimi
    * p.and(p1, p2, p3) then p1, p2 and p3 will be applied according to their priority value. Higher priority value
    * are applied first.
    * Assign a high priority when the predicate will likely highly reduce the set of InputFiles to filter. Also
-   * {@link RelativePathPredicate} and AbsolutePathPredicate have a high priority since they are using cache index.
+   * {@link RelativePathPredicate}, AbsolutePathPredicate and the predicates on language, type and status have a
+   * high priority since they are using cache index.
    */
   int priority();
 }
@@ -198,6 +198,18 @@ public final class ZipUtils {
     }
   }
 
+  /**
+   * Zips the content of a directory into a stream. The stream is not closed.
+   *
+   * @since 6.3
+   */
+  public static void zipDir(File dir, OutputStream out) throws IOException {
+    ZipOutputStream zout = new ZipOutputStream(out);
+    doZipDir(dir, zout);
+    zout.finish();
+    zout.flush();
+  }
+
   private static void doZip(String entryName, InputStream in, ZipOutputStream out) throws IOException {
     ZipEntry entry = new ZipEntry(entryName);
     out.putNextEntry(entry);
@@ -27,6 +27,8 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import org.sonar.api.batch.fs.FilePredicates;
+import org.sonar.api.batch.fs.InputFile;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -131,4 +133,37 @@ public class DefaultFileSystemTest {
     // it would fail if more than one java file
     assertThat(fs.inputFile(fs.predicates().hasLanguage("java"))).isNotNull();
   }
+
+  @Test
+  public void use_indexes_of_language_type_and_status() {
+    fs.add(new DefaultInputFile("foo", "src/Foo.java").setLanguage("java").setType(InputFile.Type.MAIN).setStatus(InputFile.Status.ADDED));
+    fs.add(new DefaultInputFile("foo", "src/Bar.java").setLanguage("java").setType(InputFile.Type.MAIN).setStatus(InputFile.Status.SAME));
+    fs.add(new DefaultInputFile("foo", "test/FooTest.java").setLanguage("java").setType(InputFile.Type.TEST).setStatus(InputFile.Status.SAME));
+    fs.add(new DefaultInputFile("foo", "src/baz.php").setLanguage("php").setType(InputFile.Type.MAIN).setStatus(InputFile.Status.ADDED));
+    FilePredicates p = fs.predicates();
+
+    assertThat(fs.inputFiles(p.hasType(InputFile.Type.MAIN))).extracting(InputFile::relativePath)
+      .containsExactly("src/Bar.java", "src/Foo.java", "src/baz.php");
+    assertThat(fs.inputFiles(p.hasStatus(InputFile.Status.SAME))).extracting(InputFile::relativePath)
+      .containsExactly("src/Bar.java", "test/FooTest.java");
+    assertThat(fs.inputFiles(p.and(p.hasLanguage("java"), p.hasType(InputFile.Type.MAIN)))).extracting(InputFile::relativePath)
+      .containsExactly("src/Bar.java", "src/Foo.java");
+    assertThat(fs.inputFiles(p.and(p.hasLanguage("java"), p.hasType(InputFile.Type.MAIN), p.hasStatus(InputFile.Status.ADDED))))
+      .extracting(InputFile::relativePath).containsExactly("src/Foo.java");
+    assertThat(fs.inputFiles(p.and(p.hasLanguage("java"), p.hasRelativePath("src/baz.php")))).isEmpty();
+    assertThat(fs.inputFiles(p.and(p.hasLanguage("java"), p.matchesPathPattern("test/**")))).extracting(InputFile::relativePath)
+      .containsExactly("test/FooTest.java");
+    assertThat(fs.inputFiles(p.hasType(InputFile.Type.TEST))).hasSize(1);
+    assertThat(fs.inputFiles(p.hasLanguage("cobol"))).isEmpty();
+  }
+
+  @Test
+  public void update_indexes_when_file_is_added_again() {
+    fs.add(new DefaultInputFile("foo", "src/Foo.java").setLanguage("java").setStatus(InputFile.Status.ADDED));
+    fs.add(new DefaultInputFile("foo", "src/Foo.java").setLanguage("java").setStatus(InputFile.Status.CHANGED));
+
+    assertThat(fs.inputFiles(fs.predicates().hasLanguage("java"))).hasSize(1);
+    assertThat(fs.inputFiles(fs.predicates().hasStatus(InputFile.Status.ADDED))).isEmpty();
+    assertThat(fs.inputFiles(fs.predicates().hasStatus(InputFile.Status.CHANGED))).hasSize(1);
+  }
 }
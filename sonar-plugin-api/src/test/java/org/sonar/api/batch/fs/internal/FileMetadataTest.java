@@ -22,6 +22,8 @@ package org.sonar.api.batch.fs.internal;
 import java.io.File;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
@@ -35,6 +37,7 @@ import org.sonar.api.utils.log.LoggerLevel;
 
 import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.fail;
 
 public class FileMetadataTest {
@@ -220,6 +223,20 @@ public class FileMetadataTest {
     assertThat(metadata.originalLineOffsets).containsOnly(0, 4, 9);
   }
 
+  @Test
+  public void compute_line_hashes_while_reading_metadata() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, " foo\n\nb ar\r\nbaz \t", StandardCharsets.UTF_8, true);
+
+    Map<Integer, String> hashes = new HashMap<>();
+    FileMetadata.Metadata metadata = new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8,
+      (lineIdx, hash) -> hashes.put(lineIdx, Hex.encodeHexString(hash)));
+
+    assertThat(metadata.lines).isEqualTo(4);
+    assertThat(metadata.hash).isEqualTo(md5Hex(" foo\n\nb ar\nbaz \t"));
+    assertThat(hashes).containsOnly(entry(1, md5Hex("foo")), entry(3, md5Hex("bar")), entry(4, md5Hex("baz")));
+  }
+
   @Test
   public void ignore_whitespace_when_computing_line_hashes() throws Exception {
     File tempFile = temp.newFile();
@@ -22,7 +22,10 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -30,6 +33,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
@@ -54,6 +58,9 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p>
+ * Detection can be spread over several threads with the property {@value #THREADS_PROPERTY_KEY}. Whatever the number of threads,
+ * duplications are saved in the report by the calling thread, in the order of the index.
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
@@ -61,6 +68,7 @@ public class CpdExecutor {
   private static final int TIMEOUT = 5 * 60 * 1000;
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
+  static final String THREADS_PROPERTY_KEY = "sonar.cpd.threads";
 
   private final SonarCpdBlockIndex index;
   private final ReportPublisher publisher;
@@ -85,14 +93,29 @@ public class CpdExecutor {
   @VisibleForTesting
   void execute(long timeout) {
     total = index.noResources();
+    int threads = getThreads();
     progressReport.start(String.format("Calculating CPD for %d files", total));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("CpdExecutor-%d").build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
+      // at most one pending analysis per thread, so that each analysis starts as soon as it is submitted
+      Deque<PendingCpdAnalysis> pendingAnalyses = new ArrayDeque<>(threads);
 
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
+        PendingCpdAnalysis pendingAnalysis = submitCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
+        if (pendingAnalysis == null) {
+          count++;
+          continue;
+        }
+        pendingAnalyses.add(pendingAnalysis);
+        if (pendingAnalyses.size() >= threads) {
+          completeCpdAnalysis(pendingAnalyses.poll());
+          count++;
+        }
+      }
+      while (!pendingAnalyses.isEmpty()) {
+        completeCpdAnalysis(pendingAnalyses.poll());
         count++;
       }
       progressReport.stop("CPD calculation finished");
@@ -100,29 +123,52 @@ public class CpdExecutor {
       progressReport.stop("");
       throw e;
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
     }
   }
 
+  @VisibleForTesting
+  int getThreads() {
+    return Math.max(1, settings.getInt(THREADS_PROPERTY_KEY));
+  }
+
   @VisibleForTesting
   void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+    PendingCpdAnalysis pendingAnalysis = submitCpdAnalysis(executorService, componentKey, fileBlocks, timeout);
+    if (pendingAnalysis != null) {
+      completeCpdAnalysis(pendingAnalysis);
+    }
+  }
+
+  @CheckForNull
+  private PendingCpdAnalysis submitCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
     BatchComponent component = batchComponentCache.get(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component cache: {}. Skipping CPD computation for it", componentKey);
-      return;
+      return null;
     }
 
     InputFile inputFile = (InputFile) component.inputComponent();
     LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    return new PendingCpdAnalysis(component, inputFile, executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks)), deadline);
+  }
+
+  /**
+   * The timeout of a file applies from the submission of its detection, not from the time the calling thread
+   * starts waiting for it, otherwise files detected in parallel of a slow one would be given more time.
+   */
+  private void completeCpdAnalysis(PendingCpdAnalysis pendingAnalysis) {
+    InputFile inputFile = pendingAnalysis.inputFile;
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
+      long remaining = Math.max(0L, pendingAnalysis.deadline - System.nanoTime());
+      duplications = pendingAnalysis.result.get(remaining, TimeUnit.NANOSECONDS);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
+      pendingAnalysis.result.cancel(true);
       return;
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
@@ -136,7 +182,7 @@ public class CpdExecutor {
       filtered = duplications;
     }
 
-    saveDuplications(component, filtered);
+    saveDuplications(pendingAnalysis.component, filtered);
   }
 
   @VisibleForTesting
@@ -211,4 +257,19 @@ public class CpdExecutor {
     }
     return dupBuilder.build();
   }
+
+  private static class PendingCpdAnalysis {
+    private final BatchComponent component;
+    private final InputFile inputFile;
+    private final Future<List<CloneGroup>> result;
+    // value of System#nanoTime() after which detection is cancelled
+    private final long deadline;
+
+    private PendingCpdAnalysis(BatchComponent component, InputFile inputFile, Future<List<CloneGroup>> result, long deadline) {
+      this.component = component;
+      this.inputFile = inputFile;
+      this.result = result;
+      this.deadline = deadline;
+    }
+  }
 }
@@ -54,7 +54,14 @@ public final class FileHashes {
     final byte[][] hashes = new byte[f.lines()][];
     FileMetadata.computeLineHashesForIssueTracking(f,
       (lineIdx, hash) -> hashes[lineIdx - 1] = hash);
+    return create(hashes);
+  }
 
+  /**
+   * @param hashes MD5 of each line as computed by {@link FileMetadata#computeLineHashesForIssueTracking(DefaultInputFile, FileMetadata.LineHashConsumer)},
+   * {@code null} for blank lines
+   */
+  public static FileHashes create(byte[][] hashes) {
     int size = hashes.length;
     Multimap<String, Integer> linesByHash = LinkedHashMultimap.create();
     String[] hexHashes = new String[size];
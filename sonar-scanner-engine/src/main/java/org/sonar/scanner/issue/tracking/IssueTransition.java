@@ -65,6 +65,8 @@ public class IssueTransition {
       localIssueTracking.init();
     }
 
+    // issues appended to the report must be written to disk before being read
+    reportPublisher.getWriter().flush();
     ScannerReportReader reader = new ScannerReportReader(reportPublisher.getReportDir());
     int nbComponents = componentCache.all().size();
 
@@ -0,0 +1,66 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.tracking;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.scanner.analysis.DefaultAnalysisMode;
+import org.sonar.scanner.repository.ProjectRepositories;
+
+/**
+ * Line hashes computed during the indexing of files, while their metadata is read, so that local
+ * issue tracking doesn't have to read and decode files a second time.
+ * Hashes are only kept when issue tracking will consume them (issues mode on a project already analyzed)
+ * and each entry is dropped once consumed.
+ */
+@ScannerSide
+public class LineHashesCache {
+
+  private final boolean enabled;
+  private final Map<String, byte[][]> hashesByFileKey = new ConcurrentHashMap<>();
+
+  public LineHashesCache(DefaultAnalysisMode mode, ProjectRepositories projectRepositories) {
+    this.enabled = mode.isIssues() && projectRepositories.lastAnalysisDate() != null;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param hashes MD5 of each line, indexed by line - 1. Element is {@code null} for blank lines.
+   */
+  public void put(String fileKey, byte[][] hashes) {
+    if (enabled) {
+      hashesByFileKey.put(fileKey, hashes);
+    }
+  }
+
+  @CheckForNull
+  public byte[][] remove(String fileKey) {
+    return hashesByFileKey.remove(fileKey);
+  }
+
+  public int size() {
+    return hashesByFileKey.size();
+  }
+}
@@ -30,26 +30,31 @@ import java.util.Collection;
 public class SourceHashHolder {
 
   private final ServerLineHashesLoader lastSnapshots;
+  private final LineHashesCache lineHashesCache;
 
   private FileHashes hashedReference;
   private FileHashes hashedSource;
   private DefaultInputFile inputFile;
 
-  public SourceHashHolder(DefaultInputFile inputFile, ServerLineHashesLoader lastSnapshots) {
+  public SourceHashHolder(DefaultInputFile inputFile, ServerLineHashesLoader lastSnapshots, LineHashesCache lineHashesCache) {
     this.inputFile = inputFile;
     this.lastSnapshots = lastSnapshots;
+    this.lineHashesCache = lineHashesCache;
   }
 
   private void initHashes() {
     if (hashedSource == null) {
-      hashedSource = FileHashes.create(inputFile);
+      String key = inputFile.key();
+      // hashes are usually computed when file is indexed, file is read again only if they are missing
+      byte[][] sourceHashes = key != null ? lineHashesCache.remove(key) : null;
+      hashedSource = sourceHashes != null ? FileHashes.create(sourceHashes) : FileHashes.create(inputFile);
       Status status = inputFile.status();
       if (status == Status.ADDED) {
         hashedReference = null;
       } else if (status == Status.SAME) {
         hashedReference = hashedSource;
       } else {
-        String[] lineHashes = lastSnapshots.getLineHashes(inputFile.key());
+        String[] lineHashes = lastSnapshots.getLineHashes(key);
         hashedReference = lineHashes != null ? FileHashes.create(lineHashes) : null;
       }
     }
@@ -62,6 +62,15 @@ public class ReportPublisher implements Startable {
   public static final String KEEP_REPORT_PROP_KEY = "sonar.batch.keepReport";
   public static final String VERBOSE_KEY = "sonar.verbose";
   public static final String METADATA_DUMP_FILENAME = "report-task.txt";
+  /**
+   * Maximum number of report files kept open while appending data, for example issues. 0 to open and close the file on each append.
+   */
+  public static final String MAX_OPEN_FILES_PROP_KEY = "sonar.scanner.report.maxOpenFiles";
+  private static final int DEFAULT_MAX_OPEN_FILES = 64;
+  /**
+   * When enabled, the report is zipped while being uploaded, without writing the zip file to disk.
+   */
+  public static final String STREAM_UPLOAD_PROP_KEY = "sonar.scanner.report.streamUpload";
 
   private final Settings settings;
   private final ScannerWsClient wsClient;
@@ -90,7 +99,8 @@ public class ReportPublisher implements Startable {
   @Override
   public void start() {
     reportDir = new File(projectReactor.getRoot().getWorkDir(), "batch-report");
-    writer = new ScannerReportWriter(reportDir);
+    int maxOpenFiles = settings.hasKey(MAX_OPEN_FILES_PROP_KEY) ? settings.getInt(MAX_OPEN_FILES_PROP_KEY) : DEFAULT_MAX_OPEN_FILES;
+    writer = new ScannerReportWriter(reportDir, maxOpenFiles);
     contextPublisher.init(writer);
 
     if (!analysisMode.isIssues() && !analysisMode.isMediumTest()) {
@@ -103,6 +113,7 @@ public class ReportPublisher implements Startable {
 
   @Override
   public void stop() {
+    writer.close();
     if (!shouldKeepReport()) {
       deleteQuietly(reportDir);
     }
@@ -119,13 +130,18 @@ public class ReportPublisher implements Startable {
   public void execute() {
     // If this is a issues mode analysis then we should not upload reports
     String taskId = null;
+    writer.flush();
     if (!analysisMode.isIssues()) {
-      File report = generateReportFile();
+      publishReport();
       if (shouldKeepReport()) {
         LOG.info("Analysis report generated in " + reportDir);
       }
-      if (!analysisMode.isMediumTest()) {
-        taskId = upload(report);
+      if (analysisMode.isMediumTest()) {
+        zipReport();
+      } else if (settings.getBoolean(STREAM_UPLOAD_PROP_KEY)) {
+        taskId = upload(new PostRequest.Part(MediaTypes.ZIP, output -> ZipUtils.zipDir(reportDir, output)));
+      } else {
+        taskId = upload(zipReport());
       }
     }
     logSuccess(taskId);
@@ -135,19 +151,21 @@ public class ReportPublisher implements Startable {
     return settings.getBoolean(KEEP_REPORT_PROP_KEY) || settings.getBoolean(VERBOSE_KEY);
   }
 
-  private File generateReportFile() {
+  private void publishReport() {
+    long startTime = System.currentTimeMillis();
+    for (ReportPublisherStep publisher : publishers) {
+      publisher.publish(writer);
+    }
+    long stopTime = System.currentTimeMillis();
+    LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
+  }
+
+  private File zipReport() {
     try {
       long startTime = System.currentTimeMillis();
-      for (ReportPublisherStep publisher : publishers) {
-        publisher.publish(writer);
-      }
-      long stopTime = System.currentTimeMillis();
-      LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
-
-      startTime = System.currentTimeMillis();
       File reportZip = temp.newFile("batch-report", ".zip");
       ZipUtils.zipDir(reportDir, reportZip);
-      stopTime = System.currentTimeMillis();
+      long stopTime = System.currentTimeMillis();
       LOG.info("Analysis reports compressed in {}ms, zip size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(reportZip)));
       return reportZip;
     } catch (IOException e) {
@@ -160,10 +178,17 @@ public class ReportPublisher implements Startable {
    */
   @VisibleForTesting
   String upload(File report) {
+    return upload(new PostRequest.Part(MediaTypes.ZIP, report));
+  }
+
+  /**
+   * Uploads the zipped report, which can be either a file or a stream generated during upload, and returns the generated task id
+   */
+  @VisibleForTesting
+  String upload(PostRequest.Part filePart) {
     LOG.debug("Upload report");
     long startTime = System.currentTimeMillis();
     ProjectDefinition projectDefinition = projectReactor.getRoot();
-    PostRequest.Part filePart = new PostRequest.Part(MediaTypes.ZIP, report);
     PostRequest post = new PostRequest("api/ce/submit")
       .setMediaType(MediaTypes.PROTOBUF)
       .setParam("projectKey", projectDefinition.getKey())
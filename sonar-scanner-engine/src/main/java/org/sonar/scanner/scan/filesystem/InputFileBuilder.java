@@ -25,7 +25,10 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.CoreProperties;
@@ -35,6 +38,7 @@ import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.FileMetadata;
 import org.sonar.api.config.Settings;
 import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.scanner.issue.tracking.LineHashesCache;
 
 class InputFileBuilder {
 
@@ -53,9 +57,10 @@ class InputFileBuilder {
   private final DefaultModuleFileSystem fs;
   private final Settings settings;
   private final FileMetadata fileMetadata;
+  private final LineHashesCache lineHashesCache;
 
   InputFileBuilder(String moduleKey, PathResolver pathResolver, LanguageDetection langDetection,
-    StatusDetection statusDetection, DefaultModuleFileSystem fs, Settings settings, FileMetadata fileMetadata) {
+    StatusDetection statusDetection, DefaultModuleFileSystem fs, Settings settings, FileMetadata fileMetadata, LineHashesCache lineHashesCache) {
     this.moduleKey = moduleKey;
     this.pathResolver = pathResolver;
     this.langDetection = langDetection;
@@ -63,6 +68,7 @@ class InputFileBuilder {
     this.fs = fs;
     this.settings = settings;
     this.fileMetadata = fileMetadata;
+    this.lineHashesCache = lineHashesCache;
   }
 
   String moduleKey() {
@@ -114,7 +120,14 @@ class InputFileBuilder {
     Charset charset = detectCharset(inputFile.file(), fs.encoding());
     inputFile.setCharset(charset);
 
-    inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), charset));
+    if (lineHashesCache.isEnabled()) {
+      // line hashes are computed in the same pass than metadata, to not read the file again during issue tracking
+      LineHashesCollector lineHashes = new LineHashesCollector();
+      inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), charset, lineHashes));
+      lineHashesCache.put(inputFile.key(), lineHashes.toArray(inputFile.lines()));
+    } else {
+      inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), charset));
+    }
 
     inputFile.setStatus(statusDetection.status(inputFile.moduleKey(), inputFile.relativePath(), inputFile.hash()));
 
@@ -146,4 +159,25 @@ class InputFileBuilder {
       throw new IllegalStateException("Unable to read file " + file.getAbsolutePath(), e);
     }
   }
+
+  private static class LineHashesCollector implements FileMetadata.LineHashConsumer {
+    private final List<byte[]> hashes = new ArrayList<>();
+
+    @Override
+    public void consume(int lineIdx, @Nullable byte[] hash) {
+      // blank lines are not notified
+      while (hashes.size() < lineIdx - 1) {
+        hashes.add(null);
+      }
+      hashes.add(hash);
+    }
+
+    byte[][] toArray(int lines) {
+      byte[][] result = new byte[lines][];
+      for (int i = 0; i < hashes.size() && i < lines; i++) {
+        result[i] = hashes.get(i);
+      }
+      return result;
+    }
+  }
 }
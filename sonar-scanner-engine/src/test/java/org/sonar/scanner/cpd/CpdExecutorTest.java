@@ -123,6 +123,20 @@ public class CpdExecutorTest {
     assertThat(executor.getMinimumTokens("php")).isEqualTo(33);
   }
 
+  @Test
+  public void defaultThreads() {
+    assertThat(executor.getThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void threadsFromSettings() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY_KEY, "4");
+    assertThat(executor.getThreads()).isEqualTo(4);
+
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY_KEY, "-1");
+    assertThat(executor.getThreads()).isEqualTo(1);
+  }
+
   @Test
   public void testNothingToSave() {
     executor.saveDuplications(batchComponent1, Collections.<CloneGroup>emptyList());
@@ -216,7 +230,59 @@ public class CpdExecutorTest {
 
   @Test
   public void timeout() {
-    for (int i = 1; i <= 2; i++) {
+    insertBlocksSlowToDetect(2);
+    executor.execute(1);
+
+    readDuplications(0);
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .usingElementComparator((l, r) -> l.matches(r) ? 0 : 1)
+      .containsOnly(
+        "Timeout during detection of duplications for .*Foo1.php",
+        "Timeout during detection of duplications for .*Foo2.php");
+  }
+
+  @Test
+  public void timeoutInParallelMode() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY_KEY, "2");
+    timeout();
+  }
+
+  @Test
+  public void timeout_in_parallel_mode_starts_when_detection_is_submitted() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY_KEY, "2");
+    insertBlocksSlowToDetect(2);
+
+    long start = System.currentTimeMillis();
+    executor.execute(1_000);
+    long duration = System.currentTimeMillis() - start;
+
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .usingElementComparator((l, r) -> l.matches(r) ? 0 : 1)
+      .containsOnly(
+        "Timeout during detection of duplications for .*Foo1.php",
+        "Timeout during detection of duplications for .*Foo2.php");
+    // both files are detected at the same time, so the second one is not given more time than the first one
+    assertThat(duration).isLessThan(1_900L);
+  }
+
+  @Test
+  public void detectDuplicationsInParallelMode() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY_KEY, "3");
+    insertDuplicatedBlocks(batchComponent1, batchComponent2, batchComponent3);
+
+    executor.execute();
+
+    assertThat(logTester.logs(LoggerLevel.WARN)).isEmpty();
+    Duplication[] dups = readDuplications(1);
+    assertDuplication(dups[0], 1, 11, 2);
+    assertDuplicate(dups[0].getDuplicate(0), batchComponent2.batchId(), 1, 11);
+    assertDuplicate(dups[0].getDuplicate(1), batchComponent3.batchId(), 1, 11);
+    assertThat(reader.readComponentDuplications(batchComponent2.batchId())).hasSize(1);
+    assertThat(reader.readComponentDuplications(batchComponent3.batchId())).hasSize(1);
+  }
+
+  private void insertBlocksSlowToDetect(int files) {
+    for (int i = 1; i <= files; i++) {
       BatchComponent component = createComponent("src/Foo" + i + ".php", 100);
       List<Block> blocks = new ArrayList<>();
       for (int j = 1; j <= 10000; j++) {
@@ -230,14 +296,22 @@ public class CpdExecutorTest {
       }
       index.insert((InputFile) component.inputComponent(), blocks);
     }
-    executor.execute(1);
+  }
 
-    readDuplications(0);
-    assertThat(logTester.logs(LoggerLevel.WARN))
-      .usingElementComparator((l, r) -> l.matches(r) ? 0 : 1)
-      .containsOnly(
-        "Timeout during detection of duplications for .*Foo1.php",
-        "Timeout during detection of duplications for .*Foo2.php");
+  private void insertDuplicatedBlocks(BatchComponent... components) {
+    for (BatchComponent component : components) {
+      List<Block> blocks = new ArrayList<>();
+      for (int j = 1; j <= 10; j++) {
+        blocks.add(Block.builder()
+          .setResourceId(component.key())
+          .setIndexInFile(j)
+          .setLines(j, j + 1)
+          .setUnit(j * 20, j * 20 + 19)
+          .setBlockHash(new ByteArray(("hash" + j).getBytes()))
+          .build());
+      }
+      index.insert((InputFile) component.inputComponent(), blocks);
+    }
   }
 
   private Duplication[] readDuplications(int expected) {
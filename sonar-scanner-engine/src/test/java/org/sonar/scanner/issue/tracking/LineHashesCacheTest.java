@@ -0,0 +1,83 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue.tracking;
+
+import java.util.Date;
+import org.junit.Test;
+import org.sonar.scanner.analysis.DefaultAnalysisMode;
+import org.sonar.scanner.repository.ProjectRepositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LineHashesCacheTest {
+
+  private DefaultAnalysisMode mode = mock(DefaultAnalysisMode.class);
+  private ProjectRepositories projectRepositories = mock(ProjectRepositories.class);
+
+  @Test
+  public void enabled_in_issues_mode_when_project_has_been_analyzed() {
+    when(mode.isIssues()).thenReturn(true);
+    when(projectRepositories.lastAnalysisDate()).thenReturn(new Date());
+
+    assertThat(new LineHashesCache(mode, projectRepositories).isEnabled()).isTrue();
+  }
+
+  @Test
+  public void disabled_in_publish_mode() {
+    when(mode.isIssues()).thenReturn(false);
+    when(projectRepositories.lastAnalysisDate()).thenReturn(new Date());
+
+    assertThat(new LineHashesCache(mode, projectRepositories).isEnabled()).isFalse();
+  }
+
+  @Test
+  public void disabled_when_project_has_never_been_analyzed() {
+    when(mode.isIssues()).thenReturn(true);
+
+    assertThat(new LineHashesCache(mode, projectRepositories).isEnabled()).isFalse();
+  }
+
+  @Test
+  public void hashes_are_dropped_once_consumed() {
+    when(mode.isIssues()).thenReturn(true);
+    when(projectRepositories.lastAnalysisDate()).thenReturn(new Date());
+    LineHashesCache underTest = new LineHashesCache(mode, projectRepositories);
+    byte[][] hashes = {new byte[16], null};
+
+    underTest.put("foo:src/Foo.java", hashes);
+
+    assertThat(underTest.size()).isEqualTo(1);
+    assertThat(underTest.remove("foo:src/Foo.java")).isSameAs(hashes);
+    assertThat(underTest.remove("foo:src/Foo.java")).isNull();
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void hashes_are_not_kept_when_disabled() {
+    LineHashesCache underTest = new LineHashesCache(mode, projectRepositories);
+
+    underTest.put("foo:src/Foo.java", new byte[][] {new byte[16]});
+
+    assertThat(underTest.size()).isEqualTo(0);
+    assertThat(underTest.remove("foo:src/Foo.java")).isNull();
+  }
+}
@@ -32,6 +32,7 @@ import org.sonar.scanner.issue.tracking.SourceHashHolder;
 import java.io.File;
 import java.nio.charset.StandardCharsets;
 
+import static org.apache.commons.codec.digest.DigestUtils.md5;
 import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -46,6 +47,7 @@ public class SourceHashHolderTest {
   SourceHashHolder sourceHashHolder;
 
   ServerLineHashesLoader lastSnapshots;
+  LineHashesCache lineHashesCache;
   DefaultInputFile file;
 
   private File ioFile;
@@ -53,6 +55,7 @@ public class SourceHashHolderTest {
   @Before
   public void setUp() throws Exception {
     lastSnapshots = mock(ServerLineHashesLoader.class);
+    lineHashesCache = mock(LineHashesCache.class);
     file = mock(DefaultInputFile.class);
     ioFile = temp.newFile();
     when(file.file()).thenReturn(ioFile);
@@ -60,7 +63,7 @@ public class SourceHashHolderTest {
     when(file.lines()).thenReturn(1);
     when(file.charset()).thenReturn(StandardCharsets.UTF_8);
 
-    sourceHashHolder = new SourceHashHolder(file, lastSnapshots);
+    sourceHashHolder = new SourceHashHolder(file, lastSnapshots, lineHashesCache);
   }
 
   @Test
@@ -117,4 +120,16 @@ public class SourceHashHolderTest {
     Mockito.verifyNoMoreInteractions(lastSnapshots);
   }
 
+  @Test
+  public void use_line_hashes_computed_during_indexing() throws Exception {
+    String key = "foo:src/Foo.java";
+    when(file.key()).thenReturn(key);
+    when(file.status()).thenReturn(InputFile.Status.ADDED);
+    when(file.file()).thenReturn(new File(temp.getRoot(), "missing.java"));
+    when(lineHashesCache.remove(key)).thenReturn(new byte[][] {md5("source"), null});
+
+    assertThat(sourceHashHolder.getHashedSource().hashes()).containsExactly(md5Hex("source"), "");
+    verify(lineHashesCache).remove(key);
+  }
+
 }
@@ -19,6 +19,8 @@
  */
 package org.sonar.scanner.report;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -28,6 +30,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.config.PropertyDefinitions;
@@ -36,16 +39,26 @@ import org.sonar.api.config.MapSettings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.config.CorePropertyDefinitions;
 import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.scan.ImmutableProjectReactor;
+import org.sonarqube.ws.WsCe;
+import org.sonarqube.ws.client.PostRequest;
+import org.sonarqube.ws.client.WsRequest;
+import org.sonarqube.ws.client.WsResponse;
 
 import static org.apache.commons.io.FileUtils.readFileToString;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ReportPublisherTest {
@@ -161,4 +174,32 @@ public class ReportPublisherTest {
     assertThat(reportDir).doesNotExist();
   }
 
+  @Test
+  public void zip_report_while_uploading_it_if_stream_upload_is_enabled() throws IOException {
+    settings.setProperty(ReportPublisher.STREAM_UPLOAD_PROP_KEY, true);
+    WsResponse response = mock(WsResponse.class);
+    when(response.failIfNotSuccessful()).thenReturn(response);
+    when(response.contentStream()).thenReturn(new ByteArrayInputStream(WsCe.SubmitResponse.newBuilder().setTaskId("TASK-123").build().toByteArray()));
+    ScannerWsClient client = mock(ScannerWsClient.class);
+    when(client.call(any(WsRequest.class))).thenReturn(response);
+    TempFolder tempFolder = mock(TempFolder.class);
+    ReportPublisher underTest = new ReportPublisher(settings, client, server, contextPublisher, reactor, mode, tempFolder, new ReportPublisherStep[0]);
+    underTest.start();
+    underTest.getWriter().writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("struts").build());
+
+    underTest.execute();
+
+    verify(tempFolder, never()).newFile(anyString(), anyString());
+    ArgumentCaptor<WsRequest> request = ArgumentCaptor.forClass(WsRequest.class);
+    verify(client).call(request.capture());
+    PostRequest.Part part = ((PostRequest) request.getValue()).getParts().get("report");
+    assertThat(part.getFile()).isNull();
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    part.getWriter().writeTo(zip);
+    File unzipDir = temp.newFolder();
+    ZipUtils.unzip(new ByteArrayInputStream(zip.toByteArray()), unzipDir);
+    assertThat(new File(unzipDir, "metadata.pb")).isFile();
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("More about the report processing at https://localhost/api/ce/task?id=TASK-123");
+  }
+
 }
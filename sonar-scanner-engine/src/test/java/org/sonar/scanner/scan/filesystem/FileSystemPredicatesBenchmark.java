@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FilePredicates;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+
+/**
+ * Compares the lookup of files by language and type through the indexes of {@link DefaultFileSystem} with
+ * a scan of all the files, as done by predicates unknown to the file system.
+ * Not executed by unit tests. Run the method {@link #main(String[])} from the IDE, or after "mvn test-compile":
+ * <pre>
+ * java -cp &lt;test classpath&gt; org.openjdk.jmh.Main FileSystemPredicatesBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileSystemPredicatesBenchmark {
+
+  private static final String[] LANGUAGES = {"java", "js", "xml", "php", "cs"};
+
+  @Param({"1000", "100000"})
+  public int nbFiles;
+
+  @Param({"indexed", "scan"})
+  public String lookup;
+
+  private DefaultFileSystem fs;
+  private FilePredicate mainJavaFiles;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    File baseDir = Files.createTempDirectory("fs").toFile();
+    baseDir.deleteOnExit();
+    ModuleInputFileCache cache = new ModuleInputFileCache(ProjectDefinition.create().setKey("foo"), new InputPathCache());
+    fs = new DefaultFileSystem(baseDir, cache) {
+    };
+    for (int i = 0; i < nbFiles; i++) {
+      InputFile.Type type = i % 3 == 0 ? InputFile.Type.TEST : InputFile.Type.MAIN;
+      fs.add(new DefaultInputFile("foo", "src/dir" + (i % 100) + "/File" + i)
+        .setLanguage(LANGUAGES[i % LANGUAGES.length])
+        .setType(type)
+        .setStatus(i % 10 == 0 ? InputFile.Status.CHANGED : InputFile.Status.SAME));
+    }
+    FilePredicates p = fs.predicates();
+    if ("indexed".equals(lookup)) {
+      mainJavaFiles = p.and(p.hasLanguage("java"), p.hasType(InputFile.Type.MAIN));
+    } else {
+      mainJavaFiles = f -> "java".equals(f.language()) && f.type() == InputFile.Type.MAIN;
+    }
+  }
+
+  @Benchmark
+  public void main_java_files(Blackhole blackhole) {
+    for (InputFile inputFile : fs.inputFiles(mainJavaFiles)) {
+      blackhole.consume(inputFile);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(FileSystemPredicatesBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -22,21 +22,29 @@ package org.sonar.scanner.scan.filesystem;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.nio.charset.StandardCharsets;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.FileMetadata;
 import org.sonar.api.config.MapSettings;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.utils.PathUtils;
+import org.sonar.scanner.issue.tracking.LineHashesCache;
 
+import static org.apache.commons.codec.digest.DigestUtils.md5Hex;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class InputFileBuilderTest {
@@ -47,6 +55,7 @@ public class InputFileBuilderTest {
   LanguageDetection langDetection = mock(LanguageDetection.class);
   StatusDetection statusDetection = mock(StatusDetection.class);
   DefaultModuleFileSystem fs = mock(DefaultModuleFileSystem.class);
+  LineHashesCache lineHashesCache = mock(LineHashesCache.class);
 
   @Test
   public void should_detect_charset_from_BOM() {
@@ -54,7 +63,7 @@ public class InputFileBuilderTest {
     when(fs.baseDir()).thenReturn(basedir);
     when(fs.encoding()).thenReturn(StandardCharsets.US_ASCII);
     when(langDetection.language(any(InputFile.class))).thenReturn("java");
-    InputFileBuilder builder = new InputFileBuilder("moduleKey", new PathResolver(), langDetection, statusDetection, fs, new MapSettings(), new FileMetadata());
+    InputFileBuilder builder = new InputFileBuilder("moduleKey", new PathResolver(), langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), lineHashesCache);
 
     assertThat(createAndComplete(builder, new File(basedir, "without_BOM.txt")).charset())
       .isEqualTo(StandardCharsets.US_ASCII);
@@ -102,7 +111,7 @@ public class InputFileBuilderTest {
       .thenReturn(InputFile.Status.ADDED);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata());
+      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), lineHashesCache);
     DefaultInputFile inputFile = builder.create(srcFile);
     builder.completeAndComputeMetadata(inputFile, InputFile.Type.MAIN);
 
@@ -125,7 +134,7 @@ public class InputFileBuilderTest {
     when(fs.baseDir()).thenReturn(basedir);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata());
+      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), lineHashesCache);
     DefaultInputFile inputFile = builder.create(srcFile);
 
     assertThat(inputFile).isNull();
@@ -145,11 +154,49 @@ public class InputFileBuilderTest {
     when(langDetection.language(any(InputFile.class))).thenReturn(null);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata());
+      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), lineHashesCache);
     DefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.completeAndComputeMetadata(inputFile, InputFile.Type.MAIN);
 
     assertThat(inputFile).isNull();
   }
 
+  @Test
+  public void compute_line_hashes_with_metadata_when_cache_is_enabled() throws Exception {
+    File basedir = temp.newFolder();
+    File srcFile = new File(basedir, "src/main/java/foo/Bar.java");
+    FileUtils.write(srcFile, "foo\n\n  bar \n");
+    when(fs.baseDir()).thenReturn(basedir);
+    when(fs.encoding()).thenReturn(StandardCharsets.UTF_8);
+    when(langDetection.language(any(InputFile.class))).thenReturn("java");
+    when(lineHashesCache.isEnabled()).thenReturn(true);
+
+    InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
+      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), lineHashesCache);
+    DefaultInputFile inputFile = builder.completeAndComputeMetadata(builder.create(srcFile), InputFile.Type.MAIN);
+
+    ArgumentCaptor<byte[][]> hashes = ArgumentCaptor.forClass(byte[][].class);
+    verify(lineHashesCache).put(eq("struts:src/main/java/foo/Bar.java"), hashes.capture());
+    assertThat(hashes.getValue()).hasSize(inputFile.lines()).hasSize(4);
+    assertThat(Hex.encodeHexString(hashes.getValue()[0])).isEqualTo(md5Hex("foo"));
+    assertThat(hashes.getValue()[1]).isNull();
+    assertThat(Hex.encodeHexString(hashes.getValue()[2])).isEqualTo(md5Hex("bar"));
+    assertThat(hashes.getValue()[3]).isNull();
+  }
+
+  @Test
+  public void do_not_compute_line_hashes_when_cache_is_disabled() throws Exception {
+    File basedir = temp.newFolder();
+    File srcFile = new File(basedir, "src/main/java/foo/Bar.java");
+    FileUtils.write(srcFile, "foo");
+    when(fs.baseDir()).thenReturn(basedir);
+    when(fs.encoding()).thenReturn(StandardCharsets.UTF_8);
+    when(langDetection.language(any(InputFile.class))).thenReturn("java");
+
+    InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
+      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), lineHashesCache);
+    builder.completeAndComputeMetadata(builder.create(srcFile), InputFile.Type.MAIN);
+
+    verify(lineHashesCache, never()).put(anyString(), any(byte[][].class));
+  }
 }
@@ -19,162 +19,226 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import javax.annotation.CheckForNull;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
 import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
+import static org.sonar.scanner.protocol.output.FileStructure.fileNameFor;
 
 public class ScannerReportReader {
 
+  @CheckForNull
   private final FileStructure fileStructure;
+  @CheckForNull
+  private final File dir;
+  @CheckForNull
+  private final ZipFile zipFile;
 
   public ScannerReportReader(File dir) {
     this.fileStructure = new FileStructure(dir);
+    this.dir = dir;
+    this.zipFile = null;
+  }
+
+  /**
+   * Reads the entries of the zipped report without extracting them. The methods returning a {@link File}
+   * are not supported, the methods returning an {@link InputStream} must be used instead.
+   * The zip file is not closed by this reader.
+   *
+   * @since 6.3
+   */
+  public ScannerReportReader(ZipFile zipFile) {
+    this.fileStructure = null;
+    this.dir = null;
+    this.zipFile = zipFile;
   }
 
   public ScannerReport.Metadata readMetadata() {
-    File file = fileStructure.metadataFile();
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Metadata file is missing in analysis report: " + file);
+    if (!exists(FileStructure.METADATA)) {
+      throw new IllegalStateException("Metadata file is missing in analysis report: " + location(FileStructure.METADATA));
     }
-    return Protobuf.read(file, ScannerReport.Metadata.parser());
+    return read(FileStructure.METADATA, ScannerReport.Metadata.parser());
   }
 
   public CloseableIterator<ScannerReport.ActiveRule> readActiveRules() {
-    File file = fileStructure.activeRules();
-    if (!fileExists(file)) {
-      return emptyCloseableIterator();
-    }
-    return Protobuf.readStream(file, ScannerReport.ActiveRule.parser());
+    return readStream(FileStructure.ACTIVE_RULES, ScannerReport.ActiveRule.parser());
   }
 
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Measure.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(fileNameFor(FileStructure.Domain.MEASURES, componentRef), ScannerReport.Measure.parser());
   }
 
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, ScannerReport.Changesets.parser());
+    String name = fileNameFor(FileStructure.Domain.CHANGESETS, componentRef);
+    if (exists(name)) {
+      return read(name, ScannerReport.Changesets.parser());
     }
     return null;
   }
 
   public ScannerReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    String name = fileNameFor(FileStructure.Domain.COMPONENT, componentRef);
+    if (!exists(name)) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + location(name));
     }
-    return Protobuf.read(file, ScannerReport.Component.parser());
+    return read(name, ScannerReport.Component.parser());
   }
 
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Issue.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(fileNameFor(FileStructure.Domain.ISSUES, componentRef), ScannerReport.Issue.parser());
   }
 
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Duplication.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(fileNameFor(FileStructure.Domain.DUPLICATIONS, componentRef), ScannerReport.Duplication.parser());
   }
 
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(fileNameFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef), ScannerReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Symbol.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(fileNameFor(FileStructure.Domain.SYMBOLS, componentRef), ScannerReport.Symbol.parser());
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return exists(fileNameFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef));
   }
 
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.SyntaxHighlightingRule.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(fileNameFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef), ScannerReport.SyntaxHighlightingRule.parser());
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return exists(fileNameFor(FileStructure.Domain.COVERAGES, componentRef));
   }
 
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.LineCoverage.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(fileNameFor(FileStructure.Domain.COVERAGES, fileRef), ScannerReport.LineCoverage.parser());
   }
 
   @CheckForNull
   public File readFileSource(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
-    if (fileExists(file)) {
-      return file;
-    }
-    return null;
+    return file(fileNameFor(FileStructure.Domain.SOURCE, fileRef));
+  }
+
+  /**
+   * Same as {@link #readFileSource(int)}, but also supported by zipped reports. The stream must be closed by caller.
+   */
+  @CheckForNull
+  public InputStream openFileSource(int fileRef) {
+    return open(fileNameFor(FileStructure.Domain.SOURCE, fileRef));
   }
 
   @CheckForNull
   public File readTests(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, testFileRef);
-    if (fileExists(file)) {
-      return file;
-    }
+    return file(fileNameFor(FileStructure.Domain.TESTS, testFileRef));
+  }
 
-    return null;
+  /**
+   * Same as {@link #readTests(int)}, but also supported by zipped reports. The stream must be closed by caller.
+   */
+  @CheckForNull
+  public InputStream openTests(int testFileRef) {
+    return open(fileNameFor(FileStructure.Domain.TESTS, testFileRef));
   }
 
   @CheckForNull
   public File readCoverageDetails(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
-    if (fileExists(file)) {
-      return file;
-    }
+    return file(fileNameFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef));
+  }
 
-    return null;
+  /**
+   * Same as {@link #readCoverageDetails(int)}, but also supported by zipped reports. The stream must be closed by caller.
+   */
+  @CheckForNull
+  public InputStream openCoverageDetails(int testFileRef) {
+    return open(fileNameFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef));
+  }
+
+  /**
+   * Logs of the scanner, or {@code null} if they are not in the report. The stream must be closed by caller.
+   */
+  @CheckForNull
+  public InputStream openAnalysisLog() {
+    return open(FileStructure.ANALYSIS_LOG);
   }
 
   public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
-    File file = fileStructure.contextProperties();
-    if (!fileExists(file)) {
-      return emptyCloseableIterator();
+    return readStream(FileStructure.CONTEXT_PROPERTIES, ScannerReport.ContextProperty.parser());
+  }
+
+  public FileStructure getFileStructure() {
+    if (fileStructure == null) {
+      throw new IllegalStateException("File structure is not available on zipped report " + zipFile.getName());
     }
-    return Protobuf.readStream(file, ScannerReport.ContextProperty.parser());
+    return fileStructure;
   }
 
-  private static boolean fileExists(File file) {
+  private boolean exists(String name) {
+    if (zipFile != null) {
+      ZipEntry entry = zipFile.getEntry(name);
+      return entry != null && !entry.isDirectory();
+    }
+    File file = new File(dir, name);
     return file.exists() && file.isFile();
   }
 
-  public FileStructure getFileStructure() {
-    return fileStructure;
+  private String location(String name) {
+    return zipFile != null ? (zipFile.getName() + "!" + name) : new File(dir, name).toString();
+  }
+
+  @CheckForNull
+  private File file(String name) {
+    if (zipFile != null) {
+      throw new IllegalStateException("Files can not be read from zipped report " + zipFile.getName() + ". Use the methods returning an InputStream.");
+    }
+    if (exists(name)) {
+      return new File(dir, name);
+    }
+    return null;
+  }
+
+  @CheckForNull
+  private InputStream open(String name) {
+    if (!exists(name)) {
+      return null;
+    }
+    try {
+      if (zipFile != null) {
+        return new BufferedInputStream(zipFile.getInputStream(zipFile.getEntry(name)));
+      }
+      return new BufferedInputStream(new FileInputStream(new File(dir, name)));
+    } catch (IOException e) {
+      throw ContextException.of("Unable to open report file", e).addContext("file", location(name));
+    }
+  }
+
+  private <MSG extends Message> MSG read(String name, Parser<MSG> parser) {
+    if (zipFile == null) {
+      return Protobuf.read(new File(dir, name), parser);
+    }
+    return Protobuf.read(open(name), parser);
+  }
+
+  private <MSG extends Message> CloseableIterator<MSG> readStream(String name, Parser<MSG> parser) {
+    if (!exists(name)) {
+      return emptyCloseableIterator();
+    }
+    if (zipFile == null) {
+      return Protobuf.readStream(new File(dir, name), parser);
+    }
+    return Protobuf.readStream(open(name), parser);
   }
 }
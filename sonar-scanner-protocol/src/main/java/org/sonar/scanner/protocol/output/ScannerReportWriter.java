@@ -19,22 +19,44 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
-public class ScannerReportWriter {
+public class ScannerReportWriter implements Closeable {
 
   private final FileStructure fileStructure;
+  private final int maxOpenAppenders;
+  private final Map<AppenderKey, OutputStream> appenders;
 
   public ScannerReportWriter(File dir) {
+    this(dir, 0);
+  }
+
+  /**
+   * @param maxOpenAppenders maximum number of files kept open by the methods appending data to components, like
+   *                         {@link #appendComponentIssue(int, ScannerReport.Issue)}. The least recently used file is
+   *                         closed when this limit is exceeded. With 0, a file is opened and closed on each call.
+   *                         Appended data is visible to readers only after {@link #flush()} or {@link #close()}.
+   */
+  public ScannerReportWriter(File dir, int maxOpenAppenders) {
     if (!dir.exists() && !dir.mkdirs()) {
       throw new IllegalStateException("Unable to create directory: " + dir);
     }
     this.fileStructure = new FileStructure(dir);
+    this.maxOpenAppenders = Math.max(0, maxOpenAppenders);
+    this.appenders = new LinkedHashMap<>(16, 0.75f, true);
   }
 
   public FileStructure getFileStructure() {
@@ -42,6 +64,7 @@ public class ScannerReportWriter {
   }
 
   public boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    closeAppender(domain, componentRef);
     File file = fileStructure.fileFor(domain, componentRef);
     return file.exists() && file.isFile();
   }
@@ -66,18 +89,14 @@ public class ScannerReportWriter {
   }
 
   public File writeComponentIssues(int componentRef, Iterable<ScannerReport.Issue> issues) {
+    closeAppender(FileStructure.Domain.ISSUES, componentRef);
     File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
     Protobuf.writeStream(issues, file, false);
     return file;
   }
 
   public void appendComponentIssue(int componentRef, ScannerReport.Issue issue) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
-      issue.writeDelimitedTo(out);
-    } catch (Exception e) {
-      throw ContextException.of("Unable to write issue", e).addContext("file", file);
-    }
+    append(FileStructure.Domain.ISSUES, componentRef, issue);
   }
 
   public File writeComponentMeasures(int componentRef, Iterable<ScannerReport.Measure> measures) {
@@ -144,4 +163,90 @@ public class ScannerReportWriter {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  /**
+   * Writes to disk the data appended to components and closes the files kept open.
+   */
+  public synchronized void flush() {
+    List<OutputStream> outputs = new ArrayList<>(appenders.values());
+    appenders.clear();
+    for (OutputStream output : outputs) {
+      closeOutput(output);
+    }
+  }
+
+  @Override
+  public void close() {
+    flush();
+  }
+
+  private synchronized void append(FileStructure.Domain domain, int componentRef, Message message) {
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (maxOpenAppenders == 0) {
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
+        message.writeDelimitedTo(out);
+      } catch (Exception e) {
+        throw ContextException.of("Unable to append data", e).addContext("file", file);
+      }
+      return;
+    }
+
+    AppenderKey key = new AppenderKey(domain, componentRef);
+    OutputStream out = appenders.get(key);
+    try {
+      if (out == null) {
+        out = new BufferedOutputStream(new FileOutputStream(file, true));
+        appenders.put(key, out);
+        if (appenders.size() > maxOpenAppenders) {
+          // iteration order is access order, so the first entry is the least recently used
+          AppenderKey eldest = appenders.keySet().iterator().next();
+          closeOutput(appenders.remove(eldest));
+        }
+      }
+      message.writeDelimitedTo(out);
+    } catch (Exception e) {
+      throw ContextException.of("Unable to append data", e).addContext("file", file);
+    }
+  }
+
+  private synchronized void closeAppender(FileStructure.Domain domain, int componentRef) {
+    OutputStream out = appenders.remove(new AppenderKey(domain, componentRef));
+    if (out != null) {
+      closeOutput(out);
+    }
+  }
+
+  private static void closeOutput(OutputStream output) {
+    try {
+      output.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to close report file", e);
+    }
+  }
+
+  private static class AppenderKey {
+    private final FileStructure.Domain domain;
+    private final int componentRef;
+
+    private AppenderKey(FileStructure.Domain domain, int componentRef) {
+      this.domain = domain;
+      this.componentRef = componentRef;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      AppenderKey that = (AppenderKey) o;
+      return componentRef == that.componentRef && domain == that.domain;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(domain, componentRef);
+    }
+  }
 }
@@ -23,12 +23,14 @@ import com.google.common.collect.Lists;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.util.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.ZipUtils;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.scanner.protocol.output.ScannerReport.Measure.StringValue;
 import org.sonar.scanner.protocol.output.ScannerReport.SyntaxHighlightingRule.HighlightingType;
@@ -37,6 +39,7 @@ import org.sonar.scanner.protocol.output.ScannerReport.Test.TestStatus;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class ScannerReportReaderTest {
 
@@ -377,4 +380,51 @@ public class ScannerReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void read_zipped_report_without_extracting_it() throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("PROJECT_A").setRootComponentRef(1).build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("the message").build()));
+    try (FileOutputStream outputStream = new FileOutputStream(writer.getSourceFile(1))) {
+      IOUtils.write("line1\nline2", outputStream);
+    }
+    FileUtils.write(writer.getFileStructure().analysisLog(), "log");
+    File zip = temp.newFile("report.zip");
+    ZipUtils.zipDir(dir, zip);
+
+    try (ZipFile zipFile = new ZipFile(zip)) {
+      ScannerReportReader zipReader = new ScannerReportReader(zipFile);
+
+      assertThat(zipReader.readMetadata().getProjectKey()).isEqualTo("PROJECT_A");
+      assertThat(zipReader.readComponent(1).getRef()).isEqualTo(1);
+      assertThat(zipReader.readComponentIssues(1)).hasSize(1);
+      assertThat(zipReader.readComponentIssues(UNKNOWN_COMPONENT_REF)).isEmpty();
+      assertThat(zipReader.readChangesets(1)).isNull();
+      try (InputStream inputStream = zipReader.openFileSource(1)) {
+        assertThat(IOUtils.readLines(inputStream)).containsExactly("line1", "line2");
+      }
+      try (InputStream inputStream = zipReader.openAnalysisLog()) {
+        assertThat(IOUtils.toString(inputStream)).isEqualTo("log");
+      }
+      assertThat(zipReader.openFileSource(UNKNOWN_COMPONENT_REF)).isNull();
+      assertThat(zipReader.openTests(1)).isNull();
+    }
+  }
+
+  @Test
+  public void files_can_not_be_read_from_zipped_report() throws Exception {
+    File zip = temp.newFile("report.zip");
+    ZipUtils.zipDir(dir, zip);
+
+    try (ZipFile zipFile = new ZipFile(zip)) {
+      try {
+        new ScannerReportReader(zipFile).readFileSource(1);
+        fail();
+      } catch (IllegalStateException e) {
+        assertThat(e).hasMessageContaining("Files can not be read from zipped report");
+      }
+    }
+  }
 }
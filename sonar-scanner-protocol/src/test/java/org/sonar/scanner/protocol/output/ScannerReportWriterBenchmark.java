@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.scanner.protocol.Constants;
+
+/**
+ * Compares the append of issues to the report when a file is opened and closed for each issue (maxOpenAppenders=0),
+ * with a pool of open files. An operation appends {@link #ISSUES_PER_COMPONENT} issues to each of the
+ * {@link #COMPONENTS} components, in the order of components like sensors do, so it opens and closes
+ * 20,000 files without pool, and only 200 with a pool.
+ * Not executed by unit tests. Run the method {@link #main(String[])} from the IDE, or after "mvn test-compile":
+ * <pre>
+ * java -cp &lt;test classpath&gt; org.openjdk.jmh.Main ScannerReportWriterBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScannerReportWriterBenchmark {
+
+  private static final int COMPONENTS = 200;
+  private static final int ISSUES_PER_COMPONENT = 100;
+
+  @Param({"0", "64"})
+  public int maxOpenAppenders;
+
+  private ScannerReport.Issue issue;
+  private File dir;
+  private ScannerReportWriter writer;
+
+  @Setup(Level.Trial)
+  public void setUpIssue() {
+    issue = ScannerReport.Issue.newBuilder()
+      .setRuleRepository("squid")
+      .setRuleKey("S1234")
+      .setMsg("Remove this unused private field")
+      .setSeverity(Constants.Severity.MAJOR)
+      .setTextRange(ScannerReport.TextRange.newBuilder().setStartLine(10).setEndLine(10).setStartOffset(2).setEndOffset(12))
+      .build();
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpWriter() throws Exception {
+    dir = Files.createTempDirectory("report").toFile();
+    writer = new ScannerReportWriter(dir, maxOpenAppenders);
+  }
+
+  @TearDown(Level.Invocation)
+  public void tearDownWriter() {
+    FileUtils.deleteQuietly(dir);
+  }
+
+  @Benchmark
+  public void append_issues() {
+    for (int ref = 1; ref <= COMPONENTS; ref++) {
+      for (int i = 0; i < ISSUES_PER_COMPONENT; i++) {
+        writer.appendComponentIssue(ref, issue);
+      }
+    }
+    writer.flush();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ScannerReportWriterBenchmark.class.getSimpleName()).build()).run();
+  }
+}
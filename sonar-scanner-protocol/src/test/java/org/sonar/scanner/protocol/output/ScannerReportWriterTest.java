@@ -116,6 +116,59 @@ public class ScannerReportWriterTest {
     }
   }
 
+  @Test
+  public void append_issues() {
+    ScannerReport.Issue issue = ScannerReport.Issue.newBuilder()
+      .setMsg("the message")
+      .build();
+
+    underTest.appendComponentIssue(1, issue);
+    underTest.appendComponentIssue(1, issue);
+
+    assertThat(readIssues(1)).isEqualTo(2);
+  }
+
+  @Test
+  public void append_issues_with_pool_of_open_files() {
+    underTest = new ScannerReportWriter(dir, 2);
+    ScannerReport.Issue issue = ScannerReport.Issue.newBuilder()
+      .setMsg("the message")
+      .build();
+
+    underTest.appendComponentIssue(1, issue);
+    underTest.appendComponentIssue(2, issue);
+    underTest.appendComponentIssue(1, issue);
+    // the file of component 2 is the least recently used, so it is closed
+    underTest.appendComponentIssue(3, issue);
+    underTest.appendComponentIssue(2, issue);
+    underTest.appendComponentIssue(3, issue);
+    assertThat(readIssues(2)).isEqualTo(1);
+
+    underTest.flush();
+
+    assertThat(readIssues(1)).isEqualTo(2);
+    assertThat(readIssues(2)).isEqualTo(2);
+    assertThat(readIssues(3)).isEqualTo(2);
+  }
+
+  @Test
+  public void data_appended_with_pool_of_open_files_is_visible_to_other_write_methods() {
+    underTest = new ScannerReportWriter(dir, 10);
+    ScannerReport.Issue issue = ScannerReport.Issue.newBuilder()
+      .setMsg("the message")
+      .build();
+
+    underTest.appendComponentIssue(1, issue);
+    assertThat(underTest.hasComponentData(FileStructure.Domain.ISSUES, 1)).isTrue();
+    assertThat(readIssues(1)).isEqualTo(1);
+
+    underTest.appendComponentIssue(1, issue);
+    underTest.writeComponentIssues(1, asList(issue, issue, issue));
+    underTest.close();
+
+    assertThat(readIssues(1)).isEqualTo(3);
+  }
+
   @Test
   public void write_measures() {
     assertThat(underTest.hasComponentData(FileStructure.Domain.MEASURES, 1)).isFalse();
@@ -299,4 +352,11 @@ public class ScannerReportWriterTest {
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.COVERAGE_DETAILS, 1)).isTrue();
   }
+
+  private int readIssues(int componentRef) {
+    File file = underTest.getFileStructure().fileFor(FileStructure.Domain.ISSUES, componentRef);
+    try (CloseableIterator<ScannerReport.Issue> read = Protobuf.readStream(file, ScannerReport.Issue.parser())) {
+      return Iterators.size(read);
+    }
+  }
 }
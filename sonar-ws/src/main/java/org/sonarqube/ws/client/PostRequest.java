@@ -20,8 +20,11 @@
 package org.sonarqube.ws.client;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import javax.annotation.CheckForNull;
 
 /**
  * @since 5.3
@@ -51,19 +54,55 @@ public class PostRequest extends BaseRequest<PostRequest> {
   public static class Part {
     private final String mediaType;
     private final File file;
+    private final ContentWriter writer;
 
     public Part(String mediaType, File file) {
       this.mediaType = mediaType;
       this.file = file;
+      this.writer = null;
+    }
+
+    /**
+     * Part which content is generated while being sent. As its length is not known
+     * in advance, the request is sent with chunked transfer encoding.
+     *
+     * @since 6.3
+     */
+    public Part(String mediaType, ContentWriter writer) {
+      this.mediaType = mediaType;
+      this.file = null;
+      this.writer = writer;
     }
 
     public String getMediaType() {
       return mediaType;
     }
 
+    /**
+     * {@code null} if the content of part is generated by {@link #getWriter()}
+     */
+    @CheckForNull
     public File getFile() {
       return file;
     }
+
+    /**
+     * {@code null} if the content of part is a {@link #getFile() file}
+     * @since 6.3
+     */
+    @CheckForNull
+    public ContentWriter getWriter() {
+      return writer;
+    }
+  }
+
+  /**
+   * Writes the content of a {@link Part}. The output stream must not be closed.
+   * @since 6.3
+   */
+  @FunctionalInterface
+  public interface ContentWriter {
+    void writeTo(OutputStream output) throws IOException;
   }
 
 }
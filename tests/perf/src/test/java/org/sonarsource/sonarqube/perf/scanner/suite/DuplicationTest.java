@@ -23,7 +23,9 @@ import com.sonar.orchestrator.Orchestrator;
 import com.sonar.orchestrator.build.MavenBuild;
 import com.sonar.orchestrator.locator.FileLocation;
 import org.sonarsource.sonarqube.perf.PerfTestCase;
+import java.io.File;
 import java.io.IOException;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -72,6 +74,46 @@ public class DuplicationTest extends PerfTestCase {
     assertThat(file.getMeasureValue("duplicated_lines")).isGreaterThan(50000.0);
   }
 
+  /**
+   * Compares the duration of the analysis of 8 copies of the huge file, with sequential and parallel CPD detection
+   */
+  @Test
+  public void hugeJavaFilesWithParallelDetection() throws IOException {
+    File baseDir = prepareHugeFilesProject(8);
+
+    long sequentialDuration = analyzeHugeFiles(baseDir, 1);
+    orchestrator.resetData();
+    long parallelDuration = analyzeHugeFiles(baseDir, 4);
+
+    System.out.printf("Test %s : sequential CPD in %d ms, parallel CPD (4 threads) in %d ms\n", testName.getMethodName(), sequentialDuration, parallelDuration);
+    assertDurationLessThan(collector, parallelDuration, sequentialDuration);
+    Resource file = getResource("com.sonarsource.it.samples:huge-file:src/main/java/huge/HugeFile1.java");
+    assertThat(file.getMeasureValue("duplicated_lines")).isGreaterThan(50000.0);
+  }
+
+  private long analyzeHugeFiles(File baseDir, int cpdThreads) {
+    MavenBuild build = MavenBuild.create(new File(baseDir, "pom.xml"))
+      .setEnvironmentVariable("MAVEN_OPTS", "-Xmx1024m")
+      .setProperty("sonar.sourceEncoding", "UTF-8")
+      .setProperty("sonar.cpd.threads", String.valueOf(cpdThreads))
+      .setCleanSonarGoals();
+    long start = System.currentTimeMillis();
+    orchestrator.executeBuild(build);
+    return System.currentTimeMillis() - start;
+  }
+
+  private File prepareHugeFilesProject(int nbFiles) throws IOException {
+    File hugeFileProject = FileLocation.of("projects/huge-file").getFile();
+    File baseDir = temp.newFolder();
+    FileUtils.copyFileToDirectory(new File(hugeFileProject, "pom.xml"), baseDir);
+    String source = FileUtils.readFileToString(new File(hugeFileProject, "src/main/java/huge/HugeFile.java"), "UTF-8");
+    File srcDir = new File(baseDir, "src/main/java/huge");
+    for (int nb = 1; nb <= nbFiles; nb++) {
+      FileUtils.write(new File(srcDir, "HugeFile" + nb + ".java"), source.replace("class HugeFile ", "class HugeFile" + nb + " "), "UTF-8");
+    }
+    return baseDir;
+  }
+
   private Resource getResource(String key) {
     return orchestrator.getServer().getWsClient()
       .find(ResourceQuery.createForMetrics(key, "duplicated_lines", "duplicated_blocks", "duplicated_files", "duplicated_lines_density", "useless-duplicated-lines"));